@@ -7,10 +7,12 @@ import java.util.Map;
 
 import com.badlogic.gdx.scenes.scene2d.Group;
 import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.PieceType;
 import com.github.bhlangonijr.chesslib.Side;
 import com.github.bhlangonijr.chesslib.Square;
 import com.github.bhlangonijr.chesslib.move.Move;
 
+import io.github.onlinechess.shared.packets.GameStatusPacket;
 import io.github.onlinechess.ui.ChessBoardActor;
 import io.github.onlinechess.ui.ChessPieceActor;
 import io.github.onlinechess.ui.ChessThemeSetter;
@@ -21,6 +23,8 @@ import io.github.onlinechess.ui.ChessThemeSetter;
  * Acts as the bridge between UI and game logic.
  */
 public class BoardManager {
+    private static final Square[] SQUARES = Square.values();
+    
     private final Group pieceContainer;
     private final ChessBoardActor boardActor;
     private final ChessThemeSetter themeSetter;
@@ -80,6 +84,38 @@ public class BoardManager {
         return moveSuccessful;
     }
     
+    /**
+     * Applies a status update from the server.
+     * Deltas move only the affected pieces; a snapshot rebuilds the board.
+     * 
+     * @param status The status packet received from the server
+     * @return Whether the update was applied; false means the board is out of
+     *         sync and the caller should send a ResyncRequestPacket
+     */
+    public boolean applyStatus(GameStatusPacket status) {
+        if (status.isSnapshot()) {
+            chessBoard.loadSnapshot(status.getFen(), status.getSequence());
+            initializeStandardBoard();
+            return true;
+        }
+        
+        Move move = status.getMove();
+        if (move == null) {
+            // Nothing changed on the board
+            return status.getSequence() == chessBoard.getSequence();
+        }
+        
+        int before = chessBoard.getSequence();
+        if (!chessBoard.applyServerMove(move, status.getSequence())) {
+            return false;
+        }
+        // Our own confirmed move is already on screen
+        if (chessBoard.getSequence() != before) {
+            updateAfterMove(move);
+        }
+        return true;
+    }
+    
     /**
      * Initializes the board with standard chess starting positions
      */
@@ -158,6 +194,9 @@ public class BoardManager {
         ChessPieceActor piece = piecesBySquare.remove(from);
         if (piece != null) {
             originalPiece = piece.getChessPiece();
+            
+            // Handle special moves (castling, en passant)
+            updateSpecialMove(originalPiece, from, to);
         }
         
         // Get the current piece at the destination after the move
@@ -189,9 +228,30 @@ public class BoardManager {
                 piecesBySquare.put(to, piece);
             }
         }
+    }
+    
+    /**
+     * Moves the extra piece involved in castling, or removes a pawn captured en passant.
+     * Must be called before the moving piece is placed on its destination.
+     */
+    private void updateSpecialMove(Piece movedPiece, Square from, Square to) {
+        int fromFile = from.getFile().ordinal();
+        int fromRank = from.getRank().ordinal();
+        int fileDelta = to.getFile().ordinal() - fromFile;
         
-        // Handle special moves (castling, en passant)
-        // TODO: Implement special move handling
+        if (movedPiece.getPieceType() == PieceType.KING && Math.abs(fileDelta) == 2) {
+            // Castling: the rook jumps to the square the king passed over
+            Square rookFrom = SQUARES[fromRank * 8 + (fileDelta > 0 ? 7 : 0)];
+            Square rookTo = SQUARES[fromRank * 8 + fromFile + fileDelta / 2];
+            ChessPieceActor rook = piecesBySquare.remove(rookFrom);
+            if (rook != null) {
+                rook.setCurrentSquare(rookTo);
+                piecesBySquare.put(rookTo, rook);
+            }
+        } else if (movedPiece.getPieceType() == PieceType.PAWN && fileDelta != 0 && !piecesBySquare.containsKey(to)) {
+            // En passant: the captured pawn is beside the moving pawn, not on its destination
+            removePiece(SQUARES[fromRank * 8 + to.getFile().ordinal()]);
+        }
     }
     
     /**
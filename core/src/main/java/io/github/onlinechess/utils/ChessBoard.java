@@ -13,6 +13,23 @@ import com.github.bhlangonijr.chesslib.move.Move;
 public class ChessBoard {
     private final Board chessBoard;
     private final boolean isOnline;
+    // Forwards local moves to the server in online games
+    private MoveSender moveSender;
+    // Number of moves applied to this board, including a predicted local move
+    private int sequence;
+    // Our own move that the server has not confirmed yet, or null
+    private Move pendingMove;
+    
+    /**
+     * Sends moves made on this board to the server
+     */
+    public interface MoveSender {
+        /**
+         * @param move The move to send
+         * @param sequence The move's position in the game, starting at 1
+         */
+        void sendMove(Move move, int sequence);
+    }
     
     /**
      * Creates a new chess board with standard initial position
@@ -49,18 +66,64 @@ public class ChessBoard {
         
         // Now check if the move is allowed
         if (checkIfMoveIsAllowed(move, player)) {
-            // If online, we would send the move to the server here
-            if (isOnline) {
-                // TODO: Send move to server
+            // If online, send the move to the server. The server re-validates it
+            // and is authoritative; applying it locally is only a prediction.
+            if (isOnline && moveSender != null) {
+                moveSender.sendMove(move, sequence + 1);
+                pendingMove = move;
             }
             
             // Apply the move to the local board
             chessBoard.doMove(move);
+            sequence++;
             return true;
         }
         return false;
     }
     
+    /**
+     * Apply a move confirmed by the server.
+     * The server has already validated it, so no turn or legality checks are made.
+     * If the move is the server's confirmation of our own predicted move, it is
+     * already on the board and only the prediction is cleared.
+     * 
+     * @param move The move played
+     * @param moveSequence The move's sequence number
+     * @return Whether the move was applied; false means the board is out of sync and needs a snapshot
+     */
+    public boolean applyServerMove(Move move, int moveSequence) {
+        if (pendingMove != null && moveSequence == sequence) {
+            boolean confirmed = pendingMove.equals(move);
+            pendingMove = null;
+            return confirmed;
+        }
+        if (moveSequence != sequence + 1 || pendingMove != null) {
+            return false;
+        }
+        chessBoard.doMove(move);
+        sequence = moveSequence;
+        return true;
+    }
+    
+    /**
+     * Replace the position with a snapshot sent by the server
+     * 
+     * @param fen The position in FEN notation
+     * @param snapshotSequence The sequence number of the snapshot
+     */
+    public void loadSnapshot(String fen, int snapshotSequence) {
+        chessBoard.loadFromFen(fen);
+        sequence = snapshotSequence;
+        pendingMove = null;
+    }
+    
+    /**
+     * Get the number of moves applied to this board
+     */
+    public int getSequence() {
+        return sequence;
+    }
+    
     /**
      * Check if a move is a pawn promotion
      */
@@ -154,6 +217,13 @@ public class ChessBoard {
         return chessBoard.getPiece(square);
     }
     
+    /**
+     * Set the sender used to forward moves to the server in online games
+     */
+    public void setMoveSender(MoveSender moveSender) {
+        this.moveSender = moveSender;
+    }
+    
     /**
      * Check if this is an online game
      */
@@ -0,0 +1,504 @@
+package io.github.onlinechess.loadtest;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.move.Move;
+
+import io.github.onlinechess.shared.MoveCodec;
+import io.github.onlinechess.shared.NetworkRegistry;
+import io.github.onlinechess.shared.PacketSerialization;
+import io.github.onlinechess.shared.RttEstimator;
+import io.github.onlinechess.shared.cluster.NodeAddress;
+import io.github.onlinechess.shared.packets.ChunkAckPacket;
+import io.github.onlinechess.shared.packets.ChunkPacket;
+import io.github.onlinechess.shared.packets.GameStatusPacket;
+import io.github.onlinechess.shared.packets.HandshakePacket;
+import io.github.onlinechess.shared.packets.HeartbeatPacket;
+import io.github.onlinechess.shared.packets.HistoryRequestPacket;
+import io.github.onlinechess.shared.packets.HostGamePacket;
+import io.github.onlinechess.shared.packets.JoinGamePacket;
+import io.github.onlinechess.shared.packets.JoinResultPacket;
+import io.github.onlinechess.shared.packets.MatchFoundPacket;
+import io.github.onlinechess.shared.packets.MatchmakingRequestPacket;
+import io.github.onlinechess.shared.packets.MovePacket;
+import io.github.onlinechess.shared.packets.MoveRejectedPacket;
+import io.github.onlinechess.shared.packets.PingPacket;
+import io.github.onlinechess.shared.packets.RedirectPacket;
+import io.github.onlinechess.shared.packets.ResumePacket;
+import io.github.onlinechess.shared.packets.ResyncRequestPacket;
+import io.github.onlinechess.shared.packets.SessionTokenPacket;
+import io.github.onlinechess.shared.stream.StreamReceiver;
+
+import static com.esotericsoftware.minlog.Log.debug;
+
+/**
+ * A headless player. It connects, gets into a game, either by hosting or
+ * joining one with its partner bot or through matchmaking, plays it to the
+ * end with random or scripted moves, then reconnects and starts over.
+ * When its game moves to another server node, it follows the redirect and
+ * resumes its seat there, and stays on that node for later games. It answers
+ * the server's clock sync pings, measuring the round trip as a client would,
+ * and after resuming it downloads the game's move history, checking that no
+ * move it saw is missing.
+ *
+ * A bot and its partner belong to the same {@link BotDriver}, and everything
+ * here runs on that driver's thread, so no state is locked.
+ */
+class Bot extends Listener {
+    private enum State {
+        DISCONNECTED, CONNECTING, HANDSHAKING, LOBBY, WAITING, PLAYING, LEAVING, REDIRECTING, RESUMING
+    }
+
+    private static final int WRITE_BUFFER_SIZE = 8192;
+    private static final int OBJECT_BUFFER_SIZE = 4096;
+    private static final long RECONNECT_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(500);
+
+    private final int id;
+    private final LoadTestOptions options;
+    private final LoadStats stats;
+    private final BotDriver driver;
+    private final Client client = new Client(WRITE_BUFFER_SIZE, OBJECT_BUFFER_SIZE, new PacketSerialization());
+    // Hosts the pair's games when not using matchmaking; null in matchmaking
+    private Bot partner;
+    private boolean host;
+
+    private State state = State.DISCONNECTED;
+    // Node to connect to; starts as the configured server and follows redirects
+    private NodeAddress server;
+    // When the bot may next try to connect
+    private long connectAt;
+    private long connectStartedAt;
+    private boolean connected;
+    // Round trip and clock offset to the current server, from its pings
+    private RttEstimator rtt = new RttEstimator();
+    // Streamed downloads, and the move history being downloaded
+    private final StreamReceiver streams = new StreamReceiver(this::onStreamChunk);
+    private int historyBytes;
+    private int historyExpected;
+    // Set once the test is over, so the bot never reconnects
+    private boolean stopped;
+
+    private int gameCode;
+    // Token for the bot's seat, which reclaims it on another node after a redirect
+    private long sessionToken;
+    private Side side;
+    private Board board;
+    private int sequence;
+    // When the next move is due, or 0 if the bot is not about to move
+    private long nextMoveAt;
+    // Sequence of the move waiting for the server's update, or 0
+    private int pendingSequence;
+    private long pendingSentAt;
+    // When the game last moved on; a game that stops moving is abandoned
+    private long lastProgressAt;
+
+    Bot(int id, LoadTestOptions options, LoadStats stats, BotDriver driver, long connectAt) {
+        this.id = id;
+        this.options = options;
+        this.stats = stats;
+        this.driver = driver;
+        this.connectAt = connectAt;
+        this.server = new NodeAddress(options.host, options.port, options.udpPort);
+        client.addListener(this);
+    }
+
+    /**
+     * Pairs two bots that play each other, the first hosting
+     */
+    static void pair(Bot host, Bot guest) {
+        host.partner = guest;
+        host.host = true;
+        guest.partner = host;
+    }
+
+    Client getClient() {
+        return client;
+    }
+
+    /**
+     * Called by the driver after every network update
+     */
+    void tick(long now) {
+        switch (state) {
+            case DISCONNECTED:
+                if (now >= connectAt) {
+                    connect(now);
+                }
+                break;
+            case LOBBY:
+                if (partner == null) {
+                    findMatch();
+                } else if (host && partner.state == State.LOBBY) {
+                    hostGame();
+                }
+                break;
+            case RESUMING:
+                if (now - lastProgressAt > options.stallTimeoutNanos) {
+                    stats.stalledGames.increment();
+                    leave();
+                }
+                break;
+            case WAITING:
+            case PLAYING:
+                if (partner != null && !partner.isInGame()) {
+                    // The partner dropped out, so this game will never finish
+                    leave();
+                } else if (state == State.PLAYING && now - lastProgressAt > options.stallTimeoutNanos) {
+                    stats.stalledGames.increment();
+                    leave();
+                } else if (nextMoveAt != 0 && now >= nextMoveAt) {
+                    nextMoveAt = 0;
+                    sendMove(now);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void connect(long now) {
+        state = State.CONNECTING;
+        connectStartedAt = now;
+        // Connecting blocks until the driver's updates complete KryoNet's registration, so it runs elsewhere
+        driver.connect(() -> {
+            try {
+                client.connect(options.connectTimeoutMillis, server.getHost(), server.getTcpPort(), server.getUdpPort());
+            } catch (IOException e) {
+                debug("Bot " + id + " could not connect: " + e.getMessage());
+                driver.post(this::connectFailed);
+            }
+        });
+    }
+
+    private void connectFailed() {
+        stats.connectFailures.increment();
+        if (isResuming()) {
+            // The game cannot be reached, so give it up and start over
+            sessionToken = 0;
+        }
+        retryLater();
+    }
+
+    /**
+     * Whether the bot is following a redirect to get back into its game
+     */
+    private boolean isResuming() {
+        return sessionToken != 0 && gameCode != 0 && side != null;
+    }
+
+    /**
+     * Whether the bot is in a game or on its way back into one
+     */
+    private boolean isInGame() {
+        return state == State.WAITING || state == State.PLAYING || state != State.LEAVING && isResuming();
+    }
+
+    private void retryLater() {
+        state = State.DISCONNECTED;
+        connectAt = stopped ? Long.MAX_VALUE : System.nanoTime() + RECONNECT_DELAY_NANOS;
+    }
+
+    /**
+     * Closes the connection on purpose; the bot reconnects for its next game
+     */
+    private void leave() {
+        state = State.LEAVING;
+        nextMoveAt = 0;
+        sessionToken = 0;
+        side = null;
+        client.close();
+    }
+
+    /**
+     * Disconnects for good at the end of the test
+     */
+    void stop() {
+        stopped = true;
+        connectAt = Long.MAX_VALUE;
+        leave();
+    }
+
+    @Override
+    public void connected(Connection connection) {
+        if (stopped) {
+            // Finished connecting after the test ended
+            leave();
+            return;
+        }
+        state = State.HANDSHAKING;
+        rtt = new RttEstimator();
+        streams.clear();
+        client.sendTCP(new HandshakePacket(NetworkRegistry.PROTOCOL_VERSION, NetworkRegistry.SUPPORTED_CAPABILITIES));
+    }
+
+    @Override
+    public void disconnected(Connection connection) {
+        if (connected) {
+            connected = false;
+            stats.connected.decrementAndGet();
+        }
+        if (state == State.REDIRECTING) {
+            // Straight on to the game's new node
+            state = State.DISCONNECTED;
+            connectAt = stopped ? Long.MAX_VALUE : System.nanoTime();
+            return;
+        }
+        if (state != State.LEAVING && state != State.CONNECTING) {
+            stats.unexpectedDisconnects.increment();
+        }
+        if (state != State.CONNECTING) {
+            retryLater();
+        }
+    }
+
+    @Override
+    public void received(Connection connection, Object object) {
+        if (object instanceof GameStatusPacket) {
+            onStatus((GameStatusPacket) object);
+        } else if (object instanceof ChunkPacket) {
+            ChunkAckPacket ack = streams.received((ChunkPacket) object);
+            if (ack != null) {
+                client.sendTCP(ack);
+            }
+        } else if (object instanceof PingPacket) {
+            onPing((PingPacket) object);
+        } else if (object instanceof HeartbeatPacket) {
+            // Prove to the server that the bot is still alive
+            client.sendTCP(object);
+        } else if (object instanceof HandshakePacket) {
+            onHandshake((HandshakePacket) object);
+        } else if (object instanceof JoinResultPacket) {
+            onJoinResult((JoinResultPacket) object);
+        } else if (object instanceof MatchFoundPacket) {
+            MatchFoundPacket found = (MatchFoundPacket) object;
+            gameCode = found.getGameCode();
+            startGame(found.isWhite() ? Side.WHITE : Side.BLACK, found.isWhite());
+        } else if (object instanceof SessionTokenPacket) {
+            sessionToken = ((SessionTokenPacket) object).getToken();
+        } else if (object instanceof RedirectPacket) {
+            onRedirect((RedirectPacket) object);
+        } else if (object instanceof MoveRejectedPacket) {
+            pendingSequence = 0;
+            if (((MoveRejectedPacket) object).getReason() == MoveRejectedPacket.MIGRATING) {
+                // The game is moving; the move is sent again from the new node
+                nextMoveAt = 0;
+                return;
+            }
+            stats.movesRejected.increment();
+            // Whatever went wrong, start again from the server's position
+            client.sendTCP(new ResyncRequestPacket(sequence));
+        }
+    }
+
+    private void onPing(PingPacket ping) {
+        if (rtt.received(ping, RttEstimator.now())) {
+            stats.roundTrips.record(rtt.getRtt());
+        }
+        client.sendUDP(rtt.nextPing(RttEstimator.now()));
+    }
+
+    private void onHandshake(HandshakePacket packet) {
+        if (!packet.isAccepted()) {
+            stats.handshakeRejections.increment();
+            leave();
+            return;
+        }
+        connected = true;
+        stats.connected.incrementAndGet();
+        stats.connectLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - connectStartedAt));
+        if (isResuming()) {
+            state = State.RESUMING;
+            client.sendTCP(new ResumePacket(sessionToken, sequence));
+        } else {
+            state = State.LOBBY;
+        }
+    }
+
+    private void onRedirect(RedirectPacket redirect) {
+        server = new NodeAddress(redirect.getHost(), redirect.getTcpPort(), redirect.getUdpPort());
+        if (state != State.PLAYING || redirect.getGameCode() != gameCode || sessionToken == 0) {
+            // Not yet seated; start over on the node that owns the game
+            leave();
+            return;
+        }
+        stats.redirects.increment();
+        state = State.REDIRECTING;
+        nextMoveAt = 0;
+        pendingSequence = 0;
+        lastProgressAt = System.nanoTime();
+        client.close();
+    }
+
+    private void hostGame() {
+        state = State.WAITING;
+        partner.state = State.WAITING;
+        client.sendTCP(new HostGamePacket(ThreadLocalRandom.current().nextBoolean(), options.baseSeconds,
+                                          options.incrementSeconds));
+    }
+
+    private void findMatch() {
+        state = State.WAITING;
+        int elo = 1200 + ThreadLocalRandom.current().nextInt(600);
+        client.sendTCP(new MatchmakingRequestPacket(elo, options.baseSeconds, options.incrementSeconds));
+    }
+
+    private void onJoinResult(JoinResultPacket result) {
+        if (state == State.RESUMING) {
+            onResumed(result);
+            return;
+        }
+        if (!result.isSuccess()) {
+            stats.joinFailures.increment();
+            leave();
+            return;
+        }
+        gameCode = result.getGameCode();
+        if (host) {
+            partner.gameCode = gameCode;
+            partner.client.sendTCP(new JoinGamePacket(gameCode));
+        } else {
+            // Both seated; the host counts the game
+            partner.startGame(result.isWhite() ? Side.BLACK : Side.WHITE, true);
+            startGame(result.isWhite() ? Side.WHITE : Side.BLACK, false);
+        }
+    }
+
+    private void onResumed(JoinResultPacket result) {
+        if (!result.isSuccess()) {
+            stats.joinFailures.increment();
+            leave();
+            return;
+        }
+        // Missed moves follow as updates; if there were none, carry on from here
+        state = State.PLAYING;
+        lastProgressAt = System.nanoTime();
+        scheduleMove();
+        // Rebuild the move list, as a client would after moving to another node
+        historyBytes = 0;
+        historyExpected = sequence;
+        client.sendTCP(new HistoryRequestPacket(gameCode));
+    }
+
+    private void onStreamChunk(int streamId, int kind, byte[] data, boolean last) {
+        if (kind != ChunkPacket.KIND_MOVE_HISTORY) {
+            return;
+        }
+        historyBytes += data.length;
+        if (last) {
+            // The game code, then a long per move
+            int moves = (historyBytes - Integer.BYTES) / Long.BYTES;
+            if (moves < historyExpected) {
+                debug("Bot " + id + " got " + moves + " moves of history, expected at least " + historyExpected);
+                stats.desyncs.increment();
+            }
+            historyBytes = 0;
+        }
+    }
+
+    private void startGame(Side side, boolean counts) {
+        if (counts) {
+            stats.gamesStarted.increment();
+        }
+        this.side = side;
+        board = new Board();
+        sequence = 0;
+        pendingSequence = 0;
+        state = State.PLAYING;
+        lastProgressAt = System.nanoTime();
+        scheduleMove();
+    }
+
+    private void onStatus(GameStatusPacket status) {
+        if (state != State.PLAYING) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (status.isSnapshot()) {
+            board.loadFromFen(status.getFen());
+            sequence = status.getSequence();
+        } else if (status.getSequence() == sequence + 1) {
+            Move move = status.getMove();
+            if (move == null || !board.doMove(move)) {
+                desync();
+                return;
+            }
+            sequence++;
+        } else {
+            desync();
+            return;
+        }
+        lastProgressAt = now;
+        if (pendingSequence != 0 && sequence >= pendingSequence) {
+            stats.moveLatency.record(TimeUnit.NANOSECONDS.toMicros(now - pendingSentAt));
+            stats.movesAcknowledged.increment();
+            pendingSequence = 0;
+        }
+
+        if (status.hasFlag(GameStatusPacket.GAME_OVER)) {
+            if (side == Side.WHITE) {
+                stats.gamesFinished.increment();
+            }
+            leave();
+        } else if (sequence >= options.maxPlies) {
+            // Random play can shuffle on for a long time; start a fresh game
+            if (side == Side.WHITE) {
+                stats.gamesAbandoned.increment();
+            }
+            leave();
+        } else {
+            scheduleMove();
+        }
+    }
+
+    private void desync() {
+        stats.desyncs.increment();
+        client.sendTCP(new ResyncRequestPacket(sequence));
+    }
+
+    private void scheduleMove() {
+        if (board.getSideToMove() != side || pendingSequence != 0) {
+            return;
+        }
+        // Think for between half and one and a half times the configured time
+        long think = (long) (options.thinkNanos * (0.5 + ThreadLocalRandom.current().nextDouble()));
+        nextMoveAt = Math.max(1, System.nanoTime() + think);
+    }
+
+    private void sendMove(long now) {
+        Move move = chooseMove();
+        if (move == null) {
+            // No legal moves; the server's update for the previous move ends the game
+            return;
+        }
+        pendingSequence = sequence + 1;
+        pendingSentAt = now;
+        stats.movesSent.increment();
+        client.sendTCP(new MovePacket(MoveCodec.encode(move), pendingSequence));
+    }
+
+    /**
+     * Picks the next move of the game's script if there is one and it is legal, otherwise a random legal move
+     */
+    private Move chooseMove() {
+        List<Move> legal = board.legalMoves();
+        if (legal.isEmpty()) {
+            return null;
+        }
+        String[] script = options.scriptFor(gameCode);
+        if (script != null && sequence < script.length) {
+            Move scripted = new Move(script[sequence], side);
+            if (legal.contains(scripted)) {
+                return scripted;
+            }
+        }
+        return legal.get(ThreadLocalRandom.current().nextInt(legal.size()));
+    }
+}
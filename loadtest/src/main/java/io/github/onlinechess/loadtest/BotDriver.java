@@ -0,0 +1,97 @@
+package io.github.onlinechess.loadtest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.esotericsoftware.minlog.Log.error;
+
+/**
+ * Runs the network updates and timers of a group of bots on one thread.
+ *
+ * A KryoNet client normally gets an update thread of its own, which would
+ * mean thousands of threads for a large test. A driver instead polls each of
+ * its clients without blocking, then ticks its bots, about once a millisecond.
+ */
+class BotDriver implements Runnable {
+    private static final long POLL_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final List<Bot> bots = new ArrayList<>();
+    // Work handed back to this thread, such as failed connection attempts
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Performs blocking connects off this thread
+    private final Executor connector;
+    private final Thread thread;
+    private volatile boolean running = true;
+
+    BotDriver(int index, Executor connector) {
+        this.connector = connector;
+        this.thread = new Thread(this, "bot-driver-" + index);
+        this.thread.setDaemon(true);
+    }
+
+    /**
+     * Adds a bot; only before the driver starts
+     */
+    void add(Bot bot) {
+        bots.add(bot);
+    }
+
+    void start() {
+        thread.start();
+    }
+
+    /**
+     * Runs a task on this driver's thread
+     */
+    void post(Runnable task) {
+        tasks.offer(task);
+    }
+
+    /**
+     * Runs a blocking connect on the connector threads, while this thread keeps
+     * updating the client so the connect can complete
+     */
+    void connect(Runnable connect) {
+        connector.execute(connect);
+    }
+
+    /**
+     * Disconnects every bot and stops the thread
+     */
+    void stop() throws InterruptedException {
+        post(() -> {
+            for (Bot bot : bots) {
+                bot.stop();
+            }
+            running = false;
+        });
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+            for (Bot bot : bots) {
+                try {
+                    bot.getClient().update(0);
+                    bot.tick(System.nanoTime());
+                } catch (IOException e) {
+                    // The client has already closed itself and told the bot
+                } catch (Exception e) {
+                    error("Bot update failed.", e);
+                }
+            }
+            LockSupport.parkNanos(POLL_INTERVAL_NANOS);
+        }
+    }
+}
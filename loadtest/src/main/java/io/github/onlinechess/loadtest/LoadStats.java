@@ -0,0 +1,44 @@
+package io.github.onlinechess.loadtest;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.onlinechess.server.metrics.Histogram;
+
+/**
+ * Counters shared by every bot in a load test
+ */
+public class LoadStats {
+    // Bots currently connected with a completed handshake
+    final AtomicInteger connected = new AtomicInteger();
+    final LongAdder gamesStarted = new LongAdder();
+    final LongAdder gamesFinished = new LongAdder();
+    // Games given up after the move limit
+    final LongAdder gamesAbandoned = new LongAdder();
+    final LongAdder movesSent = new LongAdder();
+    final LongAdder movesAcknowledged = new LongAdder();
+    // Times a bot was sent to another node and resumed its game there
+    final LongAdder redirects = new LongAdder();
+    // Time from sending a move to receiving the server's update for it
+    final Histogram moveLatency = new Histogram();
+    // Time from opening a connection to the server accepting the handshake
+    final Histogram connectLatency = new Histogram();
+    // Smoothed round trip measured from the server's clock sync pings, after each sample
+    final Histogram roundTrips = new Histogram();
+
+    // Errors, by kind
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder handshakeRejections = new LongAdder();
+    final LongAdder joinFailures = new LongAdder();
+    final LongAdder movesRejected = new LongAdder();
+    final LongAdder unexpectedDisconnects = new LongAdder();
+    // Updates that did not follow on from the bot's last known position
+    final LongAdder desyncs = new LongAdder();
+    // Games that stopped moving
+    final LongAdder stalledGames = new LongAdder();
+
+    public long getErrorCount() {
+        return connectFailures.sum() + handshakeRejections.sum() + joinFailures.sum() + movesRejected.sum()
+               + unexpectedDisconnects.sum() + desyncs.sum() + stalledGames.sum();
+    }
+}
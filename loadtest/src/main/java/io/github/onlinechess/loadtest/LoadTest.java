@@ -0,0 +1,157 @@
+package io.github.onlinechess.loadtest;
+
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import com.esotericsoftware.minlog.Log;
+
+import io.github.onlinechess.server.metrics.Histogram;
+
+import static com.esotericsoftware.minlog.Log.LEVEL_INFO;
+import static com.esotericsoftware.minlog.Log.info;
+
+/**
+ * Puts load on a running ChessServer with headless bots that connect, pair
+ * up and play whole games, then reports throughput, move latency and errors.
+ *
+ * Move latency is the time from a bot sending a move to it receiving the
+ * server's update for that move, which covers validation, the journal's
+ * durability wait and the fan-out. Progress is reported every few seconds,
+ * with a summary of the whole run at the end. The process exits with status 1
+ * if any errors were seen, so a release check can fail on them.
+ */
+public class LoadTest {
+    // Threads that perform blocking connects for all drivers
+    private static final int CONNECTOR_THREADS = 4;
+
+    public static void main(String[] args) throws Exception {
+        LoadTestOptions options;
+        try {
+            options = LoadTestOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(LoadTestOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        Log.set(LEVEL_INFO);
+
+        LoadStats stats = new LoadStats();
+        ExecutorService connector = Executors.newFixedThreadPool(CONNECTOR_THREADS, runnable -> {
+            Thread thread = new Thread(runnable, "bot-connector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        BotDriver[] drivers = new BotDriver[Math.min(options.drivers, options.bots)];
+        for (int i = 0; i < drivers.length; i++) {
+            drivers[i] = new BotDriver(i, connector);
+        }
+
+        // Spread the first connections over the ramp, so the server sees arrivals rather than a burst
+        long start = System.nanoTime();
+        long rampNanos = TimeUnit.SECONDS.toNanos(options.rampSeconds);
+        Bot previous = null;
+        for (int i = 0; i < options.bots; i++) {
+            // Partners go to the same driver, which lets them hand each other the game code
+            BotDriver driver = drivers[(i / 2) % drivers.length];
+            Bot bot = new Bot(i, options, stats, driver, start + rampNanos * i / options.bots);
+            driver.add(bot);
+            if (!options.matchmaking && i % 2 == 1) {
+                Bot.pair(previous, bot);
+            }
+            previous = bot;
+        }
+        info(String.format(Locale.ROOT, "Starting %d bots on %d drivers against %s:%d for %d s.",
+                           options.bots, drivers.length, options.host, options.port, options.durationSeconds));
+        for (BotDriver driver : drivers) {
+            driver.start();
+        }
+
+        long end = start + TimeUnit.SECONDS.toNanos(options.durationSeconds);
+        Sample last = new Sample(stats, start);
+        while (System.nanoTime() < end) {
+            long remaining = end - System.nanoTime();
+            TimeUnit.NANOSECONDS.sleep(Math.min(remaining, TimeUnit.SECONDS.toNanos(options.reportSeconds)));
+            Sample sample = new Sample(stats, System.nanoTime());
+            info(report(sample, last, start, options.bots));
+            last = sample;
+        }
+
+        for (BotDriver driver : drivers) {
+            driver.stop();
+        }
+        connector.shutdownNow();
+        Sample total = new Sample(stats, System.nanoTime());
+        info(summary(total, new Sample(new LoadStats(), start), stats));
+        System.exit(stats.getErrorCount() > 0 ? 1 : 0);
+    }
+
+    private static String report(Sample now, Sample last, long start, int bots) {
+        double seconds = Math.max(1e-9, (now.at - last.at) / 1e9);
+        Histogram.Snapshot latency = now.moveLatency.minus(last.moveLatency);
+        return String.format(Locale.ROOT,
+                             "[%4ds] bots %d/%d  games %d started %d finished  moves %.1f/s  "
+                             + "latency ms p50 %.2f p99 %.2f max %.2f  errors %d",
+                             TimeUnit.NANOSECONDS.toSeconds(now.at - start), now.connected, bots,
+                             now.gamesStarted, now.gamesFinished, (now.moves - last.moves) / seconds,
+                             millis(latency.percentile(0.5)), millis(latency.percentile(0.99)),
+                             millis(latency.max()), now.errors);
+    }
+
+    private static String summary(Sample total, Sample zero, LoadStats stats) {
+        double seconds = Math.max(1e-9, (total.at - zero.at) / 1e9);
+        Histogram.Snapshot latency = total.moveLatency;
+        Histogram.Snapshot connect = stats.connectLatency.snapshot();
+        Histogram.Snapshot roundTrips = stats.roundTrips.snapshot();
+        return String.format(Locale.ROOT,
+                             "Summary after %.1f s:%n"
+                             + "  games       %d started, %d finished, %d abandoned at the move limit%n"
+                             + "  moves       %d sent, %d acknowledged, %.1f/s%n"
+                             + "  move ms     p50 %.2f  p90 %.2f  p99 %.2f  p99.9 %.2f  max %.2f%n"
+                             + "  connect ms  p50 %.2f  p99 %.2f  max %.2f  (%d connections, %d redirects)%n"
+                             + "  rtt ms      p50 %.2f  p99 %.2f  max %.2f  (%d ping samples)%n"
+                             + "  errors      %d: %d connect failures, %d handshakes rejected, %d joins failed,%n"
+                             + "              %d moves rejected, %d unexpected disconnects, %d desyncs, %d stalled games",
+                             seconds, total.gamesStarted, total.gamesFinished, stats.gamesAbandoned.sum(),
+                             stats.movesSent.sum(), total.moves, total.moves / seconds,
+                             millis(latency.percentile(0.5)), millis(latency.percentile(0.9)),
+                             millis(latency.percentile(0.99)), millis(latency.percentile(0.999)),
+                             millis(latency.max()),
+                             millis(connect.percentile(0.5)), millis(connect.percentile(0.99)),
+                             millis(connect.max()), connect.getCount(), stats.redirects.sum(),
+                             millis(roundTrips.percentile(0.5)), millis(roundTrips.percentile(0.99)),
+                             millis(roundTrips.max()), roundTrips.getCount(),
+                             total.errors, stats.connectFailures.sum(), stats.handshakeRejections.sum(),
+                             stats.joinFailures.sum(), stats.movesRejected.sum(), stats.unexpectedDisconnects.sum(),
+                             stats.desyncs.sum(), stats.stalledGames.sum());
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    /**
+     * The counters at one moment, so a report can show the change since the last
+     */
+    private static final class Sample {
+        final long at;
+        final int connected;
+        final long gamesStarted;
+        final long gamesFinished;
+        final long moves;
+        final long errors;
+        final Histogram.Snapshot moveLatency;
+
+        Sample(LoadStats stats, long at) {
+            this.at = at;
+            this.connected = stats.connected.get();
+            this.gamesStarted = stats.gamesStarted.sum();
+            this.gamesFinished = stats.gamesFinished.sum();
+            this.moves = stats.movesAcknowledged.sum();
+            this.errors = stats.getErrorCount();
+            this.moveLatency = stats.moveLatency.snapshot();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package io.github.onlinechess.loadtest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Settings for a load test, read from --name=value arguments
+ */
+class LoadTestOptions {
+    static final String USAGE =
+        "Usage: loadtest [--name=value ...]\n"
+        + "  --host=localhost       Server to connect to\n"
+        + "  --port=54555           Server TCP port\n"
+        + "  --udp-port=54777       Server UDP port, which KryoNet needs before it counts a client as connected\n"
+        + "  --bots=100             Number of bots; pairs play each other unless --matchmaking is set\n"
+        + "  --drivers=<cpus>       Threads that run the bots\n"
+        + "  --think-ms=1000        Average time a bot takes over a move\n"
+        + "  --duration-s=60        Length of the test\n"
+        + "  --ramp-s=10            Time over which bots first connect\n"
+        + "  --report-s=5           Interval between progress reports\n"
+        + "  --base-s=0             Time control base in seconds; 0 for untimed games\n"
+        + "  --increment-s=0        Time control increment in seconds\n"
+        + "  --max-plies=300        Moves after which a game is abandoned\n"
+        + "  --matchmaking=false    Find opponents through matchmaking\n"
+        + "  --script=<file>        Games to play, one per line as moves like e2e4;\n"
+        + "                         a game follows line (code mod lines), then plays randomly";
+
+    String host = "localhost";
+    int port = 54555;
+    int udpPort = 54777;
+    int bots = 100;
+    int drivers = Runtime.getRuntime().availableProcessors();
+    long thinkNanos = TimeUnit.SECONDS.toNanos(1);
+    long durationSeconds = 60;
+    long rampSeconds = 10;
+    long reportSeconds = 5;
+    int baseSeconds;
+    int incrementSeconds;
+    int maxPlies = 300;
+    boolean matchmaking;
+    int connectTimeoutMillis = 5000;
+    // A game that goes this long without an update is given up
+    long stallTimeoutNanos = TimeUnit.SECONDS.toNanos(30);
+    // Scripted games, each as a list of moves
+    private String[][] scripts;
+
+    /**
+     * @throws IllegalArgumentException If an argument is unknown or malformed
+     */
+    static LoadTestOptions parse(String[] args) throws IOException {
+        LoadTestOptions options = new LoadTestOptions();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value: " + arg);
+            }
+            String name = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            try {
+                options.set(name, value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + arg);
+            }
+        }
+        if (options.bots < 1 || options.drivers < 1) {
+            throw new IllegalArgumentException("Need at least one bot and one driver.");
+        }
+        if (!options.matchmaking && options.bots % 2 != 0) {
+            throw new IllegalArgumentException("Bots play in pairs, so --bots must be even.");
+        }
+        return options;
+    }
+
+    private void set(String name, String value) throws IOException {
+        switch (name) {
+            case "host": host = value; break;
+            case "port": port = Integer.parseInt(value); break;
+            case "udp-port": udpPort = Integer.parseInt(value); break;
+            case "bots": bots = Integer.parseInt(value); break;
+            case "drivers": drivers = Integer.parseInt(value); break;
+            case "think-ms": thinkNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(value)); break;
+            case "duration-s": durationSeconds = Long.parseLong(value); break;
+            case "ramp-s": rampSeconds = Long.parseLong(value); break;
+            case "report-s": reportSeconds = Math.max(1, Long.parseLong(value)); break;
+            case "base-s": baseSeconds = Integer.parseInt(value); break;
+            case "increment-s": incrementSeconds = Integer.parseInt(value); break;
+            case "max-plies": maxPlies = Integer.parseInt(value); break;
+            case "matchmaking": matchmaking = Boolean.parseBoolean(value); break;
+            case "script": scripts = readScripts(value); break;
+            default: throw new IllegalArgumentException("Unknown option: --" + name);
+        }
+    }
+
+    private static String[][] readScripts(String file) throws IOException {
+        List<String[]> games = new ArrayList<>();
+        for (String line : Files.readAllLines(Paths.get(file), StandardCharsets.UTF_8)) {
+            line = line.trim();
+            if (!line.isEmpty() && !line.startsWith("#")) {
+                games.add(line.split("\\s+"));
+            }
+        }
+        if (games.isEmpty()) {
+            throw new IllegalArgumentException("No games in script " + file);
+        }
+        return games.toArray(new String[0][]);
+    }
+
+    /**
+     * Get the scripted moves for a game, or null to play randomly.
+     * Both players derive the same script from the game code.
+     */
+    String[] scriptFor(int gameCode) {
+        if (scripts == null) {
+            return null;
+        }
+        return scripts[Math.floorMod(gameCode, scripts.length)];
+    }
+}
@@ -0,0 +1,82 @@
+package io.github.onlinechess.server.game;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import com.esotericsoftware.minlog.Log;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import io.github.onlinechess.server.network.DirectDispatcher;
+import io.github.onlinechess.server.persistence.DisabledJournal;
+import io.github.onlinechess.server.timer.HashedWheelTimer;
+
+/**
+ * Throughput of the game map at 1 to 16 shards, from one thread per processor.
+ *
+ * Lookups find a random game among LIVE_GAMES, as every move does. Churn
+ * creates a game and removes it again, as hosting and abandoning one does.
+ * Removed codes sit in quarantine, so each iteration starts from a fresh
+ * manager to keep the pool from running dry.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Measurement(iterations = 5, time = 200, timeUnit = TimeUnit.MILLISECONDS)
+@Fork(1)
+@Threads(Threads.MAX)
+public class GameSessionManagerBenchmark {
+    private static final int LIVE_GAMES = 10000;
+
+    @Param({"1", "2", "4", "8", "16"})
+    public int shards;
+
+    private HashedWheelTimer timer;
+    private GameSessionManager manager;
+    private int[] codes;
+
+    @Setup(Level.Trial)
+    public void startTimer() {
+        Log.set(Log.LEVEL_WARN);
+        timer = new HashedWheelTimer(2, TimeUnit.MILLISECONDS, 1024);
+    }
+
+    @Setup(Level.Iteration)
+    public void createGames() {
+        // Games here are untimed, so nothing is ever dispatched
+        manager = new GameSessionManager(shards, null, new DisabledJournal(), timer, new DirectDispatcher());
+        codes = new int[LIVE_GAMES];
+        for (int i = 0; i < LIVE_GAMES; i++) {
+            codes[i] = manager.createGame().getGameCode();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void stopTimer() {
+        timer.stop();
+    }
+
+    @Benchmark
+    public GameSession lookup() {
+        return manager.getGame(codes[ThreadLocalRandom.current().nextInt(LIVE_GAMES)]);
+    }
+
+    @Benchmark
+    public GameSession churn() {
+        GameSession session = manager.createGame();
+        return manager.removeGame(session.getGameCode());
+    }
+}
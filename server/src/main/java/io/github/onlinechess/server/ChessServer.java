@@ -3,37 +3,213 @@ package io.github.onlinechess.server;
 
 // import com.esotericsoftware.kryo.Kryo;
 import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+import com.esotericsoftware.kryonet.Connection;
 import com.esotericsoftware.kryonet.Server; // Import Log itself for setting level
 import com.esotericsoftware.minlog.Log; // Import IOException
 import static com.esotericsoftware.minlog.Log.LEVEL_DEBUG; // Keep static imports for info, error etc.
 import static com.esotericsoftware.minlog.Log.error;
 import static com.esotericsoftware.minlog.Log.info;
 
+import io.github.onlinechess.server.chat.ChatService;
+import io.github.onlinechess.server.cluster.ClusterMembership;
+import io.github.onlinechess.server.cluster.GameMigrator;
+import io.github.onlinechess.server.game.GameSession;
+import io.github.onlinechess.server.game.GameSessionManager;
+import io.github.onlinechess.server.matchmaking.MatchmakingService;
+import io.github.onlinechess.server.metrics.MetricsRegistry;
+import io.github.onlinechess.server.metrics.MetricsServer;
+import io.github.onlinechess.server.network.Broadcaster;
+import io.github.onlinechess.server.network.ChessConnection;
+import io.github.onlinechess.server.network.ChessSerialization;
+import io.github.onlinechess.server.network.ConnectionReaper;
+import io.github.onlinechess.server.network.MessageDispatcher;
+import io.github.onlinechess.server.network.OrderedDispatcher;
+import io.github.onlinechess.server.network.Pinger;
+import io.github.onlinechess.server.network.RateLimiter;
+import io.github.onlinechess.server.persistence.GameRecovery;
+import io.github.onlinechess.server.persistence.Journal;
+import io.github.onlinechess.server.persistence.MappedJournal;
+import io.github.onlinechess.server.persistence.SnapshotStore;
+import io.github.onlinechess.server.timer.HashedWheelTimer;
+
 public class ChessServer {
     // Server Object
     private static Server server;
-    // Ports to listen on:
-    private final static int udpPort = 54777; 
-    private final static int tcpPort = 54555;
+    // Live games, sharded by game code
+    private static GameSessionManager gameManager;
+    // Moves message handling off KryoNet's update thread
+    private static MessageDispatcher dispatcher;
+    // Pairs players of similar rating
+    private static MatchmakingService matchmaking;
+    // Game and lobby chat rooms
+    private static ChatService chat;
+    // Makes accepted moves durable
+    private static Journal journal;
+    // Periodic copies of every game, so recovery only replays the journal's tail
+    private static SnapshotStore snapshots;
+    // Tracks flag-fall deadlines for every timed game
+    private static HashedWheelTimer timer;
+    // Hands games to the nodes that own them and redirects clients there
+    private static GameMigrator migrator;
+    // Serves metrics for Prometheus to scrape
+    private static MetricsServer metricsServer;
+    // Runs periodic housekeeping such as expiring abandoned seats
+    private static ScheduledExecutorService maintenance;
+    private static long drainTimeoutNanos;
+    // Metrics are served on loopback only; expose them through a scraper on the same host
+    private final static String metricsHost = "127.0.0.1";
+    // Dispatch pool sizing:
+    private final static int dispatchLanes = Runtime.getRuntime().availableProcessors();
+    private final static int dispatchQueueCapacity = 4096;
+    // How long the update thread waits for room in a full lane before shedding the message
+    private final static long dispatchOfferTimeoutMillis = 5;
+    // KryoNet buffer sizes, per connection:
+    private final static int writeBufferSize = 16384;
+    private final static int objectBufferSize = 4096;
+    // Broadcasts skip any spectator they would leave with more than this many bytes waiting;
+    // player packets may fill the whole write buffer, and otherwise wait in a backlog
+    private final static int slowSubscriberThreshold = writeBufferSize / 2;
+    // Players with this much waiting in their backlog are disconnected, and can resume
+    private final static int maxBacklogBytes = 256 * 1024;
+    // How often abandoned seats are checked for expiry
+    private final static long seatExpiryIntervalSeconds = 5;
+    // Journal settings, under the data directory:
+    private final static String journalDirectory = "journal";
+    private final static int journalRecordsPerSegment = 1 << 20; // 16 MB segment files
+    private final static long maxCommitLatencyMicros = 2000;
+    private final static long journalFlushTimeoutSeconds = 5;
+    // Snapshot settings, under the data directory:
+    private final static String snapshotDirectory = "snapshots";
+    private final static long snapshotIntervalSeconds = 60;
+    // Clock timer settings; a lap of the wheel covers about two seconds
+    private final static long timerTickMillis = 2;
+    private final static int timerWheelSize = 1024;
+    // Heartbeat settings: quiet connections are pinged, then closed after the timeout
+    private final static long heartbeatIntervalSeconds = 10;
+    private final static long connectionTimeoutSeconds = 30;
+    private final static long reapSweepMillis = 500;
+    private final static int maxReapsPerSweep = 256;
+    // Clock sync: each connection is pinged over UDP this often
+    private final static long pingIntervalMillis = 2000;
+    private final static int maxPingsPerSweep = 256;
+    // Per-connection message budgets: sustained rate per second and burst
+    private final static RateLimiter.Limit moveLimit = new RateLimiter.Limit(10, 20);
+    private final static RateLimiter.Limit chatLimit = new RateLimiter.Limit(3, 10);
+    private final static RateLimiter.Limit controlLimit = new RateLimiter.Limit(20, 50);
+    // Skipped messages tolerated before a flooding client is disconnected
+    private final static RateLimiter.Limit violationLimit = new RateLimiter.Limit(1, 100);
+    // How often cluster membership is re-read and games that moved are handed off
+    private final static long rebalanceIntervalMillis = 1000;
 
     public static void main(String[] args) {
         // Set logging level
         Log.set(LEVEL_DEBUG);
 
+        ServerOptions options;
+        try {
+            options = ServerOptions.parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(ServerOptions.USAGE);
+            System.exit(2);
+            return;
+        }
+        final int tcpPort = options.tcpPort;
+        final int udpPort = options.udpPort;
+        final int metricsPort = options.metricsPort;
+        final Path journalPath = options.dataDirectory.resolve(journalDirectory);
+        final Path snapshotPath = options.dataDirectory.resolve(snapshotDirectory);
+
         info("Starting the Chess Server...");
 
         // 1. Create Server Instance
-        server = new Server();
+        // Serialization registers the network classes with a Kryo per thread,
+        // and skips messages over their sender's budget before decoding them
+        RateLimiter rateLimiter = new RateLimiter(moveLimit, chatLimit, controlLimit, violationLimit);
+        ChessSerialization serialization = new ChessSerialization(rateLimiter);
+        server = new Server(writeBufferSize, objectBufferSize, serialization) {
+            @Override
+            protected Connection newConnection() {
+                // Carries per-client state such as the current game
+                return new ChessConnection();
+            }
+        };
+
+        // 2. Set up outbound fan-out, which encodes each update once and never overfills a write buffer
+        Broadcaster broadcaster = new Broadcaster(serialization, slowSubscriberThreshold, writeBufferSize,
+                                                  maxBacklogBytes);
+
+        // 3. Open the journal, create the game manager and recover the games of the last run
+        try {
+            journal = new MappedJournal(journalPath, journalRecordsPerSegment,
+                                        maxCommitLatencyMicros, TimeUnit.MICROSECONDS);
+            snapshots = new SnapshotStore(snapshotPath);
+            timer = new HashedWheelTimer(timerTickMillis, TimeUnit.MILLISECONDS, timerWheelSize);
+            // Recovered clocks can run out before bind, so the lanes that handle flag-fall start first
+            dispatcher = new OrderedDispatcher(dispatchLanes, dispatchQueueCapacity, dispatchOfferTimeoutMillis,
+                                               TimeUnit.MILLISECONDS);
+            gameManager = new GameSessionManager(broadcaster, journal, timer, dispatcher);
+            // Finishes before bind, so no client ever sees a half-recovered game
+            new GameRecovery(gameManager, snapshots, journalPath).recover(dispatchLanes);
+        } catch (IOException e) {
+            error("Could not recover games from " + journalPath + " and " + snapshotPath, e);
+            System.exit(1);
+        }
+        // Games recovered here that another node now owns are handed off on the first rebalance
+        ClusterMembership membership = new ClusterMembership(options.node, options.clusterFile);
+        migrator = new GameMigrator(membership, gameManager, options.clusterKey, objectBufferSize);
+        drainTimeoutNanos = TimeUnit.SECONDS.toNanos(options.drainSeconds);
+        matchmaking = new MatchmakingService(gameManager);
+        chat = new ChatService(gameManager, broadcaster);
+        ConnectionReaper reaper = new ConnectionReaper(TimeUnit.SECONDS.toMillis(heartbeatIntervalSeconds),
+                                                       TimeUnit.SECONDS.toMillis(connectionTimeoutSeconds),
+                                                       reapSweepMillis, TimeUnit.MILLISECONDS, maxReapsPerSweep);
+        Pinger pinger = new Pinger(pingIntervalMillis, TimeUnit.MILLISECONDS, maxPingsPerSweep);
+        ServerNetworkListener listener = new ServerNetworkListener(server, gameManager, dispatcher, broadcaster,
+                                                                   matchmaking, reaper, pinger, chat, migrator);
+        server.addListener(listener);
+
+        // 4. Expose metrics; they read counters the components already keep, so this costs nothing until scraped
+        MetricsRegistry metrics = new MetricsRegistry();
+        registerMetrics(metrics, serialization, rateLimiter, broadcaster, reaper, pinger, listener, membership);
 
         try {
-            // 4. Bind to Ports
+            metricsServer = new MetricsServer(metrics, new InetSocketAddress(metricsHost, metricsPort));
+            metricsServer.start();
+        } catch (IOException e) {
+            // Not worth refusing to serve games over
+            error("Could not serve metrics on " + metricsHost + ":" + metricsPort, e);
+        }
+
+        try {
+            // 5. Bind to Ports
             server.bind(tcpPort, udpPort);
             info("Server bound to TCP port: " + tcpPort + " and UDP port: " + udpPort);
 
-            // 5. Start the Server (in a new thread)
+            // 6. Start the Server (in a new thread)
             server.start();
-            info("Server started successfully and listening for connections.");
+            matchmaking.start();
+            chat.start();
+            maintenance = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "maintenance");
+                thread.setDaemon(true);
+                return thread;
+            });
+            maintenance.scheduleWithFixedDelay(gameManager::expireSeats, seatExpiryIntervalSeconds,
+                                               seatExpiryIntervalSeconds, TimeUnit.SECONDS);
+            maintenance.scheduleWithFixedDelay(ChessServer::writeSnapshot, snapshotIntervalSeconds,
+                                               snapshotIntervalSeconds, TimeUnit.SECONDS);
+            maintenance.scheduleWithFixedDelay(ChessServer::rebalance, rebalanceIntervalMillis,
+                                               rebalanceIntervalMillis, TimeUnit.MILLISECONDS);
+            // Nodes that took over this one's games while it was down hand them back
+            maintenance.execute(migrator::start);
+            info("Server started successfully and listening for connections as node " + options.node + ".");
 
             // The server runs in its own thread(s).
             // The main thread can exit here, or you could add logic
@@ -52,11 +228,138 @@ public class ChessServer {
             System.exit(1);
         }
 
-        // Optional: Add shutdown hook for graceful closing
-        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
-            info("Shutting down server...");
-            server.stop(); // Stops listening and disconnects clients
-            info("Server stopped.");
-        }));
+        Runtime.getRuntime().addShutdownHook(new Thread(ChessServer::shutdown));
+    }
+
+    /**
+     * Drains the server before stopping it, so players lose as little as possible:
+     * no new games, everything played so far made durable, games handed to other
+     * nodes or left to finish until the drain deadline, idle clients sent elsewhere,
+     * and a last snapshot of whatever is still here to resume from after a restart.
+     */
+    private static void shutdown() {
+        info("Shutting down server...");
+        long deadline = System.nanoTime() + drainTimeoutNanos;
+        gameManager.stopAcceptingGames();
+        matchmaking.stop();
+        try {
+            if (!journal.flush(journalFlushTimeoutSeconds, TimeUnit.SECONDS)) {
+                error("Journal did not flush within " + journalFlushTimeoutSeconds + " seconds.");
+            }
+            int remaining = migrator.drain(deadline);
+            int redirected = migrator.redirectIdle(server.getConnections());
+            info("Drained: " + remaining + " games left, " + redirected + " idle clients redirected.");
+            if (maintenance != null) {
+                // The last snapshot must not race a periodic one
+                maintenance.shutdownNow();
+                maintenance.awaitTermination(journalFlushTimeoutSeconds, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writeSnapshot();
+        server.stop(); // Stops listening and disconnects clients
+        chat.stop();
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        migrator.stop();
+        dispatcher.shutdown();
+        timer.stop();
+        journal.close();
+        info("Server stopped.");
+    }
+
+    private static void registerMetrics(MetricsRegistry metrics, ChessSerialization serialization,
+                                        RateLimiter rateLimiter, Broadcaster broadcaster, ConnectionReaper reaper,
+                                        Pinger pinger, ServerNetworkListener listener, ClusterMembership membership) {
+        // Inbound traffic
+        metrics.counter("chess_packets_received_total", "Messages received from clients, by type.", "type",
+                        listener.getPacketsReceived());
+        metrics.counter("chess_packets_dropped_total", "Messages skipped for being over their sender's budget.",
+                        rateLimiter::getDroppedCount);
+        metrics.counter("chess_flood_disconnects_total", "Connections closed for flooding.",
+                        rateLimiter::getDisconnectedCount);
+        metrics.histogram("chess_deserialize_seconds", "Time to deserialize an incoming message.",
+                          serialization.getReadTimes(), 1e-9);
+        metrics.histogram("chess_serialize_seconds", "Time to serialize an outgoing message.",
+                          serialization.getWriteTimes(), 1e-9);
+        metrics.counter("chess_compressed_input_bytes_total", "Bytes of messages sent compressed, before compression.",
+                        serialization::getCompressedBytesIn);
+        metrics.counter("chess_compressed_output_bytes_total", "Bytes of messages sent compressed, after compression.",
+                        serialization::getCompressedBytesOut);
+
+        // Games
+        metrics.gauge("chess_games_active", "Games in progress.", gameManager::getGameCount);
+        metrics.histogram("chess_move_validation_seconds", "Time to validate a move request.",
+                          GameSession.getValidationTimes(), 1e-9);
+        metrics.gauge("chess_matchmaking_waiting", "Players waiting for a match.", matchmaking::getWaitingCount);
+        metrics.counter("chess_matches_made_total", "Games started by matchmaking.", matchmaking::getMatchesMade);
+        metrics.counter("chess_timer_expired_total", "Clock timeouts fired.", timer::getExpiredCount);
+        metrics.counter("chess_chat_messages_total", "Chat messages posted.", chat::getMessagesPosted);
+        metrics.counter("chess_chat_batches_total", "Chat batches broadcast.", chat::getBatchesSent);
+
+        // Connections and queues
+        metrics.gauge("chess_connections", "Open client connections.", () -> server.getConnections().length);
+        metrics.gauge("chess_dispatch_queue_depth", "Messages waiting for a dispatcher lane.",
+                      dispatcher::getQueueDepth);
+        metrics.counter("chess_dispatch_rejected_total", "Messages shed because their dispatcher lane was full.",
+                        dispatcher::getRejectedCount);
+        metrics.gauge("chess_journal_pending_records", "Journal records not yet on disk.",
+                      () -> journal.getPosition() - ((MappedJournal) journal).getDurablePosition());
+        metrics.counter("chess_journal_commits_total", "Journal group commits.",
+                        ((MappedJournal) journal)::getCommitCount);
+        metrics.counter("chess_heartbeats_sent_total", "Heartbeats sent to quiet connections.",
+                        reaper::getHeartbeatsSent);
+        metrics.counter("chess_connections_reaped_total", "Dead connections closed.", reaper::getReapedCount);
+        metrics.counter("chess_pings_sent_total", "Clock sync pings sent over UDP.", pinger::getPingsSent);
+        metrics.counter("chess_ping_samples_total", "Ping answers that measured a round trip.",
+                        pinger::getSampleCount);
+        metrics.histogram("chess_rtt_seconds", "Smoothed round-trip time of a connection, after each ping sample.",
+                          pinger.getRoundTrips(), 1e-6);
+
+        // Cluster
+        metrics.gauge("chess_cluster_nodes", "Nodes on the hash ring.", membership::getNodeCount);
+        metrics.counter("chess_games_handed_off_total", "Games moved to the node that owns them.",
+                        migrator::getHandedOffCount);
+        metrics.counter("chess_games_adopted_total", "Games taken over from other nodes.",
+                        migrator::getAdoptedCount);
+        metrics.counter("chess_handoff_failures_total", "Handoffs refused, timed out or not sent.",
+                        migrator::getFailureCount);
+        metrics.gauge("chess_handoffs_in_flight", "Handoffs waiting for an acknowledgement.",
+                      migrator::getInFlightCount);
+        metrics.counter("chess_redirects_total", "Redirects to the node that owns a game.",
+                        migrator::getRedirectCount);
+
+        // Outbound fan-out
+        metrics.counter("chess_broadcasts_total", "Packets encoded for broadcast.", broadcaster::getBroadcastCount);
+        metrics.counter("chess_frames_sent_total", "Broadcast frames written.", broadcaster::getFramesSent);
+        metrics.counter("chess_frames_skipped_total", "Broadcast frames skipped for slow subscribers.",
+                        broadcaster::getFramesSkipped);
+        metrics.gauge("chess_slow_subscribers", "Subscribers currently skipped.",
+                      broadcaster::getSlowSubscriberCount);
+        metrics.counter("chess_critical_deferred_total", "Player packets held in a backlog.",
+                        broadcaster::getCriticalDeferred);
+        metrics.counter("chess_backlog_overflows_total", "Players disconnected for a full backlog.",
+                        broadcaster::getBacklogOverflows);
+        metrics.counter("chess_stream_chunks_sent_total", "Chunks of streamed payloads sent.", listener::getChunksSent);
+    }
+
+    private static void rebalance() {
+        try {
+            migrator.rebalance();
+        } catch (Exception e) {
+            // Games that did not move stay playable here and are tried again next round
+            error("Could not rebalance games.", e);
+        }
+    }
+
+    private static void writeSnapshot() {
+        try {
+            snapshots.write(gameManager, journal);
+        } catch (Exception e) {
+            // The journal is only compacted after a complete snapshot, so nothing is lost
+            error("Could not write snapshot.", e);
+        }
     }
 }
\ No newline at end of file
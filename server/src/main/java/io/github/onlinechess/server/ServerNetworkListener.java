@@ -1,31 +1,130 @@
 // src/main/java/io/github/onlinechess/server/ServerNetworkListener.java
 package io.github.onlinechess.server;
 
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.LongAdder;
+
 import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.FrameworkMessage;
 import com.esotericsoftware.kryonet.Listener;
 import com.esotericsoftware.kryonet.Server;
+import com.github.bhlangonijr.chesslib.Side;
+import static com.esotericsoftware.minlog.Log.DEBUG;
+import static com.esotericsoftware.minlog.Log.debug;
 import static com.esotericsoftware.minlog.Log.info;
 import static com.esotericsoftware.minlog.Log.warn;
 
-// TODO: Import your message classes
-// Example: import io.github.onlinechess.shared.network.messages.*;
+import io.github.onlinechess.server.chat.ChatService;
+import io.github.onlinechess.server.cluster.GameMigrator;
+import io.github.onlinechess.server.game.GameSession;
+import io.github.onlinechess.server.game.GameSessionManager;
+import io.github.onlinechess.server.jfr.PacketDispatchEvent;
+import io.github.onlinechess.server.jfr.PacketHandleEvent;
+import io.github.onlinechess.server.metrics.TypeCounter;
+import io.github.onlinechess.server.matchmaking.MatchmakingService;
+import io.github.onlinechess.server.network.Broadcaster;
+import io.github.onlinechess.server.network.ChessConnection;
+import io.github.onlinechess.server.network.ConnectionReaper;
+import io.github.onlinechess.server.network.MessageDispatcher;
+import io.github.onlinechess.server.network.Pinger;
+import io.github.onlinechess.server.network.RateLimiter;
+import io.github.onlinechess.shared.NetworkRegistry;
+import io.github.onlinechess.shared.packets.ChatPacket;
+import io.github.onlinechess.shared.packets.ChunkAckPacket;
+import io.github.onlinechess.shared.packets.ChunkPacket;
+import io.github.onlinechess.shared.packets.GameHandoffPacket;
+import io.github.onlinechess.shared.packets.HandshakePacket;
+import io.github.onlinechess.shared.packets.HeartbeatPacket;
+import io.github.onlinechess.shared.packets.HistoryRequestPacket;
+import io.github.onlinechess.shared.packets.HostGamePacket;
+import io.github.onlinechess.shared.packets.JoinGamePacket;
+import io.github.onlinechess.shared.packets.JoinResultPacket;
+import io.github.onlinechess.shared.packets.MatchmakingRequestPacket;
+import io.github.onlinechess.shared.packets.MovePacket;
+import io.github.onlinechess.shared.packets.MoveRejectedPacket;
+import io.github.onlinechess.shared.packets.NodeStatusPacket;
+import io.github.onlinechess.shared.packets.PingPacket;
+import io.github.onlinechess.shared.packets.RedirectPacket;
+import io.github.onlinechess.shared.packets.ResumePacket;
+import io.github.onlinechess.shared.packets.ResyncRequestPacket;
+import io.github.onlinechess.shared.packets.SpectatePacket;
+import io.github.onlinechess.shared.stream.StreamSender;
 
 /**
  * Handles network events for the ChessServer.
  * Delegates processing of messages to appropriate handlers.
+ * KryoNet calls this listener on its single update thread, so all real work is
+ * handed to a {@link MessageDispatcher} and runs on worker threads, in order per
+ * connection; each game orders its own moves through its session's mailbox.
+ * A message whose lane stays full is shed by closing its connection, whose
+ * client can resume, rather than stalling every other read.
+ *
+ * Every message also counts as a sign of life for the {@link ConnectionReaper},
+ * which is swept from {@link #idle} to close connections that have gone silent.
+ * The {@link Pinger} is swept there too, and answers to its pings are timed on
+ * arrival rather than after waiting in a dispatcher queue.
+ *
+ * Large payloads such as move histories are streamed in chunks, sent from
+ * {@link #idle} only while the write buffer is nearly empty, so moves and
+ * other updates are never stuck behind a download.
+ *
+ * Requests for a game that lives on another node are answered with a
+ * redirect, and games handed off by other nodes go to the {@link GameMigrator}.
  */
 public class ServerNetworkListener extends Listener {
+    // Stream chunks are only written while less than this is waiting in the write buffer
+    private static final int MAX_STREAM_BUFFERED = 2 * ChunkPacket.MAX_DATA;
 
     private final Server server;
-    // TODO: Add references to game managers or session handlers
-    // Example: private final GameManager gameManager;
+    private final GameSessionManager gameManager;
+    private final MessageDispatcher dispatcher;
+    private final Broadcaster broadcaster;
+    private final MatchmakingService matchmaking;
+    private final ConnectionReaper reaper;
+    private final Pinger pinger;
+    private final ChatService chat;
+    private final GameMigrator migrator;
+    // Messages received, by packet type
+    private final TypeCounter packetsReceived = new TypeCounter();
+    private final LongAdder chunksSent = new LongAdder();
+    // Disconnects that found their lane full, retried from idle, since cleanup must not be lost (guarded by itself)
+    private final Queue<ChessConnection> pendingDisconnects = new ConcurrentLinkedQueue<>();
 
-    public ServerNetworkListener(Server server /*, GameManager gameManager */) {
+    public ServerNetworkListener(Server server, GameSessionManager gameManager, MessageDispatcher dispatcher,
+                                 Broadcaster broadcaster, MatchmakingService matchmaking, ConnectionReaper reaper,
+                                 Pinger pinger, ChatService chat, GameMigrator migrator) {
         if (server == null) {
             throw new IllegalArgumentException("Server cannot be null.");
         }
+        if (gameManager == null) {
+            throw new IllegalArgumentException("Game manager cannot be null.");
+        }
+        if (dispatcher == null) {
+            throw new IllegalArgumentException("Dispatcher cannot be null.");
+        }
+        if (reaper == null) {
+            throw new IllegalArgumentException("Reaper cannot be null.");
+        }
+        if (pinger == null) {
+            throw new IllegalArgumentException("Pinger cannot be null.");
+        }
+        if (chat == null) {
+            throw new IllegalArgumentException("Chat service cannot be null.");
+        }
+        if (migrator == null) {
+            throw new IllegalArgumentException("Migrator cannot be null.");
+        }
         this.server = server;
-        // this.gameManager = gameManager; // Initialize dependencies
+        this.gameManager = gameManager;
+        this.dispatcher = dispatcher;
+        this.broadcaster = broadcaster;
+        this.matchmaking = matchmaking;
+        this.reaper = reaper;
+        this.pinger = pinger;
+        this.chat = chat;
+        this.migrator = migrator;
         info("ServerNetworkListener initialized.");
     }
 
@@ -33,62 +132,439 @@ public class ServerNetworkListener extends Listener {
     public void connected(Connection connection) {
         // Called when a new client connects.
         info("[" + connection.getID() + "] Client connected: " + connection.getRemoteAddressTCP());
-        // TODO: Implement logic for new connections
-        // - Maybe send a welcome message or request authentication
-        // - Add connection to a list of waiting players, etc.
-        // Example: server.sendToTCP(connection.getID(), new ServerWelcomeMessage("Welcome!"));
-        // Example: PlayerManager.addWaitingPlayer(connection);
+        long now = System.currentTimeMillis();
+        reaper.register((ChessConnection) connection, now);
+        pinger.register((ChessConnection) connection, now);
+        // The client speaks first with a HandshakePacket; nothing else is accepted until then.
     }
 
     @Override
-    public void disconnected(Connection connection) {
+    public void disconnected(final Connection connection) {
         // Called when a client disconnects.
-        info("[" + connection.getID() + "] Client disconnected: " + connection.getRemoteAddressTCP());
-        // TODO: Implement logic for disconnections
-        // - Remove player from any active game session
-        // - Notify opponent if in a game
-        // - Clean up resources associated with the connection
-        // Example: gameManager.handleDisconnect(connection);
-        // Example: PlayerManager.removePlayer(connection);
+        // Dispatched on the same key as its messages so cleanup runs after them.
+        ChessConnection chessConnection = (ChessConnection) connection;
+        if (!dispatchDisconnect(chessConnection)) {
+            synchronized (pendingDisconnects) {
+                pendingDisconnects.offer(chessConnection);
+            }
+        }
+    }
+
+    private boolean dispatchDisconnect(ChessConnection connection) {
+        return dispatcher.dispatch(connection.getDispatchKey(), () -> handleDisconnect(connection));
+    }
+
+    /**
+     * Dispatches the disconnects that found their lane full, in order, until one still does
+     */
+    private void retryDisconnects() {
+        if (pendingDisconnects.isEmpty()) {
+            return;
+        }
+        synchronized (pendingDisconnects) {
+            ChessConnection connection;
+            while ((connection = pendingDisconnects.peek()) != null && dispatchDisconnect(connection)) {
+                pendingDisconnects.poll();
+            }
+        }
     }
 
     @Override
-    public void received(Connection connection, Object object) {
-        // Called when a message is received from a client.
+    public void received(final Connection connection, final Object object) {
+        // Called on the update thread when a message is received from a client.
+        // Only hand off here; routing happens on a dispatcher worker.
+        if (object == RateLimiter.DISCONNECT) {
+            // Flooded past the point of skipping messages
+            connection.close();
+            return;
+        }
+        if (object instanceof FrameworkMessage) {
+            // KryoNet keep-alives come from its own thread, so they prove nothing about the client;
+            // messages the rate limiter skipped arrive as keep-alives too
+            return;
+        }
+        packetsReceived.increment(object);
+        ((ChessConnection) connection).markHeard(System.currentTimeMillis());
+        if (object instanceof HeartbeatPacket) {
+            // Its arrival is all that matters
+            return;
+        }
+        if (object instanceof PingPacket) {
+            // Timed here, since queueing for a worker would count as network delay
+            pinger.received((ChessConnection) connection, (PingPacket) object);
+            return;
+        }
+        if (object instanceof ChunkAckPacket) {
+            // Opens the stream window; the next chunks go out from idle
+            ChunkAckPacket ack = (ChunkAckPacket) object;
+            ((ChessConnection) connection).getStreams().acknowledge(ack.getStreamId(), ack.getIndex());
+            return;
+        }
+        PacketDispatchEvent event = new PacketDispatchEvent();
+        event.begin();
+        if (!dispatcher.dispatch(dispatchKey(connection), () -> handle(connection, object))) {
+            shed(connection, object.getClass().getSimpleName());
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.connectionId = connection.getID();
+            event.gameCode = ((ChessConnection) connection).getGameCode();
+            event.packetType = object.getClass().getSimpleName();
+            event.queueDepth = dispatcher.getQueueDepth();
+            event.commit();
+        }
+    }
+
+    private void handle(Connection connection, Object object) {
+        PacketHandleEvent event = new PacketHandleEvent();
+        event.begin();
+        route(connection, object);
+        event.end();
+        if (event.shouldCommit()) {
+            event.connectionId = connection.getID();
+            event.gameCode = ((ChessConnection) connection).getGameCode();
+            event.packetType = object == null ? "null" : object.getClass().getSimpleName();
+            event.commit();
+        }
+    }
+
+    private void handleDisconnect(Connection connection) {
+        info("[" + connection.getID() + "] Client disconnected: " + connection.getRemoteAddressTCP());
+        // A seated player's seat is held for them to resume, and their opponent told; anyone else just leaves
+        ChessConnection chessConnection = (ChessConnection) connection;
+        gameManager.disconnect(chessConnection);
+        broadcaster.remove(chessConnection);
+        matchmaking.leave(chessConnection);
+        chat.leave(chessConnection);
+    }
+
+    private void route(Connection connection, Object object) {
         // This is the main routing logic.
         if (object == null) {
             warn("[" + connection.getID() + "] Received null object.");
             return;
         }
 
-        info("[" + connection.getID() + "] Received message: " + object.getClass().getSimpleName());
-
-        // TODO: Delegate message handling based on the type of 'object'
-        // This is where you route commands to your game logic/session managers
+        if (DEBUG) {
+            debug("[" + connection.getID() + "] Received message: " + object.getClass().getSimpleName());
+        }
 
-        // Example routing:
-        /*
-        if (object instanceof ClientLoginRequest) {
-            AuthenticationService.handleLogin(connection, (ClientLoginRequest) object);
-        } else if (object instanceof FindMatchRequest) {
-            MatchmakingService.handleFindMatch(connection, (FindMatchRequest) object);
-        } else if (object instanceof MakeMoveRequest) {
-            gameManager.handlePlayerMove(connection, (MakeMoveRequest) object);
-        } else if (object instanceof ChatMessage) {
-            ChatService.broadcastMessage(connection, (ChatMessage) object);
+        // Delegate message handling based on the type of 'object'
+        ChessConnection chessConnection = (ChessConnection) connection;
+        if (object instanceof HandshakePacket) {
+            handleHandshake(chessConnection, (HandshakePacket) object);
+        } else if (!chessConnection.isHandshakeComplete()) {
+            warn("[" + connection.getID() + "] Received " + object.getClass().getSimpleName() + " before handshake, closing.");
+            connection.close();
+        } else if (object instanceof MovePacket) {
+            handleMove(chessConnection, (MovePacket) object);
+        } else if (object instanceof ResyncRequestPacket) {
+            handleResync(chessConnection);
+        } else if (object instanceof SpectatePacket) {
+            handleSpectate(chessConnection, (SpectatePacket) object);
+        } else if (object instanceof HistoryRequestPacket) {
+            handleHistoryRequest(chessConnection, (HistoryRequestPacket) object);
+        } else if (object instanceof HostGamePacket) {
+            handleHostGame(chessConnection, (HostGamePacket) object);
+        } else if (object instanceof JoinGamePacket) {
+            handleJoinGame(chessConnection, (JoinGamePacket) object);
+        } else if (object instanceof ResumePacket) {
+            handleResume(chessConnection, (ResumePacket) object);
+        } else if (object instanceof MatchmakingRequestPacket) {
+            handleMatchmaking(chessConnection, (MatchmakingRequestPacket) object);
+        } else if (object instanceof ChatPacket) {
+            chat.handle(chessConnection, (ChatPacket) object);
+        } else if (object instanceof GameHandoffPacket) {
+            migrator.adopt(chessConnection, (GameHandoffPacket) object);
+        } else if (object instanceof NodeStatusPacket) {
+            migrator.nodeStatus(chessConnection, (NodeStatusPacket) object);
         } else {
             warn("[" + connection.getID() + "] Received unhandled message type: " + object.getClass().getName());
-            // Optionally send an error back to the client
-            // server.sendToTCP(connection.getID(), new ErrorMessage("Unknown command"));
         }
-        */
+    }
+
+    private void handleHandshake(ChessConnection connection, HandshakePacket packet) {
+        int version = packet.getProtocolVersion();
+        if (!NetworkRegistry.isCompatible(version)) {
+            warn("[" + connection.getID() + "] Incompatible protocol version " + version + ", closing.");
+            connection.sendTCP(new HandshakePacket(NetworkRegistry.PROTOCOL_VERSION, 0, false));
+            connection.close();
+            return;
+        }
+        int capabilities = NetworkRegistry.negotiateCapabilities(packet.getCapabilities());
+        connection.completeHandshake(capabilities);
+        connection.sendTCP(new HandshakePacket(NetworkRegistry.PROTOCOL_VERSION, capabilities, true));
+        info("[" + connection.getID() + "] Handshake complete: protocol v" + version + ", capabilities " + capabilities);
+    }
+
+    private void handleResync(ChessConnection connection) {
+        GameSession session = gameManager.getGame(connection.getGameCode());
+        if (session != null) {
+            session.sendSnapshot(connection);
+        }
+    }
+
+    private void handleSpectate(ChessConnection connection, SpectatePacket packet) {
+        GameSession session = gameManager.getGame(packet.getGameCode());
+        if (session == null && redirect(connection, packet.getGameCode())) {
+            return;
+        }
+        if (session == null) {
+            warn("[" + connection.getID() + "] Cannot spectate unknown game " + packet.getGameCode());
+            return;
+        }
+        session.addSpectator(connection);
+    }
+
+    private void handleHistoryRequest(ChessConnection connection, HistoryRequestPacket packet) {
+        GameSession session = gameManager.getGame(packet.getGameCode());
+        byte[] history = session != null ? session.getHistory() : new byte[0];
+        ByteBuffer payload = ByteBuffer.allocate(Integer.BYTES + history.length);
+        payload.putInt(packet.getGameCode()).put(history);
+        if (connection.getStreams().open(ChunkPacket.KIND_MOVE_HISTORY, payload.array()) == 0) {
+            warn("[" + connection.getID() + "] Too many streams queued, ignoring history request for game "
+                 + packet.getGameCode());
+        }
+    }
+
+    private void handleHostGame(ChessConnection connection, HostGamePacket packet) {
+        if (!claimSeating(connection)) {
+            return;
+        }
+        try {
+            hostGame(connection, packet);
+        } finally {
+            connection.releaseSeating();
+        }
+    }
+
+    private void hostGame(ChessConnection connection, HostGamePacket packet) {
+        if (!gameManager.leaveForNewGame(connection)) {
+            rejectSeated(connection);
+            return;
+        }
+        GameSession session = gameManager.createGame(packet.getBaseSeconds(), packet.getIncrementSeconds());
+        if (session == null && !gameManager.isAcceptingGames() && redirectElsewhere(connection)) {
+            return;
+        }
+        if (session == null) {
+            warn("[" + connection.getID() + "] No game codes available to host a game.");
+            connection.sendTCP(new JoinResultPacket(JoinResultPacket.NO_CODES_AVAILABLE, 0, false));
+            return;
+        }
+        if (!gameManager.seatPlayer(session, connection, packet.isWhite() ? Side.WHITE : Side.BLACK)) {
+            // Nobody else can know the code yet, so this only happens if the game is already gone
+            gameManager.removeGame(session.getGameCode());
+            connection.sendTCP(new JoinResultPacket(JoinResultPacket.GAME_NOT_FOUND, session.getGameCode(), false));
+            return;
+        }
+        connection.sendTCP(new JoinResultPacket(JoinResultPacket.OK, session.getGameCode(), packet.isWhite()));
+        info("[" + connection.getID() + "] Hosting game " + session.getGameCode());
+    }
+
+    private void handleJoinGame(ChessConnection connection, JoinGamePacket packet) {
+        if (!claimSeating(connection)) {
+            return;
+        }
+        try {
+            joinGame(connection, packet);
+        } finally {
+            connection.releaseSeating();
+        }
+    }
+
+    private void joinGame(ChessConnection connection, JoinGamePacket packet) {
+        if (!gameManager.leaveForNewGame(connection)) {
+            rejectSeated(connection);
+            return;
+        }
+        // A single map lookup decides whether the game exists
+        GameSession session = gameManager.getGame(packet.getGameCode());
+        if (session == null && redirect(connection, packet.getGameCode())) {
+            return;
+        }
+        if (session == null) {
+            connection.sendTCP(new JoinResultPacket(JoinResultPacket.GAME_NOT_FOUND, packet.getGameCode(), false));
+            return;
+        }
+        // Take whichever seat the host left open
+        boolean white = gameManager.seatPlayer(session, connection, Side.WHITE);
+        if (!white && !gameManager.seatPlayer(session, connection, Side.BLACK)) {
+            connection.sendTCP(new JoinResultPacket(JoinResultPacket.GAME_FULL, packet.getGameCode(), false));
+            return;
+        }
+        connection.sendTCP(new JoinResultPacket(JoinResultPacket.OK, session.getGameCode(), white));
+        info("[" + connection.getID() + "] Joined game " + session.getGameCode());
+    }
+
+    /**
+     * Claims the connection for a request that may seat it, refusing the request
+     * if matchmaking is seating the player at this moment
+     *
+     * @return Whether the claim was taken; the caller must release it
+     */
+    private boolean claimSeating(ChessConnection connection) {
+        if (connection.claimSeating()) {
+            return true;
+        }
+        warn("[" + connection.getID() + "] Being seated by matchmaking, refusing another game.");
+        connection.sendTCP(new JoinResultPacket(JoinResultPacket.ALREADY_IN_GAME, 0, false));
+        return false;
+    }
+
+    /**
+     * Refuses a request for a new game from a player seated in one still being played.
+     * Seating them again would orphan their old seat and leak its game.
+     */
+    private void rejectSeated(ChessConnection connection) {
+        warn("[" + connection.getID() + "] Already seated in game " + connection.getGameCode() + ", refusing another.");
+        connection.sendTCP(new JoinResultPacket(JoinResultPacket.ALREADY_IN_GAME, connection.getGameCode(), false));
+    }
+
+    /**
+     * Sends the client to the node that owns a game this node does not have
+     *
+     * @return Whether the client was redirected
+     */
+    private boolean redirect(ChessConnection connection, int gameCode) {
+        RedirectPacket redirect = migrator.redirectFor(gameCode);
+        if (redirect == null) {
+            return false;
+        }
+        debug("[" + connection.getID() + "] Game " + gameCode + " lives on " + redirect.getHost() + ":"
+              + redirect.getTcpPort() + ", redirecting");
+        connection.sendTCP(redirect);
+        return true;
+    }
+
+    /**
+     * Sends a client looking for a new game to another node, while this one shuts down
+     *
+     * @return Whether the client was redirected
+     */
+    private boolean redirectElsewhere(ChessConnection connection) {
+        RedirectPacket redirect = migrator.redirectElsewhere(connection.getID());
+        if (redirect == null) {
+            return false;
+        }
+        connection.sendTCP(redirect);
+        return true;
+    }
+
+    private void handleResume(ChessConnection connection, ResumePacket packet) {
+        if (!claimSeating(connection)) {
+            return;
+        }
+        try {
+            resumeSeat(connection, packet);
+        } finally {
+            connection.releaseSeating();
+        }
+    }
+
+    private void resumeSeat(ChessConnection connection, ResumePacket packet) {
+        GameSession session = gameManager.resume(connection, packet.getToken(), packet.getLastSequence());
+        if (session == null) {
+            connection.sendTCP(new JoinResultPacket(JoinResultPacket.SESSION_EXPIRED, 0, false));
+            return;
+        }
+        info("[" + connection.getID() + "] Resumed game " + session.getGameCode() + " from move " + packet.getLastSequence());
+    }
+
+    private void handleMatchmaking(ChessConnection connection, MatchmakingRequestPacket packet) {
+        if (packet.isCancel()) {
+            matchmaking.leave(connection);
+            return;
+        }
+        if (!claimSeating(connection)) {
+            return;
+        }
+        boolean free;
+        try {
+            free = gameManager.leaveForNewGame(connection);
+        } finally {
+            // Released before joining, since a match found at once seats the player from this thread
+            connection.releaseSeating();
+        }
+        if (!free) {
+            rejectSeated(connection);
+            return;
+        }
+        if (!gameManager.isAcceptingGames() && redirectElsewhere(connection)) {
+            return;
+        }
+        matchmaking.join(connection, packet.getElo(), packet.getBaseSeconds(), packet.getIncrementSeconds());
+    }
+
+    private void handleMove(ChessConnection connection, MovePacket packet) {
+        GameSession session = gameManager.getGame(connection.getGameCode());
+        if (session == null) {
+            connection.sendTCP(new MoveRejectedPacket(MoveRejectedPacket.NOT_IN_GAME, 0));
+            return;
+        }
+        // Validated and applied by the session's own mailbox
+        session.submitMove(connection, packet);
+    }
+
+    /**
+     * Sends the next chunks of the connection's streams, as far as its window
+     * allows and while its write buffer is nearly empty. Update thread only.
+     */
+    private void sendChunks(ChessConnection connection) {
+        StreamSender streams = connection.getStreams();
+        ChunkPacket chunk;
+        while (connection.getTcpWriteBufferSize() < MAX_STREAM_BUFFERED && (chunk = streams.poll()) != null) {
+            connection.sendTCP(chunk);
+            chunksSent.increment();
+        }
+    }
+
+    /**
+     * Get the number of stream chunks sent
+     */
+    public long getChunksSent() {
+        return chunksSent.sum();
+    }
+
+    /**
+     * Get the number of messages received from clients, by packet type
+     */
+    public TypeCounter getPacketsReceived() {
+        return packetsReceived;
+    }
+
+    private static int dispatchKey(Connection connection) {
+        return ((ChessConnection) connection).getDispatchKey();
     }
 
     @Override
-    public void idle(Connection connection) {
-        // Called when a connection has been idle (no messages received) for a configured time.
-        // Useful for detecting dead connections, though TCP keep-alive is often better.
-        // trace("[" + connection.getID() + "] Connection idle: " + connection.getRemoteAddressTCP());
+    public void idle(final Connection connection) {
+        // Called on the update thread whenever the connection's write buffer has drained.
+        // Drives the dead-connection sweep, which returns at once until it is due.
+        long now = System.currentTimeMillis();
+        reaper.sweep(now);
+        pinger.sweep(now);
+        final ChessConnection chessConnection = (ChessConnection) connection;
+        // Player packets held back while the buffer was full go out first
+        broadcaster.flush(chessConnection);
+        sendChunks(chessConnection);
+        if (chessConnection.isLagging() && broadcaster.recover(chessConnection)) {
+            // It missed broadcasts while it was slow, so it needs a fresh snapshot
+            if (!dispatcher.dispatch(chessConnection.getDispatchKey(), () -> handleResync(chessConnection))) {
+                shed(chessConnection, "ResyncRequest");
+            }
+        }
+        retryDisconnects();
+    }
+
+    /**
+     * Closes a connection whose message could not be queued. Dropping the
+     * message alone would leave the client out of step with no way to notice;
+     * a closed client resumes its game from a consistent point.
+     */
+    private static void shed(Connection connection, String message) {
+        warn("[" + connection.getID() + "] Dispatcher lane full, dropping " + message + " and closing.");
+        connection.close();
     }
 
     // Add private helper methods here to handle specific message types if desired,
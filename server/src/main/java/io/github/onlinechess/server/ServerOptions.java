@@ -0,0 +1,74 @@
+package io.github.onlinechess.server;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import io.github.onlinechess.shared.cluster.NodeAddress;
+
+/**
+ * Settings that differ between server nodes, read from --name=value arguments.
+ * With none given the server runs alone on the usual ports, as it always has.
+ */
+class ServerOptions {
+    static final String USAGE =
+        "Usage: ChessServer [--name=value ...]\n"
+        + "  --tcp-port=54555       TCP port to listen on\n"
+        + "  --udp-port=54777       UDP port to listen on\n"
+        + "  --metrics-port=9464    Loopback port serving /metrics\n"
+        + "  --data-dir=.           Directory holding the journal and snapshots\n"
+        + "  --node=<address>       Address clients reach this node at, as host:tcpPort:udpPort;\n"
+        + "                         defaults to localhost with the ports above\n"
+        + "  --cluster=<file>       Cluster membership, one node address per line; omit to run alone\n"
+        + "  --cluster-key=<key>    Secret shared by every node, required with --cluster\n"
+        + "  --drain-s=25           Seconds to spend handing off or finishing games on shutdown";
+
+    int tcpPort = 54555;
+    int udpPort = 54777;
+    int metricsPort = 9464;
+    Path dataDirectory = Paths.get(".");
+    NodeAddress node;
+    Path clusterFile;
+    String clusterKey;
+    int drainSeconds = 25;
+
+    /**
+     * @throws IllegalArgumentException If an argument is unknown or malformed
+     */
+    static ServerOptions parse(String[] args) {
+        ServerOptions options = new ServerOptions();
+        for (String arg : args) {
+            int equals = arg.indexOf('=');
+            if (!arg.startsWith("--") || equals < 0) {
+                throw new IllegalArgumentException("Expected --name=value: " + arg);
+            }
+            String name = arg.substring(2, equals);
+            String value = arg.substring(equals + 1);
+            try {
+                options.set(name, value);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Not a number: " + arg);
+            }
+        }
+        if (options.node == null) {
+            options.node = new NodeAddress("localhost", options.tcpPort, options.udpPort);
+        }
+        if (options.clusterFile != null && (options.clusterKey == null || options.clusterKey.isEmpty())) {
+            throw new IllegalArgumentException("Nodes authenticate each other with --cluster-key.");
+        }
+        return options;
+    }
+
+    private void set(String name, String value) {
+        switch (name) {
+            case "tcp-port": tcpPort = Integer.parseInt(value); break;
+            case "udp-port": udpPort = Integer.parseInt(value); break;
+            case "metrics-port": metricsPort = Integer.parseInt(value); break;
+            case "data-dir": dataDirectory = Paths.get(value); break;
+            case "node": node = NodeAddress.parse(value); break;
+            case "cluster": clusterFile = Paths.get(value); break;
+            case "cluster-key": clusterKey = value; break;
+            case "drain-s": drainSeconds = Integer.parseInt(value); break;
+            default: throw new IllegalArgumentException("Unknown option: --" + name);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package io.github.onlinechess.server.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import io.github.onlinechess.server.network.ChessConnection;
+import io.github.onlinechess.shared.packets.ChatBatchPacket;
+
+/**
+ * One chat room: its members and a fixed-size ring of its recent messages.
+ *
+ * Messages are numbered from 0 in the order they were posted; message n lives
+ * in slot n & mask until it is overwritten capacity messages later. Posting only
+ * writes a slot, and the {@link ChatService} flush later sends everything
+ * posted since the previous flush as one batch, so a busy room costs one frame
+ * per member per tick however many messages arrive. A room that outruns the
+ * ring between two flushes loses its oldest unsent messages.
+ *
+ * Messages are split into as many consecutive batches as it takes to keep each
+ * one's encoded size under a limit, so no batch can overflow a write buffer.
+ */
+final class ChatRoom {
+    // Most bytes Kryo writes for a message besides its text: string lengths and the timestamp
+    private static final int MESSAGE_OVERHEAD = 20;
+
+    private final int roomId;
+    private final int mask;
+    // Encoded size a batch is kept under, unless it holds a single message
+    private final int maxBatchBytes;
+    // The ring, guarded by this
+    private final String[] senders;
+    private final String[] texts;
+    private final long[] timestamps;
+    // Number of messages posted, and number sent in batches (guarded by this)
+    private long posted;
+    private long flushed;
+    // Joining and leaving are O(1), however busy the room; a flush iterates without a lock
+    private final Set<ChessConnection> members = ConcurrentHashMap.newKeySet();
+    // Set while the room is waiting in the service's dirty queue
+    final AtomicBoolean dirty = new AtomicBoolean();
+
+    /**
+     * @param capacity Number of messages kept, a power of two
+     * @param maxBatchBytes Encoded size each batch is kept under
+     */
+    ChatRoom(int roomId, int capacity, int maxBatchBytes) {
+        if (capacity < 1 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two: " + capacity);
+        }
+        if (maxBatchBytes < 1) {
+            throw new IllegalArgumentException("Batches must have room for a message.");
+        }
+        this.roomId = roomId;
+        this.mask = capacity - 1;
+        this.maxBatchBytes = maxBatchBytes;
+        this.senders = new String[capacity];
+        this.texts = new String[capacity];
+        this.timestamps = new long[capacity];
+    }
+
+    int getRoomId() {
+        return roomId;
+    }
+
+    synchronized void post(String sender, String text, long timestamp) {
+        int slot = (int) (posted & mask);
+        senders[slot] = sender;
+        texts[slot] = text;
+        timestamps[slot] = timestamp;
+        posted++;
+    }
+
+    /**
+     * Adds a member and gets the history it starts from: every message already
+     * sent in a batch. Anything newer reaches it with the next flush.
+     *
+     * @return The history in order, as at least one batch even if it is empty
+     */
+    synchronized List<ChatBatchPacket> join(ChessConnection connection) {
+        members.add(connection);
+        return copy(Math.max(0, posted - senders.length), flushed, true);
+    }
+
+    /**
+     * @return Whether the room is now empty
+     */
+    boolean leave(ChessConnection connection) {
+        members.remove(connection);
+        return members.isEmpty();
+    }
+
+    boolean isEmpty() {
+        return members.isEmpty();
+    }
+
+    Set<ChessConnection> getMembers() {
+        return members;
+    }
+
+    /**
+     * Takes everything posted since the last flush that is still in the ring
+     *
+     * @return The batches in order, or an empty list if nothing new was posted
+     */
+    synchronized List<ChatBatchPacket> flush() {
+        long first = Math.max(flushed, posted - senders.length);
+        List<ChatBatchPacket> batches = copy(first, posted, false);
+        flushed = posted;
+        return batches;
+    }
+
+    /**
+     * Splits the messages from one sequence number up to another into batches under maxBatchBytes
+     *
+     * @param history Whether the batches are a new member's history; history always gets a batch
+     */
+    private List<ChatBatchPacket> copy(long from, long to, boolean history) {
+        List<ChatBatchPacket> batches = new ArrayList<>();
+        long start = from;
+        int bytes = 0;
+        for (long sequence = from; sequence < to; sequence++) {
+            int size = encodedSize((int) (sequence & mask));
+            if (sequence > start && bytes + size > maxBatchBytes) {
+                batches.add(batch(start, sequence, history));
+                start = sequence;
+                bytes = 0;
+            }
+            bytes += size;
+        }
+        if (start < to || (history && batches.isEmpty())) {
+            batches.add(batch(start, to, history));
+        }
+        return batches;
+    }
+
+    /**
+     * Get the most bytes a message can take once encoded: up to 3 bytes of UTF-8 per char
+     */
+    private int encodedSize(int slot) {
+        return 3 * (senders[slot].length() + texts[slot].length()) + MESSAGE_OVERHEAD;
+    }
+
+    private ChatBatchPacket batch(long from, long to, boolean history) {
+        int count = (int) Math.max(0, to - from);
+        String[] batchSenders = new String[count];
+        String[] batchTexts = new String[count];
+        long[] batchTimestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            int slot = (int) ((from + i) & mask);
+            batchSenders[i] = senders[slot];
+            batchTexts[i] = texts[slot];
+            batchTimestamps[i] = timestamps[slot];
+        }
+        return new ChatBatchPacket(roomId, history, from, batchSenders, batchTexts, batchTimestamps);
+    }
+}
@@ -0,0 +1,229 @@
+package io.github.onlinechess.server.chat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.bhlangonijr.chesslib.Side;
+
+import io.github.onlinechess.server.game.GameSession;
+import io.github.onlinechess.server.game.GameSessionManager;
+import io.github.onlinechess.server.network.Broadcaster;
+import io.github.onlinechess.server.network.ChessConnection;
+import io.github.onlinechess.shared.packets.ChatBatchPacket;
+import io.github.onlinechess.shared.packets.ChatPacket;
+
+import static com.esotericsoftware.minlog.Log.debug;
+import static com.esotericsoftware.minlog.Log.error;
+import static com.esotericsoftware.minlog.Log.info;
+
+/**
+ * Chat rooms for games and the lobby.
+ *
+ * A game's room has the game's code as its ID and is open to its players and
+ * spectators; IDs below {@link GameSessionManager#MIN_GAME_CODE} are lobby
+ * rooms open to anyone. A connection is in at most one room at a time.
+ *
+ * Posting only records the message in the room's ring and marks the room
+ * dirty. A flush every tick sends each dirty room one {@link ChatBatchPacket}
+ * with everything posted since the last, encoded once for all its members, so
+ * a room receiving hundreds of messages a second still costs each member a
+ * handful of frames. A new member gets the room's recent history straight away.
+ * Batches and history are split to stay under MAX_BATCH_BYTES, well inside a
+ * connection's write buffer and a client's read buffer.
+ *
+ * Batches are broadcast, so a member whose connection is backed up misses them
+ * like any other broadcast; the gap shows in the sequence numbers, and joining
+ * the room again fetches the history.
+ */
+public class ChatService {
+    // Messages each room keeps for late joiners
+    private static final int HISTORY_SIZE = 128;
+    private static final int MAX_TEXT_LENGTH = 280;
+    private static final long FLUSH_INTERVAL_MS = 100;
+    // Encoded size each batch is kept under, so it always fits the room left for player packets
+    private static final int MAX_BATCH_BYTES = 1536;
+
+    private final GameSessionManager gameManager;
+    private final Broadcaster broadcaster;
+    private final ConcurrentHashMap<Integer, ChatRoom> rooms = new ConcurrentHashMap<>();
+    // Rooms with messages waiting for the next flush
+    private final Queue<ChatRoom> dirtyRooms = new ConcurrentLinkedQueue<>();
+    private final LongAdder messagesPosted = new LongAdder();
+    private final LongAdder batchesSent = new LongAdder();
+    private final ScheduledExecutorService flusher;
+
+    public ChatService(GameSessionManager gameManager, Broadcaster broadcaster) {
+        if (gameManager == null || broadcaster == null) {
+            throw new IllegalArgumentException("Chat needs a game manager and a broadcaster.");
+        }
+        this.gameManager = gameManager;
+        this.broadcaster = broadcaster;
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the periodic flush that sends each busy room its batch
+     */
+    public void start() {
+        flusher.scheduleWithFixedDelay(this::flush, FLUSH_INTERVAL_MS, FLUSH_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        info("ChatService started.");
+    }
+
+    public void stop() {
+        flusher.shutdownNow();
+    }
+
+    /**
+     * Handles a join request or a message from a client
+     */
+    public void handle(ChessConnection connection, ChatPacket packet) {
+        if (packet.isJoin()) {
+            join(connection, packet.getRoomId());
+        } else {
+            post(connection, packet.getRoomId(), packet.getText());
+        }
+    }
+
+    private void join(ChessConnection connection, int roomId) {
+        if (!mayEnter(connection, roomId)) {
+            debug("[" + connection.getID() + "] Cannot join chat room " + roomId);
+            return;
+        }
+        leave(connection);
+        List<ChatBatchPacket> history = new ArrayList<>();
+        // Joined inside compute, so an emptied room is never removed under a new member
+        rooms.compute(roomId, (id, room) -> {
+            if (room == null) {
+                room = new ChatRoom(id, HISTORY_SIZE, MAX_BATCH_BYTES);
+            }
+            history.addAll(room.join(connection));
+            return room;
+        });
+        connection.setChatRoom(roomId);
+        // Sent like player packets, so history that does not fit the write buffer yet waits for room
+        for (ChatBatchPacket batch : history) {
+            broadcaster.send(connection, batch);
+        }
+    }
+
+    private void post(ChessConnection connection, int roomId, String text) {
+        if (connection.getChatRoom() != roomId || !mayEnter(connection, roomId)) {
+            debug("[" + connection.getID() + "] Not in chat room " + roomId + ", message dropped.");
+            return;
+        }
+        text = sanitize(text);
+        ChatRoom room = rooms.get(roomId);
+        if (text == null || room == null) {
+            return;
+        }
+        room.post(senderName(connection, roomId), text, System.currentTimeMillis());
+        messagesPosted.increment();
+        if (room.dirty.compareAndSet(false, true)) {
+            dirtyRooms.offer(room);
+        }
+    }
+
+    /**
+     * Removes a connection from its room, removing the room once it is empty
+     */
+    public void leave(ChessConnection connection) {
+        int roomId = connection.getChatRoom();
+        if (roomId == 0) {
+            return;
+        }
+        connection.setChatRoom(0);
+        rooms.computeIfPresent(roomId, (id, room) -> room.leave(connection) ? null : room);
+    }
+
+    private void flush() {
+        try {
+            ChatRoom room;
+            while ((room = dirtyRooms.poll()) != null) {
+                // Cleared first, so a message posted during the flush queues the room again
+                room.dirty.set(false);
+                for (ChatBatchPacket batch : room.flush()) {
+                    broadcaster.broadcast(batch, room.getMembers());
+                    batchesSent.increment();
+                }
+            }
+        } catch (Exception e) {
+            // Thrown out of a scheduled task, it would cancel all later flushes
+            error("Chat flush failed.", e);
+        }
+    }
+
+    private static boolean mayEnter(ChessConnection connection, int roomId) {
+        if (roomId > 0 && roomId < GameSessionManager.MIN_GAME_CODE) {
+            return true;
+        }
+        return roomId != 0 && connection.getGameCode() == roomId;
+    }
+
+    private String senderName(ChessConnection connection, int roomId) {
+        GameSession session = roomId >= GameSessionManager.MIN_GAME_CODE ? gameManager.getGame(roomId) : null;
+        if (session == null) {
+            return "Guest " + connection.getID();
+        }
+        Side side = session.getSide(connection);
+        if (side == null) {
+            return "Spectator " + connection.getID();
+        }
+        return side == Side.WHITE ? "White" : "Black";
+    }
+
+    /**
+     * Trims a message and cuts it to the maximum length
+     *
+     * @return The message, or null if there is nothing to post
+     */
+    private static String sanitize(String text) {
+        if (text == null) {
+            return null;
+        }
+        text = text.trim();
+        if (text.isEmpty()) {
+            return null;
+        }
+        if (text.length() > MAX_TEXT_LENGTH) {
+            int end = MAX_TEXT_LENGTH;
+            // Never split a surrogate pair
+            if (Character.isHighSurrogate(text.charAt(end - 1))) {
+                end--;
+            }
+            text = text.substring(0, end);
+        }
+        return text;
+    }
+
+    /**
+     * Get the number of rooms with at least one member
+     */
+    public int getRoomCount() {
+        return rooms.size();
+    }
+
+    /**
+     * Get the number of messages accepted
+     */
+    public long getMessagesPosted() {
+        return messagesPosted.sum();
+    }
+
+    /**
+     * Get the number of batches broadcast to rooms
+     */
+    public long getBatchesSent() {
+        return batchesSent.sum();
+    }
+}
@@ -0,0 +1,160 @@
+package io.github.onlinechess.server.cluster;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import io.github.onlinechess.shared.cluster.ConsistentHashRing;
+import io.github.onlinechess.shared.cluster.NodeAddress;
+
+import static com.esotericsoftware.minlog.Log.info;
+import static com.esotericsoftware.minlog.Log.warn;
+
+/**
+ * The nodes of the cluster and which of them owns each game code.
+ *
+ * Membership is read from a file listing one node per line as
+ * host:tcpPort:udpPort, shared by every node (or kept identical on each).
+ * Adding a line brings a node in; removing one drains it: the node stays up
+ * but owns nothing, so it hands all its games to the others. Nodes re-read
+ * the file periodically, so a change spreads within one reload interval and
+ * games move in the meantime as each node notices.
+ *
+ * A node shutting down drains without an edit to the file: it tells the
+ * others, and every node leaves draining nodes off its ring until they
+ * announce they are back.
+ *
+ * Without a file the node is alone and owns every code.
+ */
+public class ClusterMembership {
+    private final NodeAddress self;
+    // Membership file, or null for a single node
+    private final Path file;
+    private volatile ConsistentHashRing ring;
+    // Nodes in the file when it was last read (guarded by this)
+    private List<NodeAddress> loaded;
+    // Nodes left off the ring while they shut down, this one included
+    private final Set<NodeAddress> draining = ConcurrentHashMap.newKeySet();
+
+    /**
+     * @param self The address clients reach this node at
+     * @param file The membership file, or null to run as a single node
+     */
+    public ClusterMembership(NodeAddress self, Path file) {
+        if (self == null) {
+            throw new IllegalArgumentException("Node address cannot be null.");
+        }
+        this.self = self;
+        this.file = file;
+        this.loaded = Collections.singletonList(self);
+        this.ring = new ConsistentHashRing(loaded);
+        if (file != null) {
+            reload();
+        }
+    }
+
+    /**
+     * Re-reads the membership file. A missing, unreadable or empty file leaves
+     * the current ring in place, so a half-written edit never drains everyone.
+     *
+     * @return Whether the membership changed
+     */
+    public synchronized boolean reload() {
+        if (file == null) {
+            return false;
+        }
+        List<NodeAddress> nodes = new ArrayList<>();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                line = line.trim();
+                if (!line.isEmpty() && !line.startsWith("#")) {
+                    nodes.add(NodeAddress.parse(line));
+                }
+            }
+        } catch (IOException | IllegalArgumentException e) {
+            warn("Could not read cluster membership from " + file + ": " + e.getMessage());
+            return false;
+        }
+        if (nodes.isEmpty()) {
+            warn("Cluster membership file " + file + " lists no nodes, keeping the current ring.");
+            return false;
+        }
+        if (nodes.equals(loaded)) {
+            return false;
+        }
+        loaded = nodes;
+        rebuild();
+        info("Cluster membership: " + nodes + (ring.contains(self) ? "" : "; this node is draining"));
+        return true;
+    }
+
+    /**
+     * Leaves a node off the ring while it drains, or puts it back
+     *
+     * @return Whether anything changed
+     */
+    public synchronized boolean setDraining(NodeAddress node, boolean draining) {
+        boolean changed = draining ? this.draining.add(node) : this.draining.remove(node);
+        if (changed) {
+            rebuild();
+            info("Node " + node + (draining ? " is draining" : " is back"));
+        }
+        return changed;
+    }
+
+    /**
+     * Must be called holding this
+     */
+    private void rebuild() {
+        List<NodeAddress> nodes = new ArrayList<>(loaded);
+        nodes.removeAll(draining);
+        ring = new ConsistentHashRing(nodes);
+    }
+
+    /**
+     * Whether this node is responsible for the given game
+     */
+    public boolean owns(int gameCode) {
+        return self.equals(ring.nodeFor(gameCode));
+    }
+
+    /**
+     * Get the node responsible for the given game
+     */
+    public NodeAddress ownerOf(int gameCode) {
+        return ring.nodeFor(gameCode);
+    }
+
+    public NodeAddress getSelf() {
+        return self;
+    }
+
+    /**
+     * Get every other node in the membership file, draining or not
+     */
+    public synchronized List<NodeAddress> getPeers() {
+        List<NodeAddress> peers = new ArrayList<>(loaded);
+        peers.remove(self);
+        return peers;
+    }
+
+    /**
+     * Whether this node runs as part of a cluster rather than alone
+     */
+    public boolean isClustered() {
+        return file != null;
+    }
+
+    /**
+     * Get the number of nodes on the ring
+     */
+    public int getNodeCount() {
+        return ring.getNodes().size();
+    }
+}
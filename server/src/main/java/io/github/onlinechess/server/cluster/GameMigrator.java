@@ -0,0 +1,462 @@
+package io.github.onlinechess.server.cluster;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.esotericsoftware.kryonet.Connection;
+
+import io.github.onlinechess.server.game.GameSession;
+import io.github.onlinechess.server.game.GameSessionManager;
+import io.github.onlinechess.server.network.ChessConnection;
+import io.github.onlinechess.server.persistence.SnapshotStore;
+import io.github.onlinechess.shared.cluster.NodeAddress;
+import io.github.onlinechess.shared.packets.GameHandoffAckPacket;
+import io.github.onlinechess.shared.packets.GameHandoffPacket;
+import io.github.onlinechess.shared.packets.NodeStatusPacket;
+import io.github.onlinechess.shared.packets.RedirectPacket;
+
+import static com.esotericsoftware.minlog.Log.debug;
+import static com.esotericsoftware.minlog.Log.info;
+import static com.esotericsoftware.minlog.Log.warn;
+
+/**
+ * Moves live games to the node that owns them after a membership change, and
+ * points clients at the right node.
+ *
+ * A handoff freezes the game, so it refuses moves, and sends its snapshot
+ * entry to the new owner over a {@link PeerLink}. The owner journals the game
+ * and acknowledges once it is durable; only then are the game's players and
+ * spectators sent a {@link RedirectPacket} and the local copy dropped. A
+ * refused handoff thaws the game, which stays here and is tried again on a
+ * later round. An unanswered one may still have reached the owner, so the game
+ * stays frozen and the same state is sent again until the owner answers; an
+ * owner that already holds the game accepts it again. At any moment exactly
+ * one node accepts moves for a game, and a crash at any step leaves a durable
+ * copy on at least one node.
+ *
+ * A node shutting down drains: it tells the others, which then own its share
+ * of the ring, hands them its games, and sends its idle clients their way.
+ *
+ * Nodes prove to each other that they belong to the cluster with a shared key.
+ */
+public class GameMigrator {
+    // Handoffs waiting for an acknowledgement at once; paces a draining node
+    private static final int MAX_IN_FLIGHT = 64;
+    // A handoff not acknowledged within this is sent again
+    private static final long HANDOFF_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(10);
+    // Room in a handoff message for everything but the state
+    private static final int HANDOFF_OVERHEAD = 256;
+    // How often a drain hands off more games and checks whether it is done
+    private static final long DRAIN_POLL_MS = 100;
+    // Idle clients are redirected in this many batches, spread over REDIRECT_SPREAD_MS,
+    // so the other nodes see a ramp of reconnects rather than a spike
+    private static final int REDIRECT_BATCHES = 20;
+    private static final long REDIRECT_SPREAD_MS = 2000;
+
+    private final ClusterMembership membership;
+    private final GameSessionManager gameManager;
+    private final String clusterKey;
+    private final byte[] clusterKeyBytes;
+    private final int maxStateSize;
+    // Links to other nodes, opened on first use
+    private final ConcurrentHashMap<NodeAddress, PeerLink> links = new ConcurrentHashMap<>();
+    // Handoffs waiting for an acknowledgement, by game code
+    private final ConcurrentHashMap<Integer, InFlight> inFlight = new ConcurrentHashMap<>();
+    // Games too large to hand off; they finish here (rebalance thread only)
+    private final Set<Integer> oversized = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder handedOff = new LongAdder();
+    private final LongAdder adopted = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private final LongAdder redirects = new LongAdder();
+
+    /**
+     * @param clusterKey Secret shared by every node, or null when not clustered
+     * @param maxMessageSize Largest message other nodes accept, their object buffer size
+     */
+    public GameMigrator(ClusterMembership membership, GameSessionManager gameManager, String clusterKey,
+                        int maxMessageSize) {
+        if (membership == null) {
+            throw new IllegalArgumentException("Membership cannot be null.");
+        }
+        if (gameManager == null) {
+            throw new IllegalArgumentException("Game manager cannot be null.");
+        }
+        if (membership.isClustered() && (clusterKey == null || clusterKey.isEmpty())) {
+            throw new IllegalArgumentException("A clustered node needs a cluster key.");
+        }
+        if (maxMessageSize <= HANDOFF_OVERHEAD) {
+            throw new IllegalArgumentException("Message size leaves no room for game state.");
+        }
+        this.membership = membership;
+        this.gameManager = gameManager;
+        this.clusterKey = clusterKey != null ? clusterKey : "";
+        this.clusterKeyBytes = this.clusterKey.getBytes(StandardCharsets.UTF_8);
+        this.maxStateSize = maxMessageSize - HANDOFF_OVERHEAD - clusterKeyBytes.length;
+        gameManager.setOwnership(membership::owns);
+    }
+
+    /**
+     * Re-reads the membership and hands off games this node no longer owns.
+     * Called periodically, and repeatedly while draining.
+     */
+    public synchronized void rebalance() {
+        if (!membership.isClustered()) {
+            return;
+        }
+        if (membership.reload()) {
+            // A new ring may send them to a node with more room, or back to one that lost them
+            oversized.clear();
+        }
+        long now = System.nanoTime();
+        for (InFlight handoff : inFlight.values()) {
+            if (now - handoff.sentAt > HANDOFF_TIMEOUT_NANOS) {
+                // Thawing here could leave the game live on both nodes, so it waits for an answer
+                warn("Handoff of game " + handoff.gameCode + " to " + handoff.target + " timed out; sending it again.");
+                failures.increment();
+                handoff.sentAt = now;
+                try {
+                    link(handoff.target).send(handoff.packet);
+                } catch (IOException e) {
+                    debug("Could not resend game " + handoff.gameCode + " to " + handoff.target + ": " + e.getMessage());
+                }
+            }
+        }
+        for (int shard = 0; shard < gameManager.getShardCount(); shard++) {
+            for (GameSession session : gameManager.getShardGames(shard)) {
+                if (inFlight.size() >= MAX_IN_FLIGHT) {
+                    return;
+                }
+                int gameCode = session.getGameCode();
+                if (!membership.owns(gameCode) && !inFlight.containsKey(gameCode) && !oversized.contains(gameCode)) {
+                    NodeAddress owner = membership.ownerOf(gameCode);
+                    if (owner != null) {
+                        handOff(session, owner, now);
+                    }
+                }
+            }
+        }
+    }
+
+    private void handOff(GameSession session, NodeAddress owner, long now) {
+        int gameCode = session.getGameCode();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(512);
+        try {
+            session.freeze(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            // Writing to memory does not fail
+            throw new IllegalStateException(e);
+        }
+        if (bytes.size() > maxStateSize) {
+            session.thaw();
+            oversized.add(gameCode);
+            warn("Game " + gameCode + " is too large to hand off (" + bytes.size() + " bytes); it stays here.");
+            return;
+        }
+        GameHandoffPacket packet = new GameHandoffPacket(clusterKey, gameCode, SnapshotStore.VERSION, bytes.toByteArray());
+        InFlight handoff = new InFlight(gameCode, session, owner, packet, now);
+        inFlight.put(gameCode, handoff);
+        try {
+            link(owner).send(packet);
+            debug("Handing off game " + gameCode + " to " + owner);
+        } catch (IOException e) {
+            // Nothing was sent, since only connecting fails
+            if (inFlight.remove(gameCode, handoff)) {
+                session.thaw();
+                failures.increment();
+            }
+            debug("Could not hand off game " + gameCode + " to " + owner + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Tells the other nodes that this one is up, so they hand back the games
+     * they took over while it was draining. Blocks while connecting.
+     */
+    public void start() {
+        if (membership.isClustered()) {
+            announce(false);
+        }
+    }
+
+    /**
+     * Drains this node before it shuts down: leaves it off the ring, tells the
+     * other nodes, then hands off games until none is left to move and no game
+     * is being played, or until the deadline. Without other nodes, this only
+     * waits for games in progress to finish.
+     *
+     * @param deadline System.nanoTime() by which to give up
+     * @return The number of games still here
+     */
+    public int drain(long deadline) throws InterruptedException {
+        membership.setDraining(membership.getSelf(), true);
+        if (membership.isClustered()) {
+            announce(true);
+        }
+        while (System.nanoTime() - deadline < 0) {
+            rebalance();
+            int waiting = countUnsettled();
+            if (waiting == 0) {
+                break;
+            }
+            debug("Draining: waiting on " + waiting + " games");
+            Thread.sleep(DRAIN_POLL_MS);
+        }
+        return gameManager.getGameCount();
+    }
+
+    /**
+     * Get the number of games still moving, able to move, or being played
+     */
+    private int countUnsettled() {
+        int count = inFlight.size();
+        for (int shard = 0; shard < gameManager.getShardCount(); shard++) {
+            for (GameSession session : gameManager.getShardGames(shard)) {
+                int gameCode = session.getGameCode();
+                if (inFlight.containsKey(gameCode)) {
+                    continue;
+                }
+                boolean movable = membership.ownerOf(gameCode) != null && !oversized.contains(gameCode);
+                if (movable || session.isInProgress()) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Sends clients that are not in a game to other nodes, spread over a couple
+     * of seconds and over the nodes by connection ID
+     *
+     * @return The number of clients redirected
+     */
+    public int redirectIdle(Connection[] connections) throws InterruptedException {
+        int batchSize = Math.max(1, connections.length / REDIRECT_BATCHES);
+        int sent = 0;
+        for (Connection c : connections) {
+            ChessConnection connection = (ChessConnection) c;
+            if (connection.isPeer() || gameManager.getGame(connection.getGameCode()) != null) {
+                continue;
+            }
+            RedirectPacket redirect = redirectElsewhere(connection.getID());
+            if (redirect == null) {
+                // No other node to send anyone to
+                break;
+            }
+            connection.sendTCP(redirect);
+            if (++sent % batchSize == 0) {
+                Thread.sleep(REDIRECT_SPREAD_MS / REDIRECT_BATCHES);
+            }
+        }
+        return sent;
+    }
+
+    /**
+     * Get a redirect to another node for a client with no game here, such as
+     * one asking a draining node for a new game
+     *
+     * @param key Spreads clients over the nodes, such as a connection ID
+     * @return The packet to send, or null if there is no other node
+     */
+    public RedirectPacket redirectElsewhere(int key) {
+        NodeAddress node = membership.ownerOf(key);
+        if (node == null || node.equals(membership.getSelf())) {
+            return null;
+        }
+        return redirectTo(0, node);
+    }
+
+    private void announce(boolean draining) {
+        NodeStatusPacket status = new NodeStatusPacket(clusterKey, membership.getSelf().toString(), draining);
+        for (NodeAddress peer : membership.getPeers()) {
+            try {
+                link(peer).send(status);
+            } catch (IOException e) {
+                debug("Could not tell node " + peer + " about this node: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Handles another node starting or finishing a drain. Called on its connection's dispatcher lane.
+     */
+    public void nodeStatus(ChessConnection connection, NodeStatusPacket status) {
+        if (!membership.isClustered() || !isClusterKey(status.getClusterKey())) {
+            warn("[" + connection.getID() + "] Node status without the cluster key, closing.");
+            connection.close();
+            return;
+        }
+        connection.markPeer();
+        try {
+            membership.setDraining(NodeAddress.parse(status.getNode()), status.isDraining());
+        } catch (IllegalArgumentException e) {
+            warn("[" + connection.getID() + "] Node status with a bad address: " + e.getMessage());
+        }
+    }
+
+    private PeerLink link(NodeAddress node) {
+        return links.computeIfAbsent(node, address -> new PeerLink(address, this));
+    }
+
+    /**
+     * Handles another node's answer to a handoff. Called on that link's update thread.
+     */
+    void acknowledged(NodeAddress from, GameHandoffAckPacket ack) {
+        int gameCode = ack.getGameCode();
+        InFlight handoff = inFlight.get(gameCode);
+        if (handoff == null || !handoff.target.equals(from) || !inFlight.remove(gameCode, handoff)) {
+            // The answer to a resent handoff that was already settled
+            return;
+        }
+        if (!ack.isAccepted()) {
+            warn("Node " + from + " refused game " + gameCode + "; keeping it for now.");
+            failures.increment();
+            handoff.session.thaw();
+            return;
+        }
+        handoff.session.sendToAll(redirectTo(gameCode, from));
+        gameManager.releaseGame(gameCode);
+        handedOff.increment();
+        info("Handed off game " + gameCode + " to " + from);
+    }
+
+    /**
+     * Takes over a game another node handed off. Called on the sending connection's dispatcher lane.
+     */
+    public void adopt(ChessConnection connection, GameHandoffPacket packet) {
+        int gameCode = packet.getGameCode();
+        if (!membership.isClustered() || !isClusterKey(packet.getClusterKey())) {
+            warn("[" + connection.getID() + "] Game handoff without the cluster key, closing.");
+            connection.close();
+            return;
+        }
+        connection.markPeer();
+        // A game already here is a resent handoff, accepted again whoever owns it now, so the sender never thaws it.
+        // The sender may also have read a membership change before this node did.
+        if (gameManager.getGame(gameCode) == null && !membership.owns(gameCode)
+            && !(membership.reload() && membership.owns(gameCode))) {
+            debug("[" + connection.getID() + "] Refused handoff of game " + gameCode + " owned by another node");
+            connection.sendTCP(new GameHandoffAckPacket(gameCode, false));
+            return;
+        }
+        if (packet.getVersion() > SnapshotStore.VERSION) {
+            warn("[" + connection.getID() + "] Refused game " + gameCode + " in newer format " + packet.getVersion());
+            connection.sendTCP(new GameHandoffAckPacket(gameCode, false));
+            return;
+        }
+        try {
+            DataInputStream in = new DataInputStream(new ByteArrayInputStream(packet.getState()));
+            if (in.readInt() != gameCode) {
+                throw new IOException("State belongs to another game");
+            }
+            boolean fresh = gameManager.adoptGame(gameCode, packet.getVersion(), in,
+                                                  () -> connection.sendTCP(new GameHandoffAckPacket(gameCode, true)));
+            if (fresh) {
+                adopted.increment();
+            }
+        } catch (IOException | RuntimeException e) {
+            warn("[" + connection.getID() + "] Could not adopt game " + gameCode, e);
+            connection.sendTCP(new GameHandoffAckPacket(gameCode, false));
+        }
+    }
+
+    /**
+     * Get the redirect for a game that is not on this node, if another node owns it
+     *
+     * @return The packet to send, or null if the request should be handled here
+     */
+    public RedirectPacket redirectFor(int gameCode) {
+        if (membership.owns(gameCode)) {
+            return null;
+        }
+        NodeAddress owner = membership.ownerOf(gameCode);
+        return owner != null ? redirectTo(gameCode, owner) : null;
+    }
+
+    private RedirectPacket redirectTo(int gameCode, NodeAddress node) {
+        redirects.increment();
+        return new RedirectPacket(gameCode, node.getHost(), node.getTcpPort(), node.getUdpPort());
+    }
+
+    private boolean isClusterKey(String key) {
+        // Constant time, so the key cannot be guessed a byte at a time
+        return key != null && MessageDigest.isEqual(clusterKeyBytes, key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Closes the links to other nodes. Games still in flight stay frozen, and
+     * are recovered here from the journal on the next start, then handed off
+     * again; an owner that took them already keeps its copy.
+     */
+    public void stop() {
+        for (PeerLink link : links.values()) {
+            link.close();
+        }
+    }
+
+    /**
+     * Get the number of games handed off to other nodes
+     */
+    public long getHandedOffCount() {
+        return handedOff.sum();
+    }
+
+    /**
+     * Get the number of games taken over from other nodes
+     */
+    public long getAdoptedCount() {
+        return adopted.sum();
+    }
+
+    /**
+     * Get the number of handoffs that were refused, timed out and resent, or could not be sent
+     */
+    public long getFailureCount() {
+        return failures.sum();
+    }
+
+    /**
+     * Get the number of redirects sent, one per game moved plus one per request for a game on another node
+     */
+    public long getRedirectCount() {
+        return redirects.sum();
+    }
+
+    /**
+     * Get the number of handoffs waiting for an acknowledgement
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * A handoff waiting for its acknowledgement
+     */
+    private static final class InFlight {
+        final int gameCode;
+        final GameSession session;
+        final NodeAddress target;
+        // Kept to send again unchanged; the game is frozen, so its state cannot move on
+        final GameHandoffPacket packet;
+        // When the handoff was last sent (rebalance thread only)
+        long sentAt;
+
+        InFlight(int gameCode, GameSession session, NodeAddress target, GameHandoffPacket packet, long sentAt) {
+            this.gameCode = gameCode;
+            this.session = session;
+            this.target = target;
+            this.packet = packet;
+            this.sentAt = sentAt;
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package io.github.onlinechess.server.cluster;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+
+import io.github.onlinechess.shared.NetworkRegistry;
+import io.github.onlinechess.shared.PacketSerialization;
+import io.github.onlinechess.shared.cluster.NodeAddress;
+import io.github.onlinechess.shared.packets.GameHandoffAckPacket;
+import io.github.onlinechess.shared.packets.HandshakePacket;
+import io.github.onlinechess.shared.packets.HeartbeatPacket;
+
+import static com.esotericsoftware.minlog.Log.debug;
+
+/**
+ * Connection from this node to another node, used to hand games off to it
+ * and to tell it when this node drains or comes back.
+ * It is an ordinary client connection on the other node's public port, so
+ * it connects lazily, shakes hands like any client and answers heartbeats.
+ * Acknowledgements arrive on the link's own update thread.
+ */
+class PeerLink extends Listener {
+    // A handoff is a snapshot entry; the largest fits well within this
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+    private static final int OBJECT_BUFFER_SIZE = 8192;
+    private static final int CONNECT_TIMEOUT_MS = 5000;
+    // After a failed connect, handoffs fail at once for this long instead of each waiting out the timeout
+    private static final long RETRY_DELAY_NANOS = TimeUnit.SECONDS.toNanos(5);
+
+    private final NodeAddress address;
+    private final GameMigrator migrator;
+    private final Client client = new Client(WRITE_BUFFER_SIZE, OBJECT_BUFFER_SIZE, new PacketSerialization());
+    // When connecting may next be tried (guarded by this)
+    private long retryAt;
+
+    PeerLink(NodeAddress address, GameMigrator migrator) {
+        this.address = address;
+        this.migrator = migrator;
+        client.addListener(this);
+        client.start();
+    }
+
+    /**
+     * Sends a packet, connecting first if need be. Blocks while connecting.
+     *
+     * @throws IOException If the node cannot be reached
+     */
+    synchronized void send(Object packet) throws IOException {
+        if (!client.isConnected()) {
+            long now = System.nanoTime();
+            if (now - retryAt < 0) {
+                throw new IOException("Node " + address + " was unreachable moments ago");
+            }
+            try {
+                client.connect(CONNECT_TIMEOUT_MS, address.getHost(), address.getTcpPort(), address.getUdpPort());
+            } catch (IOException e) {
+                retryAt = now + RETRY_DELAY_NANOS;
+                throw e;
+            }
+            // Handled before the packet, since the other node orders a connection's messages
+            client.sendTCP(new HandshakePacket(NetworkRegistry.PROTOCOL_VERSION, NetworkRegistry.SUPPORTED_CAPABILITIES));
+            debug("Connected to node " + address);
+        }
+        client.sendTCP(packet);
+    }
+
+    @Override
+    public void received(Connection connection, Object object) {
+        if (object instanceof GameHandoffAckPacket) {
+            migrator.acknowledged(address, (GameHandoffAckPacket) object);
+        } else if (object instanceof HeartbeatPacket) {
+            // Otherwise the other node closes a link that has gone quiet
+            connection.sendTCP(object);
+        }
+    }
+
+    void close() {
+        client.stop();
+    }
+
+    NodeAddress getAddress() {
+        return address;
+    }
+}
@@ -0,0 +1,130 @@
+package io.github.onlinechess.server.game;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.bhlangonijr.chesslib.Side;
+
+/**
+ * The two clocks of a timed game. At most one side's time runs at once.
+ *
+ * A time control is packed into one int as (base seconds << 16) | increment
+ * seconds, so it fits in a journal record; 0 means the game is untimed.
+ *
+ * Not thread-safe; the owning {@link GameSession} guards it with its write lock.
+ */
+final class GameClock {
+    private static final int MAX_SECONDS = 0xFFFF;
+
+    private final int timeControl;
+    private final long incrementMillis;
+    private long whiteRemaining;
+    private long blackRemaining;
+    // Side whose time is running, or null while the clock is stopped
+    private Side running;
+    private long turnStartedNanos;
+    // Side that ran out of time, if any
+    private Side flagged;
+
+    GameClock(int timeControl) {
+        if (timeControl == 0) {
+            throw new IllegalArgumentException("An untimed game has no clock.");
+        }
+        this.timeControl = timeControl;
+        this.incrementMillis = TimeUnit.SECONDS.toMillis(timeControl & MAX_SECONDS);
+        this.whiteRemaining = TimeUnit.SECONDS.toMillis(timeControl >>> 16);
+        this.blackRemaining = whiteRemaining;
+    }
+
+    /**
+     * Packs a time control; a base of 0 seconds means an untimed game
+     */
+    static int pack(int baseSeconds, int incrementSeconds) {
+        if (baseSeconds <= 0) {
+            return 0;
+        }
+        return Math.min(baseSeconds, MAX_SECONDS) << 16 | Math.max(0, Math.min(incrementSeconds, MAX_SECONDS));
+    }
+
+    int getTimeControl() {
+        return timeControl;
+    }
+
+    /**
+     * Starts the given side's time
+     */
+    void start(Side side, long nowNanos) {
+        running = side;
+        turnStartedNanos = nowNanos;
+    }
+
+    void stop() {
+        running = null;
+    }
+
+    /**
+     * Get the side whose time is running, or null while stopped
+     */
+    Side getRunning() {
+        return running;
+    }
+
+    /**
+     * Get the side that ran out of time, or null
+     */
+    Side getFlagged() {
+        return flagged;
+    }
+
+    /**
+     * Get a side's remaining time in milliseconds, after taking what the
+     * current turn has used so far, less the given lag compensation
+     */
+    long remaining(Side side, long nowNanos, long compensationMillis) {
+        long remaining = side == Side.WHITE ? whiteRemaining : blackRemaining;
+        return side == running ? remaining - used(nowNanos, compensationMillis) : remaining;
+    }
+
+    /**
+     * Charges the running side for its move, adds the increment and starts the opponent's time
+     *
+     * @return The change to the mover's clock in milliseconds
+     */
+    long punch(long nowNanos, long compensationMillis) {
+        long change = incrementMillis - used(nowNanos, compensationMillis);
+        if (running == Side.WHITE) {
+            whiteRemaining += change;
+        } else {
+            blackRemaining += change;
+        }
+        start(running.flip(), nowNanos);
+        return change;
+    }
+
+    /**
+     * Records that the running side ran out of time and stops the clock
+     */
+    void flag() {
+        if (running == Side.WHITE) {
+            whiteRemaining = 0;
+        } else {
+            blackRemaining = 0;
+        }
+        flagged = running;
+        running = null;
+    }
+
+    /**
+     * Sets the remaining times read back from a snapshot, with the clock stopped
+     */
+    void restore(long white, long black, Side flagged) {
+        this.whiteRemaining = white;
+        this.blackRemaining = black;
+        this.flagged = flagged;
+        this.running = null;
+    }
+
+    private long used(long nowNanos, long compensationMillis) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(nowNanos - turnStartedNanos);
+        return Math.max(0, elapsed - compensationMillis);
+    }
+}
@@ -0,0 +1,213 @@
+package io.github.onlinechess.server.game;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.IntPredicate;
+
+/**
+ * Hands out unique game codes from a fixed range.
+ *
+ * Every code is one bit in a concurrent bitset, set while the code is in use or
+ * quarantined. Allocation starts at a random bit of a random word and claims the
+ * next clear bit with a compare-and-set, so codes are hard to guess and no lock
+ * is taken.
+ * Released codes wait in a FIFO quarantine before they can be handed out again,
+ * so a stale code shared with a friend never lands them in a stranger's game.
+ */
+public class GameCodePool {
+    private final int minCode;
+    private final int size;
+    private final long quarantineMillis;
+    // One bit per code: set while the code is allocated or quarantined
+    private final AtomicLongArray bits;
+    // Released codes in release order, so the oldest is always at the head
+    private final Queue<Quarantined> quarantine = new ConcurrentLinkedQueue<>();
+    // Held by the one thread emptying the quarantine
+    private final AtomicBoolean reclaiming = new AtomicBoolean();
+    private final AtomicInteger allocated = new AtomicInteger();
+
+    /**
+     * @param minCode The lowest code in the pool
+     * @param maxCode The highest code in the pool
+     * @param quarantineMillis How long a released code is held back before reuse
+     */
+    public GameCodePool(int minCode, int maxCode, long quarantineMillis) {
+        if (maxCode < minCode) {
+            throw new IllegalArgumentException("Max code must not be below min code.");
+        }
+        if (quarantineMillis < 0) {
+            throw new IllegalArgumentException("Quarantine cannot be negative.");
+        }
+        this.minCode = minCode;
+        this.size = maxCode - minCode + 1;
+        this.quarantineMillis = quarantineMillis;
+        this.bits = new AtomicLongArray((size + 63) >>> 6);
+        if ((size & 63) != 0) {
+            // Bits past the end of the range are never free
+            bits.set(bits.length() - 1, -1L << (size & 63));
+        }
+    }
+
+    /**
+     * Claims a free code
+     *
+     * @return The code, or -1 if every code is in use or quarantined
+     */
+    public int allocate() {
+        reclaimExpired(System.currentTimeMillis());
+
+        int words = bits.length();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int start = random.nextInt(words);
+        // Search each word from a random bit too, so codes do not cluster at word boundaries
+        int offset = random.nextInt(64);
+        for (int i = 0; i < words; i++) {
+            int word = start + i < words ? start + i : start + i - words;
+            long value;
+            while ((value = bits.get(word)) != -1L) {
+                int bit = (Long.numberOfTrailingZeros(Long.rotateRight(~value, offset)) + offset) & 63;
+                int index = (word << 6) + bit;
+                if (bits.compareAndSet(word, value, value | (1L << bit))) {
+                    allocated.incrementAndGet();
+                    return minCode + index;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Claims a free code that the given test accepts, such as one this node owns.
+     * Rejected codes go straight back to the pool, skipping quarantine, since
+     * they were never handed out.
+     *
+     * @param maxAttempts How many codes to try before giving up
+     * @return The code, or -1 if no acceptable code was found
+     */
+    public int allocate(IntPredicate accept, int maxAttempts) {
+        for (int attempt = 0; attempt < maxAttempts; attempt++) {
+            int code = allocate();
+            if (code < 0 || accept.test(code)) {
+                return code;
+            }
+            unclaim(code);
+        }
+        return -1;
+    }
+
+    /**
+     * Claims a specific code
+     *
+     * @return Whether the code was free
+     */
+    public boolean reserve(int code) {
+        int index = indexOf(code);
+        if (index < 0) {
+            return false;
+        }
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long value;
+        do {
+            value = bits.get(word);
+            if ((value & mask) != 0) {
+                return false;
+            }
+        } while (!bits.compareAndSet(word, value, value | mask));
+        allocated.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * Returns a code to the pool. It stays unavailable until its quarantine expires.
+     * Must be called once for each code handed out.
+     */
+    public void release(int code) {
+        if (isAllocated(code)) {
+            allocated.decrementAndGet();
+            quarantine.offer(new Quarantined(code, System.currentTimeMillis() + quarantineMillis));
+        }
+    }
+
+    /**
+     * Check whether a code is currently in use or quarantined
+     */
+    public boolean isAllocated(int code) {
+        int index = indexOf(code);
+        return index >= 0 && (bits.get(index >>> 6) & (1L << index)) != 0;
+    }
+
+    /**
+     * Get the number of codes currently in use, not counting quarantined ones
+     */
+    public int getAllocatedCount() {
+        return allocated.get();
+    }
+
+    /**
+     * Returns a code in use to the pool at once, skipping quarantine, for a code
+     * that was claimed but never handed out or whose removal is being replayed
+     */
+    public void unclaim(int code) {
+        int index = indexOf(code);
+        if (index < 0) {
+            return;
+        }
+        int word = index >>> 6;
+        long mask = 1L << index;
+        long value;
+        do {
+            value = bits.get(word);
+            if ((value & mask) == 0) {
+                return;
+            }
+        } while (!bits.compareAndSet(word, value, value & ~mask));
+        allocated.decrementAndGet();
+    }
+
+    /**
+     * Frees every quarantined code whose time is up
+     */
+    private void reclaimExpired(long now) {
+        Quarantined head = quarantine.peek();
+        if (head == null || head.expiresAt > now || !reclaiming.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            while ((head = quarantine.peek()) != null && head.expiresAt <= now) {
+                quarantine.poll();
+                int index = indexOf(head.code);
+                int word = index >>> 6;
+                long mask = ~(1L << index);
+                long value;
+                do {
+                    value = bits.get(word);
+                } while (!bits.compareAndSet(word, value, value & mask));
+            }
+        } finally {
+            reclaiming.set(false);
+        }
+    }
+
+    private int indexOf(int code) {
+        int index = code - minCode;
+        return index >= 0 && index < size ? index : -1;
+    }
+
+    /**
+     * A released code and the time it may be reused
+     */
+    private static final class Quarantined {
+        final int code;
+        final long expiresAt;
+
+        Quarantined(int code, long expiresAt) {
+            this.code = code;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
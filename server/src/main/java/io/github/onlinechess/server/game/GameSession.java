@@ -0,0 +1,1037 @@
+package io.github.onlinechess.server.game;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.move.Move;
+
+import io.github.onlinechess.server.jfr.MoveValidationEvent;
+import io.github.onlinechess.server.metrics.Histogram;
+import io.github.onlinechess.server.network.Broadcaster;
+import io.github.onlinechess.server.network.ChessConnection;
+import io.github.onlinechess.server.network.MessageDispatcher;
+import io.github.onlinechess.server.persistence.Journal;
+import io.github.onlinechess.server.persistence.PositionCodec;
+import io.github.onlinechess.server.timer.HashedWheelTimer;
+import io.github.onlinechess.shared.MoveCodec;
+import io.github.onlinechess.shared.RttEstimator;
+import io.github.onlinechess.shared.packets.GameStatusPacket;
+import io.github.onlinechess.shared.packets.MovePacket;
+import io.github.onlinechess.shared.packets.MoveRejectedPacket;
+
+import static com.esotericsoftware.minlog.Log.debug;
+import static com.esotericsoftware.minlog.Log.warn;
+
+/**
+ * Server-side state for a single live game.
+ * The server owns the authoritative chesslib board; clients only request moves.
+ *
+ * A session behaves like an actor: incoming moves are queued on a lock-free
+ * mailbox, and whichever thread claims the draining flag drains it in batches,
+ * so a busy game applies many queued moves per lock acquisition. The drainer
+ * waits for the write lock rather than give up on it, so a move is never left
+ * queued behind a reader that held the lock as it arrived.
+ * Sessions never share a lock, so work on one game cannot block work on another.
+ *
+ * Every accepted move advances the sequence number and is sent to the players
+ * as a {@link GameStatusPacket} delta; full snapshots are only sent on request.
+ * Spectators receive the same updates through the {@link Broadcaster}, which
+ * serializes each update once however many spectators are watching.
+ *
+ * A seat outlives the player's connection: a disconnected player keeps their
+ * seat and can rejoin, and is sent only the moves they missed, replayed from
+ * the game's move history.
+ *
+ * Accepted moves are appended to the server's {@link Journal}, and a batch
+ * is only shown to anyone once its journal records are durable. The drainer
+ * never waits for the disk: it leaves the batch in an outbox, and once the
+ * journal's commit thread reports it durable the game's dispatcher lane sends it.
+ *
+ * A timed game's clocks are kept here too. Each move charges the mover the
+ * time since their turn started, less half their connection's round trip
+ * time, and reschedules a single flag-fall timeout on the server's
+ * {@link HashedWheelTimer}. When it fires, the timeout only queues a check on
+ * the mailbox, so flag-fall is decided in order with the moves around it, and
+ * leaves draining it to the game's dispatcher lane rather than the timer thread.
+ */
+public class GameSession {
+    // Maximum number of queued moves handled, accepted or not, before the results are broadcast
+    private static final int MAX_BATCH = 32;
+    // A rejoining player further behind than this gets a snapshot instead of a replay
+    private static final int MAX_REPLAY = 64;
+    // Lag compensation never exceeds this, however slow the connection
+    private static final long MAX_LAG_COMPENSATION_MS = 500;
+    // A flag timeout or durable batch that finds the game's lane full is retried after this
+    private static final long FLAG_RETRY_MS = 10;
+    // Queued by the flag timeout to have the drainer check the running clock
+    private static final Envelope FLAG_CHECK = new Envelope(null, null);
+    private static final Predicate<ChessConnection> DELTA_SYNC = ChessConnection::usesDeltaSync;
+    private static final Predicate<ChessConnection> SNAPSHOT_ONLY = DELTA_SYNC.negate();
+    // Nanoseconds spent validating each move, across all games
+    private static final Histogram VALIDATION_TIMES = new Histogram();
+
+    private final int gameCode;
+    private final long createdAt;
+    private final Broadcaster broadcaster;
+    private final Journal journal;
+    private final MessageDispatcher dispatcher;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final Queue<Envelope> mailbox = new ConcurrentLinkedQueue<>();
+    // Set while a thread is draining the mailbox
+    private final AtomicBoolean draining = new AtomicBoolean();
+
+    // Authoritative board (guarded by writeLock)
+    private final Board board = new Board();
+    // Packed moves accepted in the current batch and their status flags (guarded by writeLock)
+    private final short[] accepted = new short[MAX_BATCH];
+    private final int[] acceptedFlags = new int[MAX_BATCH];
+    private final int[] acceptedClocks = new int[MAX_BATCH];
+    // Last move applied to the board (guarded by writeLock)
+    private short lastMove = MoveCodec.NONE;
+    // Number of moves applied to this game so far (guarded by writeLock)
+    private volatile int sequence;
+    // Every accepted move, packed as (mover's clock change << 32) | (status flags << 16) | move;
+    // entry i has sequence i + 1 (guarded by writeLock)
+    private long[] history = new long[64];
+    // Clocks of a timed game, or null (guarded by writeLock)
+    private final GameClock clock;
+    // Fires when the running clock could have run out, or null for an untimed game
+    private final HashedWheelTimer.Timeout flagTimeout;
+    // Batches built by the drainer, in journal order, waiting to be durable before they are sent
+    private final Queue<Outgoing> outbox = new ConcurrentLinkedQueue<>();
+    // Set while a send of the outbox is queued on the game's lane
+    private final AtomicBoolean sendQueued = new AtomicBoolean();
+    // Queues the send again when the game's lane was full
+    private final HashedWheelTimer.Timeout sendRetry;
+
+    // Seated players, or null while disconnected
+    private volatile ChessConnection whitePlayer;
+    private volatile ChessConnection blackPlayer;
+    // Whether each seat is taken, even if its player is disconnected (guarded by writeLock)
+    private boolean whiteSeated;
+    private boolean blackSeated;
+    // Session token of each seat, or 0 (guarded by writeLock)
+    private long whiteToken;
+    private long blackToken;
+    // Connections watching the game
+    private final List<ChessConnection> spectators = new CopyOnWriteArrayList<>();
+    // Set while the game is being handed off to another node; moves are refused (guarded by writeLock)
+    private boolean frozen;
+
+    /**
+     * Creates a new session for the given game code
+     *
+     * @param gameCode The 6-digit code identifying this game
+     * @param timeControl The packed time control, or 0 for an untimed game (see {@link GameClock})
+     * @param broadcaster Used to fan updates out to spectators
+     * @param journal Records accepted moves before they are broadcast
+     * @param timer Runs the flag-fall timeout of a timed game
+     * @param dispatcher Drains the mailbox when the flag timeout fires, and sends durable batches,
+     *                   on the game's lane
+     */
+    public GameSession(int gameCode, int timeControl, Broadcaster broadcaster, Journal journal,
+                       HashedWheelTimer timer, MessageDispatcher dispatcher) {
+        this.gameCode = gameCode;
+        this.createdAt = System.currentTimeMillis();
+        this.broadcaster = broadcaster;
+        this.journal = journal;
+        this.dispatcher = dispatcher;
+        this.sendRetry = timer.newTimeout(this::queueSend);
+        if (timeControl != 0) {
+            this.clock = new GameClock(timeControl);
+            this.flagTimeout = timer.newTimeout(this::flagTimedOut);
+        } else {
+            this.clock = null;
+            this.flagTimeout = null;
+        }
+    }
+
+    /**
+     * Runs on the timer thread, so it only queues a flag check and hands the
+     * drain to the game's lane; validating queued moves is no work for the timer
+     */
+    private void flagTimedOut() {
+        mailbox.offer(FLAG_CHECK);
+        if (!dispatcher.dispatch(gameCode, this::drain)) {
+            // The check stays queued; the game's next move or this retry drains it
+            flagTimeout.schedule(FLAG_RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Seats a player on the given side
+     *
+     * @param token The session token that can later reclaim the seat
+     * @return Whether the seat was free
+     */
+    public boolean seatPlayer(ChessConnection connection, Side side, long token) {
+        writeLock.lock();
+        try {
+            if (side == Side.WHITE && !whiteSeated) {
+                whiteSeated = true;
+                whiteToken = token;
+                whitePlayer = connection;
+            } else if (side == Side.BLACK && !blackSeated) {
+                blackSeated = true;
+                blackToken = token;
+                blackPlayer = connection;
+            } else {
+                return false;
+            }
+            connection.setGameCode(gameCode);
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Adds a spectator and sends it a snapshot to start from
+     */
+    public void addSpectator(ChessConnection connection) {
+        connection.setGameCode(gameCode);
+        spectators.add(connection);
+        sendSnapshot(connection);
+    }
+
+    /**
+     * Removes a connection from whichever seat it holds, or from the spectators
+     */
+    public void leave(ChessConnection connection) {
+        writeLock.lock();
+        try {
+            if (whitePlayer == connection) {
+                whitePlayer = null;
+                whiteSeated = false;
+                whiteToken = 0;
+            }
+            if (blackPlayer == connection) {
+                blackPlayer = null;
+                blackSeated = false;
+                blackToken = 0;
+            }
+            spectators.remove(connection);
+            connection.setGameCode(0);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Detaches a lost connection but keeps its seat, so the player can rejoin
+     *
+     * @return Whether the connection held a seat
+     */
+    public boolean disconnect(ChessConnection connection) {
+        writeLock.lock();
+        try {
+            boolean seated = false;
+            if (whitePlayer == connection) {
+                whitePlayer = null;
+                seated = true;
+            }
+            if (blackPlayer == connection) {
+                blackPlayer = null;
+                seated = true;
+            }
+            spectators.remove(connection);
+            connection.setGameCode(0);
+            return seated;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Gives up a seat whose player never came back
+     */
+    public void releaseSeat(Side side) {
+        writeLock.lock();
+        try {
+            if (side == Side.WHITE) {
+                whitePlayer = null;
+                whiteSeated = false;
+                whiteToken = 0;
+            } else {
+                blackPlayer = null;
+                blackSeated = false;
+                blackToken = 0;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Puts a reconnected player back in their seat and sends the moves they missed.
+     * Replaces the old connection if the server has not noticed it is gone yet.
+     *
+     * @param lastSequence The sequence number of the last move the client applied
+     * @return The connection that was replaced, or null if the seat was empty
+     */
+    public ChessConnection rejoin(ChessConnection connection, Side side, int lastSequence) {
+        writeLock.lock();
+        try {
+            ChessConnection previous;
+            if (side == Side.WHITE) {
+                previous = whitePlayer;
+                whitePlayer = connection;
+            } else {
+                previous = blackPlayer;
+                blackPlayer = connection;
+            }
+            connection.setGameCode(gameCode);
+            replay(connection, lastSequence);
+            return previous != connection ? previous : null;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sends the deltas after lastSequence, or a snapshot when that is cheaper or
+     * the client cannot apply deltas. Must be called with the write lock held.
+     */
+    private void replay(ChessConnection connection, int lastSequence) {
+        int missed = sequence - lastSequence;
+        if (missed == 0) {
+            return;
+        }
+        if (missed < 0 || missed > MAX_REPLAY || !DELTA_SYNC.test(connection)) {
+            broadcaster.send(connection, createSnapshot());
+            return;
+        }
+        for (int seq = lastSequence + 1; seq <= sequence; seq++) {
+            long entry = history[seq - 1];
+            broadcaster.send(connection, delta(seq, (short) entry, (int) (entry >> 32), (int) (entry >>> 16) & 0xFFFF));
+        }
+        if (clock != null) {
+            // The deltas leave out time used since the last move
+            broadcaster.send(connection, createSnapshot());
+        }
+    }
+
+    /**
+     * Get the side a connection plays, or null if it is not seated in this game
+     */
+    public Side getSide(ChessConnection connection) {
+        if (connection == whitePlayer) {
+            return Side.WHITE;
+        }
+        if (connection == blackPlayer) {
+            return Side.BLACK;
+        }
+        return null;
+    }
+
+    /**
+     * Queues a move request from a client.
+     * The move is validated and applied by whichever thread currently drains
+     * the mailbox; the caller never waits on another game.
+     */
+    public void submitMove(ChessConnection sender, MovePacket packet) {
+        mailbox.offer(new Envelope(sender, packet));
+        drain();
+    }
+
+    /**
+     * Drains the mailbox if no other thread is already doing so.
+     * Re-checks after giving up the draining flag, so a move queued by a thread
+     * that found the flag taken is never left behind.
+     */
+    private void drain() {
+        while (!mailbox.isEmpty() && draining.compareAndSet(false, true)) {
+            writeLock.lock();
+            try {
+                processBatch();
+            } finally {
+                writeLock.unlock();
+                draining.set(false);
+            }
+        }
+    }
+
+    /**
+     * Validates and applies up to MAX_BATCH queued moves, then broadcasts the accepted ones
+     */
+    private void processBatch() {
+        int acceptedCount = 0;
+        int firstSequence = sequence + 1;
+        long journalPosition = journal.getPosition() - 1;
+        boolean timedOut = false;
+        Envelope envelope;
+        // Rejected moves count too, so a stream of illegal ones cannot hold this thread here
+        int handled = 0;
+        while (handled++ < MAX_BATCH && (envelope = mailbox.poll()) != null) {
+            if (envelope == FLAG_CHECK) {
+                // A frozen game's clock carries on on the node it moves to
+                timedOut |= !frozen && checkFlag();
+                continue;
+            }
+            MovePacket packet = envelope.packet;
+            Move move = packet.getMove();
+            MoveValidationEvent event = new MoveValidationEvent();
+            event.begin();
+            long validationStart = System.nanoTime();
+            int reason = validate(envelope.sender, packet.getSequence(), move);
+            VALIDATION_TIMES.record(System.nanoTime() - validationStart);
+            event.end();
+            if (event.shouldCommit()) {
+                event.gameCode = gameCode;
+                event.sequence = sequence + 1;
+                event.reason = reason;
+                event.commit();
+            }
+            if (reason == 0 && checkFlag()) {
+                // The move arrived after the mover's time ran out
+                timedOut = true;
+                reason = MoveRejectedPacket.GAME_OVER;
+            }
+            if (reason != 0) {
+                debug("[" + envelope.sender.getID() + "] Move rejected in game " + gameCode + ": reason " + reason);
+                envelope.sender.sendTCP(new MoveRejectedPacket(reason, sequence));
+            } else {
+                board.doMove(move);
+                sequence++;
+                lastMove = packet.getEncodedMove();
+                accepted[acceptedCount] = lastMove;
+                acceptedClocks[acceptedCount] = punchClock(envelope.sender);
+                acceptedFlags[acceptedCount] = statusFlags();
+                record(lastMove, acceptedFlags[acceptedCount], acceptedClocks[acceptedCount]);
+                journalPosition = journal.appendMove(gameCode, sequence, lastMove);
+                acceptedCount++;
+            }
+        }
+
+        if (acceptedCount > 0 || timedOut) {
+            broadcastBatch(firstSequence, acceptedCount, journalPosition, timedOut);
+        }
+    }
+
+    /**
+     * Charges the player who just moved and starts their opponent's time.
+     * Both clocks start once each side has made its first move.
+     * Must be called with the write lock held.
+     *
+     * @return The change to the mover's clock in milliseconds
+     */
+    private int punchClock(ChessConnection mover) {
+        if (clock == null) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        int change = 0;
+        if (clock.getRunning() != null) {
+            change = (int) clock.punch(now, lagCompensation(mover));
+        } else if (sequence >= 2 && clock.getFlagged() == null) {
+            clock.start(board.getSideToMove(), now);
+        }
+        if (isGameOver()) {
+            clock.stop();
+            flagTimeout.cancel();
+        } else {
+            scheduleFlagCheck(now);
+        }
+        return change;
+    }
+
+    /**
+     * Flags the side to move if their time has run out, otherwise pushes the
+     * flag timeout back to when it next could. Must be called with the write lock held.
+     *
+     * @return Whether the side to move has just lost on time
+     */
+    private boolean checkFlag() {
+        if (clock == null || clock.getRunning() == null) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (clock.remaining(clock.getRunning(), now, lagCompensation(getPlayer(clock.getRunning()))) > 0) {
+            scheduleFlagCheck(now);
+            return false;
+        }
+        debug("Game " + gameCode + ": " + clock.getRunning() + " ran out of time");
+        clock.flag();
+        return true;
+    }
+
+    /**
+     * Must be called with the write lock held
+     */
+    private void scheduleFlagCheck(long now) {
+        Side side = clock.getRunning();
+        if (side != null) {
+            long remaining = clock.remaining(side, now, lagCompensation(getPlayer(side)));
+            flagTimeout.schedule(Math.max(remaining, 1), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Get how much of a move's time is forgiven as network delay: half the
+     * connection's smoothed round trip from UDP pings, or half its last TCP
+     * round trip for clients without clock sync, capped
+     */
+    private static long lagCompensation(ChessConnection connection) {
+        if (connection == null) {
+            return 0;
+        }
+        RttEstimator rtt = connection.getRtt();
+        long roundTrip = rtt.hasSample() ? TimeUnit.MICROSECONDS.toMillis(rtt.getRtt())
+                                         : Math.max(connection.getReturnTripTime(), 0);
+        return Math.min(roundTrip / 2, MAX_LAG_COMPENSATION_MS);
+    }
+
+    /**
+     * Sends a packet to the player facing the given side, if connected
+     */
+    public void sendToOpponent(Side side, Object packet) {
+        ChessConnection opponent = getPlayer(side.flip());
+        if (opponent != null) {
+            opponent.sendTCP(packet);
+        }
+    }
+
+    private ChessConnection getPlayer(Side side) {
+        return side == Side.WHITE ? whitePlayer : blackPlayer;
+    }
+
+    /**
+     * Appends an accepted move to the history. Must be called with the write lock held.
+     */
+    private void record(short move, int flags, int clockChange) {
+        if (sequence > history.length) {
+            history = Arrays.copyOf(history, history.length * 2);
+        }
+        history[sequence - 1] = (long) clockChange << 32 | (flags & 0xFFFF) << 16 | (move & 0xFFFF);
+    }
+
+    /**
+     * Creates the delta for a move, putting the clock change on the mover's side
+     */
+    private static GameStatusPacket delta(int moveSequence, short move, int clockChange, int flags) {
+        // Games start from the initial position, so white makes the odd-numbered moves
+        return (moveSequence & 1) == 1
+            ? GameStatusPacket.delta(moveSequence, move, clockChange, 0, flags)
+            : GameStatusPacket.delta(moveSequence, move, 0, clockChange, flags);
+    }
+
+    /**
+     * Sends the accepted moves of a batch to players and spectators: one delta per move,
+     * or a single snapshot of the final position for clients without delta sync.
+     * A loss on time is sent to everyone as a snapshot, since it comes with no move.
+     * The packets are built now, under the write lock, and sent from the outbox
+     * once the batch's last journal record is durable.
+     */
+    private void broadcastBatch(int firstSequence, int count, long journalPosition, final boolean timedOut) {
+        final GameStatusPacket[] deltas = new GameStatusPacket[count];
+        for (int i = 0; i < count; i++) {
+            deltas[i] = delta(firstSequence + i, accepted[i], acceptedClocks[i], acceptedFlags[i]);
+        }
+        final GameStatusPacket snapshot = timedOut || needsSnapshot() ? createSnapshot() : null;
+        final Side toMove = clock != null ? clock.getRunning() : null;
+        outbox.offer(new Outgoing(journalPosition, () -> {
+            for (GameStatusPacket delta : deltas) {
+                sendToPlayers(delta, true);
+                broadcaster.broadcast(delta, spectators, DELTA_SYNC);
+            }
+            if (timedOut) {
+                sendToPlayers(snapshot, true);
+                sendToPlayers(snapshot, false);
+                broadcaster.broadcast(snapshot, spectators);
+            } else if (snapshot != null) {
+                sendToPlayers(snapshot, false);
+                broadcaster.broadcast(snapshot, spectators, SNAPSHOT_ONLY);
+            }
+            if (toMove != null) {
+                // Refresh the round trip time that the next move will be compensated by,
+                // unless it is already kept fresh by pings
+                ChessConnection next = getPlayer(toMove);
+                if (next != null && !next.getRtt().hasSample()) {
+                    next.updateReturnTripTime();
+                }
+            }
+        }));
+        // Runs on the journal's commit thread, which must only hand the send off
+        journal.whenDurable(journalPosition, this::queueSend);
+    }
+
+    /**
+     * Queues a send of the outbox on the game's lane, unless one is already queued.
+     * Never waits for room; a full lane is tried again shortly.
+     */
+    private void queueSend() {
+        if (sendQueued.compareAndSet(false, true) && !dispatcher.tryDispatch(gameCode, this::sendDurable)) {
+            sendQueued.set(false);
+            sendRetry.schedule(FLAG_RETRY_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Sends every batch in the outbox whose journal records are durable, in order.
+     * Runs on the game's lane, so sends for one game never overlap.
+     */
+    private void sendDurable() {
+        sendQueued.set(false);
+        long durable = journal.getDurablePosition();
+        Outgoing batch;
+        while ((batch = outbox.peek()) != null && batch.journalPosition < durable) {
+            outbox.poll();
+            batch.send.run();
+        }
+    }
+
+    /**
+     * Whether anyone in the game is unable to apply deltas
+     */
+    private boolean needsSnapshot() {
+        if (!hasDeltaSync(whitePlayer) || !hasDeltaSync(blackPlayer)) {
+            return true;
+        }
+        for (ChessConnection spectator : spectators) {
+            if (SNAPSHOT_ONLY.test(spectator)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Sends a packet directly to the seated players that do (or do not) use delta sync.
+     * Players always get their updates, even when their connection is slow: the
+     * broadcaster holds them back until the connection has room rather than drop them.
+     */
+    private void sendToPlayers(GameStatusPacket packet, boolean deltaSync) {
+        ChessConnection white = whitePlayer;
+        ChessConnection black = blackPlayer;
+        if (white != null && hasDeltaSync(white) == deltaSync) {
+            broadcaster.send(white, packet);
+        }
+        if (black != null && hasDeltaSync(black) == deltaSync) {
+            broadcaster.send(black, packet);
+        }
+    }
+
+    private static boolean hasDeltaSync(ChessConnection connection) {
+        return connection == null || DELTA_SYNC.test(connection);
+    }
+
+    /**
+     * Sends a full snapshot of the game to a client that asked to resync
+     */
+    public void sendSnapshot(ChessConnection connection) {
+        GameStatusPacket snapshot;
+        writeLock.lock();
+        try {
+            snapshot = createSnapshot();
+        } finally {
+            writeLock.unlock();
+        }
+        broadcaster.send(connection, snapshot);
+    }
+
+    /**
+     * Must be called with the write lock held
+     */
+    private GameStatusPacket createSnapshot() {
+        int white = 0;
+        int black = 0;
+        if (clock != null) {
+            long now = System.nanoTime();
+            white = (int) Math.max(clock.remaining(Side.WHITE, now, 0), 0);
+            black = (int) Math.max(clock.remaining(Side.BLACK, now, 0), 0);
+        }
+        return GameStatusPacket.snapshot(sequence, board.getFen(), lastMove, white, black, statusFlags());
+    }
+
+    /**
+     * Get the GameStatusPacket flags describing the current position
+     */
+    private int statusFlags() {
+        if (clock != null && clock.getFlagged() != null) {
+            return GameStatusPacket.TIMEOUT;
+        }
+        if (board.isMated()) {
+            return GameStatusPacket.CHECKMATE;
+        }
+        if (board.isStaleMate()) {
+            return GameStatusPacket.STALEMATE;
+        }
+        if (board.isDraw()) {
+            return GameStatusPacket.DRAW;
+        }
+        return board.isKingAttacked() ? GameStatusPacket.CHECK : 0;
+    }
+
+    /**
+     * Check a move against the authoritative board
+     *
+     * @return 0 if the move is legal, otherwise a MoveRejectedPacket reason code
+     */
+    private int validate(ChessConnection sender, int moveSequence, Move move) {
+        Side side = getSide(sender);
+        if (side == null) {
+            return MoveRejectedPacket.NOT_IN_GAME;
+        }
+        if (move == null) {
+            return MoveRejectedPacket.MALFORMED;
+        }
+        if (frozen) {
+            return MoveRejectedPacket.MIGRATING;
+        }
+        if (moveSequence != sequence + 1) {
+            // The client has not seen the latest move yet
+            return MoveRejectedPacket.STALE_SEQUENCE;
+        }
+        if (isGameOver()) {
+            return MoveRejectedPacket.GAME_OVER;
+        }
+        if (side != board.getSideToMove()) {
+            return MoveRejectedPacket.NOT_YOUR_TURN;
+        }
+        if (!board.legalMoves().contains(move)) {
+            return MoveRejectedPacket.ILLEGAL_MOVE;
+        }
+        return 0;
+    }
+
+    private boolean isGameOver() {
+        return (clock != null && clock.getFlagged() != null)
+               || board.isMated() || board.isStaleMate() || board.isDraw();
+    }
+
+    /**
+     * Stops the flag timeout for good, once the game is removed
+     */
+    public void stopClock() {
+        if (flagTimeout != null) {
+            flagTimeout.cancel();
+        }
+    }
+
+    /**
+     * Whether nobody is seated in or watching this game
+     */
+    public boolean isEmpty() {
+        writeLock.lock();
+        try {
+            return !whiteSeated && !blackSeated && spectators.isEmpty();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Whether the game has ended by checkmate, stalemate, a draw or a loss on time
+     */
+    public boolean isFinished() {
+        writeLock.lock();
+        try {
+            return isGameOver();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Whether the game is being played: both seats are taken and it is not over
+     */
+    public boolean isInProgress() {
+        writeLock.lock();
+        try {
+            return whiteSeated && blackSeated && !isGameOver();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Get the session token of a seat, or 0 if the seat is free
+     */
+    public long getSeatToken(Side side) {
+        writeLock.lock();
+        try {
+            return side == Side.WHITE ? whiteToken : blackToken;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Applies a move read back from the journal during recovery.
+     * Moves the session already has are skipped, so replay can start
+     * anywhere before the session's own state.
+     *
+     * @return Whether the move was applied
+     */
+    public boolean restoreMove(int moveSequence, short encodedMove) {
+        writeLock.lock();
+        try {
+            if (moveSequence != sequence + 1) {
+                if (moveSequence > sequence + 1) {
+                    warn("Game " + gameCode + " is missing moves " + (sequence + 1) + " to " + (moveSequence - 1));
+                }
+                return false;
+            }
+            Move move = MoveCodec.decode(encodedMove);
+            if (move == null || !board.doMove(move, true)) {
+                warn("Game " + gameCode + " cannot replay move " + moveSequence);
+                return false;
+            }
+            sequence++;
+            lastMove = encodedMove;
+            record(lastMove, statusFlags(), 0);
+            resumeClock();
+            return true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Restarts the time of the side to move after a restore, without charging
+     * anyone for the time the server was down. Must be called with the write lock held.
+     */
+    private void resumeClock() {
+        if (clock == null) {
+            return;
+        }
+        if (sequence < 2 || isGameOver()) {
+            clock.stop();
+            flagTimeout.cancel();
+            return;
+        }
+        long now = System.nanoTime();
+        clock.start(board.getSideToMove(), now);
+        scheduleFlagCheck(now);
+    }
+
+    /**
+     * Writes everything needed to rebuild this session, as one snapshot entry
+     */
+    public void writeState(DataOutput out) throws IOException {
+        byte[] position = new byte[PositionCodec.SIZE];
+        writeLock.lock();
+        try {
+            out.writeInt(gameCode);
+            out.writeInt(clock != null ? clock.getTimeControl() : 0);
+            if (clock != null) {
+                long now = System.nanoTime();
+                out.writeLong(clock.remaining(Side.WHITE, now, 0));
+                out.writeLong(clock.remaining(Side.BLACK, now, 0));
+                out.writeByte(clock.getFlagged() == null ? 0 : clock.getFlagged() == Side.WHITE ? 1 : 2);
+            }
+            out.writeInt(sequence);
+            out.writeShort(lastMove);
+            out.writeByte((whiteSeated ? 1 : 0) | (blackSeated ? 2 : 0));
+            out.writeLong(whiteToken);
+            out.writeLong(blackToken);
+            PositionCodec.encode(board, position, 0);
+            out.write(position);
+            out.writeInt(sequence);
+            for (int i = 0; i < sequence; i++) {
+                out.writeLong(history[i]);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the session's state like {@link #writeState} and stops it accepting
+     * moves, so nothing is applied here that the copy on the next node lacks
+     */
+    public void freeze(DataOutput out) throws IOException {
+        writeLock.lock();
+        try {
+            writeState(out);
+            frozen = true;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Accepts moves again after a handoff that did not go through
+     */
+    public void thaw() {
+        writeLock.lock();
+        try {
+            frozen = false;
+            if (clock != null && clock.getRunning() != null) {
+                // Flag checks were ignored while frozen
+                scheduleFlagCheck(System.nanoTime());
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Writes the game's creation and every move to the journal, for a game that
+     * arrived from another node and so has no records here yet
+     *
+     * @return The position of the last record written
+     */
+    public long journalState() {
+        writeLock.lock();
+        try {
+            long position = journal.appendCreated(gameCode, clock != null ? clock.getTimeControl() : 0);
+            for (int i = 0; i < sequence; i++) {
+                position = journal.appendMove(gameCode, i + 1, (short) history[i]);
+            }
+            return position;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Sends a packet to both players and every spectator, without skipping slow ones
+     */
+    public void sendToAll(Object packet) {
+        ChessConnection white = whitePlayer;
+        ChessConnection black = blackPlayer;
+        if (white != null) {
+            broadcaster.send(white, packet);
+        }
+        if (black != null) {
+            broadcaster.send(black, packet);
+        }
+        for (ChessConnection spectator : spectators) {
+            broadcaster.send(spectator, packet);
+        }
+    }
+
+    /**
+     * Rebuilds a session from a snapshot entry written by {@link #writeState}.
+     * Seated players start out disconnected. Version 1 entries predate clocks.
+     *
+     * @param gameCode The game code, already read from the entry
+     * @param version The snapshot format version
+     */
+    public static GameSession readState(int gameCode, int version, DataInput in, Broadcaster broadcaster,
+                                        Journal journal, HashedWheelTimer timer, MessageDispatcher dispatcher)
+            throws IOException {
+        int timeControl = version >= 2 ? in.readInt() : 0;
+        GameSession session = new GameSession(gameCode, timeControl, broadcaster, journal, timer, dispatcher);
+        if (timeControl != 0) {
+            long white = in.readLong();
+            long black = in.readLong();
+            int flagged = in.readByte();
+            session.clock.restore(white, black, flagged == 0 ? null : flagged == 1 ? Side.WHITE : Side.BLACK);
+        }
+        session.sequence = in.readInt();
+        session.lastMove = in.readShort();
+        int seated = in.readByte();
+        session.whiteSeated = (seated & 1) != 0;
+        session.blackSeated = (seated & 2) != 0;
+        session.whiteToken = in.readLong();
+        session.blackToken = in.readLong();
+        byte[] position = new byte[PositionCodec.SIZE];
+        in.readFully(position);
+        session.board.loadFromFen(PositionCodec.decodeFen(position, 0));
+        int historyLength = in.readInt();
+        session.history = new long[Math.max(64, Integer.highestOneBit(Math.max(historyLength, 1)) << 1)];
+        for (int i = 0; i < historyLength; i++) {
+            session.history[i] = version >= 2 ? in.readLong() : in.readInt() & 0xFFFFFFFFL;
+        }
+        session.resumeClock();
+        return session;
+    }
+
+    /**
+     * Get the number of connections watching this game
+     */
+    public int getSpectatorCount() {
+        return spectators.size();
+    }
+
+    /**
+     * Get every move's history entry in order, as a long each: the clock change
+     * in the high 32 bits, the status flags in the next 16 and the move in the low 16
+     */
+    public byte[] getHistory() {
+        writeLock.lock();
+        try {
+            ByteBuffer entries = ByteBuffer.allocate(sequence * Long.BYTES);
+            for (int i = 0; i < sequence; i++) {
+                entries.putLong(history[i]);
+            }
+            return entries.array();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of moves applied to this game so far
+     */
+    public int getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get the nanoseconds taken to validate each move request, across all games
+     */
+    public static Histogram getValidationTimes() {
+        return VALIDATION_TIMES;
+    }
+
+    /**
+     * Get the 6-digit code identifying this game
+     */
+    public int getGameCode() {
+        return gameCode;
+    }
+
+    /**
+     * Get the time this session was created, in epoch milliseconds
+     */
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    @Override
+    public String toString() {
+        return "GameSession[" + gameCode + "]";
+    }
+
+    /**
+     * The sends for a batch, and the journal position that must be durable first
+     */
+    private static final class Outgoing {
+        final long journalPosition;
+        final Runnable send;
+
+        Outgoing(long journalPosition, Runnable send) {
+            this.journalPosition = journalPosition;
+            this.send = send;
+        }
+    }
+
+    /**
+     * A queued move together with the connection that sent it
+     */
+    private static final class Envelope {
+        final ChessConnection sender;
+        final MovePacket packet;
+
+        Envelope(ChessConnection sender, MovePacket packet) {
+            this.sender = sender;
+            this.packet = packet;
+        }
+    }
+}
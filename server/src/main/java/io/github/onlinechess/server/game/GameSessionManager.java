@@ -0,0 +1,548 @@
+package io.github.onlinechess.server.game;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntPredicate;
+
+import com.github.bhlangonijr.chesslib.Side;
+
+import io.github.onlinechess.server.network.Broadcaster;
+import io.github.onlinechess.server.network.ChessConnection;
+import io.github.onlinechess.server.network.MessageDispatcher;
+import io.github.onlinechess.server.network.OrderedDispatcher;
+import io.github.onlinechess.server.persistence.DisabledJournal;
+import io.github.onlinechess.server.persistence.Journal;
+import io.github.onlinechess.server.timer.HashedWheelTimer;
+import io.github.onlinechess.shared.packets.JoinResultPacket;
+import io.github.onlinechess.shared.packets.OpponentStatusPacket;
+import io.github.onlinechess.shared.packets.SessionTokenPacket;
+
+import static com.esotericsoftware.minlog.Log.debug;
+import static com.esotericsoftware.minlog.Log.info;
+import static com.esotericsoftware.minlog.Log.warn;
+
+/**
+ * Stores every live game on the server, keyed by its 6-digit game code.
+ * Games are spread over a fixed number of shards, each backed by its own
+ * concurrent map, so lookups and inserts for games on different shards
+ * never touch the same table. Each game is still only mutated by one
+ * writer at a time, through its own mailbox (see {@link GameSession}).
+ *
+ * Game codes come from a {@link GameCodePool}, so a new game never has to
+ * retry against codes that are taken, and a code is only reused after it
+ * has sat in quarantine for a while.
+ *
+ * Every seat is also handed a random session token. A player whose
+ * connection drops keeps the seat for a grace period and can reclaim it
+ * from a new connection by presenting the token.
+ *
+ * Game creation, moves and removal are written to a {@link Journal} so the
+ * games can be rebuilt after a restart.
+ *
+ * The clocks of every timed game share one {@link HashedWheelTimer}.
+ *
+ * In a cluster, new games only get codes that this node owns, and games can
+ * be adopted from or released to other nodes (see GameMigrator).
+ */
+public class GameSessionManager {
+    public static final int MIN_GAME_CODE = 100000;
+    public static final int MAX_GAME_CODE = 999999;
+    // How long a finished game's code is held back before it is handed out again
+    private static final long CODE_QUARANTINE_MS = TimeUnit.MINUTES.toMillis(10);
+    // How long a disconnected player's seat is held for them
+    private static final long RESUME_GRACE_MS = TimeUnit.MINUTES.toMillis(2);
+    // Flag-fall resolution of the default timer, and how many ticks its wheel has
+    private static final long TIMER_TICK_MS = 2;
+    private static final int TIMER_WHEEL_SIZE = 1024;
+    // Codes tried before giving up on one this node owns; plenty unless the node owns almost nothing
+    private static final int MAX_ALLOCATION_ATTEMPTS = 256;
+
+    private final ConcurrentHashMap<Integer, GameSession>[] shards;
+    private final Broadcaster broadcaster;
+    private final Journal journal;
+    private final HashedWheelTimer timer;
+    private final MessageDispatcher dispatcher;
+    private final GameCodePool codePool = new GameCodePool(MIN_GAME_CODE, MAX_GAME_CODE, CODE_QUARANTINE_MS);
+    // Seats by session token
+    private final ConcurrentHashMap<Long, Seat> seats = new ConcurrentHashMap<>();
+    private final SecureRandom tokenRandom = new SecureRandom();
+    // Codes this node may create games under; every code unless clustered
+    private volatile IntPredicate ownership = code -> true;
+    // Cleared when the server starts shutting down
+    private volatile boolean acceptingGames = true;
+
+    /**
+     * Creates a manager with one shard per available processor, no journal, and its own timer and flag-fall lane
+     *
+     * @param broadcaster Used by sessions to fan updates out to spectators
+     */
+    public GameSessionManager(Broadcaster broadcaster) {
+        this(Runtime.getRuntime().availableProcessors(), broadcaster, new DisabledJournal(),
+             new HashedWheelTimer(TIMER_TICK_MS, TimeUnit.MILLISECONDS, TIMER_WHEEL_SIZE),
+             new OrderedDispatcher(1, TIMER_WHEEL_SIZE, TIMER_TICK_MS, TimeUnit.MILLISECONDS));
+    }
+
+    /**
+     * Creates a manager with one shard per available processor
+     *
+     * @param broadcaster Used by sessions to fan updates out to spectators
+     * @param journal Records games and moves so they survive a restart
+     * @param timer Runs the flag-fall timeouts of timed games
+     * @param dispatcher Handles expired flag-fall timeouts on each game's lane
+     */
+    public GameSessionManager(Broadcaster broadcaster, Journal journal, HashedWheelTimer timer,
+                              MessageDispatcher dispatcher) {
+        this(Runtime.getRuntime().availableProcessors(), broadcaster, journal, timer, dispatcher);
+    }
+
+    /**
+     * Creates a manager with the given number of shards
+     *
+     * @param shardCount The number of shards to spread games over
+     * @param broadcaster Used by sessions to fan updates out to spectators
+     * @param journal Records games and moves so they survive a restart
+     * @param timer Runs the flag-fall timeouts of timed games
+     * @param dispatcher Handles expired flag-fall timeouts on each game's lane
+     */
+    public GameSessionManager(int shardCount, Broadcaster broadcaster, Journal journal, HashedWheelTimer timer,
+                              MessageDispatcher dispatcher) {
+        if (shardCount < 1) {
+            throw new IllegalArgumentException("Shard count must be at least 1.");
+        }
+        if (journal == null) {
+            throw new IllegalArgumentException("Journal cannot be null.");
+        }
+        if (timer == null) {
+            throw new IllegalArgumentException("Timer cannot be null.");
+        }
+        if (dispatcher == null) {
+            throw new IllegalArgumentException("Dispatcher cannot be null.");
+        }
+        this.broadcaster = broadcaster;
+        this.journal = journal;
+        this.timer = timer;
+        this.dispatcher = dispatcher;
+        // Java cannot create an array of a generic type, so it is created with wildcards and cast
+        @SuppressWarnings("unchecked")
+        ConcurrentHashMap<Integer, GameSession>[] shards =
+            (ConcurrentHashMap<Integer, GameSession>[]) new ConcurrentHashMap<?, ?>[shardCount];
+        for (int i = 0; i < shardCount; i++) {
+            shards[i] = new ConcurrentHashMap<>();
+        }
+        this.shards = shards;
+        info("GameSessionManager initialized with " + shardCount + " shards.");
+    }
+
+    /**
+     * Creates a new untimed game under a free code from the pool
+     *
+     * @return The newly created session, or null if every code is in use
+     */
+    public GameSession createGame() {
+        return createGame(0, 0);
+    }
+
+    /**
+     * Creates a new game under a free code from the pool
+     *
+     * @param baseSeconds Each player's starting time, or 0 for an untimed game
+     * @param incrementSeconds Time added to a player's clock after each of their moves
+     * @return The newly created session, or null if every code is in use
+     */
+    public GameSession createGame(int baseSeconds, int incrementSeconds) {
+        if (!acceptingGames) {
+            return null;
+        }
+        int gameCode = codePool.allocate(ownership, MAX_ALLOCATION_ATTEMPTS);
+        if (gameCode < 0) {
+            return null;
+        }
+        return register(gameCode, GameClock.pack(baseSeconds, incrementSeconds));
+    }
+
+    /**
+     * Creates a new game under the given code
+     *
+     * @param gameCode The 6-digit code for the new game
+     * @return The newly created session, or null if the code is already in use
+     */
+    public GameSession createGame(int gameCode) {
+        checkGameCode(gameCode);
+        if (!acceptingGames || !codePool.reserve(gameCode)) {
+            return null;
+        }
+        return register(gameCode, 0);
+    }
+
+    /**
+     * Must only be called for a code just claimed from the pool
+     */
+    private GameSession register(int gameCode, int timeControl) {
+        GameSession session = new GameSession(gameCode, timeControl, broadcaster, journal, timer, dispatcher);
+        journal.appendCreated(gameCode, timeControl);
+        shardFor(gameCode).put(gameCode, session);
+        debug("Created game " + gameCode + " on shard " + shardIndex(gameCode));
+        return session;
+    }
+
+    /**
+     * Get a live game by its code
+     *
+     * @return The session, or null if no game uses that code
+     */
+    public GameSession getGame(int gameCode) {
+        return shardFor(gameCode).get(gameCode);
+    }
+
+    /**
+     * Removes a game from the server
+     *
+     * @return The removed session, or null if no game used that code
+     */
+    public GameSession removeGame(int gameCode) {
+        GameSession session = shardFor(gameCode).remove(gameCode);
+        if (session != null) {
+            session.stopClock();
+            journal.appendRemoved(gameCode);
+            codePool.release(gameCode);
+            debug("Removed game " + gameCode);
+        }
+        return session;
+    }
+
+    /**
+     * Seats a player and sends them the session token for their seat
+     *
+     * @return Whether the seat was free
+     */
+    public boolean seatPlayer(GameSession session, ChessConnection connection, Side side) {
+        long token;
+        do {
+            token = tokenRandom.nextLong();
+        } while (token == 0 || seats.containsKey(token));
+        if (!session.seatPlayer(connection, side, token)) {
+            return false;
+        }
+        seats.put(token, new Seat(session, side));
+        connection.setSessionToken(token);
+        connection.sendTCP(new SessionTokenPacket(session.getGameCode(), token));
+        return true;
+    }
+
+    /**
+     * Check, without changing anything, whether a connection could play a new
+     * game: it holds no seat in a game still being played
+     */
+    public boolean isFreeForNewGame(ChessConnection connection) {
+        GameSession session = getGame(connection.getGameCode());
+        return session == null || session.getSide(connection) == null || session.isFinished();
+    }
+
+    /**
+     * Frees a connection to play a new game, taking it out of any game it is
+     * only watching, or whose game is over. There is no resigning, so a seat in
+     * a finished game would otherwise be held until the player disconnected.
+     *
+     * @return Whether the connection is free, false if it holds a seat in a game still being played
+     */
+    public boolean leaveForNewGame(ChessConnection connection) {
+        GameSession session = getGame(connection.getGameCode());
+        if (session == null) {
+            return true;
+        }
+        if (session.getSide(connection) != null) {
+            if (!session.isFinished()) {
+                return false;
+            }
+            // The token cannot bring the player back to a game that is over
+            seats.remove(connection.getSessionToken());
+            connection.setSessionToken(0);
+        }
+        session.leave(connection);
+        removeIfEmpty(session);
+        return true;
+    }
+
+    /**
+     * Handles a lost connection. A seated player keeps their seat for the grace
+     * period; anyone else simply leaves, and an empty game is removed.
+     */
+    public void disconnect(ChessConnection connection) {
+        GameSession session = getGame(connection.getGameCode());
+        Seat seat = seats.get(connection.getSessionToken());
+        if (seat != null && seat.session.disconnect(connection)) {
+            seat.expiresAt = System.currentTimeMillis() + RESUME_GRACE_MS;
+            seat.session.sendToOpponent(seat.side, new OpponentStatusPacket(seat.session.getGameCode(),
+                OpponentStatusPacket.DISCONNECTED, (int) TimeUnit.MILLISECONDS.toSeconds(RESUME_GRACE_MS)));
+            debug("[" + connection.getID() + "] Holding seat in game " + seat.session.getGameCode());
+            return;
+        }
+        if (session != null) {
+            session.leave(connection);
+            removeIfEmpty(session);
+        }
+    }
+
+    /**
+     * Puts a reconnected player back in the seat their token belongs to
+     *
+     * @param lastSequence The sequence number of the last move the client applied
+     * @return The game, or null if the token is unknown or its seat has expired
+     */
+    public GameSession resume(ChessConnection connection, long token, int lastSequence) {
+        Seat seat = seats.get(token);
+        if (seat == null || seat.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        seat.expiresAt = 0;
+        connection.setSessionToken(token);
+        // Confirm the seat before the missed moves are replayed
+        connection.sendTCP(new JoinResultPacket(JoinResultPacket.OK, seat.session.getGameCode(), seat.side == Side.WHITE));
+        ChessConnection previous = seat.session.rejoin(connection, seat.side, lastSequence);
+        if (previous != null) {
+            // The old connection is dead but not yet noticed; stop it reclaiming the seat
+            previous.setSessionToken(0);
+            previous.close();
+        }
+        seat.session.sendToOpponent(seat.side,
+            new OpponentStatusPacket(seat.session.getGameCode(), OpponentStatusPacket.RECONNECTED, 0));
+        return seat.session;
+    }
+
+    /**
+     * Gives up the seats of players who did not come back in time,
+     * removing games that are left empty
+     */
+    public void expireSeats() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<Long, Seat>> iterator = seats.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Seat seat = iterator.next().getValue();
+            if (seat.isExpired(now)) {
+                iterator.remove();
+                seat.session.releaseSeat(seat.side);
+                seat.session.sendToOpponent(seat.side,
+                    new OpponentStatusPacket(seat.session.getGameCode(), OpponentStatusPacket.SEAT_EXPIRED, 0));
+                debug("Released " + seat.side + " seat in game " + seat.session.getGameCode());
+                removeIfEmpty(seat.session);
+            }
+        }
+    }
+
+    /**
+     * Creates an empty game under a code read back from the journal.
+     * Nothing is journaled, since the record already exists.
+     *
+     * @param timeControl The packed time control from the record
+     * @return The new session, the existing one if the code is already live,
+     *         or null if the code cannot be claimed
+     */
+    public GameSession restoreGame(int gameCode, int timeControl) {
+        GameSession existing = getGame(gameCode);
+        if (existing != null) {
+            return existing;
+        }
+        if (!codePool.reserve(gameCode)) {
+            warn("Journal creates game " + gameCode + ", but the code is not free; skipping it.");
+            return null;
+        }
+        GameSession session = new GameSession(gameCode, timeControl, broadcaster, journal, timer, dispatcher);
+        shardFor(gameCode).put(gameCode, session);
+        return session;
+    }
+
+    /**
+     * Removes a game whose removal is read back from the journal.
+     * Nothing is journaled, since the record already exists, and the code is
+     * free again at once rather than quarantined, since a later record may
+     * create a new game under it.
+     */
+    public void restoreRemoval(int gameCode) {
+        GameSession session = shardFor(gameCode).remove(gameCode);
+        if (session == null) {
+            return;
+        }
+        session.stopClock();
+        for (Side side : new Side[] {Side.WHITE, Side.BLACK}) {
+            long token = session.getSeatToken(side);
+            if (token != 0) {
+                seats.remove(token);
+            }
+        }
+        codePool.unclaim(gameCode);
+    }
+
+    /**
+     * Rebuilds a game from a snapshot entry. Its players get the resume grace
+     * period to reconnect, exactly as if they had just dropped.
+     *
+     * @param gameCode The game code, already read from the entry
+     * @param version The snapshot format version
+     * @return The restored session, or null if the entry was stale
+     */
+    public GameSession restoreGame(int gameCode, int version, DataInput in) throws IOException {
+        GameSession session = GameSession.readState(gameCode, version, in, broadcaster, journal, timer, dispatcher);
+        GameSession existing = getGame(gameCode);
+        if (existing != null) {
+            // A leftover snapshot file can hold an older copy of the same game
+            if (existing.getSequence() >= session.getSequence()) {
+                session.stopClock();
+                return null;
+            }
+            existing.stopClock();
+            shardFor(gameCode).put(gameCode, session);
+        } else {
+            // A handed-off game may arrive while its code is still quarantined here; it takes the code regardless
+            codePool.reserve(gameCode);
+            shardFor(gameCode).put(gameCode, session);
+        }
+        long deadline = System.currentTimeMillis() + RESUME_GRACE_MS;
+        for (Side side : new Side[] {Side.WHITE, Side.BLACK}) {
+            long token = session.getSeatToken(side);
+            if (token != 0) {
+                Seat seat = new Seat(session, side);
+                seat.expiresAt = deadline;
+                seats.put(token, seat);
+            }
+        }
+        return session;
+    }
+
+    /**
+     * Takes over a game handed off by another node, from its snapshot entry.
+     * The game is journaled here before whenDurable runs, so it survives a
+     * restart of this node even before the next snapshot.
+     *
+     * @param gameCode The game code, already read from the entry
+     * @param version The snapshot format version
+     * @param whenDurable Run once the game is safe on this node
+     * @return Whether the game was adopted; false if this node already had the same or a newer copy,
+     *         in which case whenDurable runs at once
+     */
+    public boolean adoptGame(int gameCode, int version, DataInput in, Runnable whenDurable) throws IOException {
+        GameSession session = restoreGame(gameCode, version, in);
+        if (session == null) {
+            whenDurable.run();
+            return false;
+        }
+        journal.whenDurable(session.journalState(), whenDurable);
+        info("Adopted game " + gameCode + " at move " + session.getSequence());
+        return true;
+    }
+
+    /**
+     * Drops a game that now lives on another node, along with its seats.
+     * Its players keep their session tokens for the other node.
+     *
+     * @return The released session, or null if no game used that code
+     */
+    public GameSession releaseGame(int gameCode) {
+        GameSession session = getGame(gameCode);
+        if (session == null) {
+            return null;
+        }
+        seats.remove(session.getSeatToken(Side.WHITE));
+        seats.remove(session.getSeatToken(Side.BLACK));
+        return removeGame(gameCode);
+    }
+
+    /**
+     * Limits new games to codes the given test accepts, such as those this node owns
+     */
+    public void setOwnership(IntPredicate ownership) {
+        this.ownership = ownership;
+    }
+
+    /**
+     * Refuses to create any more games, once the server starts shutting down.
+     * Existing games carry on, and can still be joined.
+     */
+    public void stopAcceptingGames() {
+        acceptingGames = false;
+    }
+
+    /**
+     * Whether new games can be created here
+     */
+    public boolean isAcceptingGames() {
+        return acceptingGames;
+    }
+
+    /**
+     * Get the live games on one shard
+     */
+    public Collection<GameSession> getShardGames(int shard) {
+        return shards[shard].values();
+    }
+
+    private void removeIfEmpty(GameSession session) {
+        if (session.isEmpty()) {
+            // Nobody is left, so free the game and send its code to quarantine
+            removeGame(session.getGameCode());
+        }
+    }
+
+    /**
+     * Get the number of live games across all shards
+     */
+    public int getGameCount() {
+        int count = 0;
+        for (ConcurrentHashMap<Integer, GameSession> shard : shards) {
+            count += shard.size();
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of shards games are spread over
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Get the index of the shard that holds the given game code
+     */
+    public int shardIndex(int gameCode) {
+        // Game codes are sequential-ish, so mix the bits before picking a shard
+        int h = gameCode * 0x9E3779B9;
+        h ^= h >>> 16;
+        return (h & 0x7FFFFFFF) % shards.length;
+    }
+
+    private ConcurrentHashMap<Integer, GameSession> shardFor(int gameCode) {
+        return shards[shardIndex(gameCode)];
+    }
+
+    private static void checkGameCode(int gameCode) {
+        if (gameCode < MIN_GAME_CODE || gameCode > MAX_GAME_CODE) {
+            throw new IllegalArgumentException("Game code must be 6 digits: " + gameCode);
+        }
+    }
+
+    /**
+     * A seat handed out with a session token
+     */
+    private static final class Seat {
+        final GameSession session;
+        final Side side;
+        // When the seat is given up, or 0 while its player is connected
+        volatile long expiresAt;
+
+        Seat(GameSession session, Side side) {
+            this.session = session;
+            this.side = side;
+        }
+
+        boolean isExpired(long now) {
+            long deadline = expiresAt;
+            return deadline != 0 && deadline <= now;
+        }
+    }
+}
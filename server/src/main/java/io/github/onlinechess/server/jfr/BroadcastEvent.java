@@ -0,0 +1,39 @@
+package io.github.onlinechess.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for sending one packet to a set of subscribers
+ */
+@Name("io.github.onlinechess.Broadcast")
+@Label("Broadcast")
+@Category({"OnlineChess", "Network"})
+@Description("Sending one packet to many subscribers")
+@StackTrace(false)
+@Threshold("500 us")
+public class BroadcastEvent extends Event {
+    @Label("Game Code")
+    @Description("The game of the first subscriber; every subscriber of a game's update shares it")
+    public int gameCode;
+
+    @Label("Packet Type")
+    public String packetType;
+
+    @Label("Frame Size")
+    @DataAmount
+    public int bytes;
+
+    @Label("Sent")
+    public int sent;
+
+    @Label("Skipped")
+    @Description("Subscribers skipped for being slow")
+    public int skipped;
+}
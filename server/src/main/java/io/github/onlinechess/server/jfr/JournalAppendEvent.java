@@ -0,0 +1,35 @@
+package io.github.onlinechess.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for writing one journal record. Appends are normally a few stores;
+ * a long one waited for the commit thread to free ring slots, or mapped a new segment.
+ */
+@Name("io.github.onlinechess.JournalAppend")
+@Label("Journal Append")
+@Category({"OnlineChess", "Persistence"})
+@Description("Writing a record to the journal")
+@StackTrace(false)
+@Threshold("100 us")
+public class JournalAppendEvent extends Event {
+    @Label("Game Code")
+    public int gameCode;
+
+    @Label("Record Type")
+    public int recordType;
+
+    @Label("Position")
+    public long position;
+
+    @Label("Size")
+    @DataAmount
+    public int bytes;
+}
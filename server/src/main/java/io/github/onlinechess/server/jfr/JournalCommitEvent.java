@@ -0,0 +1,26 @@
+package io.github.onlinechess.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * JFR event for one group commit, forcing written journal records to disk
+ */
+@Name("io.github.onlinechess.JournalCommit")
+@Label("Journal Commit")
+@Category({"OnlineChess", "Persistence"})
+@Description("Forcing a group of journal records to disk")
+@StackTrace(false)
+public class JournalCommitEvent extends Event {
+    @Label("Records")
+    public int records;
+
+    @Label("Size")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,31 @@
+package io.github.onlinechess.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for checking a move request against the game, including chesslib's legal move generation
+ */
+@Name("io.github.onlinechess.MoveValidation")
+@Label("Move Validation")
+@Category({"OnlineChess", "Game"})
+@Description("Validating a move request with chesslib")
+@StackTrace(false)
+@Threshold("100 us")
+public class MoveValidationEvent extends Event {
+    @Label("Game Code")
+    public int gameCode;
+
+    @Label("Sequence")
+    @Description("The sequence number the move would get")
+    public int sequence;
+
+    @Label("Rejection Reason")
+    @Description("A MoveRejectedPacket reason, or 0 if the move was legal")
+    public int reason;
+}
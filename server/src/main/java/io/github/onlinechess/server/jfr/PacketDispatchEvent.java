@@ -0,0 +1,34 @@
+package io.github.onlinechess.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for handing a received message from KryoNet's update thread to a
+ * dispatcher lane. A long one means the lane was full and reads were held back.
+ */
+@Name("io.github.onlinechess.PacketDispatch")
+@Label("Packet Dispatch")
+@Category({"OnlineChess", "Network"})
+@Description("Handing a received message to a dispatcher lane")
+@StackTrace(false)
+@Threshold("1 ms")
+public class PacketDispatchEvent extends Event {
+    @Label("Connection")
+    public int connectionId;
+
+    @Label("Game Code")
+    public int gameCode;
+
+    @Label("Packet Type")
+    public String packetType;
+
+    @Label("Queue Depth")
+    @Description("Messages waiting across all lanes after the hand-off")
+    public int queueDepth;
+}
@@ -0,0 +1,29 @@
+package io.github.onlinechess.server.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for routing and handling one message on a dispatcher lane
+ */
+@Name("io.github.onlinechess.PacketHandle")
+@Label("Packet Handle")
+@Category({"OnlineChess", "Network"})
+@Description("Routing and handling a received message on a dispatcher lane")
+@StackTrace(false)
+@Threshold("1 ms")
+public class PacketHandleEvent extends Event {
+    @Label("Connection")
+    public int connectionId;
+
+    @Label("Game Code")
+    public int gameCode;
+
+    @Label("Packet Type")
+    public String packetType;
+}
@@ -0,0 +1,408 @@
+package io.github.onlinechess.server.matchmaking;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.github.bhlangonijr.chesslib.Side;
+
+import io.github.onlinechess.server.game.GameSession;
+import io.github.onlinechess.server.game.GameSessionManager;
+import io.github.onlinechess.server.network.ChessConnection;
+import io.github.onlinechess.shared.packets.MatchFoundPacket;
+
+import static com.esotericsoftware.minlog.Log.debug;
+import static com.esotericsoftware.minlog.Log.error;
+import static com.esotericsoftware.minlog.Log.info;
+import static com.esotericsoftware.minlog.Log.warn;
+
+/**
+ * Pairs waiting players of similar rating who want the same time control.
+ *
+ * Each time control has its own queue: a concurrent skip list ordered by rating,
+ * so the closest-rated opponents of a new player are its neighbours in the list
+ * and are found in O(log n) without scanning the queue. The rating difference a
+ * player accepts starts small and widens the longer they wait. Two players can
+ * only become a match when one of their windows grows, so a periodic sweep
+ * retries just the players whose windows are still widening, in arrival order,
+ * and never walks the players who have waited long enough to reach the limit.
+ *
+ * There is no global lock: tickets are claimed with a compare-and-set, so two
+ * threads can never hand the same player to two games. A player who leaves
+ * while their ticket is claimed is dropped by whoever holds the claim. Before
+ * seating a pair, both connections are claimed too (ChessConnection.claimSeating),
+ * so a player's own host or join request cannot seat them at the same moment.
+ */
+public class MatchmakingService {
+    // Rating difference accepted as soon as a player joins
+    private static final int BASE_WINDOW = 50;
+    // How fast the accepted difference grows while waiting
+    private static final int WIDEN_PER_SECOND = 25;
+    private static final int MAX_WINDOW = 400;
+    // Neighbours examined on each side of a new player
+    private static final int MAX_PROBES = 4;
+    private static final long SWEEP_INTERVAL_MS = 1000;
+    // After this long a window has stopped widening, so the sweep has nothing new to try
+    private static final long WIDENING_MS = (MAX_WINDOW - BASE_WINDOW) * 1000L / WIDEN_PER_SECOND + SWEEP_INTERVAL_MS;
+
+    private final GameSessionManager gameManager;
+    // Waiting tickets per time control, ordered by rating then arrival
+    private final ConcurrentHashMap<Long, ConcurrentSkipListMap<Long, Ticket>> queues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Integer, Ticket> ticketsByConnection = new ConcurrentHashMap<>();
+    // Tickets whose windows may still be widening, or that must be retried, oldest first
+    private final Queue<Ticket> widening = new ConcurrentLinkedQueue<>();
+    private final AtomicLong nextTicketId = new AtomicLong();
+    private final LongAdder matchesMade = new LongAdder();
+    private final ScheduledExecutorService sweeper;
+
+    public MatchmakingService(GameSessionManager gameManager) {
+        this.gameManager = gameManager;
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "matchmaking-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Starts the periodic sweep that pairs players whose windows have widened
+     */
+    public void start() {
+        sweeper.scheduleWithFixedDelay(this::sweep, SWEEP_INTERVAL_MS, SWEEP_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        info("MatchmakingService started.");
+    }
+
+    public void stop() {
+        sweeper.shutdownNow();
+    }
+
+    /**
+     * Adds a player to the queue for a time control, replacing any earlier request.
+     * If a suitable opponent is already waiting, the game starts immediately.
+     */
+    public void join(ChessConnection connection, int elo, int baseSeconds, int incrementSeconds) {
+        leave(connection);
+
+        long timeControl = ((long) baseSeconds << 32) | (incrementSeconds & 0xFFFFFFFFL);
+        ConcurrentSkipListMap<Long, Ticket> queue =
+            queues.computeIfAbsent(timeControl, key -> new ConcurrentSkipListMap<>());
+        long now = System.currentTimeMillis();
+        Ticket ticket = new Ticket(connection, elo, baseSeconds, incrementSeconds,
+                                   queueKey(elo, nextTicketId.incrementAndGet()), now);
+        ticketsByConnection.put(connection.getID(), ticket);
+        queue.put(ticket.key, ticket);
+        widening.offer(ticket);
+        debug("[" + connection.getID() + "] Joined matchmaking at " + elo + " (" + baseSeconds + "+" + incrementSeconds + ")");
+
+        tryPair(queue, ticket, now);
+    }
+
+    /**
+     * Removes a player from the queue, if waiting
+     */
+    public void leave(ChessConnection connection) {
+        Ticket ticket = ticketsByConnection.remove(connection.getID());
+        if (ticket == null) {
+            return;
+        }
+        // If a pairing holds the ticket, it sees this and drops the ticket instead of requeueing it
+        ticket.cancel();
+        if (ticket.claim()) {
+            ConcurrentSkipListMap<Long, Ticket> queue = queues.get(ticket.timeControl());
+            if (queue != null) {
+                queue.remove(ticket.key);
+            }
+        }
+    }
+
+    /**
+     * Looks for the closest acceptable opponent among the ticket's rating neighbours
+     */
+    private void tryPair(ConcurrentSkipListMap<Long, Ticket> queue, Ticket ticket, long now) {
+        int window = ticket.window(now);
+        Ticket above = null;
+        Map.Entry<Long, Ticket> entry = queue.higherEntry(ticket.key);
+        for (int i = 0; entry != null && i < MAX_PROBES; i++) {
+            Ticket candidate = entry.getValue();
+            if (candidate.elo - ticket.elo > window) {
+                break;
+            }
+            if (!candidate.isClaimed() && acceptable(ticket, candidate, now)) {
+                above = candidate;
+                break;
+            }
+            entry = queue.higherEntry(entry.getKey());
+        }
+
+        Ticket below = null;
+        entry = queue.lowerEntry(ticket.key);
+        for (int i = 0; entry != null && i < MAX_PROBES; i++) {
+            Ticket candidate = entry.getValue();
+            if (ticket.elo - candidate.elo > window) {
+                break;
+            }
+            if (!candidate.isClaimed() && acceptable(ticket, candidate, now)) {
+                below = candidate;
+                break;
+            }
+            entry = queue.lowerEntry(entry.getKey());
+        }
+
+        Ticket best = above;
+        if (below != null && (best == null || ticket.elo - below.elo < best.elo - ticket.elo)) {
+            best = below;
+        }
+        if (best != null && claimPair(queue, ticket, best)) {
+            startGame(queue, ticket, best);
+        }
+    }
+
+    /**
+     * Retries the players whose windows have widened since they last looked for an opponent
+     */
+    private void sweep() {
+        try {
+            long now = System.currentTimeMillis();
+            Iterator<Ticket> iterator = widening.iterator();
+            while (iterator.hasNext()) {
+                Ticket ticket = iterator.next();
+                if (ticket.isClaimed() || now > ticket.sweepUntil) {
+                    // Matched, gone, or as wide as it will get; pairs with it are found from the other side
+                    iterator.remove();
+                    continue;
+                }
+                ConcurrentSkipListMap<Long, Ticket> queue = queues.get(ticket.timeControl());
+                if (queue != null) {
+                    tryPair(queue, ticket, now);
+                }
+            }
+        } catch (Exception e) {
+            // Never let an exception cancel the scheduled sweep
+            error("Matchmaking sweep failed", e);
+        }
+    }
+
+    /**
+     * Claims both tickets, or neither
+     */
+    private boolean claimPair(ConcurrentSkipListMap<Long, Ticket> queue, Ticket a, Ticket b) {
+        if (!a.claim()) {
+            return false;
+        }
+        if (!b.claim()) {
+            requeue(queue, a, true);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Gives up the claim on a ticket, putting it back in play unless its player is gone
+     *
+     * @param waiting Whether the player is still looking for a game
+     */
+    private void requeue(ConcurrentSkipListMap<Long, Ticket> queue, Ticket ticket, boolean waiting) {
+        if (waiting) {
+            ticket.release();
+            // A leave() that found the ticket claimed could not remove it, so do it here
+            if (!ticket.isCancelled() || !ticket.claim()) {
+                return;
+            }
+        }
+        // The ticket stays claimed, so nothing can match it on its way out
+        queue.remove(ticket.key);
+        ticketsByConnection.remove(ticket.connection.getID(), ticket);
+    }
+
+    /**
+     * Has the next sweep try a ticket again, even if its window has stopped widening
+     */
+    private void retryLater(Ticket ticket, long now) {
+        ticket.sweepUntil = Math.max(ticket.sweepUntil, now + SWEEP_INTERVAL_MS);
+        widening.offer(ticket);
+    }
+
+    /**
+     * Whether a matched player can still be seated: they have not left or
+     * disconnected, and are not playing a game found some other way.
+     * Only looks, so it changes nothing for a player who is not seated after all.
+     */
+    private boolean isAvailable(Ticket ticket) {
+        return !ticket.isCancelled() && ticket.connection.isConnected()
+               && gameManager.isFreeForNewGame(ticket.connection);
+    }
+
+    /**
+     * Two players match when their rating difference is inside both of their windows
+     */
+    private static boolean acceptable(Ticket a, Ticket b, long now) {
+        int difference = Math.abs(a.elo - b.elo);
+        return difference <= a.window(now) && difference <= b.window(now);
+    }
+
+    private void startGame(ConcurrentSkipListMap<Long, Ticket> queue, Ticket a, Ticket b) {
+        if (!a.connection.claimSeating()) {
+            busy(queue, a, b);
+            return;
+        }
+        if (!b.connection.claimSeating()) {
+            a.connection.releaseSeating();
+            busy(queue, a, b);
+            return;
+        }
+        try {
+            seatPair(queue, a, b);
+        } finally {
+            a.connection.releaseSeating();
+            b.connection.releaseSeating();
+        }
+    }
+
+    /**
+     * Puts a matched pair back when one of them is busy with a request of their own.
+     * The next sweep sees whether that request seated them.
+     */
+    private void busy(ConcurrentSkipListMap<Long, Ticket> queue, Ticket a, Ticket b) {
+        requeue(queue, a, true);
+        requeue(queue, b, true);
+        retryLater(a, System.currentTimeMillis());
+    }
+
+    /**
+     * Seats a matched pair in a new game. Both connections are claimed for seating.
+     */
+    private void seatPair(ConcurrentSkipListMap<Long, Ticket> queue, Ticket a, Ticket b) {
+        boolean aAvailable = isAvailable(a);
+        boolean bAvailable = isAvailable(b);
+        if (!aAvailable || !bAvailable) {
+            requeue(queue, a, aAvailable);
+            requeue(queue, b, bAvailable);
+            return;
+        }
+        GameSession session = gameManager.createGame(a.baseSeconds, a.incrementSeconds);
+        if (session == null) {
+            // Out of game codes; leave both players waiting for the next try
+            warn("No game codes available for a matched pair.");
+            requeue(queue, a, true);
+            requeue(queue, b, true);
+            retryLater(a, System.currentTimeMillis());
+            return;
+        }
+        queue.remove(a.key);
+        queue.remove(b.key);
+        ticketsByConnection.remove(a.connection.getID(), a);
+        ticketsByConnection.remove(b.connection.getID(), b);
+        // Out of any game they watch or have finished; nothing else can seat them while the claims are held
+        gameManager.leaveForNewGame(a.connection);
+        gameManager.leaveForNewGame(b.connection);
+
+        boolean aIsWhite = ThreadLocalRandom.current().nextBoolean();
+        Ticket white = aIsWhite ? a : b;
+        Ticket black = aIsWhite ? b : a;
+        seat(session, white.connection, Side.WHITE);
+        seat(session, black.connection, Side.BLACK);
+        matchesMade.increment();
+
+        white.connection.sendTCP(new MatchFoundPacket(session.getGameCode(), true, black.elo));
+        black.connection.sendTCP(new MatchFoundPacket(session.getGameCode(), false, white.elo));
+        debug("Matched [" + white.connection.getID() + "] " + white.elo + " vs [" + black.connection.getID() + "] "
+              + black.elo + " in game " + session.getGameCode());
+    }
+
+    private void seat(GameSession session, ChessConnection connection, Side side) {
+        gameManager.seatPlayer(session, connection, side);
+        if (!connection.isConnected()) {
+            // Lost after the check above, so its disconnect found no seat to hold; start the grace period now
+            gameManager.disconnect(connection);
+        }
+    }
+
+    private static long queueKey(int elo, long ticketId) {
+        // Rating in the high bits orders the queue; the ticket ID keeps keys unique
+        long rating = Math.max(0, Math.min(elo, 0x3FFFFF));
+        return (rating << 40) | (ticketId & 0xFFFFFFFFFFL);
+    }
+
+    /**
+     * Get the number of players waiting across all time controls
+     */
+    public int getWaitingCount() {
+        return ticketsByConnection.size();
+    }
+
+    /**
+     * Get the number of games started by matchmaking
+     */
+    public long getMatchesMade() {
+        return matchesMade.sum();
+    }
+
+    /**
+     * A waiting player
+     */
+    private static final class Ticket {
+        final ChessConnection connection;
+        final int elo;
+        final int baseSeconds;
+        final int incrementSeconds;
+        final long key;
+        final long enqueuedAt;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        // Set when the player leaves the queue
+        private volatile boolean cancelled;
+        // The sweep retries the ticket until then
+        volatile long sweepUntil;
+
+        Ticket(ChessConnection connection, int elo, int baseSeconds, int incrementSeconds, long key, long enqueuedAt) {
+            this.connection = connection;
+            this.elo = elo;
+            this.baseSeconds = baseSeconds;
+            this.incrementSeconds = incrementSeconds;
+            this.key = key;
+            this.enqueuedAt = enqueuedAt;
+            this.sweepUntil = enqueuedAt + WIDENING_MS;
+        }
+
+        long timeControl() {
+            return ((long) baseSeconds << 32) | (incrementSeconds & 0xFFFFFFFFL);
+        }
+
+        /**
+         * Get the rating difference this player accepts after waiting until now
+         */
+        int window(long now) {
+            long waitedSeconds = (now - enqueuedAt) / 1000;
+            return (int) Math.min(MAX_WINDOW, BASE_WINDOW + WIDEN_PER_SECOND * waitedSeconds);
+        }
+
+        boolean isClaimed() {
+            return claimed.get();
+        }
+
+        boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+
+        void release() {
+            claimed.set(false);
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        void cancel() {
+            cancelled = true;
+        }
+    }
+}
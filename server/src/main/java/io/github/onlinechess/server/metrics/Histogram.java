@@ -0,0 +1,147 @@
+package io.github.onlinechess.server.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of non-negative values such as latencies, in whatever
+ * unit the caller records.
+ *
+ * Values below 64 get a bucket each; above that every power of two is split
+ * into 32 buckets, so any recorded value is off by at most about 3%, as in an
+ * HDR histogram with two significant digits. Recording takes no lock: it is
+ * one atomic increment on the shared bucket array plus a striped add to the
+ * sum. Threads recording similar values do contend for the same bucket, which
+ * costs cache-line traffic on each record but never a wait.
+ */
+public class Histogram {
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int LINEAR = SUB_BUCKETS << 1;
+    // Enough for values up to 2^40, about 18 minutes in nanoseconds
+    private static final int BUCKETS = LINEAR + (40 - SUB_BITS - 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder sum = new LongAdder();
+
+    public void record(long value) {
+        value = Math.max(0, value);
+        counts.incrementAndGet(indexOf(value));
+        sum.add(value);
+    }
+
+    /**
+     * Copies the current counts, so percentiles of the copy are consistent with each other
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            copy[i] = counts.get(i);
+        }
+        return new Snapshot(copy, sum.sum());
+    }
+
+    private static int indexOf(long value) {
+        if (value < LINEAR) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int sub = (int) (value >>> (exponent - SUB_BITS)) & (SUB_BUCKETS - 1);
+        return Math.min(LINEAR + (exponent - SUB_BITS - 1) * SUB_BUCKETS + sub, BUCKETS - 1);
+    }
+
+    /**
+     * Get the largest value that falls in a bucket
+     */
+    private static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exponent = (index - LINEAR) / SUB_BUCKETS + SUB_BITS + 1;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        long base = (long) (SUB_BUCKETS + sub) << (exponent - SUB_BITS);
+        return base + (1L << (exponent - SUB_BITS)) - 1;
+    }
+
+    /**
+     * A fixed copy of the counts
+     */
+    public static final class Snapshot {
+        private final long[] counts;
+        private final long total;
+        private final long sum;
+
+        private Snapshot(long[] counts, long sum) {
+            this.counts = counts;
+            this.sum = sum;
+            long total = 0;
+            for (long count : counts) {
+                total += count;
+            }
+            this.total = total;
+        }
+
+        /**
+         * Get the values recorded since an earlier snapshot of the same histogram
+         */
+        public Snapshot minus(Snapshot earlier) {
+            long[] difference = new long[counts.length];
+            for (int i = 0; i < counts.length; i++) {
+                difference[i] = counts[i] - earlier.counts[i];
+            }
+            return new Snapshot(difference, sum - earlier.sum);
+        }
+
+        public long getCount() {
+            return total;
+        }
+
+        /**
+         * Get the sum of every recorded value
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * Get the number of recorded values no greater than the given one
+         */
+        public long countAtOrBelow(long value) {
+            long seen = 0;
+            for (int i = 0; i < counts.length && upperBound(i) <= value; i++) {
+                seen += counts[i];
+            }
+            return seen;
+        }
+
+        /**
+         * Get the value below which the given fraction of recorded values fall
+         *
+         * @param quantile Between 0 and 1, such as 0.99
+         * @return The value, or 0 if nothing was recorded
+         */
+        public long percentile(double quantile) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * total));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return upperBound(i);
+                }
+            }
+            return upperBound(counts.length - 1);
+        }
+
+        public long max() {
+            for (int i = counts.length - 1; i >= 0; i--) {
+                if (counts[i] != 0) {
+                    return upperBound(i);
+                }
+            }
+            return 0;
+        }
+    }
+}
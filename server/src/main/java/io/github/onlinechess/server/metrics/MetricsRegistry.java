@@ -0,0 +1,107 @@
+package io.github.onlinechess.server.metrics;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * The server's metrics, written in the Prometheus text format.
+ *
+ * Nothing is stored here: each metric reads the counter, histogram or getter
+ * its component already keeps, and only when scraped. Components update their
+ * own LongAdders and histograms without locks, so the hot path never touches
+ * this class.
+ */
+public class MetricsRegistry {
+    // Histogram bucket bounds, in seconds
+    private static final double[] BOUNDS = {
+        0.000001, 0.0000025, 0.000005, 0.00001, 0.000025, 0.00005, 0.0001, 0.00025, 0.0005,
+        0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10
+    };
+
+    private final List<Metric> metrics = new CopyOnWriteArrayList<>();
+
+    /**
+     * Adds a value that only ever grows, such as a number of packets sent
+     */
+    public void counter(String name, String help, LongSupplier value) {
+        metrics.add(out -> {
+            header(out, name, help, "counter");
+            sample(out, name, "", value.getAsLong());
+        });
+    }
+
+    /**
+     * Adds a value that can go up and down, such as the number of live games
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        metrics.add(out -> {
+            header(out, name, help, "gauge");
+            sample(out, name, "", value.getAsLong());
+        });
+    }
+
+    /**
+     * Adds a counter per type, labelled with the type's name
+     */
+    public void counter(String name, String help, String label, TypeCounter counter) {
+        metrics.add(out -> {
+            header(out, name, help, "counter");
+            // Sorted, so scrapes list the types in a stable order
+            for (Map.Entry<String, LongAdder> entry : new TreeMap<>(counter.getCounts()).entrySet()) {
+                sample(out, name, "{" + label + "=\"" + entry.getKey() + "\"}", entry.getValue().sum());
+            }
+        });
+    }
+
+    /**
+     * Adds a histogram of durations, exported in seconds
+     *
+     * @param unitSeconds Length of the histogram's unit in seconds, such as 1e-9 for nanoseconds
+     */
+    public void histogram(String name, String help, Histogram histogram, double unitSeconds) {
+        metrics.add(out -> {
+            header(out, name, help, "histogram");
+            Histogram.Snapshot snapshot = histogram.snapshot();
+            for (double bound : BOUNDS) {
+                long count = snapshot.countAtOrBelow((long) (bound / unitSeconds));
+                out.append(name).append("_bucket{le=\"").append(format(bound)).append("\"} ").append(count).append('\n');
+            }
+            out.append(name).append("_bucket{le=\"+Inf\"} ").append(snapshot.getCount()).append('\n');
+            out.append(name).append("_sum ").append(format(snapshot.getSum() * unitSeconds)).append('\n');
+            out.append(name).append("_count ").append(snapshot.getCount()).append('\n');
+        });
+    }
+
+    /**
+     * Writes every metric's current value
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+        for (Metric metric : metrics) {
+            metric.write(out);
+        }
+        return out.toString();
+    }
+
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder out, String name, String labels, long value) {
+        out.append(name).append(labels).append(' ').append(value).append('\n');
+    }
+
+    private static String format(double value) {
+        return String.format(Locale.ROOT, "%.9g", value).replaceFirst("\\.?0+(e|$)", "$1");
+    }
+
+    private interface Metric {
+        void write(StringBuilder out);
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.onlinechess.server.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts objects by their class, such as packets by type.
+ * Each class's counter is found through a ClassValue, so counting is one
+ * lock-free add with no map lookup or allocation once a type has been seen.
+ */
+public class TypeCounter {
+    private final ConcurrentHashMap<String, LongAdder> counts = new ConcurrentHashMap<>();
+    private final ClassValue<LongAdder> adders = new ClassValue<LongAdder>() {
+        @Override
+        protected LongAdder computeValue(Class<?> type) {
+            return counts.computeIfAbsent(type.getSimpleName(), name -> new LongAdder());
+        }
+    };
+
+    public void increment(Object object) {
+        adders.get(object.getClass()).increment();
+    }
+
+    /**
+     * Get the counters by simple class name
+     */
+    public Map<String, LongAdder> getCounts() {
+        return counts;
+    }
+}
@@ -0,0 +1,286 @@
+package io.github.onlinechess.server.network;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+
+import io.github.onlinechess.server.jfr.BroadcastEvent;
+
+import static com.esotericsoftware.minlog.Log.debug;
+import static com.esotericsoftware.minlog.Log.warn;
+
+/**
+ * Sends the same packet to many connections, serializing it only once.
+ * Subscribers whose write buffer is backed up are moved to a separate slow set
+ * and skipped until KryoNet reports their buffer has drained (Listener.idle);
+ * they then need a snapshot to catch up, since they missed updates. The skipped
+ * updates are in effect coalesced into that one snapshot. A subscriber that
+ * keeps falling behind is degraded to snapshot-only updates for good.
+ *
+ * Packets for players must never be skipped, nor written into a full buffer,
+ * which KryoNet treats as fatal. {@link #send} encodes each one and writes it
+ * directly if it fits in the connection's buffer, and otherwise holds it in
+ * order in a per-connection backlog that {@link #flush} drains as the buffer
+ * empties. A player whose backlog grows too large is disconnected and can resume.
+ *
+ * Every check of a connection's free space is made with the packet's encoded
+ * size, under the connection's backlog lock, and the write follows under the
+ * same lock, so two threads can never both fill the space they checked.
+ */
+public class Broadcaster {
+    // Times a subscriber may start lagging before it is only sent snapshots
+    private static final int DEGRADE_AFTER_EPISODES = 3;
+
+    private final ChessSerialization serialization;
+    // Queued bytes a broadcast may bring a subscriber up to; beyond that it is treated as slow
+    private final int slowThreshold;
+    // Size of each connection's write buffer, which player packets may fill
+    private final int bufferCapacity;
+    // Bytes KryoNet writes ahead of every message
+    private final int lengthBytes;
+    // Backlog size at which a player is disconnected
+    private final int maxBacklogBytes;
+    private final Set<ChessConnection> slowSubscribers = ConcurrentHashMap.newKeySet();
+
+    private final LongAdder broadcasts = new LongAdder();
+    private final LongAdder framesSent = new LongAdder();
+    private final LongAdder framesSkipped = new LongAdder();
+    private final LongAdder degraded = new LongAdder();
+    private final LongAdder criticalSent = new LongAdder();
+    private final LongAdder criticalDeferred = new LongAdder();
+    private final LongAdder backlogOverflows = new LongAdder();
+
+    /**
+     * Creates a broadcaster
+     *
+     * @param serialization The serialization installed on the server
+     * @param slowThreshold Bytes a broadcast may leave waiting in a connection's write buffer;
+     *                      a subscriber it would take past this is skipped
+     * @param bufferCapacity Size of each connection's write buffer; player packets are held
+     *                       back until they fit
+     * @param maxBacklogBytes Bytes of held-back player packets at which the player is disconnected
+     */
+    public Broadcaster(ChessSerialization serialization, int slowThreshold, int bufferCapacity,
+                       int maxBacklogBytes) {
+        if (bufferCapacity < slowThreshold) {
+            throw new IllegalArgumentException("Player packets must get at least as much room as broadcasts.");
+        }
+        this.serialization = serialization;
+        this.slowThreshold = slowThreshold;
+        this.bufferCapacity = bufferCapacity;
+        this.lengthBytes = serialization.getLengthLength();
+        this.maxBacklogBytes = maxBacklogBytes;
+    }
+
+    /**
+     * Sends a packet to every subscriber
+     */
+    public void broadcast(Object packet, Iterable<ChessConnection> subscribers) {
+        broadcast(packet, subscribers, null);
+    }
+
+    /**
+     * Sends a packet to every subscriber accepted by the filter.
+     * The packet is encoded at most once, and not at all if nobody receives it.
+     *
+     * @param filter Chooses which subscribers receive the packet, or null for all
+     */
+    public void broadcast(Object packet, Iterable<ChessConnection> subscribers, Predicate<ChessConnection> filter) {
+        BroadcastEvent event = new BroadcastEvent();
+        event.begin();
+        EncodedPacket frame = null;
+        int gameCode = 0;
+        int sent = 0;
+        int skipped = 0;
+        for (ChessConnection subscriber : subscribers) {
+            if (filter != null && !filter.test(subscriber)) {
+                continue;
+            }
+            if (gameCode == 0) {
+                gameCode = subscriber.getGameCode();
+            }
+            if (!subscriber.isLagging()) {
+                if (frame == null) {
+                    frame = serialization.encode(packet);
+                    broadcasts.increment();
+                }
+                synchronized (subscriber.backlog) {
+                    if (fits(subscriber, frame, slowThreshold)) {
+                        subscriber.sendTCP(frame);
+                        framesSent.increment();
+                        sent++;
+                        continue;
+                    }
+                }
+            }
+            markSlow(subscriber);
+            framesSkipped.increment();
+            skipped++;
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.gameCode = gameCode;
+            event.packetType = packet.getClass().getSimpleName();
+            event.bytes = frame != null ? frame.size() : 0;
+            event.sent = sent;
+            event.skipped = skipped;
+            event.commit();
+        }
+    }
+
+    /**
+     * Sends a packet that must not be lost, such as a move update to a player.
+     * Packets to the same connection are delivered in the order they were sent.
+     */
+    public void send(ChessConnection connection, Object packet) {
+        EncodedPacket frame = packet instanceof EncodedPacket ? (EncodedPacket) packet : serialization.encode(packet);
+        if (frame.size() + lengthBytes > bufferCapacity) {
+            // It would never fit, and KryoNet would close the connection rather than write it
+            warn("[" + connection.getID() + "] " + packet.getClass().getSimpleName() + " of " + frame.size()
+                 + " bytes cannot fit in the write buffer, closing.");
+            connection.close();
+            return;
+        }
+        synchronized (connection.backlog) {
+            if (connection.backlog.isEmpty() && fits(connection, frame, bufferCapacity)) {
+                connection.sendTCP(frame);
+                criticalSent.increment();
+                return;
+            }
+            if (connection.backlogBytes + frame.size() > maxBacklogBytes) {
+                // Hopelessly behind; the player can resume on a fresh connection
+                warn("[" + connection.getID() + "] Backlog of " + connection.backlogBytes + " bytes is full, closing.");
+                backlogOverflows.increment();
+                connection.backlog.clear();
+                connection.backlogBytes = 0;
+                connection.close();
+                return;
+            }
+            connection.backlog.add(frame);
+            connection.backlogBytes += frame.size();
+            criticalDeferred.increment();
+        }
+    }
+
+    /**
+     * Writes held-back packets while the connection's buffer has room.
+     * Called when a connection's write buffer has drained.
+     */
+    public void flush(ChessConnection connection) {
+        synchronized (connection.backlog) {
+            EncodedPacket frame;
+            while ((frame = connection.backlog.peek()) != null && fits(connection, frame, bufferCapacity)) {
+                connection.backlog.poll();
+                connection.backlogBytes -= frame.size();
+                connection.sendTCP(frame);
+                criticalSent.increment();
+            }
+        }
+    }
+
+    /**
+     * Called when a connection's write buffer has drained.
+     *
+     * @return Whether the connection had been marked slow and now needs a snapshot to catch up
+     */
+    public boolean recover(ChessConnection connection) {
+        if (!connection.stopLagging()) {
+            return false;
+        }
+        slowSubscribers.remove(connection);
+        debug("[" + connection.getID() + "] Subscriber caught up");
+        return true;
+    }
+
+    /**
+     * Forgets a connection that has gone away
+     */
+    public void remove(ChessConnection connection) {
+        slowSubscribers.remove(connection);
+        synchronized (connection.backlog) {
+            connection.backlog.clear();
+            connection.backlogBytes = 0;
+        }
+    }
+
+    /**
+     * Whether writing a frame would leave no more than the given number of bytes
+     * waiting in the connection's write buffer. Must be called with the backlog lock held.
+     */
+    private boolean fits(ChessConnection connection, EncodedPacket frame, int limit) {
+        return connection.getTcpWriteBufferSize() + lengthBytes + frame.size() <= limit;
+    }
+
+    private void markSlow(ChessConnection connection) {
+        int episodes = connection.startLagging();
+        if (episodes == 0) {
+            return;
+        }
+        slowSubscribers.add(connection);
+        if (episodes >= DEGRADE_AFTER_EPISODES && !connection.isSnapshotOnly()) {
+            // Deltas are wasted on a connection that keeps missing them
+            connection.setSnapshotOnly(true);
+            degraded.increment();
+            debug("[" + connection.getID() + "] Subscriber keeps falling behind, sending snapshots only");
+        } else {
+            debug("[" + connection.getID() + "] Subscriber is slow, skipping updates");
+        }
+    }
+
+    /**
+     * Get the number of subscribers currently being skipped
+     */
+    public int getSlowSubscriberCount() {
+        return slowSubscribers.size();
+    }
+
+    /**
+     * Get the number of packets encoded for broadcast
+     */
+    public long getBroadcastCount() {
+        return broadcasts.sum();
+    }
+
+    /**
+     * Get the number of encoded frames written to subscribers
+     */
+    public long getFramesSent() {
+        return framesSent.sum();
+    }
+
+    /**
+     * Get the number of frames not sent because the subscriber was slow
+     */
+    public long getFramesSkipped() {
+        return framesSkipped.sum();
+    }
+
+    /**
+     * Get the number of subscribers degraded to snapshot-only updates
+     */
+    public long getDegradedCount() {
+        return degraded.sum();
+    }
+
+    /**
+     * Get the number of player packets written, directly or from a backlog
+     */
+    public long getCriticalSent() {
+        return criticalSent.sum();
+    }
+
+    /**
+     * Get the number of player packets that had to wait in a backlog
+     */
+    public long getCriticalDeferred() {
+        return criticalDeferred.sum();
+    }
+
+    /**
+     * Get the number of players disconnected because their backlog filled up
+     */
+    public long getBacklogOverflows() {
+        return backlogOverflows.sum();
+    }
+}
@@ -0,0 +1,248 @@
+package io.github.onlinechess.server.network;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.esotericsoftware.kryonet.Connection;
+
+import io.github.onlinechess.shared.NetworkRegistry;
+import io.github.onlinechess.shared.RttEstimator;
+import io.github.onlinechess.shared.stream.StreamSender;
+
+/**
+ * KryoNet connection carrying the server's per-client state.
+ * Created by the server for every accepted client.
+ */
+public class ChessConnection extends Connection {
+    // Chunks of large payloads in flight, and payloads queued, per connection
+    private static final int STREAM_WINDOW = 8;
+    private static final int MAX_STREAMS = 4;
+
+    // Code of the game this connection is part of, or 0 if none
+    private volatile int gameCode;
+    // Set once the protocol handshake has succeeded
+    private volatile boolean handshakeComplete;
+    // Capabilities agreed during the handshake (see NetworkRegistry.CAP_*)
+    private volatile int capabilities;
+    // Set while broadcasts skip this connection because its write buffer is backed up
+    private final AtomicBoolean lagging = new AtomicBoolean();
+    // Number of times the connection has started lagging
+    private final AtomicInteger lagEpisodes = new AtomicInteger();
+    // Set once the connection has lagged so often that it is only sent snapshots
+    private volatile boolean snapshotOnly;
+    // Player-critical packets waiting for room in the write buffer, in order, and their size
+    // (guarded by backlog)
+    final ArrayDeque<EncodedPacket> backlog = new ArrayDeque<>();
+    int backlogBytes;
+    // Chat room this connection is in, or 0 if none
+    private volatile int chatRoom;
+    // Token that lets this player reclaim their seat after a disconnect, or 0 if none
+    private volatile long sessionToken;
+    // Held by whichever thread is seating this connection in a game
+    private final AtomicBoolean seating = new AtomicBoolean();
+    // Set once the other end has proven it is a node of this cluster
+    private volatile boolean peer;
+    // When the connection opened and when it last sent an application message,
+    // in epoch milliseconds (KryoNet update thread only)
+    private long connectedAt;
+    private long lastHeardAt;
+    // When the ConnectionReaper next looks at this connection (KryoNet update thread only)
+    long reapDeadline;
+    // Round trip and clock offset measured by the Pinger
+    private final RttEstimator rtt = new RttEstimator();
+    // When the Pinger next pings this connection (KryoNet update thread only)
+    long pingDeadline;
+    // Large payloads being streamed to this connection in chunks
+    private final StreamSender streams = new StreamSender(STREAM_WINDOW, MAX_STREAMS);
+    // Message budgets spent by the RateLimiter (KryoNet update thread only)
+    final long[] rateState = RateLimiter.newState();
+
+    /**
+     * Get the code of the game this connection is part of
+     *
+     * @return The game code, or 0 if the connection is not in a game
+     */
+    public int getGameCode() {
+        return gameCode;
+    }
+
+    /**
+     * Set the game this connection is part of
+     *
+     * @param gameCode The game code, or 0 to clear
+     */
+    public void setGameCode(int gameCode) {
+        this.gameCode = gameCode;
+    }
+
+    /**
+     * Get the key used to order this connection's messages.
+     * It never changes, so every message and the disconnect of a connection run
+     * in order on one worker, even while the connection moves between games.
+     * Negative, so it never shares a key with work queued for a game by its code.
+     */
+    public int getDispatchKey() {
+        return -getID();
+    }
+
+    /**
+     * Records a successful handshake and the capabilities agreed in it
+     */
+    public void completeHandshake(int capabilities) {
+        this.capabilities = capabilities;
+        this.handshakeComplete = true;
+    }
+
+    /**
+     * Whether the protocol handshake has succeeded
+     */
+    public boolean isHandshakeComplete() {
+        return handshakeComplete;
+    }
+
+    /**
+     * Check whether a capability was agreed during the handshake
+     */
+    public boolean hasCapability(int capability) {
+        return (capabilities & capability) != 0;
+    }
+
+    /**
+     * Whether game updates are sent to this connection as deltas: it agreed
+     * to delta sync and has not been degraded to snapshots for lagging
+     */
+    public boolean usesDeltaSync() {
+        return hasCapability(NetworkRegistry.CAP_DELTA_SYNC) && !snapshotOnly;
+    }
+
+    /**
+     * Whether broadcasts are currently skipping this connection
+     */
+    public boolean isLagging() {
+        return lagging.get();
+    }
+
+    /**
+     * Marks the connection as lagging
+     *
+     * @return The number of times it has started lagging, or 0 if it already was
+     */
+    int startLagging() {
+        return lagging.compareAndSet(false, true) ? lagEpisodes.incrementAndGet() : 0;
+    }
+
+    /**
+     * Clears the lagging mark
+     *
+     * @return Whether the connection had been lagging
+     */
+    boolean stopLagging() {
+        return lagging.compareAndSet(true, false);
+    }
+
+    /**
+     * Whether the connection has been degraded to snapshot-only updates
+     */
+    public boolean isSnapshotOnly() {
+        return snapshotOnly;
+    }
+
+    void setSnapshotOnly(boolean snapshotOnly) {
+        this.snapshotOnly = snapshotOnly;
+    }
+
+    /**
+     * Get the chat room this connection is in
+     *
+     * @return The room ID, or 0 if the connection is in no room
+     */
+    public int getChatRoom() {
+        return chatRoom;
+    }
+
+    public void setChatRoom(int chatRoom) {
+        this.chatRoom = chatRoom;
+    }
+
+    /**
+     * Get the token for the seat this connection holds
+     *
+     * @return The token, or 0 if the connection holds no seat
+     */
+    public long getSessionToken() {
+        return sessionToken;
+    }
+
+    public void setSessionToken(long sessionToken) {
+        this.sessionToken = sessionToken;
+    }
+
+    /**
+     * Claims the right to seat this connection in a game. The connection's own
+     * requests and matchmaking both claim it first, so only one of them can
+     * seat it at a time.
+     *
+     * @return Whether the claim was free
+     */
+    public boolean claimSeating() {
+        return seating.compareAndSet(false, true);
+    }
+
+    /**
+     * Gives up a claim taken with {@link #claimSeating()}
+     */
+    public void releaseSeating() {
+        seating.set(false);
+    }
+
+    /**
+     * Whether the other end is a server node of the same cluster rather than a client
+     */
+    public boolean isPeer() {
+        return peer;
+    }
+
+    /**
+     * Marks the other end as a cluster node, once it has presented the cluster key
+     */
+    public void markPeer() {
+        this.peer = true;
+    }
+
+    /**
+     * Get the round trip and clock offset measured over UDP pings.
+     * Has no samples for clients without clock sync or without a UDP connection.
+     */
+    public RttEstimator getRtt() {
+        return rtt;
+    }
+
+    /**
+     * Get the payloads being streamed to this connection, which are sent a
+     * chunk at a time whenever its write buffer drains
+     */
+    public StreamSender getStreams() {
+        return streams;
+    }
+
+    /**
+     * Records that a message arrived, proving the client is alive. Update thread only.
+     */
+    public void markHeard(long now) {
+        lastHeardAt = now;
+    }
+
+    long getLastHeardAt() {
+        return lastHeardAt;
+    }
+
+    void markConnected(long now) {
+        connectedAt = now;
+        lastHeardAt = now;
+    }
+
+    long getConnectedAt() {
+        return connectedAt;
+    }
+}
@@ -0,0 +1,219 @@
+package io.github.onlinechess.server.network;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryonet.Connection;
+
+import io.github.onlinechess.server.metrics.Histogram;
+import io.github.onlinechess.shared.NetworkRegistry;
+import io.github.onlinechess.shared.PacketSerialization;
+import io.github.onlinechess.shared.PayloadCompressor;
+import io.github.onlinechess.shared.jfr.PacketDecodeEvent;
+import io.github.onlinechess.shared.jfr.PacketEncodeEvent;
+
+/**
+ * The server's KryoNet serialization, built on the shared {@link PacketSerialization}.
+ * Packets already encoded with {@link #encode(Object)} are copied into the
+ * connection's write buffer as-is instead of being serialized again.
+ *
+ * With a {@link RateLimiter}, each incoming message's class ID is peeked and
+ * checked against the sender's budget before anything is deserialized, and a
+ * message over budget is skipped without being read.
+ *
+ * Messages over {@link PayloadCompressor#THRESHOLD} are deflated for clients
+ * that agreed to compression. Only the server compresses, since clients send
+ * nothing that large; a client inflates what it receives, and the server
+ * refuses compressed messages, so budgets always see the real class ID.
+ *
+ * The time taken to write and read each message is kept in histograms, and
+ * slow ones are also recorded as JFR events when a recording is running.
+ */
+public class ChessSerialization extends PacketSerialization {
+    // Checks incoming messages against their sender's budget, or null for no limits
+    private final RateLimiter rateLimiter;
+    // Nanoseconds spent serializing outgoing and deserializing incoming messages
+    private final Histogram writeTimes = new Histogram();
+    private final Histogram readTimes = new Histogram();
+    // Bytes of compressed messages sent, before and after compression
+    private final LongAdder compressedIn = new LongAdder();
+    private final LongAdder compressedOut = new LongAdder();
+
+    // Per-thread buffer for packets encoded ahead of time
+    private final ThreadLocal<ByteBuffer> scratch = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(MAX_MESSAGE_SIZE);
+        }
+    };
+
+    /**
+     * Creates a serialization that reads every message
+     */
+    public ChessSerialization() {
+        this(null);
+    }
+
+    /**
+     * @param rateLimiter Budgets incoming messages per connection, or null for no limits
+     */
+    public ChessSerialization(RateLimiter rateLimiter) {
+        this.rateLimiter = rateLimiter;
+    }
+
+    @Override
+    public void write(Connection connection, ByteBuffer buffer, Object object) {
+        if (object instanceof EncodedPacket) {
+            EncodedPacket encoded = (EncodedPacket) object;
+            ByteBuffer compressed = compresses(connection) ? encoded.getCompressedBytes() : null;
+            if (compressed != null) {
+                compressedIn.add(encoded.size());
+                compressedOut.add(compressed.remaining());
+                buffer.put(compressed);
+            } else {
+                buffer.put(encoded.getBytes());
+            }
+            return;
+        }
+        PacketEncodeEvent event = new PacketEncodeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int position = buffer.position();
+        serialize(buffer, object);
+        int length = buffer.position() - position;
+        if (length >= PayloadCompressor.THRESHOLD && compresses(connection)
+            && PayloadCompressor.get().compress(buffer, position)) {
+            compressedIn.add(length);
+            compressedOut.add(buffer.position() - position);
+        }
+        writeTimes.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.connectionId = connection.getID();
+            event.gameCode = gameCodeOf(connection);
+            event.packetType = object.getClass().getSimpleName();
+            event.bytes = buffer.position() - position;
+            event.commit();
+        }
+    }
+
+    @Override
+    public Object read(Connection connection, ByteBuffer buffer) {
+        if (rateLimiter != null && connection instanceof ChessConnection) {
+            Object verdict = rateLimiter.check((ChessConnection) connection, peekClassId(buffer), System.nanoTime());
+            if (verdict != null) {
+                // KryoNet limits the buffer to this message, so skipping to the limit consumes exactly it
+                buffer.position(buffer.limit());
+                return verdict;
+            }
+        }
+        PacketDecodeEvent event = new PacketDecodeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        int bytes = buffer.remaining();
+        Object object = super.read(connection, buffer);
+        readTimes.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.connectionId = connection.getID();
+            event.gameCode = gameCodeOf(connection);
+            event.packetType = object == null ? "null" : object.getClass().getSimpleName();
+            event.bytes = bytes;
+            event.commit();
+        }
+        return object;
+    }
+
+    /**
+     * Reads the Kryo class ID at the start of a message without consuming it
+     *
+     * @return The registration ID, or -1 if the message does not start with one
+     */
+    private static int peekClassId(ByteBuffer buffer) {
+        // Kryo writes the ID plus 2 as a variable-length int, 7 bits per byte
+        int position = buffer.position();
+        int value = 0;
+        for (int shift = 0; shift < 35 && position < buffer.limit(); shift += 7) {
+            int b = buffer.get(position++);
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value - 2;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Whether messages to a connection are compressed: it is a client that agreed to compression
+     */
+    private static boolean compresses(Connection connection) {
+        return connection instanceof ChessConnection
+               && ((ChessConnection) connection).hasCapability(NetworkRegistry.CAP_COMPRESSION);
+    }
+
+    @Override
+    protected ByteBuffer inflate(Connection connection, ByteBuffer buffer) {
+        if (connection instanceof ChessConnection) {
+            throw new KryoException("Clients may not send compressed messages.");
+        }
+        return super.inflate(connection, buffer);
+    }
+
+    private static int gameCodeOf(Connection connection) {
+        return connection instanceof ChessConnection ? ((ChessConnection) connection).getGameCode() : 0;
+    }
+
+    /**
+     * Serializes a packet once so the same bytes can be sent to many connections
+     */
+    public EncodedPacket encode(Object object) {
+        PacketEncodeEvent event = new PacketEncodeEvent();
+        event.begin();
+        long start = System.nanoTime();
+        ByteBuffer buffer = scratch.get();
+        buffer.clear();
+        serialize(buffer, object);
+        buffer.flip();
+        byte[] bytes = new byte[buffer.remaining()];
+        buffer.get(bytes);
+        // Compressed once here rather than for every connection it goes to
+        byte[] compressed = PayloadCompressor.get().compress(bytes);
+        writeTimes.record(System.nanoTime() - start);
+        event.end();
+        if (event.shouldCommit()) {
+            event.packetType = object.getClass().getSimpleName();
+            event.bytes = bytes.length;
+            event.commit();
+        }
+        return new EncodedPacket(bytes, compressed);
+    }
+
+    /**
+     * Get the nanoseconds taken to serialize each outgoing message, including those encoded ahead of time
+     */
+    public Histogram getWriteTimes() {
+        return writeTimes;
+    }
+
+    /**
+     * Get the nanoseconds taken to deserialize each incoming message
+     */
+    public Histogram getReadTimes() {
+        return readTimes;
+    }
+
+    /**
+     * Get the size of the messages sent compressed, before compression
+     */
+    public long getCompressedBytesIn() {
+        return compressedIn.sum();
+    }
+
+    /**
+     * Get the size of the messages sent compressed, after compression
+     */
+    public long getCompressedBytesOut() {
+        return compressedOut.sum();
+    }
+}
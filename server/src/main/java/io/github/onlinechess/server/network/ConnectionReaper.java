@@ -0,0 +1,136 @@
+package io.github.onlinechess.server.network;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.onlinechess.shared.packets.HeartbeatPacket;
+
+import static com.esotericsoftware.minlog.Log.debug;
+import static com.esotericsoftware.minlog.Log.info;
+
+/**
+ * Finds and closes dead connections, such as half-open TCP connections whose
+ * client vanished without a FIN.
+ *
+ * Every connection sits in a queue ordered by the time it next needs looking
+ * at, so a sweep only touches connections that are due and never scans the
+ * rest. A due connection that has been quiet for the heartbeat interval is
+ * sent a {@link HeartbeatPacket}; one that stays quiet for the whole timeout,
+ * or never completes its handshake, is closed. Closing runs the normal
+ * disconnect path, which frees the connection's seat and subscriptions.
+ *
+ * Sweeps are driven from KryoNet's idle callback and run at most once per
+ * sweep interval; each closes a bounded batch of connections, so a mass
+ * outage is cleaned up over a few sweeps instead of stalling the update thread.
+ *
+ * Everything here runs on the KryoNet update thread, so nothing is locked.
+ */
+public class ConnectionReaper {
+    private final long heartbeatIntervalMillis;
+    private final long timeoutMillis;
+    private final long sweepIntervalMillis;
+    private final int maxClosesPerSweep;
+    private final PriorityQueue<ChessConnection> deadlines =
+        new PriorityQueue<>((a, b) -> Long.compare(a.reapDeadline, b.reapDeadline));
+    private final HeartbeatPacket heartbeat = new HeartbeatPacket();
+    private long nextSweepAt;
+    private final LongAdder heartbeatsSent = new LongAdder();
+    private final LongAdder reaped = new LongAdder();
+
+    /**
+     * @param heartbeatInterval How long a connection may be quiet before it is sent a heartbeat
+     * @param timeout How long a connection may be quiet before it is closed
+     * @param sweepInterval How often due connections are checked
+     * @param maxClosesPerSweep Most connections closed by one sweep
+     */
+    public ConnectionReaper(long heartbeatInterval, long timeout, long sweepInterval, TimeUnit unit,
+                            int maxClosesPerSweep) {
+        if (heartbeatInterval <= 0 || sweepInterval <= 0) {
+            throw new IllegalArgumentException("Intervals must be positive.");
+        }
+        if (timeout <= heartbeatInterval) {
+            throw new IllegalArgumentException("Timeout must be longer than the heartbeat interval.");
+        }
+        if (maxClosesPerSweep < 1) {
+            throw new IllegalArgumentException("A sweep must be able to close at least one connection.");
+        }
+        this.heartbeatIntervalMillis = unit.toMillis(heartbeatInterval);
+        this.timeoutMillis = unit.toMillis(timeout);
+        this.sweepIntervalMillis = unit.toMillis(sweepInterval);
+        this.maxClosesPerSweep = maxClosesPerSweep;
+        info("ConnectionReaper initialized: heartbeat after " + heartbeatIntervalMillis + " ms, timeout after "
+             + timeoutMillis + " ms.");
+    }
+
+    /**
+     * Starts watching a newly accepted connection
+     */
+    public void register(ChessConnection connection, long now) {
+        connection.markConnected(now);
+        connection.reapDeadline = now + heartbeatIntervalMillis;
+        deadlines.add(connection);
+    }
+
+    /**
+     * Checks the connections that are due, if a sweep interval has passed since the last sweep
+     */
+    public void sweep(long now) {
+        if (now < nextSweepAt) {
+            return;
+        }
+        nextSweepAt = now + sweepIntervalMillis;
+
+        int closed = 0;
+        ChessConnection connection;
+        while (closed < maxClosesPerSweep && (connection = deadlines.peek()) != null
+               && connection.reapDeadline <= now) {
+            deadlines.poll();
+            if (!connection.isConnected()) {
+                // Closed some other way; just forget it
+                continue;
+            }
+            long quiet = now - connection.getLastHeardAt();
+            boolean neverShookHands = !connection.isHandshakeComplete()
+                                      && now - connection.getConnectedAt() >= timeoutMillis;
+            if (quiet >= timeoutMillis || neverShookHands) {
+                debug("[" + connection.getID() + "] Closing dead connection, quiet for " + quiet + " ms.");
+                reaped.increment();
+                closed++;
+                connection.close();
+                continue;
+            }
+            if (quiet >= heartbeatIntervalMillis) {
+                connection.sendTCP(heartbeat);
+                heartbeatsSent.increment();
+                // Ask again every interval until the timeout
+                connection.reapDeadline = Math.min(now + heartbeatIntervalMillis,
+                                                   connection.getLastHeardAt() + timeoutMillis);
+            } else {
+                connection.reapDeadline = connection.getLastHeardAt() + heartbeatIntervalMillis;
+            }
+            deadlines.add(connection);
+        }
+    }
+
+    /**
+     * Get the number of connections being watched, including recently closed ones not yet forgotten
+     */
+    public int getTrackedCount() {
+        return deadlines.size();
+    }
+
+    /**
+     * Get the number of heartbeats sent to quiet connections
+     */
+    public long getHeartbeatsSent() {
+        return heartbeatsSent.sum();
+    }
+
+    /**
+     * Get the number of connections closed for being dead
+     */
+    public long getReapedCount() {
+        return reaped.sum();
+    }
+}
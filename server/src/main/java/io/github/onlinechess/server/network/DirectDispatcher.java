@@ -0,0 +1,35 @@
+package io.github.onlinechess.server.network;
+
+/**
+ * Runs every task immediately on the calling thread.
+ * This keeps the old behaviour of handling everything on KryoNet's update thread.
+ */
+public class DirectDispatcher implements MessageDispatcher {
+
+    @Override
+    public boolean dispatch(int key, Runnable task) {
+        task.run();
+        return true;
+    }
+
+    @Override
+    public boolean tryDispatch(int key, Runnable task) {
+        task.run();
+        return true;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        return 0;
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return 0;
+    }
+
+    @Override
+    public void shutdown() {
+        // Nothing to release
+    }
+}
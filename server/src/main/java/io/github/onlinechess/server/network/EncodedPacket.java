@@ -0,0 +1,43 @@
+package io.github.onlinechess.server.network;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A packet that has already been serialized.
+ * The bytes are shared read-only between every connection it is sent to,
+ * so sending it costs a memory copy per connection rather than a serialization.
+ * A large packet is also compressed once, for the connections that agreed to it.
+ */
+public final class EncodedPacket {
+    private final ByteBuffer bytes;
+    // The compressed form, or null if the packet is too small or does not compress
+    private final ByteBuffer compressed;
+
+    EncodedPacket(byte[] bytes, byte[] compressed) {
+        this.bytes = ByteBuffer.wrap(bytes).asReadOnlyBuffer();
+        this.compressed = compressed != null ? ByteBuffer.wrap(compressed).asReadOnlyBuffer() : null;
+    }
+
+    /**
+     * Get a read-only view of the encoded bytes, positioned at the start
+     */
+    public ByteBuffer getBytes() {
+        return bytes.duplicate();
+    }
+
+    /**
+     * Get a read-only view of the compressed bytes, positioned at the start
+     *
+     * @return The compressed bytes, or null if the packet is sent as it is
+     */
+    public ByteBuffer getCompressedBytes() {
+        return compressed != null ? compressed.duplicate() : null;
+    }
+
+    /**
+     * Get the encoded size in bytes, before any compression
+     */
+    public int size() {
+        return bytes.capacity();
+    }
+}
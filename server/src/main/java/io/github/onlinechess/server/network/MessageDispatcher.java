@@ -0,0 +1,39 @@
+package io.github.onlinechess.server.network;
+
+/**
+ * Hands decoded packets off KryoNet's update thread.
+ * Tasks submitted with the same key run one at a time, in submission order.
+ */
+public interface MessageDispatcher {
+
+    /**
+     * Queues a task for execution, waiting only briefly if there is no room
+     *
+     * @param key Ordering key; tasks with equal keys never run concurrently
+     * @param task The work to run
+     * @return Whether the task was queued; false if there was no room or the dispatcher is shut down
+     */
+    boolean dispatch(int key, Runnable task);
+
+    /**
+     * Queues a task only if there is room right now, for callers that must never wait
+     *
+     * @return Whether the task was queued
+     */
+    boolean tryDispatch(int key, Runnable task);
+
+    /**
+     * Get the number of tasks waiting to run
+     */
+    int getQueueDepth();
+
+    /**
+     * Get the number of tasks refused for lack of room
+     */
+    long getRejectedCount();
+
+    /**
+     * Stops accepting tasks and releases any worker threads
+     */
+    void shutdown();
+}
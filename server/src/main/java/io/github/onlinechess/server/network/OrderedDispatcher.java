@@ -0,0 +1,147 @@
+package io.github.onlinechess.server.network;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.esotericsoftware.minlog.Log.error;
+import static com.esotericsoftware.minlog.Log.info;
+import static com.esotericsoftware.minlog.Log.warn;
+
+/**
+ * Runs tasks on a fixed pool of worker lanes.
+ * Each lane is a single thread with its own bounded queue, and a key always maps
+ * to the same lane, so tasks for one game or connection stay in order while
+ * different games are handled on different cores.
+ * When a lane's queue is full the submitting thread waits only briefly for
+ * room, then the task is refused and the caller sheds it. Blocking instead
+ * would stall KryoNet's reads for every connection behind one busy lane.
+ */
+public class OrderedDispatcher implements MessageDispatcher {
+    private final Lane[] lanes;
+    private final long offerTimeoutNanos;
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * Creates a dispatcher
+     *
+     * @param laneCount Number of worker threads
+     * @param queueCapacity Maximum number of waiting tasks per lane
+     * @param offerTimeout How long a submitter waits for room in a full lane before the task is refused
+     */
+    public OrderedDispatcher(int laneCount, int queueCapacity, long offerTimeout, TimeUnit unit) {
+        if (laneCount < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("Lane count and queue capacity must be at least 1.");
+        }
+        if (offerTimeout < 0) {
+            throw new IllegalArgumentException("Offer timeout cannot be negative.");
+        }
+        offerTimeoutNanos = unit.toNanos(offerTimeout);
+        lanes = new Lane[laneCount];
+        for (int i = 0; i < laneCount; i++) {
+            lanes[i] = new Lane(i, queueCapacity);
+            lanes[i].start();
+        }
+        info("OrderedDispatcher started with " + laneCount + " lanes.");
+    }
+
+    @Override
+    public boolean dispatch(int key, Runnable task) {
+        if (!running) {
+            warn("Dispatcher is shut down, dropping task for key " + key);
+            return false;
+        }
+        try {
+            if (lanes[laneIndex(key)].queue.offer(task, offerTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                return true;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        rejected.increment();
+        return false;
+    }
+
+    @Override
+    public boolean tryDispatch(int key, Runnable task) {
+        if (running && lanes[laneIndex(key)].queue.offer(task)) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    @Override
+    public int getQueueDepth() {
+        int depth = 0;
+        for (Lane lane : lanes) {
+            depth += lane.queue.size();
+        }
+        return depth;
+    }
+
+    @Override
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Get the number of tasks waiting on a single lane
+     */
+    public int getQueueDepth(int lane) {
+        return lanes[lane].queue.size();
+    }
+
+    /**
+     * Get the number of worker lanes
+     */
+    public int getLaneCount() {
+        return lanes.length;
+    }
+
+    @Override
+    public void shutdown() {
+        running = false;
+        for (Lane lane : lanes) {
+            lane.interrupt();
+        }
+    }
+
+    private int laneIndex(int key) {
+        int h = key * 0x9E3779B9;
+        h ^= h >>> 16;
+        return (h & 0x7FFFFFFF) % lanes.length;
+    }
+
+    /**
+     * A single worker thread draining its own queue
+     */
+    private final class Lane extends Thread {
+        private final BlockingQueue<Runnable> queue;
+
+        Lane(int index, int queueCapacity) {
+            super("dispatch-" + index);
+            setDaemon(true);
+            queue = new ArrayBlockingQueue<>(queueCapacity);
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    break;
+                }
+                try {
+                    task.run();
+                } catch (Throwable t) {
+                    error("Unhandled exception on " + getName(), t);
+                }
+            }
+        }
+    }
+}
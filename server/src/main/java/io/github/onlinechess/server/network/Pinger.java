@@ -0,0 +1,120 @@
+package io.github.onlinechess.server.network;
+
+import java.util.PriorityQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import io.github.onlinechess.server.metrics.Histogram;
+import io.github.onlinechess.shared.NetworkRegistry;
+import io.github.onlinechess.shared.RttEstimator;
+import io.github.onlinechess.shared.packets.PingPacket;
+
+import static com.esotericsoftware.minlog.Log.info;
+
+/**
+ * Pings clients over UDP to measure each connection's round-trip time, jitter
+ * and clock offset, which lag compensation and client clocks rely on.
+ *
+ * Only clients that agreed to {@link NetworkRegistry#CAP_CLOCK_SYNC} and
+ * connected over UDP are pinged. Like the {@link ConnectionReaper}, every
+ * connection sits in a queue ordered by when it is next due, so pings are
+ * spread out rather than sent in bursts, and a sweep sends a bounded batch.
+ * A lost ping costs one sample; the next is due an interval later anyway.
+ *
+ * Sweeps are driven from KryoNet's idle callback and answers are timed as they
+ * arrive, so everything here runs on the KryoNet update thread.
+ */
+public class Pinger {
+    private final long intervalMillis;
+    private final int maxPingsPerSweep;
+    private final PriorityQueue<ChessConnection> deadlines =
+        new PriorityQueue<>((a, b) -> Long.compare(a.pingDeadline, b.pingDeadline));
+    private final LongAdder pingsSent = new LongAdder();
+    private final LongAdder samples = new LongAdder();
+    // Round-trip samples in microseconds
+    private final Histogram roundTrips = new Histogram();
+
+    /**
+     * @param interval How often each connection is pinged
+     * @param maxPingsPerSweep Most pings sent by one sweep
+     */
+    public Pinger(long interval, TimeUnit unit, int maxPingsPerSweep) {
+        if (interval <= 0) {
+            throw new IllegalArgumentException("Interval must be positive.");
+        }
+        if (maxPingsPerSweep < 1) {
+            throw new IllegalArgumentException("A sweep must be able to send at least one ping.");
+        }
+        this.intervalMillis = unit.toMillis(interval);
+        this.maxPingsPerSweep = maxPingsPerSweep;
+        info("Pinger initialized: every " + intervalMillis + " ms.");
+    }
+
+    /**
+     * Starts watching a newly accepted connection; it is pinged once its
+     * handshake has agreed to clock sync
+     */
+    public void register(ChessConnection connection, long now) {
+        connection.pingDeadline = now + intervalMillis;
+        deadlines.add(connection);
+    }
+
+    /**
+     * Pings the connections that are due
+     */
+    public void sweep(long now) {
+        int sent = 0;
+        ChessConnection connection;
+        while (sent < maxPingsPerSweep && (connection = deadlines.peek()) != null
+               && connection.pingDeadline <= now) {
+            deadlines.poll();
+            if (!connection.isConnected() || connection.isPeer()) {
+                continue;
+            }
+            if (connection.isHandshakeComplete() && !connection.hasCapability(NetworkRegistry.CAP_CLOCK_SYNC)) {
+                // Would not understand a ping
+                continue;
+            }
+            if (connection.isHandshakeComplete() && connection.getRemoteAddressUDP() != null) {
+                connection.sendUDP(connection.getRtt().nextPing(RttEstimator.now()));
+                pingsSent.increment();
+                sent++;
+            }
+            // Not ready yet, look again next interval
+            connection.pingDeadline = now + intervalMillis;
+            deadlines.add(connection);
+        }
+    }
+
+    /**
+     * Times a client's answer to a ping. Call as soon as it arrives.
+     */
+    public void received(ChessConnection connection, PingPacket ping) {
+        RttEstimator rtt = connection.getRtt();
+        if (rtt.received(ping, RttEstimator.now())) {
+            samples.increment();
+            roundTrips.record(rtt.getRtt());
+        }
+    }
+
+    /**
+     * Get the number of pings sent
+     */
+    public long getPingsSent() {
+        return pingsSent.sum();
+    }
+
+    /**
+     * Get the number of answers that gave a round-trip sample
+     */
+    public long getSampleCount() {
+        return samples.sum();
+    }
+
+    /**
+     * Get the smoothed round-trip times after each sample, in microseconds
+     */
+    public Histogram getRoundTrips() {
+        return roundTrips;
+    }
+}
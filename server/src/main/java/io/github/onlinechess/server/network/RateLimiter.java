@@ -0,0 +1,162 @@
+package io.github.onlinechess.server.network;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.esotericsoftware.kryonet.FrameworkMessage;
+
+import io.github.onlinechess.shared.NetworkRegistry;
+
+import static com.esotericsoftware.minlog.Log.debug;
+import static com.esotericsoftware.minlog.Log.warn;
+
+/**
+ * Per-connection message budgets, checked from the packet's class ID before it is deserialized.
+ *
+ * Each connection has a separate budget for moves, chat and everything else,
+ * kept as a token bucket in the GCRA form: one "theoretical arrival time" per
+ * budget, so a check is a comparison and an add with no refill bookkeeping.
+ * The budgets live on the {@link ChessConnection} and are only touched by the
+ * KryoNet update thread that reads from it, so no check ever locks or retries.
+ *
+ * Enforcement is progressive. A message over budget is skipped unread; each
+ * skip also spends from a violation budget, and a client that keeps flooding
+ * until that runs out is disconnected.
+ */
+public class RateLimiter {
+    // Budget indices
+    static final int MOVES = 0;
+    static final int CHAT = 1;
+    static final int CONTROL = 2;
+    static final int VIOLATIONS = 3;
+    static final int BUDGETS = 4;
+
+    /**
+     * Returned by the serializer in place of a skipped message.
+     * KryoNet and the listener both ignore keep-alives.
+     */
+    public static final Object DROPPED = new FrameworkMessage.KeepAlive();
+    /**
+     * Returned by the serializer when the connection should be closed
+     */
+    public static final Object DISCONNECT = new FrameworkMessage.KeepAlive();
+
+    // Nanoseconds between messages at the sustained rate, and how far ahead of it a burst may run
+    private final long[] intervals = new long[BUDGETS];
+    private final long[] tolerances = new long[BUDGETS];
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder disconnected = new LongAdder();
+
+    /**
+     * @param moves Budget for MovePackets
+     * @param chat Budget for chat messages
+     * @param control Budget for every other message
+     * @param violations How many skipped messages are tolerated before the client is disconnected
+     */
+    public RateLimiter(Limit moves, Limit chat, Limit control, Limit violations) {
+        set(MOVES, moves);
+        set(CHAT, chat);
+        set(CONTROL, control);
+        set(VIOLATIONS, violations);
+    }
+
+    private void set(int budget, Limit limit) {
+        if (limit == null) {
+            throw new IllegalArgumentException("Every budget needs a limit.");
+        }
+        intervals[budget] = limit.intervalNanos;
+        tolerances[budget] = limit.intervalNanos * (limit.burst - 1);
+    }
+
+    /**
+     * Spends one message from the budget for the given class ID
+     *
+     * @param classId The Kryo registration ID at the start of the message
+     * @return null if the message may be read, otherwise {@link #DROPPED} or {@link #DISCONNECT}
+     */
+    public Object check(ChessConnection connection, int classId, long nowNanos) {
+        if (connection.isPeer()) {
+            // Another node handing off games in bulk, already authenticated
+            return null;
+        }
+        long[] state = connection.rateState;
+        if (conforms(state, budgetOf(classId), nowNanos)) {
+            return null;
+        }
+        dropped.increment();
+        if (conforms(state, VIOLATIONS, nowNanos)) {
+            debug("[" + connection.getID() + "] Over budget, skipped message with class ID " + classId);
+            return DROPPED;
+        }
+        warn("[" + connection.getID() + "] Kept flooding after messages were skipped, disconnecting.");
+        disconnected.increment();
+        return DISCONNECT;
+    }
+
+    /**
+     * GCRA: the message conforms unless the budget's theoretical arrival time
+     * is further ahead of now than the burst allows
+     */
+    private boolean conforms(long[] state, int budget, long now) {
+        long arrival = Math.max(state[budget], now);
+        if (arrival - now > tolerances[budget]) {
+            return false;
+        }
+        state[budget] = arrival + intervals[budget];
+        return true;
+    }
+
+    private static int budgetOf(int classId) {
+        if (classId == NetworkRegistry.ID_MOVE) {
+            return MOVES;
+        }
+        if (classId == NetworkRegistry.ID_CHAT) {
+            return CHAT;
+        }
+        return CONTROL;
+    }
+
+    /**
+     * Creates the budget state for a new connection, with every bucket full
+     */
+    static long[] newState() {
+        long[] state = new long[BUDGETS];
+        Arrays.fill(state, Long.MIN_VALUE);
+        return state;
+    }
+
+    /**
+     * Get the number of messages skipped for being over budget
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Get the number of connections closed for flooding
+     */
+    public long getDisconnectedCount() {
+        return disconnected.sum();
+    }
+
+    /**
+     * A sustained rate with an allowed burst
+     */
+    public static final class Limit {
+        final long intervalNanos;
+        final int burst;
+
+        /**
+         * @param perSecond Sustained messages per second
+         * @param burst Messages allowed at once before the rate applies
+         */
+        public Limit(double perSecond, int burst) {
+            if (perSecond <= 0 || burst < 1) {
+                throw new IllegalArgumentException("A limit needs a positive rate and a burst of at least 1.");
+            }
+            this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / perSecond);
+            this.burst = burst;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package io.github.onlinechess.server.persistence;
+
+/**
+ * Keeps nothing. Every update counts as durable at once,
+ * which keeps the old in-memory-only behaviour.
+ */
+public class DisabledJournal implements Journal {
+
+    @Override
+    public long appendCreated(int gameCode, int timeControl) {
+        return 0;
+    }
+
+    @Override
+    public long appendMove(int gameCode, int sequence, short move) {
+        return 0;
+    }
+
+    @Override
+    public long appendRemoved(int gameCode) {
+        return 0;
+    }
+
+    @Override
+    public void whenDurable(long position, Runnable action) {
+        action.run();
+    }
+
+    @Override
+    public long getPosition() {
+        return 0;
+    }
+
+    @Override
+    public long getDurablePosition() {
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public void compact(long position) {
+        // Nothing is kept
+    }
+
+    @Override
+    public void close() {
+        // Nothing to release
+    }
+}
@@ -0,0 +1,124 @@
+package io.github.onlinechess.server.persistence;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import io.github.onlinechess.server.game.GameSession;
+import io.github.onlinechess.server.game.GameSessionManager;
+
+import static com.esotericsoftware.minlog.Log.info;
+
+/**
+ * Rebuilds the live games after a restart, before the server accepts connections.
+ *
+ * Snapshot files are loaded in parallel first. The journal after the snapshot
+ * is then read once, in order, and its records are split by shard, so each
+ * shard's records can be replayed on its own thread while keeping the order
+ * of every game's moves.
+ */
+public class GameRecovery {
+    private final GameSessionManager manager;
+    private final SnapshotStore snapshots;
+    private final Path journalDirectory;
+
+    public GameRecovery(GameSessionManager manager, SnapshotStore snapshots, Path journalDirectory) {
+        this.manager = manager;
+        this.snapshots = snapshots;
+        this.journalDirectory = journalDirectory;
+    }
+
+    /**
+     * Loads the snapshots and replays the journal after them
+     *
+     * @param threads Number of threads to recover with
+     * @return The number of live games afterwards
+     */
+    public int recover(int threads) throws IOException {
+        long start = System.currentTimeMillis();
+        ExecutorService executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            long position = snapshots.load(manager, executor);
+
+            // Split the journal by shard, keeping each shard's records in order
+            final RecordList[] shards = new RecordList[manager.getShardCount()];
+            for (int i = 0; i < shards.length; i++) {
+                shards[i] = new RecordList();
+            }
+            long records = MappedJournal.read(journalDirectory, Math.max(position, 0),
+                (recordPosition, type, gameCode, sequence, move) ->
+                    shards[manager.shardIndex(gameCode)].add(type, gameCode, sequence, move));
+
+            List<Callable<Void>> tasks = new ArrayList<>();
+            for (final RecordList shard : shards) {
+                tasks.add(() -> {
+                    replay(shard);
+                    return null;
+                });
+            }
+            for (Future<Void> result : executor.invokeAll(tasks)) {
+                result.get();
+            }
+
+            int games = manager.getGameCount();
+            info("Recovered " + games + " games (" + records + " journal records replayed) in "
+                 + (System.currentTimeMillis() - start) + " ms.");
+            return games;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted during recovery", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Recovery failed", e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void replay(RecordList records) {
+        int[] data = records.data;
+        for (int i = 0; i < records.size; i += 4) {
+            int type = data[i];
+            int gameCode = data[i + 1];
+            if (type == Journal.GAME_CREATED) {
+                // A created record carries the time control where a move has its sequence
+                manager.restoreGame(gameCode, data[i + 2]);
+            } else if (type == Journal.GAME_REMOVED) {
+                manager.restoreRemoval(gameCode);
+            } else if (type == Journal.MOVE) {
+                GameSession session = manager.getGame(gameCode);
+                if (session != null) {
+                    session.restoreMove(data[i + 2], (short) data[i + 3]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Journal records packed four ints apiece: type, game code, sequence (or time control), move
+     */
+    private static final class RecordList {
+        int[] data = new int[1024];
+        int size;
+
+        void add(int type, int gameCode, int sequence, short move) {
+            if (size + 4 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            data[size++] = type;
+            data[size++] = gameCode;
+            data[size++] = sequence;
+            data[size++] = move;
+        }
+    }
+}
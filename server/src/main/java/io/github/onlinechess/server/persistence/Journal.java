@@ -0,0 +1,81 @@
+package io.github.onlinechess.server.persistence;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Durable log of everything needed to rebuild the live games after a restart.
+ * Appends return the record's position in the journal; an update must not be
+ * shown to clients until the record behind it is durable.
+ */
+public interface Journal {
+    // Record types
+    int GAME_CREATED = 1;
+    int MOVE = 2;
+    int GAME_REMOVED = 3;
+
+    /**
+     * Records that a game was created
+     *
+     * @param timeControl The game's packed time control, or 0 if it is untimed;
+     *                    stored in the record's sequence field
+     * @return The position of the record
+     */
+    long appendCreated(int gameCode, int timeControl);
+
+    /**
+     * Records an accepted move
+     *
+     * @param sequence The sequence number the move was given
+     * @param move The move, packed with MoveCodec
+     * @return The position of the record
+     */
+    long appendMove(int gameCode, int sequence, short move);
+
+    /**
+     * Records that a game was removed
+     *
+     * @return The position of the record
+     */
+    long appendRemoved(int gameCode);
+
+    /**
+     * Runs an action once the record at the given position, and every record
+     * before it, is durable. Actions for increasing positions run in order.
+     * They may run on the journal's commit thread, which waits for them before
+     * its next commit, so they should only hand the real work elsewhere.
+     */
+    void whenDurable(long position, Runnable action);
+
+    /**
+     * Get the position the next record will be written at
+     */
+    long getPosition();
+
+    /**
+     * Get the position below which every record is durable
+     */
+    long getDurablePosition();
+
+    /**
+     * Discards records that are no longer needed because a snapshot covers them.
+     * Records at or after the given position are always kept.
+     */
+    void compact(long position);
+
+    /**
+     * Waits until every record appended so far is durable, such as before shutting down
+     *
+     * @return Whether they became durable within the timeout
+     */
+    default boolean flush(long timeout, TimeUnit unit) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        whenDurable(getPosition() - 1, done::countDown);
+        return done.await(timeout, unit);
+    }
+
+    /**
+     * Makes everything appended so far durable and releases the journal's resources
+     */
+    void close();
+}
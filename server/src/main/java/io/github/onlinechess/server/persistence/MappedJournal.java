@@ -0,0 +1,402 @@
+package io.github.onlinechess.server.persistence;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongBinaryOperator;
+
+import io.github.onlinechess.server.jfr.JournalAppendEvent;
+import io.github.onlinechess.server.jfr.JournalCommitEvent;
+
+import static com.esotericsoftware.minlog.Log.debug;
+import static com.esotericsoftware.minlog.Log.error;
+import static com.esotericsoftware.minlog.Log.info;
+
+/**
+ * Append-only journal of fixed-size records in memory-mapped segment files.
+ *
+ * Appending never takes a lock: a writer reserves a slot with one atomic
+ * increment, writes its 16 bytes straight into the mapped segment and marks
+ * the slot written in a ring of bits. A single commit thread wakes at least
+ * once per commit interval, advances over the contiguous written slots, forces
+ * the touched segments to disk once for all of them (group commit) and then
+ * runs the actions waiting on those records. Those only publish that the
+ * records are durable; whatever they release is done on other threads, so a
+ * slow client never delays the next commit.
+ *
+ * Each record holds, by offset: 0 header (type in the low byte, packed move in
+ * the high 16 bits), 4 game code, 8 sequence, 12 checksum. A slot whose checksum
+ * does not match was never completely written, which marks the end of the
+ * journal during recovery.
+ */
+public class MappedJournal implements Journal {
+    public static final int RECORD_SIZE = 16;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    // Slots a writer may run ahead of the commit thread
+    private static final int RING_SLOTS = 1 << 16;
+    // Pending records that wake the commit thread before its interval is up
+    private static final int GROUP_SIZE = 1024;
+    private static final LongBinaryOperator OR = (a, b) -> a | b;
+    private static final LongBinaryOperator AND = (a, b) -> a & b;
+
+    private final Path directory;
+    private final int recordsPerSegment;
+    private final long maxCommitLatencyNanos;
+    private final ConcurrentHashMap<Long, MappedByteBuffer> segments = new ConcurrentHashMap<>();
+
+    // Next position to hand out
+    private final AtomicLong reserved;
+    // One bit per ring slot, set once the record in it is completely written
+    private final AtomicLongArray written = new AtomicLongArray(RING_SLOTS / 64);
+    // Every position below this is written (commit thread only)
+    private volatile long watermark;
+    // Every position below this is on disk
+    private volatile long durable;
+    // Actions waiting for their record to become durable, in submission order
+    private final Queue<Pending> pending = new ConcurrentLinkedQueue<>();
+
+    private final Thread committer;
+    private volatile boolean running = true;
+    private final LongAdder commits = new LongAdder();
+
+    /**
+     * Opens a journal, starting a fresh segment after any that already exist
+     *
+     * @param directory Where segment files are kept
+     * @param recordsPerSegment Number of records in each segment file
+     * @param maxCommitLatency Longest time a record waits before it is forced to disk
+     */
+    public MappedJournal(Path directory, int recordsPerSegment, long maxCommitLatency, TimeUnit unit) throws IOException {
+        if (recordsPerSegment < 1 || recordsPerSegment > Integer.MAX_VALUE / RECORD_SIZE) {
+            throw new IllegalArgumentException("Invalid number of records per segment: " + recordsPerSegment);
+        }
+        if (maxCommitLatency <= 0) {
+            throw new IllegalArgumentException("Commit latency must be positive.");
+        }
+        this.directory = directory;
+        this.recordsPerSegment = recordsPerSegment;
+        this.maxCommitLatencyNanos = unit.toNanos(maxCommitLatency);
+        Files.createDirectories(directory);
+
+        // Never write into an old segment; recovery still needs it
+        List<Long> existing = listSegments(directory);
+        long firstSegment = existing.isEmpty() ? 0 : existing.get(existing.size() - 1) + 1;
+        long start = firstSegment * recordsPerSegment;
+        reserved = new AtomicLong(start);
+        watermark = start;
+        durable = start;
+        segment(firstSegment);
+
+        committer = new Thread(this::commitLoop, "journal-commit");
+        committer.setDaemon(true);
+        committer.start();
+        info("MappedJournal opened in " + directory + " at segment " + firstSegment + ".");
+    }
+
+    @Override
+    public long appendCreated(int gameCode, int timeControl) {
+        return append(GAME_CREATED, gameCode, timeControl, (short) 0);
+    }
+
+    @Override
+    public long appendMove(int gameCode, int sequence, short move) {
+        return append(MOVE, gameCode, sequence, move);
+    }
+
+    @Override
+    public long appendRemoved(int gameCode) {
+        return append(GAME_REMOVED, gameCode, 0, (short) 0);
+    }
+
+    private long append(int type, int gameCode, int sequence, short move) {
+        JournalAppendEvent event = new JournalAppendEvent();
+        event.begin();
+        long position = reserved.getAndIncrement();
+        while (position - watermark >= RING_SLOTS) {
+            // Too far ahead of the commit thread; let it catch up
+            LockSupport.unpark(committer);
+            Thread.yield();
+        }
+
+        MappedByteBuffer segment = segment(position / recordsPerSegment);
+        int offset = (int) (position % recordsPerSegment) * RECORD_SIZE;
+        int header = (type & 0xFF) | (move << 16);
+        segment.putInt(offset, header);
+        segment.putInt(offset + 4, gameCode);
+        segment.putInt(offset + 8, sequence);
+        segment.putInt(offset + 12, checksum(header, gameCode, sequence));
+        markWritten(position);
+
+        if (position - durable >= GROUP_SIZE) {
+            LockSupport.unpark(committer);
+        }
+        event.end();
+        if (event.shouldCommit()) {
+            event.gameCode = gameCode;
+            event.recordType = type;
+            event.position = position;
+            event.bytes = RECORD_SIZE;
+            event.commit();
+        }
+        return position;
+    }
+
+    @Override
+    public void whenDurable(long position, Runnable action) {
+        // Always queued, never run inline, so actions keep their order
+        pending.offer(new Pending(position, action));
+    }
+
+    @Override
+    public long getPosition() {
+        return reserved.get();
+    }
+
+    /**
+     * Deletes every segment that ends before the given position
+     */
+    @Override
+    public void compact(long position) {
+        long firstKept = position / recordsPerSegment;
+        try {
+            for (long index : listSegments(directory)) {
+                if (index >= firstKept) {
+                    break;
+                }
+                segments.remove(index);
+                Files.deleteIfExists(segmentFile(directory, index));
+                debug("Compacted journal segment " + index);
+            }
+        } catch (IOException e) {
+            error("Journal compaction failed", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(committer);
+        try {
+            committer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        info("MappedJournal closed after " + commits.sum() + " commits.");
+    }
+
+    private void commitLoop() {
+        while (running) {
+            LockSupport.parkNanos(this, maxCommitLatencyNanos);
+            commit();
+        }
+        // Flush whatever was appended before close
+        commit();
+    }
+
+    private void commit() {
+        try {
+            long end = advanceWatermark();
+            long start = durable;
+            if (end > start) {
+                JournalCommitEvent event = new JournalCommitEvent();
+                event.begin();
+                for (long index = start / recordsPerSegment; index <= (end - 1) / recordsPerSegment; index++) {
+                    segment(index).force();
+                }
+                durable = end;
+                commits.increment();
+                event.end();
+                if (event.shouldCommit()) {
+                    event.records = (int) (end - start);
+                    event.bytes = (end - start) * RECORD_SIZE;
+                    event.commit();
+                }
+            }
+            runDurableActions(durable);
+        } catch (Exception e) {
+            // Keep committing; a failed force is retried on the next round
+            error("Journal commit failed", e);
+        }
+    }
+
+    /**
+     * Moves the watermark over every contiguous written slot, freeing them for reuse
+     */
+    private long advanceWatermark() {
+        long position = watermark;
+        while (true) {
+            int slot = (int) (position & (RING_SLOTS - 1));
+            long bit = 1L << slot;
+            if ((written.get(slot >>> 6) & bit) == 0) {
+                break;
+            }
+            written.accumulateAndGet(slot >>> 6, ~bit, AND);
+            position++;
+        }
+        watermark = position;
+        return position;
+    }
+
+    private void markWritten(long position) {
+        int slot = (int) (position & (RING_SLOTS - 1));
+        written.accumulateAndGet(slot >>> 6, 1L << slot, OR);
+    }
+
+    private void runDurableActions(long durableEnd) {
+        Pending head;
+        while ((head = pending.peek()) != null && head.position < durableEnd) {
+            pending.poll();
+            try {
+                head.action.run();
+            } catch (Exception e) {
+                error("Journal action failed", e);
+            }
+        }
+    }
+
+    private MappedByteBuffer segment(long index) {
+        return segments.computeIfAbsent(index, this::openSegment);
+    }
+
+    private MappedByteBuffer openSegment(long index) {
+        Path file = segmentFile(directory, index);
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            long size = (long) recordsPerSegment * RECORD_SIZE;
+            raf.setLength(size);
+            // The mapping stays valid after the channel is closed
+            return raf.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not map journal segment " + file, e);
+        }
+    }
+
+    /**
+     * Reads every complete record from the given position onwards, oldest first.
+     * A segment is read up to its first incomplete record.
+     *
+     * @return The number of records read
+     */
+    public static long read(Path directory, long fromPosition, RecordHandler handler) throws IOException {
+        long count = 0;
+        for (long index : listSegments(directory)) {
+            Path file = segmentFile(directory, index);
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                long records = channel.size() / RECORD_SIZE;
+                long segmentStart = index * records;
+                if (segmentStart + records <= fromPosition) {
+                    continue;
+                }
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, records * RECORD_SIZE);
+                for (long i = Math.max(0, fromPosition - segmentStart); i < records; i++) {
+                    int offset = (int) i * RECORD_SIZE;
+                    int header = buffer.getInt(offset);
+                    int gameCode = buffer.getInt(offset + 4);
+                    int sequence = buffer.getInt(offset + 8);
+                    if (buffer.getInt(offset + 12) != checksum(header, gameCode, sequence)) {
+                        break;
+                    }
+                    handler.record(segmentStart + i, header & 0xFF, gameCode, sequence, (short) (header >>> 16));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Receives records read back from a journal
+     */
+    public interface RecordHandler {
+        void record(long position, int type, int gameCode, int sequence, short move);
+    }
+
+    /**
+     * Get the checksum stored with a record; never 0, so a zeroed slot never matches
+     */
+    public static int checksum(int header, int gameCode, int sequence) {
+        int h = header * 0x9E3779B9;
+        h = (h ^ gameCode) * 0x85EBCA6B;
+        h = (h ^ sequence) * 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h != 0 ? h : 1;
+    }
+
+    /**
+     * Get the file holding the segment with the given index
+     */
+    public static Path segmentFile(Path directory, long index) {
+        return directory.resolve(String.format("%s%012d%s", SEGMENT_PREFIX, index, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Get the indices of the segments in a directory, oldest first
+     */
+    public static List<Long> listSegments(Path directory) throws IOException {
+        List<Long> indices = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return indices;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, SEGMENT_PREFIX + "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try {
+                    indices.add(Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+                } catch (NumberFormatException e) {
+                    // Not one of ours
+                }
+            }
+        }
+        Collections.sort(indices);
+        return indices;
+    }
+
+    /**
+     * Get the number of records in each segment
+     */
+    public int getRecordsPerSegment() {
+        return recordsPerSegment;
+    }
+
+    @Override
+    public long getDurablePosition() {
+        return durable;
+    }
+
+    /**
+     * Get the number of group commits so far
+     */
+    public long getCommitCount() {
+        return commits.sum();
+    }
+
+    /**
+     * An action waiting for a record to become durable
+     */
+    private static final class Pending {
+        final long position;
+        final Runnable action;
+
+        Pending(long position, Runnable action) {
+            this.position = position;
+            this.action = action;
+        }
+    }
+}
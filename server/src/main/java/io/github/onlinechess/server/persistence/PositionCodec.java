@@ -0,0 +1,113 @@
+package io.github.onlinechess.server.persistence;
+
+import com.github.bhlangonijr.chesslib.Board;
+import com.github.bhlangonijr.chesslib.CastleRight;
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+
+/**
+ * Packs a board position into a fixed 37 bytes, against roughly 60 for its FEN.
+ *
+ * Bytes 0-31 hold two squares each, one nibble per square (0 for empty,
+ * otherwise the Piece ordinal plus one), in Square order from A1 to H8.
+ * They are followed by the side to move and castling rights, the en passant
+ * square, the halfmove clock and the fullmove number.
+ */
+public final class PositionCodec {
+    public static final int SIZE = 37;
+
+    // FEN symbol of each piece, in Piece enum order
+    private static final String FEN_SYMBOLS = "PNBRQKpnbrqk";
+    private static final Square[] SQUARES = Square.values();
+
+    // Bits of the side and castling byte
+    private static final int BLACK_TO_MOVE = 1;
+    private static final int WHITE_KING_SIDE = 1 << 1;
+    private static final int WHITE_QUEEN_SIDE = 1 << 2;
+    private static final int BLACK_KING_SIDE = 1 << 3;
+    private static final int BLACK_QUEEN_SIDE = 1 << 4;
+
+    private PositionCodec() {}
+
+    /**
+     * Writes the board's position into SIZE bytes starting at offset
+     */
+    public static void encode(Board board, byte[] out, int offset) {
+        for (int i = 0; i < 64; i += 2) {
+            out[offset + (i >> 1)] = (byte) (nibble(board.getPiece(SQUARES[i]))
+                                            | nibble(board.getPiece(SQUARES[i + 1])) << 4);
+        }
+        int state = board.getSideToMove() == Side.BLACK ? BLACK_TO_MOVE : 0;
+        state |= castleBits(board.getCastleRight(Side.WHITE), WHITE_KING_SIDE, WHITE_QUEEN_SIDE);
+        state |= castleBits(board.getCastleRight(Side.BLACK), BLACK_KING_SIDE, BLACK_QUEEN_SIDE);
+        out[offset + 32] = (byte) state;
+        Square enPassant = board.getEnPassant();
+        out[offset + 33] = (byte) (enPassant != null ? enPassant.ordinal() : Square.NONE.ordinal());
+        out[offset + 34] = (byte) Math.min(board.getHalfMoveCounter(), 255);
+        int fullMoves = board.getMoveCounter();
+        out[offset + 35] = (byte) (fullMoves >>> 8);
+        out[offset + 36] = (byte) fullMoves;
+    }
+
+    /**
+     * Rebuilds the FEN of a position written by {@link #encode}
+     */
+    public static String decodeFen(byte[] in, int offset) {
+        StringBuilder fen = new StringBuilder(90);
+        for (int rank = 7; rank >= 0; rank--) {
+            int empty = 0;
+            for (int file = 0; file < 8; file++) {
+                int square = rank * 8 + file;
+                int packed = in[offset + (square >> 1)];
+                int nibble = (square & 1) == 0 ? packed & 0xF : (packed >> 4) & 0xF;
+                if (nibble == 0) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    fen.append(empty);
+                    empty = 0;
+                }
+                fen.append(FEN_SYMBOLS.charAt(nibble - 1));
+            }
+            if (empty > 0) {
+                fen.append(empty);
+            }
+            if (rank > 0) {
+                fen.append('/');
+            }
+        }
+
+        int state = in[offset + 32];
+        fen.append((state & BLACK_TO_MOVE) != 0 ? " b " : " w ");
+        int castleStart = fen.length();
+        if ((state & WHITE_KING_SIDE) != 0) fen.append('K');
+        if ((state & WHITE_QUEEN_SIDE) != 0) fen.append('Q');
+        if ((state & BLACK_KING_SIDE) != 0) fen.append('k');
+        if ((state & BLACK_QUEEN_SIDE) != 0) fen.append('q');
+        if (fen.length() == castleStart) {
+            fen.append('-');
+        }
+
+        int enPassant = in[offset + 33] & 0xFF;
+        fen.append(' ').append(enPassant < 64 ? SQUARES[enPassant].value().toLowerCase() : "-");
+        fen.append(' ').append(in[offset + 34] & 0xFF);
+        fen.append(' ').append((in[offset + 35] & 0xFF) << 8 | (in[offset + 36] & 0xFF));
+        return fen.toString();
+    }
+
+    private static int nibble(Piece piece) {
+        return piece == null || piece == Piece.NONE ? 0 : piece.ordinal() + 1;
+    }
+
+    private static int castleBits(CastleRight right, int kingSide, int queenSide) {
+        if (right == CastleRight.KING_AND_QUEEN_SIDE) {
+            return kingSide | queenSide;
+        }
+        if (right == CastleRight.KING_SIDE) {
+            return kingSide;
+        }
+        return right == CastleRight.QUEEN_SIDE ? queenSide : 0;
+    }
+}
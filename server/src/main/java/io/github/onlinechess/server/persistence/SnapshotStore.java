@@ -0,0 +1,184 @@
+package io.github.onlinechess.server.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.IntStream;
+
+import io.github.onlinechess.server.game.GameSession;
+import io.github.onlinechess.server.game.GameSessionManager;
+
+import static com.esotericsoftware.minlog.Log.info;
+import static com.esotericsoftware.minlog.Log.warn;
+
+/**
+ * Periodic snapshots of every live game, one file per shard.
+ *
+ * A snapshot starts by noting the journal position, then saves each game under
+ * its own lock, so every file holds at least every move journaled before that
+ * position. Once all files are safely on disk, journal segments that end before
+ * it are deleted. Recovery loads the files in parallel and replays the journal
+ * from the position; moves a game already has are skipped by sequence number.
+ *
+ * Each file starts with a magic number, a format version and the journal
+ * position, followed by one entry per game (see {@link GameSession#writeState})
+ * and a 0 game code as terminator.
+ */
+public class SnapshotStore {
+    // Format version written now; game handoffs between nodes use the same entries
+    public static final int VERSION = 2;
+    private static final int MAGIC = 0x43485353;
+    // Oldest format still readable; version 1 predates clocks
+    private static final int MIN_VERSION = 1;
+    private static final String PREFIX = "shard-";
+    private static final String SUFFIX = ".snap";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Path directory;
+
+    public SnapshotStore(Path directory) throws IOException {
+        this.directory = directory;
+        Files.createDirectories(directory);
+    }
+
+    /**
+     * Snapshots every live game, then compacts the journal
+     *
+     * @return The number of games written
+     */
+    public long write(GameSessionManager manager, Journal journal) throws IOException {
+        long start = System.currentTimeMillis();
+        final long position = journal.getPosition();
+        final AtomicLong games = new AtomicLong();
+        int shardCount = manager.getShardCount();
+        try {
+            IntStream.range(0, shardCount).parallel().forEach(shard -> {
+                try {
+                    games.addAndGet(writeShard(manager, shard, position));
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // Files from a run with more shards would hold stale copies of games
+        for (Path file : listFiles()) {
+            if (shardOf(file) >= shardCount) {
+                Files.deleteIfExists(file);
+            }
+        }
+        journal.compact(position);
+        info("Snapshot of " + games.get() + " games written in " + (System.currentTimeMillis() - start) + " ms.");
+        return games.get();
+    }
+
+    private long writeShard(GameSessionManager manager, int shard, long position) throws IOException {
+        Path file = directory.resolve(PREFIX + shard + SUFFIX);
+        Path temp = directory.resolve(PREFIX + shard + SUFFIX + ".tmp");
+        long count = 0;
+        try (FileOutputStream stream = new FileOutputStream(temp.toFile());
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, BUFFER_SIZE))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(position);
+            for (GameSession session : manager.getShardGames(shard)) {
+                session.writeState(out);
+                count++;
+            }
+            out.writeInt(0);
+            out.flush();
+            stream.getFD().sync();
+        }
+        // Replace the old file only once the new one is complete
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return count;
+    }
+
+    /**
+     * Loads every snapshot file into the manager, one file per task
+     *
+     * @return The journal position to replay from, or -1 if there are no snapshots
+     */
+    public long load(final GameSessionManager manager, ExecutorService executor) throws IOException {
+        List<Callable<Long>> tasks = new ArrayList<>();
+        for (final Path file : listFiles()) {
+            tasks.add(() -> loadFile(manager, file));
+        }
+        if (tasks.isEmpty()) {
+            return -1;
+        }
+
+        long position = Long.MAX_VALUE;
+        try {
+            for (Future<Long> result : executor.invokeAll(tasks)) {
+                // Replay from the oldest file, in case a snapshot was interrupted
+                position = Math.min(position, result.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while loading snapshots", e);
+        } catch (ExecutionException e) {
+            throw new IOException("Could not load snapshots", e.getCause());
+        }
+        return position;
+    }
+
+    private long loadFile(GameSessionManager manager, Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), BUFFER_SIZE))) {
+            int version = in.readInt() == MAGIC ? in.readInt() : -1;
+            if (version < MIN_VERSION || version > VERSION) {
+                throw new IOException("Not a snapshot file, or an unsupported version: " + file);
+            }
+            long position = in.readLong();
+            long games = 0;
+            int gameCode;
+            while ((gameCode = in.readInt()) != 0) {
+                if (manager.restoreGame(gameCode, version, in) != null) {
+                    games++;
+                }
+            }
+            info("Loaded " + games + " games from " + file.getFileName());
+            return position;
+        }
+    }
+
+    private List<Path> listFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                if (shardOf(file) >= 0) {
+                    files.add(file);
+                } else {
+                    warn("Ignoring unexpected snapshot file " + file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static int shardOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,249 @@
+package io.github.onlinechess.server.timer;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+import static com.esotericsoftware.minlog.Log.error;
+import static com.esotericsoftware.minlog.Log.info;
+
+/**
+ * Runs timeouts for very many objects on a single thread.
+ *
+ * Timeouts are hashed into a ring of buckets by deadline, one bucket per tick,
+ * and the timer thread only ever looks at the bucket for the current tick.
+ * Scheduling, rescheduling and cancelling are O(1) from any thread: the caller
+ * writes the new deadline and queues the timeout on a lock-free queue, and the
+ * timer thread moves it to its new bucket on its next tick. A timeout that is
+ * rescheduled several times before then is only moved once.
+ *
+ * The thread sleeps until the next tick while timeouts are pending, and
+ * indefinitely while there are none, so an idle wheel costs nothing.
+ * Tasks run on the timer thread and must be short; hand real work elsewhere.
+ */
+public class HashedWheelTimer {
+    // Deadline of a timeout that is not scheduled
+    private static final long NONE = Long.MAX_VALUE;
+
+    private final long tickNanos;
+    private final int mask;
+    private final Bucket[] wheel;
+    // Timeouts whose deadline changed, waiting for the timer thread
+    private final Queue<Timeout> changes = new ConcurrentLinkedQueue<>();
+    private final long startNanos = System.nanoTime();
+    private final Thread worker;
+    private volatile boolean running = true;
+    // Set while the timer thread sleeps with nothing scheduled
+    private volatile boolean idle;
+    private final LongAdder expired = new LongAdder();
+
+    // Next tick to process (timer thread only)
+    private long tick;
+    // Number of timeouts in the wheel (timer thread only)
+    private int scheduled;
+
+    /**
+     * Creates and starts a timer
+     *
+     * @param tickDuration How far apart deadlines must be to fire separately
+     * @param wheelSize Number of buckets, rounded up to a power of two
+     */
+    public HashedWheelTimer(long tickDuration, TimeUnit unit, int wheelSize) {
+        if (tickDuration <= 0) {
+            throw new IllegalArgumentException("Tick duration must be positive.");
+        }
+        if (wheelSize < 1 || wheelSize > 1 << 24) {
+            throw new IllegalArgumentException("Invalid wheel size: " + wheelSize);
+        }
+        this.tickNanos = unit.toNanos(tickDuration);
+        int size = Integer.highestOneBit(wheelSize - 1 << 1 | 1);
+        this.mask = size - 1;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        worker = new Thread(this::run, "timer-wheel");
+        worker.setDaemon(true);
+        worker.start();
+        info("HashedWheelTimer started with " + size + " buckets of " + unit.toMillis(tickDuration) + " ms.");
+    }
+
+    /**
+     * Creates a timeout handle. It does nothing until it is scheduled.
+     *
+     * @param task Runs on the timer thread when the timeout expires
+     */
+    public Timeout newTimeout(Runnable task) {
+        return new Timeout(task);
+    }
+
+    public void stop() {
+        running = false;
+        LockSupport.unpark(worker);
+    }
+
+    /**
+     * Get the number of timeouts that have fired
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    private long now() {
+        return System.nanoTime() - startNanos;
+    }
+
+    private void run() {
+        while (running) {
+            long now = now();
+            applyChanges();
+            while (tick * tickNanos <= now) {
+                expire(wheel[(int) (tick & mask)], now);
+                tick++;
+            }
+
+            if (scheduled == 0) {
+                // Sleep until a timeout is scheduled; re-check so a wake-up is never missed
+                idle = true;
+                if (changes.isEmpty() && running) {
+                    LockSupport.park(this);
+                }
+                idle = false;
+                // Skip the ticks slept through; nothing was due in them
+                tick = Math.max(tick, now() / tickNanos);
+            } else {
+                LockSupport.parkNanos(this, tick * tickNanos - now());
+            }
+        }
+    }
+
+    /**
+     * Moves every changed timeout to the bucket for its new deadline
+     */
+    private void applyChanges() {
+        Timeout timeout;
+        while ((timeout = changes.poll()) != null) {
+            timeout.queued.set(false);
+            if (timeout.bucket != null) {
+                timeout.bucket.remove(timeout);
+                scheduled--;
+            }
+            long deadline = timeout.deadline.get();
+            if (deadline == NONE) {
+                continue;
+            }
+            // Round up, so a timeout never fires early; overdue ones fire on the next tick
+            long deadlineTick = Math.max((deadline + tickNanos - 1) / tickNanos, tick);
+            timeout.rounds = (deadlineTick - tick) / wheel.length;
+            wheel[(int) (deadlineTick & mask)].add(timeout);
+            scheduled++;
+        }
+    }
+
+    private void expire(Bucket bucket, long now) {
+        Timeout timeout = bucket.head;
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.rounds > 0) {
+                timeout.rounds--;
+                timeout = next;
+                continue;
+            }
+            long deadline = timeout.deadline.get();
+            // Fails if the timeout was rescheduled or cancelled meanwhile; it is then queued to move
+            if (deadline <= now && timeout.deadline.compareAndSet(deadline, NONE)) {
+                bucket.remove(timeout);
+                scheduled--;
+                expired.increment();
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    error("Timer task failed", e);
+                }
+            }
+            timeout = next;
+        }
+    }
+
+    /**
+     * A reusable timeout. Each one is in the wheel at most once.
+     */
+    public final class Timeout {
+        private final Runnable task;
+        private final AtomicBoolean queued = new AtomicBoolean();
+        private final AtomicLong deadline = new AtomicLong(NONE);
+        // Position in the wheel (timer thread only)
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+        private long rounds;
+
+        private Timeout(Runnable task) {
+            this.task = task;
+        }
+
+        /**
+         * Sets the timeout to fire after the given delay, replacing any earlier deadline
+         */
+        public void schedule(long delay, TimeUnit unit) {
+            deadline.set(now() + Math.max(0, unit.toNanos(delay)));
+            submit();
+        }
+
+        /**
+         * Stops the timeout from firing, if it has not already
+         */
+        public void cancel() {
+            deadline.set(NONE);
+            submit();
+        }
+
+        public boolean isScheduled() {
+            return deadline.get() != NONE;
+        }
+
+        private void submit() {
+            if (queued.compareAndSet(false, true)) {
+                changes.offer(this);
+                if (idle) {
+                    LockSupport.unpark(worker);
+                }
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of the timeouts hashed to one tick (timer thread only)
+     */
+    private static final class Bucket {
+        Timeout head;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.previous = null;
+            timeout.next = head;
+            if (head != null) {
+                head.previous = timeout;
+            }
+            head = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.bucket = null;
+            timeout.previous = null;
+            timeout.next = null;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+package io.github.onlinechess.server.chat;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import org.junit.Test;
+
+import io.github.onlinechess.server.network.RecordingConnection;
+import io.github.onlinechess.shared.packets.ChatBatchPacket;
+import io.github.onlinechess.shared.serializers.ChatBatchPacketSerializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ChatRoomTest {
+    private static final int MAX_BATCH_BYTES = 1536;
+
+    @Test
+    public void flushSendsOnlyWhatIsNew() {
+        ChatRoom room = new ChatRoom(1, 8, MAX_BATCH_BYTES);
+        assertTrue(room.flush().isEmpty());
+
+        room.post("a", "one", 10);
+        room.post("b", "two", 20);
+        List<ChatBatchPacket> first = room.flush();
+        assertEquals(1, first.size());
+        assertEquals(0, first.get(0).getFirstSequence());
+        assertEquals(2, first.get(0).size());
+        assertEquals("two", first.get(0).getText(1));
+        assertFalse(first.get(0).isHistory());
+
+        room.post("a", "three", 30);
+        List<ChatBatchPacket> second = room.flush();
+        assertEquals(2, second.get(0).getFirstSequence());
+        assertEquals(1, second.get(0).size());
+        assertTrue(room.flush().isEmpty());
+    }
+
+    @Test
+    public void ringKeepsOnlyTheNewestMessages() {
+        ChatRoom room = new ChatRoom(1, 4, MAX_BATCH_BYTES);
+        for (int i = 0; i < 10; i++) {
+            room.post("a", "message " + i, i);
+        }
+        ChatBatchPacket batch = room.flush().get(0);
+        assertEquals(6, batch.getFirstSequence());
+        assertEquals(4, batch.size());
+        assertEquals("message 9", batch.getText(3));
+        assertEquals(9, batch.getTimestamp(3));
+    }
+
+    @Test
+    public void joinerGetsOnlyMessagesAlreadyFlushed() {
+        ChatRoom room = new ChatRoom(1, 8, MAX_BATCH_BYTES);
+        List<ChatBatchPacket> empty = room.join(new RecordingConnection());
+        assertEquals(1, empty.size());
+        assertEquals(0, empty.get(0).size());
+        assertTrue(empty.get(0).isHistory());
+
+        room.post("a", "sent", 1);
+        room.flush();
+        room.post("a", "pending", 2);
+        List<ChatBatchPacket> history = room.join(new RecordingConnection());
+        assertEquals(1, history.size());
+        assertEquals(1, history.get(0).size());
+        assertEquals("sent", history.get(0).getText(0));
+        assertEquals(2, room.getMembers().size());
+    }
+
+    @Test
+    public void leavingLastMemberEmptiesTheRoom() {
+        ChatRoom room = new ChatRoom(1, 8, MAX_BATCH_BYTES);
+        RecordingConnection first = new RecordingConnection();
+        RecordingConnection second = new RecordingConnection();
+        room.join(first);
+        room.join(second);
+        assertFalse(room.leave(first));
+        assertTrue(room.leave(second));
+        assertTrue(room.isEmpty());
+    }
+
+    @Test
+    public void fullHistoryIsSplitIntoBatchesThatFit() {
+        ChatRoom room = new ChatRoom(1, 128, MAX_BATCH_BYTES);
+        char[] longest = new char[280];
+        for (int i = 0; i < 128; i++) {
+            // Half the messages need three bytes per char in UTF-8
+            Arrays.fill(longest, i % 2 == 0 ? 'x' : '\u20ac');
+            room.post("Spectator " + i, new String(longest), 1000L * i);
+        }
+        room.flush();
+
+        List<ChatBatchPacket> history = room.join(new RecordingConnection());
+        assertTrue(history.size() > 1);
+        Kryo kryo = new Kryo();
+        kryo.register(ChatBatchPacket.class, new ChatBatchPacketSerializer());
+        long expected = 0;
+        for (ChatBatchPacket batch : history) {
+            assertEquals(expected, batch.getFirstSequence());
+            expected += batch.size();
+            Output output = new Output(64, -1);
+            kryo.writeObject(output, batch);
+            assertTrue("Batch of " + output.position() + " bytes", output.position() <= MAX_BATCH_BYTES);
+        }
+        assertEquals(128, expected);
+    }
+
+    @Test
+    public void busyTickIsSplitIntoConsecutiveBatches() {
+        ChatRoom room = new ChatRoom(1, 128, MAX_BATCH_BYTES);
+        char[] text = new char[280];
+        Arrays.fill(text, 'y');
+        for (int i = 0; i < 50; i++) {
+            room.post("Guest " + i, new String(text), i);
+        }
+        List<ChatBatchPacket> batches = room.flush();
+        assertTrue(batches.size() > 1);
+        long expected = 0;
+        for (ChatBatchPacket batch : batches) {
+            assertEquals(expected, batch.getFirstSequence());
+            expected += batch.size();
+        }
+        assertEquals(50, expected);
+    }
+}
@@ -0,0 +1,84 @@
+package io.github.onlinechess.server.game;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.bhlangonijr.chesslib.Side;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GameClockTest {
+    private static final long START = 1_000_000_000L;
+
+    @Test
+    public void packKeepsBaseAndIncrement() {
+        assertEquals(0, GameClock.pack(0, 5));
+        assertEquals(300 << 16 | 2, GameClock.pack(300, 2));
+        // Clamped to 16 bits each
+        assertEquals(0xFFFF << 16 | 0xFFFF, GameClock.pack(100_000, 100_000));
+        assertEquals(60 << 16, GameClock.pack(60, -1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void untimedGameHasNoClock() {
+        new GameClock(0);
+    }
+
+    @Test
+    public void onlyTheRunningSideLosesTime() {
+        GameClock clock = new GameClock(GameClock.pack(60, 0));
+        clock.start(Side.WHITE, START);
+
+        assertEquals(57_000, clock.remaining(Side.WHITE, START + seconds(3), 0));
+        assertEquals(60_000, clock.remaining(Side.BLACK, START + seconds(3), 0));
+    }
+
+    @Test
+    public void punchChargesTheMoverAddsTheIncrementAndHandsOver() {
+        GameClock clock = new GameClock(GameClock.pack(60, 2));
+        clock.start(Side.WHITE, START);
+
+        assertEquals(-3_000, clock.punch(START + seconds(5), 0));
+        assertEquals(Side.BLACK, clock.getRunning());
+        assertEquals(57_000, clock.remaining(Side.WHITE, START + seconds(9), 0));
+        assertEquals(56_000, clock.remaining(Side.BLACK, START + seconds(9), 0));
+    }
+
+    @Test
+    public void compensationIsNotCharged() {
+        GameClock clock = new GameClock(GameClock.pack(60, 0));
+        clock.start(Side.WHITE, START);
+
+        assertEquals(-4_800, clock.punch(START + seconds(5), 200));
+        // Never more than the time actually used
+        assertEquals(0, clock.punch(START + seconds(5) + TimeUnit.MILLISECONDS.toNanos(100), 500));
+    }
+
+    @Test
+    public void flagEmptiesTheClockAndStopsIt() {
+        GameClock clock = new GameClock(GameClock.pack(60, 0));
+        clock.start(Side.BLACK, START);
+        clock.flag();
+
+        assertEquals(Side.BLACK, clock.getFlagged());
+        assertNull(clock.getRunning());
+        assertEquals(0, clock.remaining(Side.BLACK, START + seconds(100), 0));
+        assertEquals(60_000, clock.remaining(Side.WHITE, START + seconds(100), 0));
+    }
+
+    @Test
+    public void restoreSetsTimesWithTheClockStopped() {
+        GameClock clock = new GameClock(GameClock.pack(60, 0));
+        clock.start(Side.WHITE, START);
+        clock.restore(12_000, 34_000, null);
+
+        assertNull(clock.getRunning());
+        assertEquals(12_000, clock.remaining(Side.WHITE, START + seconds(10), 0));
+        assertEquals(34_000, clock.remaining(Side.BLACK, START + seconds(10), 0));
+    }
+
+    private static long seconds(long seconds) {
+        return TimeUnit.SECONDS.toNanos(seconds);
+    }
+}
@@ -0,0 +1,106 @@
+package io.github.onlinechess.server.game;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GameCodePoolTest {
+
+    @Test
+    public void everyCodeInTheRangeIsHandedOutOnce() {
+        // Not a multiple of 64, so the last word has bits past the end of the range
+        GameCodePool pool = new GameCodePool(1000, 1099, 0);
+        Set<Integer> codes = ConcurrentHashMap.newKeySet();
+        for (int i = 0; i < 100; i++) {
+            int code = pool.allocate();
+            assertTrue(code >= 1000 && code <= 1099);
+            assertTrue(codes.add(code));
+        }
+        assertEquals(-1, pool.allocate());
+        assertEquals(100, pool.getAllocatedCount());
+    }
+
+    @Test
+    public void concurrentAllocationsNeverShareACode() throws InterruptedException {
+        GameCodePool pool = new GameCodePool(0, 4095, 0);
+        Set<Integer> codes = ConcurrentHashMap.newKeySet();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 1024; i++) {
+                    codes.add(pool.allocate());
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        // A code handed out twice, or a failed allocation, would leave the set short
+        assertEquals(4096, codes.size());
+        assertFalse(codes.contains(-1));
+        assertEquals(-1, pool.allocate());
+    }
+
+    @Test
+    public void releasedCodeWaitsOutItsQuarantine() throws InterruptedException {
+        GameCodePool pool = new GameCodePool(5, 5, 50);
+        assertEquals(5, pool.allocate());
+        pool.release(5);
+        assertEquals(0, pool.getAllocatedCount());
+        assertTrue(pool.isAllocated(5));
+        assertEquals(-1, pool.allocate());
+
+        Thread.sleep(60);
+        assertEquals(5, pool.allocate());
+    }
+
+    @Test
+    public void reserveClaimsOnlyAFreeCodeInRange() {
+        GameCodePool pool = new GameCodePool(100, 199, 1000);
+        assertTrue(pool.reserve(150));
+        assertFalse(pool.reserve(150));
+        assertFalse(pool.reserve(99));
+        assertFalse(pool.reserve(200));
+
+        pool.release(150);
+        assertFalse(pool.reserve(150));
+    }
+
+    @Test
+    public void unclaimedCodeSkipsQuarantine() {
+        GameCodePool pool = new GameCodePool(100, 199, 60_000);
+        assertTrue(pool.reserve(150));
+        pool.unclaim(150);
+        assertFalse(pool.isAllocated(150));
+        assertEquals(0, pool.getAllocatedCount());
+        // A code that is not held is left alone
+        pool.unclaim(150);
+        assertEquals(0, pool.getAllocatedCount());
+        assertTrue(pool.reserve(150));
+    }
+
+    @Test
+    public void rejectedCodesGoStraightBack() {
+        GameCodePool pool = new GameCodePool(0, 63, 60_000);
+        int code = pool.allocate(candidate -> candidate % 2 == 0, 64);
+        assertEquals(0, code % 2);
+        assertEquals(1, pool.getAllocatedCount());
+        for (int odd = 1; odd < 64; odd += 2) {
+            assertFalse(pool.isAllocated(odd));
+        }
+        assertEquals(-1, pool.allocate(candidate -> false, 10));
+        assertNotEquals(-1, pool.allocate());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rangeMustNotBeEmpty() {
+        new GameCodePool(10, 9, 0);
+    }
+}
@@ -0,0 +1,143 @@
+package io.github.onlinechess.server.game;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+import com.github.bhlangonijr.chesslib.move.Move;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.onlinechess.server.network.Broadcaster;
+import io.github.onlinechess.server.network.DirectDispatcher;
+import io.github.onlinechess.server.network.RecordingConnection;
+import io.github.onlinechess.server.persistence.DisabledJournal;
+import io.github.onlinechess.server.timer.HashedWheelTimer;
+import io.github.onlinechess.shared.packets.MovePacket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class GameSessionManagerTest {
+    private HashedWheelTimer timer;
+    private GameSessionManager manager;
+    private GameSession session;
+    private RecordingConnection white;
+    private RecordingConnection black;
+
+    @Before
+    public void startGame() {
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 64);
+        manager = new GameSessionManager(4, new Broadcaster(RecordingConnection.SERIALIZATION, 1024, 2048, 4096), new DisabledJournal(), timer,
+                                         new DirectDispatcher());
+        session = manager.createGame();
+        white = new RecordingConnection();
+        black = new RecordingConnection();
+        assertTrue(manager.seatPlayer(session, white, Side.WHITE));
+        assertTrue(manager.seatPlayer(session, black, Side.BLACK));
+    }
+
+    @After
+    public void stopTimer() {
+        timer.stop();
+    }
+
+    @Test
+    public void createdGameCanBeFoundAndRemoved() {
+        assertSame(session, manager.getGame(session.getGameCode()));
+        assertSame(session, manager.removeGame(session.getGameCode()));
+        assertNull(manager.getGame(session.getGameCode()));
+    }
+
+    @Test
+    public void playerInAGameBeingPlayedStaysSeated() {
+        play(white, Square.E2, Square.E4, 1);
+
+        assertFalse(manager.leaveForNewGame(white));
+        assertEquals(session.getGameCode(), white.getGameCode());
+        assertNotEquals(0, white.getSessionToken());
+    }
+
+    @Test
+    public void playerInAFinishedGameIsFreeForANewOne() {
+        // Fool's mate
+        play(white, Square.F2, Square.F3, 1);
+        play(black, Square.E7, Square.E5, 2);
+        play(white, Square.G2, Square.G4, 3);
+        play(black, Square.D8, Square.H4, 4);
+        assertTrue(session.isFinished());
+        long token = black.getSessionToken();
+
+        assertTrue(manager.leaveForNewGame(black));
+        assertEquals(0, black.getGameCode());
+        assertEquals(0, black.getSessionToken());
+        assertNull(manager.resume(new RecordingConnection(), token, 4));
+        // White is still in the game, so it stays until they leave too
+        assertNotNull(manager.getGame(session.getGameCode()));
+
+        assertTrue(manager.leaveForNewGame(white));
+        assertNull(manager.getGame(session.getGameCode()));
+    }
+
+    @Test
+    public void spectatorLeavesTheGameItWatches() {
+        RecordingConnection spectator = new RecordingConnection();
+        session.addSpectator(spectator);
+
+        assertTrue(manager.leaveForNewGame(spectator));
+        assertEquals(0, spectator.getGameCode());
+        assertEquals(0, session.getSpectatorCount());
+    }
+
+    @Test
+    public void replayedRemovalIsNotJournaledAndFreesTheCode() {
+        CountingJournal journal = new CountingJournal();
+        GameSessionManager recovering = new GameSessionManager(4, null, journal, timer, new DirectDispatcher());
+        int gameCode = session.getGameCode();
+        assertNotNull(recovering.restoreGame(gameCode, 0));
+
+        recovering.restoreRemoval(gameCode);
+        assertNull(recovering.getGame(gameCode));
+        assertEquals(0, journal.removed);
+        // A later record may create a game under the same code
+        assertNotNull(recovering.restoreGame(gameCode, 0));
+        assertEquals(0, journal.created);
+    }
+
+    @Test
+    public void restoringAGameUnderAQuarantinedCodeFails() {
+        int gameCode = session.getGameCode();
+        manager.removeGame(gameCode);
+
+        assertNull(manager.restoreGame(gameCode, 0));
+        assertNull(manager.getGame(gameCode));
+    }
+
+    private void play(RecordingConnection player, Square from, Square to, int sequence) {
+        session.submitMove(player, new MovePacket(new Move(from, to), sequence));
+        assertEquals(sequence, session.getSequence());
+    }
+
+    private static final class CountingJournal extends DisabledJournal {
+        int created;
+        int removed;
+
+        @Override
+        public long appendCreated(int gameCode, int timeControl) {
+            created++;
+            return 0;
+        }
+
+        @Override
+        public long appendRemoved(int gameCode) {
+            removed++;
+            return 0;
+        }
+    }
+}
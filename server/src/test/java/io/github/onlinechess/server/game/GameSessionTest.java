@@ -0,0 +1,327 @@
+package io.github.onlinechess.server.game;
+
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+import com.github.bhlangonijr.chesslib.move.Move;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.onlinechess.server.network.Broadcaster;
+import io.github.onlinechess.server.network.DirectDispatcher;
+import io.github.onlinechess.server.network.MessageDispatcher;
+import io.github.onlinechess.server.network.RecordingConnection;
+import io.github.onlinechess.server.persistence.DisabledJournal;
+import io.github.onlinechess.server.persistence.Journal;
+import io.github.onlinechess.server.timer.HashedWheelTimer;
+import io.github.onlinechess.shared.packets.GameStatusPacket;
+import io.github.onlinechess.shared.packets.MovePacket;
+import io.github.onlinechess.shared.packets.MoveRejectedPacket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class GameSessionTest {
+    private final Broadcaster broadcaster = new Broadcaster(RecordingConnection.SERIALIZATION, 1024, 2048, 4096);
+    private HashedWheelTimer timer;
+    private GameSession session;
+    private RecordingConnection white;
+    private RecordingConnection black;
+
+    @Before
+    public void seatPlayers() {
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 64);
+        session = newSession(new DisabledJournal(), new DirectDispatcher());
+    }
+
+    @After
+    public void stopTimer() {
+        timer.stop();
+    }
+
+    private GameSession newSession(Journal journal, MessageDispatcher dispatcher) {
+        GameSession session = new GameSession(123456, 0, broadcaster, journal, timer, dispatcher);
+        white = new RecordingConnection();
+        black = new RecordingConnection();
+        assertTrue(session.seatPlayer(white, Side.WHITE, 1));
+        assertTrue(session.seatPlayer(black, Side.BLACK, 2));
+        return session;
+    }
+
+    @Test
+    public void legalMoveIsAppliedAndSentToBothPlayers() {
+        session.submitMove(white, new MovePacket(new Move(Square.E2, Square.E4), 1));
+
+        assertEquals(1, session.getSequence());
+        for (RecordingConnection player : new RecordingConnection[] {white, black}) {
+            List<GameStatusPacket> updates = player.getSent(GameStatusPacket.class);
+            assertEquals(1, updates.size());
+            assertEquals(1, updates.get(0).getSequence());
+            assertEquals(new Move(Square.E2, Square.E4), updates.get(0).getMove());
+        }
+    }
+
+    @Test
+    public void moveOutOfTurnIsRejected() {
+        session.submitMove(black, new MovePacket(new Move(Square.E7, Square.E5), 1));
+
+        assertEquals(0, session.getSequence());
+        List<MoveRejectedPacket> rejections = black.getSent(MoveRejectedPacket.class);
+        assertEquals(1, rejections.size());
+        assertEquals(MoveRejectedPacket.NOT_YOUR_TURN, rejections.get(0).getReason());
+        assertTrue(white.getSent().isEmpty());
+    }
+
+    @Test
+    public void staleSequenceIsRejected() {
+        session.submitMove(white, new MovePacket(new Move(Square.E2, Square.E4), 1));
+        session.submitMove(black, new MovePacket(new Move(Square.E7, Square.E5), 1));
+
+        assertEquals(1, session.getSequence());
+        assertEquals(MoveRejectedPacket.STALE_SEQUENCE, black.getSent(MoveRejectedPacket.class).get(0).getReason());
+    }
+
+    @Test
+    public void moveSubmittedWhileLockIsHeldIsApplied() throws Exception {
+        // Snapshot writes hold the lock; this one stalls until told to go on
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        OutputStream stalling = new OutputStream() {
+            @Override
+            public void write(int b) {
+                locked.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        };
+        Thread writer = new Thread(() -> {
+            try {
+                session.writeState(new DataOutputStream(stalling));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        });
+        writer.start();
+        locked.await();
+
+        Thread mover = new Thread(() -> session.submitMove(white, new MovePacket(new Move(Square.E2, Square.E4), 1)));
+        mover.start();
+        // Let the move reach the lock, whether it waits there or gives up
+        while (mover.getState() != Thread.State.WAITING && mover.getState() != Thread.State.TERMINATED) {
+            Thread.yield();
+        }
+        release.countDown();
+        writer.join();
+        mover.join();
+
+        // Nothing else arrives for this game, so nobody else would drain the move
+        assertEquals(1, session.getSequence());
+        assertEquals(1, black.getSent(GameStatusPacket.class).size());
+    }
+
+    @Test
+    public void everyMoveFromConcurrentSendersIsHandled() throws Exception {
+        int threads = 4;
+        int movesEach = 500;
+        RecordingConnection outsider = new RecordingConnection();
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] senders = new Thread[threads + 1];
+        for (int t = 0; t < threads; t++) {
+            senders[t] = new Thread(() -> {
+                awaitQuietly(start);
+                for (int i = 0; i < movesEach; i++) {
+                    session.submitMove(outsider, new MovePacket(new Move(Square.E2, Square.E4), 1));
+                }
+            });
+        }
+        // Readers taking the lock meanwhile must not strand anything in the mailbox
+        senders[threads] = new Thread(() -> {
+            awaitQuietly(start);
+            for (int i = 0; i < movesEach; i++) {
+                session.isInProgress();
+            }
+        });
+        for (Thread sender : senders) {
+            sender.start();
+        }
+        start.countDown();
+        for (Thread sender : senders) {
+            sender.join();
+        }
+
+        List<MoveRejectedPacket> rejections = outsider.getSent(MoveRejectedPacket.class);
+        assertEquals(threads * movesEach, rejections.size());
+        for (MoveRejectedPacket rejection : rejections) {
+            assertEquals(MoveRejectedPacket.NOT_IN_GAME, rejection.getReason());
+        }
+        assertEquals(0, session.getSequence());
+    }
+
+    @Test
+    public void frozenGameRefusesMoves() throws Exception {
+        session.freeze(new DataOutputStream(new OutputStream() {
+            @Override
+            public void write(int b) {
+            }
+        }));
+        session.submitMove(white, new MovePacket(new Move(Square.E2, Square.E4), 1));
+
+        assertEquals(0, session.getSequence());
+        assertEquals(MoveRejectedPacket.MIGRATING, white.getSent(MoveRejectedPacket.class).get(0).getReason());
+        assertFalse(session.isEmpty());
+    }
+
+    @Test
+    public void batchIsSentOnTheGamesLaneOnceDurable() {
+        ManualJournal journal = new ManualJournal();
+        QueuedDispatcher dispatcher = new QueuedDispatcher();
+        session = newSession(journal, dispatcher);
+
+        session.submitMove(white, new MovePacket(new Move(Square.E2, Square.E4), 1));
+        assertEquals(1, session.getSequence());
+        assertTrue(black.getSent().isEmpty());
+
+        // The commit only hands the send to the game's lane
+        journal.commit();
+        assertTrue(black.getSent().isEmpty());
+        assertEquals(1, dispatcher.tasks.size());
+
+        dispatcher.runAll();
+        assertEquals(1, black.getSent(GameStatusPacket.class).size());
+        assertEquals(1, white.getSent(GameStatusPacket.class).size());
+    }
+
+    @Test
+    public void batchesWaitForTheirOwnRecords() {
+        ManualJournal journal = new ManualJournal();
+        QueuedDispatcher dispatcher = new QueuedDispatcher();
+        session = newSession(journal, dispatcher);
+
+        session.submitMove(white, new MovePacket(new Move(Square.E2, Square.E4), 1));
+        journal.commit();
+        session.submitMove(black, new MovePacket(new Move(Square.E7, Square.E5), 2));
+        dispatcher.runAll();
+        // Only the first move is durable
+        assertEquals(1, white.getSent(GameStatusPacket.class).size());
+
+        journal.commit();
+        dispatcher.runAll();
+        List<GameStatusPacket> updates = white.getSent(GameStatusPacket.class);
+        assertEquals(2, updates.size());
+        assertEquals(2, updates.get(1).getSequence());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * A journal that only becomes durable when told to, running its actions on the caller
+     */
+    private static final class ManualJournal implements Journal {
+        private final Queue<Runnable> waiting = new ArrayDeque<>();
+        private long position;
+        private long durable;
+
+        @Override
+        public long appendCreated(int gameCode, int timeControl) {
+            return position++;
+        }
+
+        @Override
+        public long appendMove(int gameCode, int sequence, short move) {
+            return position++;
+        }
+
+        @Override
+        public long appendRemoved(int gameCode) {
+            return position++;
+        }
+
+        @Override
+        public void whenDurable(long position, Runnable action) {
+            waiting.add(action);
+        }
+
+        void commit() {
+            durable = position;
+            Runnable action;
+            while ((action = waiting.poll()) != null) {
+                action.run();
+            }
+        }
+
+        @Override
+        public long getPosition() {
+            return position;
+        }
+
+        @Override
+        public long getDurablePosition() {
+            return durable;
+        }
+
+        @Override
+        public void compact(long position) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * A dispatcher that keeps its tasks until the test runs them
+     */
+    private static final class QueuedDispatcher implements MessageDispatcher {
+        final Queue<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public boolean dispatch(int key, Runnable task) {
+            return tryDispatch(key, task);
+        }
+
+        @Override
+        public boolean tryDispatch(int key, Runnable task) {
+            tasks.add(task);
+            return true;
+        }
+
+        void runAll() {
+            Runnable task;
+            while ((task = tasks.poll()) != null) {
+                task.run();
+            }
+        }
+
+        @Override
+        public int getQueueDepth() {
+            return tasks.size();
+        }
+
+        @Override
+        public long getRejectedCount() {
+            return 0;
+        }
+
+        @Override
+        public void shutdown() {
+        }
+    }
+}
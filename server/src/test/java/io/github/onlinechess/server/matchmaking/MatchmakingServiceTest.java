@@ -0,0 +1,115 @@
+package io.github.onlinechess.server.matchmaking;
+
+import java.util.concurrent.TimeUnit;
+
+import com.github.bhlangonijr.chesslib.Side;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.github.onlinechess.server.game.GameSession;
+import io.github.onlinechess.server.game.GameSessionManager;
+import io.github.onlinechess.server.network.Broadcaster;
+import io.github.onlinechess.server.network.DirectDispatcher;
+import io.github.onlinechess.server.network.RecordingConnection;
+import io.github.onlinechess.server.persistence.DisabledJournal;
+import io.github.onlinechess.server.timer.HashedWheelTimer;
+import io.github.onlinechess.shared.packets.MatchFoundPacket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MatchmakingServiceTest {
+    private HashedWheelTimer timer;
+    private GameSessionManager manager;
+    private MatchmakingService matchmaking;
+
+    @Before
+    public void start() {
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, 64);
+        manager = new GameSessionManager(4, new Broadcaster(RecordingConnection.SERIALIZATION, 1024, 2048, 4096),
+                                         new DisabledJournal(), timer, new DirectDispatcher());
+        matchmaking = new MatchmakingService(manager);
+    }
+
+    @After
+    public void stop() {
+        matchmaking.stop();
+        timer.stop();
+    }
+
+    @Test
+    public void closelyRatedPlayersAreSeatedTogether() {
+        RecordingConnection a = new RecordingConnection();
+        RecordingConnection b = new RecordingConnection();
+        matchmaking.join(a, 1500, 300, 0);
+        matchmaking.join(b, 1520, 300, 0);
+
+        assertEquals(1, matchmaking.getMatchesMade());
+        assertEquals(0, matchmaking.getWaitingCount());
+        assertNotEquals(0, a.getGameCode());
+        assertEquals(a.getGameCode(), b.getGameCode());
+        MatchFoundPacket found = a.getSent(MatchFoundPacket.class).get(0);
+        assertEquals(a.getGameCode(), found.getGameCode());
+        assertEquals(1520, found.getOpponentElo());
+    }
+
+    @Test
+    public void playerBeingSeatedElsewhereIsNotMatched() {
+        RecordingConnection a = new RecordingConnection();
+        RecordingConnection b = new RecordingConnection();
+        matchmaking.join(a, 1500, 300, 0);
+        // As if a's own host request were in progress
+        assertTrue(a.claimSeating());
+        matchmaking.join(b, 1500, 300, 0);
+
+        assertEquals(0, matchmaking.getMatchesMade());
+        assertEquals(2, matchmaking.getWaitingCount());
+        assertEquals(0, a.getGameCode());
+        assertEquals(0, b.getGameCode());
+        // The claim on b was given back
+        assertTrue(b.claimSeating());
+        b.releaseSeating();
+
+        a.releaseSeating();
+        matchmaking.join(b, 1500, 300, 0);
+        assertEquals(1, matchmaking.getMatchesMade());
+        assertEquals(a.getGameCode(), b.getGameCode());
+    }
+
+    @Test
+    public void checkingAnUnavailablePairChangesNothing() {
+        GameSession watched = manager.createGame();
+        GameSession playing = manager.createGame();
+        RecordingConnection spectator = new RecordingConnection();
+        RecordingConnection seated = new RecordingConnection();
+        watched.addSpectator(spectator);
+        manager.seatPlayer(playing, seated, Side.WHITE);
+
+        matchmaking.join(spectator, 1500, 300, 0);
+        matchmaking.join(seated, 1500, 300, 0);
+
+        assertEquals(0, matchmaking.getMatchesMade());
+        // The spectator was matched with someone who is busy, so they keep watching and waiting
+        assertEquals(watched.getGameCode(), spectator.getGameCode());
+        assertEquals(1, watched.getSpectatorCount());
+        assertEquals(1, matchmaking.getWaitingCount());
+        assertSame(playing, manager.getGame(seated.getGameCode()));
+    }
+
+    @Test
+    public void spectatorLeavesTheGameItWatchesWhenMatched() {
+        GameSession watched = manager.createGame();
+        RecordingConnection spectator = new RecordingConnection();
+        watched.addSpectator(spectator);
+
+        matchmaking.join(spectator, 1500, 300, 0);
+        matchmaking.join(new RecordingConnection(), 1500, 300, 0);
+
+        assertEquals(1, matchmaking.getMatchesMade());
+        assertNotEquals(watched.getGameCode(), spectator.getGameCode());
+        assertEquals(0, watched.getSpectatorCount());
+    }
+}
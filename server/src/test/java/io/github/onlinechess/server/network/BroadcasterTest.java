@@ -0,0 +1,128 @@
+package io.github.onlinechess.server.network;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import io.github.onlinechess.shared.packets.ChatPacket;
+import io.github.onlinechess.shared.packets.GameStatusPacket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BroadcasterTest {
+    private static final int CAPACITY = 4096;
+
+    private final Broadcaster broadcaster = new Broadcaster(RecordingConnection.SERIALIZATION, CAPACITY / 2, CAPACITY,
+                                                            8 * CAPACITY);
+
+    @Test
+    public void packetThatFitsIsWrittenDirectly() {
+        RecordingConnection player = new RecordingConnection();
+        player.setQueuedBytes(CAPACITY - 100);
+        broadcaster.send(player, delta(1));
+
+        assertEquals(1, player.getSent().size());
+        assertEquals(1, broadcaster.getCriticalSent());
+        assertEquals(0, broadcaster.getCriticalDeferred());
+    }
+
+    @Test
+    public void packetThatDoesNotFitWaitsForRoom() {
+        RecordingConnection player = new RecordingConnection();
+        // Over 2 KB is free, but the packet is larger still
+        player.setQueuedBytes(CAPACITY - 2500);
+        broadcaster.send(player, chat(3000));
+        assertTrue(player.getSent().isEmpty());
+
+        // Later packets queue behind it, even ones that would fit
+        broadcaster.send(player, delta(1));
+        assertTrue(player.getSent().isEmpty());
+        assertEquals(2, broadcaster.getCriticalDeferred());
+
+        player.setQueuedBytes(0);
+        broadcaster.flush(player);
+        assertEquals(2, player.getSent().size());
+        assertTrue(player.getSent().get(0) instanceof ChatPacket);
+        assertTrue(player.getSent().get(1) instanceof GameStatusPacket);
+    }
+
+    @Test
+    public void flushStopsAtTheFirstPacketThatDoesNotFit() {
+        RecordingConnection player = new RecordingConnection();
+        player.setQueuedBytes(CAPACITY);
+        broadcaster.send(player, delta(1));
+        broadcaster.send(player, chat(1000));
+        broadcaster.send(player, delta(2));
+
+        player.setQueuedBytes(CAPACITY - 100);
+        broadcaster.flush(player);
+        assertEquals(1, player.getSent().size());
+    }
+
+    @Test
+    public void fullBacklogClosesTheConnection() {
+        Broadcaster small = new Broadcaster(RecordingConnection.SERIALIZATION, 512, 1024, 4096);
+        RecordingConnection player = new RecordingConnection();
+        player.setQueuedBytes(1024);
+        for (int i = 0; i < 5 && player.isConnected(); i++) {
+            small.send(player, chat(1000));
+        }
+        assertFalse(player.isConnected());
+        assertEquals(1, small.getBacklogOverflows());
+    }
+
+    @Test
+    public void packetLargerThanTheBufferClosesTheConnection() {
+        Broadcaster small = new Broadcaster(RecordingConnection.SERIALIZATION, 256, 512, 4096);
+        RecordingConnection player = new RecordingConnection();
+        small.send(player, chat(1000));
+        assertFalse(player.isConnected());
+        assertTrue(player.getSent().isEmpty());
+    }
+
+    @Test
+    public void broadcastSkipsSubscribersItWouldTakePastTheSlowThreshold() {
+        RecordingConnection fast = new RecordingConnection();
+        RecordingConnection slow = new RecordingConnection();
+        slow.setQueuedBytes(CAPACITY / 2 - 100);
+        broadcaster.broadcast(chat(1000), Arrays.asList(fast, slow));
+
+        assertEquals(1, fast.getSent().size());
+        assertTrue(slow.getSent().isEmpty());
+        assertTrue(slow.isLagging());
+        assertEquals(1, broadcaster.getSlowSubscriberCount());
+
+        // Skipped until its buffer has drained, then it needs a snapshot
+        slow.setQueuedBytes(0);
+        broadcaster.broadcast(delta(1), Collections.singletonList(slow));
+        assertTrue(slow.getSent().isEmpty());
+        assertTrue(broadcaster.recover(slow));
+        broadcaster.broadcast(delta(2), Collections.singletonList(slow));
+        assertEquals(1, slow.getSent().size());
+    }
+
+    @Test
+    public void broadcastEncodesOnce() {
+        RecordingConnection[] subscribers = new RecordingConnection[10];
+        for (int i = 0; i < subscribers.length; i++) {
+            subscribers[i] = new RecordingConnection();
+        }
+        broadcaster.broadcast(delta(1), Arrays.asList(subscribers));
+
+        assertEquals(1, broadcaster.getBroadcastCount());
+        assertEquals(10, broadcaster.getFramesSent());
+    }
+
+    private static GameStatusPacket delta(int sequence) {
+        return GameStatusPacket.delta(sequence, (short) 796, 0, 0, 0);
+    }
+
+    private static ChatPacket chat(int length) {
+        char[] text = new char[length];
+        Arrays.fill(text, 'z');
+        return new ChatPacket(1, new String(text));
+    }
+}
@@ -0,0 +1,80 @@
+package io.github.onlinechess.server.network;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class OrderedDispatcherTest {
+    private OrderedDispatcher dispatcher;
+
+    @After
+    public void shutdown() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    @Test
+    public void tasksWithTheSameKeyRunInOrder() throws Exception {
+        dispatcher = new OrderedDispatcher(4, 1024, 1, TimeUnit.SECONDS);
+        List<Integer> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(1000);
+        for (int i = 0; i < 1000; i++) {
+            int task = i;
+            assertTrue(dispatcher.dispatch(42, () -> {
+                ran.add(task);
+                done.countDown();
+            }));
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, (int) ran.get(i));
+        }
+    }
+
+    @Test
+    public void fullLaneRefusesAfterTheOfferTimeout() throws Exception {
+        dispatcher = new OrderedDispatcher(1, 1, 5, TimeUnit.MILLISECONDS);
+        CountDownLatch running = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        assertTrue(dispatcher.dispatch(1, () -> {
+            running.countDown();
+            awaitQuietly(release);
+        }));
+        running.await();
+        // Fills the lane's queue
+        assertTrue(dispatcher.dispatch(1, () -> { }));
+
+        assertFalse(dispatcher.dispatch(1, () -> { }));
+        assertFalse(dispatcher.tryDispatch(1, () -> { }));
+        assertEquals(2, dispatcher.getRejectedCount());
+        assertEquals(1, dispatcher.getQueueDepth());
+        release.countDown();
+    }
+
+    @Test
+    public void connectionKeepsItsKeyAcrossGames() {
+        ChessConnection connection = new RecordingConnection();
+        int key = connection.getDispatchKey();
+        connection.setGameCode(123456);
+        assertEquals(key, connection.getDispatchKey());
+        connection.setGameCode(0);
+        assertEquals(key, connection.getDispatchKey());
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
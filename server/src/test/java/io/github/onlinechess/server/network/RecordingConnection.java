@@ -0,0 +1,74 @@
+package io.github.onlinechess.server.network;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A connection without a socket that keeps everything sent to it, decoding
+ * encoded packets back into objects. Its write buffer always reads as holding
+ * the given number of bytes. Every instance gets its own ID.
+ */
+public class RecordingConnection extends ChessConnection {
+    public static final ChessSerialization SERIALIZATION = new ChessSerialization();
+    private static final AtomicInteger NEXT_ID = new AtomicInteger();
+
+    private final int id = NEXT_ID.incrementAndGet();
+
+    private final List<Object> sent = new CopyOnWriteArrayList<>();
+    private volatile int queuedBytes;
+    private volatile boolean closed;
+
+    @Override
+    public int getID() {
+        return id;
+    }
+
+    @Override
+    public int sendTCP(Object object) {
+        if (object instanceof EncodedPacket) {
+            object = SERIALIZATION.read(this, ((EncodedPacket) object).getBytes());
+        }
+        sent.add(object);
+        return 0;
+    }
+
+    @Override
+    public int getTcpWriteBufferSize() {
+        return queuedBytes;
+    }
+
+    @Override
+    public boolean isConnected() {
+        return !closed;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    public void setQueuedBytes(int queuedBytes) {
+        this.queuedBytes = queuedBytes;
+    }
+
+    /**
+     * Get everything sent so far, in order
+     */
+    public List<Object> getSent() {
+        return sent;
+    }
+
+    /**
+     * Get everything sent so far of the given type, in order
+     */
+    public <T> List<T> getSent(Class<T> type) {
+        List<T> matching = new CopyOnWriteArrayList<>();
+        for (Object object : sent) {
+            if (type.isInstance(object)) {
+                matching.add(type.cast(object));
+            }
+        }
+        return matching;
+    }
+}
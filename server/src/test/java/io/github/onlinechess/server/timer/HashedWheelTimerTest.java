@@ -0,0 +1,138 @@
+package io.github.onlinechess.server.timer;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class HashedWheelTimerTest {
+    // Few buckets, so most timeouts here wrap around the wheel at least once
+    private static final int WHEEL_SIZE = 8;
+
+    private HashedWheelTimer timer;
+
+    @Before
+    public void startTimer() {
+        timer = new HashedWheelTimer(1, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+    }
+
+    @After
+    public void stopTimer() {
+        timer.stop();
+    }
+
+    @Test
+    public void timeoutNeverFiresEarly() throws InterruptedException {
+        for (long delayMillis : new long[] {0, 1, 5, 20}) {
+            CountDownLatch fired = new CountDownLatch(1);
+            long start = System.nanoTime();
+            timer.newTimeout(fired::countDown).schedule(delayMillis, TimeUnit.MILLISECONDS);
+            assertTrue(fired.await(1, TimeUnit.SECONDS));
+            assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(delayMillis));
+        }
+    }
+
+    @Test
+    public void timeoutWaitsOutItsRoundsAroundTheWheel() throws InterruptedException {
+        // Hashes to a bucket the wheel passes several times before the deadline
+        CountDownLatch fired = new CountDownLatch(1);
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(fired::countDown);
+        long start = System.nanoTime();
+        timeout.schedule(WHEEL_SIZE * 10 + 3, TimeUnit.MILLISECONDS);
+
+        assertFalse(fired.await(WHEEL_SIZE * 5, TimeUnit.MILLISECONDS));
+        assertTrue(timeout.isScheduled());
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(WHEEL_SIZE * 10 + 3));
+        assertFalse(timeout.isScheduled());
+    }
+
+    @Test
+    public void cancelledTimeoutDoesNotFire() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(runs::incrementAndGet);
+        timeout.schedule(10, TimeUnit.MILLISECONDS);
+        timeout.cancel();
+        assertFalse(timeout.isScheduled());
+
+        Thread.sleep(50);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void rescheduledTimeoutFiresOnceAtItsLastDeadline() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        CountDownLatch fired = new CountDownLatch(1);
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(() -> {
+            runs.incrementAndGet();
+            fired.countDown();
+        });
+        long start = System.nanoTime();
+        for (int i = 0; i < 100; i++) {
+            timeout.schedule(5, TimeUnit.MILLISECONDS);
+        }
+        timeout.schedule(60, TimeUnit.MILLISECONDS);
+
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(60));
+        Thread.sleep(20);
+        assertEquals(1, runs.get());
+    }
+
+    @Test
+    public void timeoutCanBeScheduledAgainAfterFiring() throws InterruptedException {
+        CountDownLatch fired = new CountDownLatch(2);
+        HashedWheelTimer.Timeout timeout = timer.newTimeout(fired::countDown);
+        timeout.schedule(2, TimeUnit.MILLISECONDS);
+        while (timeout.isScheduled()) {
+            Thread.sleep(1);
+        }
+        timeout.schedule(2, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void manyTimeoutsFromManyThreadsAllFire() throws InterruptedException {
+        int threads = 4;
+        int perThread = 500;
+        CountDownLatch fired = new CountDownLatch(threads * perThread);
+        Thread[] schedulers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            schedulers[t] = new Thread(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    timer.newTimeout(fired::countDown)
+                         .schedule(ThreadLocalRandom.current().nextInt(50), TimeUnit.MILLISECONDS);
+                }
+            });
+            schedulers[t].start();
+        }
+        for (Thread scheduler : schedulers) {
+            scheduler.join();
+        }
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertEquals(threads * perThread, timer.getExpiredCount());
+    }
+
+    @Test
+    public void failingTaskDoesNotStopTheTimer() throws InterruptedException {
+        timer.newTimeout(() -> {
+            throw new IllegalStateException("test");
+        }).schedule(1, TimeUnit.MILLISECONDS);
+        CountDownLatch fired = new CountDownLatch(1);
+        timer.newTimeout(fired::countDown).schedule(10, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(1, TimeUnit.SECONDS));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void tickMustBePositive() {
+        new HashedWheelTimer(0, TimeUnit.MILLISECONDS, WHEEL_SIZE);
+    }
+}
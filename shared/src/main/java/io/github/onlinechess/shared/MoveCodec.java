@@ -0,0 +1,97 @@
+package io.github.onlinechess.shared;
+
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.PieceType;
+import com.github.bhlangonijr.chesslib.Rank;
+import com.github.bhlangonijr.chesslib.Side;
+import com.github.bhlangonijr.chesslib.Square;
+import com.github.bhlangonijr.chesslib.move.Move;
+
+/**
+ * Packs a chess move into 15 bits of a short:
+ * bits 0-5 hold the from-square, bits 6-11 the to-square and bits 12-14 the promotion.
+ * Decoded moves are cached, so turning a code back into a {@link Move} does not
+ * allocate once that move has been seen.
+ */
+public final class MoveCodec {
+    // Marks a code that does not describe a move
+    public static final short NONE = -1;
+
+    // Promotion piece types by their 3-bit code (0 means no promotion)
+    private static final PieceType[] PROMOTIONS = {
+        PieceType.NONE, PieceType.KNIGHT, PieceType.BISHOP, PieceType.ROOK, PieceType.QUEEN
+    };
+
+    private static final Square[] SQUARES = Square.values();
+    private static final Move[] CACHE = new Move[1 << 15];
+
+    private MoveCodec() {}
+
+    /**
+     * Encode a move
+     *
+     * @return The packed move, or NONE if the move is null
+     */
+    public static short encode(Move move) {
+        if (move == null) {
+            return NONE;
+        }
+        int code = move.getFrom().ordinal() | (move.getTo().ordinal() << 6);
+        Piece promotion = move.getPromotion();
+        if (promotion != null && promotion != Piece.NONE) {
+            code |= promotionCode(promotion.getPieceType()) << 12;
+        }
+        return (short) code;
+    }
+
+    /**
+     * Decode a packed move
+     *
+     * @return The move, or null if the code does not describe a move
+     */
+    public static Move decode(short code) {
+        if (code < 0) {
+            return null;
+        }
+        // Benign race: two threads may build the same move, either copy is equal
+        Move move = CACHE[code];
+        if (move == null) {
+            move = build(code);
+            if (move != null) {
+                CACHE[code] = move;
+            }
+        }
+        return move;
+    }
+
+    private static Move build(int code) {
+        Square from = SQUARES[code & 0x3F];
+        Square to = SQUARES[(code >>> 6) & 0x3F];
+        int promotion = (code >>> 12) & 0x7;
+        if (from == to || promotion >= PROMOTIONS.length) {
+            return null;
+        }
+        if (promotion == 0) {
+            return new Move(from, to);
+        }
+        // Only pawns promote, and only on the last rank, which also tells us the side
+        Side side;
+        if (to.getRank() == Rank.RANK_8) {
+            side = Side.WHITE;
+        } else if (to.getRank() == Rank.RANK_1) {
+            side = Side.BLACK;
+        } else {
+            return null;
+        }
+        return new Move(from, to, Piece.make(side, PROMOTIONS[promotion]));
+    }
+
+    private static int promotionCode(PieceType type) {
+        for (int i = 1; i < PROMOTIONS.length; i++) {
+            if (PROMOTIONS[i] == type) {
+                return i;
+            }
+        }
+        return 0;
+    }
+}
@@ -2,46 +2,171 @@
 package io.github.onlinechess.shared;
 
 import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryonet.FrameworkMessage;
+
 import static com.esotericsoftware.minlog.Log.error;
 import static com.esotericsoftware.minlog.Log.info;
 
-// TODO: Import your actual network message classes here
+import io.github.onlinechess.shared.packets.ChatBatchPacket;
+import io.github.onlinechess.shared.packets.ChatPacket;
+import io.github.onlinechess.shared.packets.ChunkAckPacket;
+import io.github.onlinechess.shared.packets.ChunkPacket;
+import io.github.onlinechess.shared.packets.GameHandoffAckPacket;
+import io.github.onlinechess.shared.packets.GameHandoffPacket;
+import io.github.onlinechess.shared.packets.GameStatusPacket;
+import io.github.onlinechess.shared.packets.HandshakePacket;
+import io.github.onlinechess.shared.packets.HeartbeatPacket;
+import io.github.onlinechess.shared.packets.HistoryRequestPacket;
+import io.github.onlinechess.shared.packets.HostGamePacket;
+import io.github.onlinechess.shared.packets.JoinGamePacket;
+import io.github.onlinechess.shared.packets.JoinResultPacket;
+import io.github.onlinechess.shared.packets.MatchFoundPacket;
+import io.github.onlinechess.shared.packets.MatchmakingRequestPacket;
+import io.github.onlinechess.shared.packets.MovePacket;
+import io.github.onlinechess.shared.packets.MoveRejectedPacket;
+import io.github.onlinechess.shared.packets.NodeStatusPacket;
+import io.github.onlinechess.shared.packets.OpponentStatusPacket;
+import io.github.onlinechess.shared.packets.PingPacket;
+import io.github.onlinechess.shared.packets.RedirectPacket;
+import io.github.onlinechess.shared.packets.ResumePacket;
+import io.github.onlinechess.shared.packets.ResyncRequestPacket;
+import io.github.onlinechess.shared.packets.SessionTokenPacket;
+import io.github.onlinechess.shared.packets.SpectatePacket;
+import io.github.onlinechess.shared.serializers.ChatBatchPacketSerializer;
+import io.github.onlinechess.shared.serializers.ChunkPacketSerializer;
+import io.github.onlinechess.shared.serializers.GameHandoffPacketSerializer;
+import io.github.onlinechess.shared.serializers.GameStatusPacketSerializer;
+import io.github.onlinechess.shared.serializers.MovePacketSerializer;
 
 /**
  * Helper class to register classes for Kryo serialization across the network.
+ * Every packet has a fixed registration ID, so client and server agree on the
+ * wire format regardless of registration order, and each message's class
+ * header is a single varint byte.
  */
 public class NetworkRegistry {
 
+    // Wire protocol version; bump whenever the format of an existing packet changes
+    // v2: HostGamePacket carries a time control
+    public static final int PROTOCOL_VERSION = 2;
+    // Oldest client protocol version the server still accepts
+    public static final int MIN_PROTOCOL_VERSION = 2;
+
+    // Capability flags exchanged in the handshake
+    public static final int CAP_COMPRESSION = 1;
+    public static final int CAP_DELTA_SYNC = 1 << 1;
+    // The server pings over UDP to measure round trips and clock offsets
+    public static final int CAP_CLOCK_SYNC = 1 << 2;
+    // Capabilities this build implements
+    public static final int SUPPORTED_CAPABILITIES = CAP_COMPRESSION | CAP_DELTA_SYNC | CAP_CLOCK_SYNC;
+
+    // Registration IDs. Never renumber or reuse an ID; add new packets at the end.
+    // IDs below 16 are left to Kryo's built-in types, 16-31 to KryoNet's framework
+    // messages, and IDs up to 125 still fit the class header in one byte.
+    public static final int ID_REGISTER_TCP = 16;
+    public static final int ID_REGISTER_UDP = 17;
+    public static final int ID_KEEP_ALIVE = 18;
+    public static final int ID_DISCOVER_HOST = 19;
+    public static final int ID_FRAMEWORK_PING = 20;
+
+    public static final int ID_HANDSHAKE = 32;
+    public static final int ID_MOVE = 33;
+    public static final int ID_MOVE_REJECTED = 34;
+    public static final int ID_GAME_STATUS = 35;
+    public static final int ID_RESYNC_REQUEST = 36;
+    public static final int ID_SPECTATE = 37;
+    public static final int ID_MATCHMAKING_REQUEST = 38;
+    public static final int ID_MATCH_FOUND = 39;
+    public static final int ID_HOST_GAME = 40;
+    public static final int ID_JOIN_GAME = 41;
+    public static final int ID_JOIN_RESULT = 42;
+    public static final int ID_SESSION_TOKEN = 43;
+    public static final int ID_RESUME = 44;
+    public static final int ID_HEARTBEAT = 45;
+    public static final int ID_CHAT = 46;
+    public static final int ID_CHAT_BATCH = 47;
+    public static final int ID_REDIRECT = 48;
+    public static final int ID_GAME_HANDOFF = 49;
+    public static final int ID_GAME_HANDOFF_ACK = 50;
+    public static final int ID_NODE_STATUS = 51;
+    public static final int ID_PING = 52;
+    // Not a packet: marks a compressed message in place of a class ID (see PayloadCompressor)
+    public static final int ID_COMPRESSED = 53;
+    public static final int ID_CHUNK = 54;
+    public static final int ID_CHUNK_ACK = 55;
+    public static final int ID_HISTORY_REQUEST = 56;
+    public static final int ID_OPPONENT_STATUS = 57;
+
     public static void register(Kryo kryo) {
         if (kryo == null) {
             error("Kryo instance is null. Cannot register classes.");
             return;
         }
-        info("Registering network classes...");
-
-        // It's crucial to register classes with Kryo on both
-        // the client and server side in the SAME ORDER.
-
-        // Register primitive types and common Java types if needed (often handled automatically, but explicit can be safer)
-        // kryo.register(int.class);
-        // kryo.register(String.class);
-        // kryo.register(boolean.class);
-        // kryo.register(java.util.ArrayList.class);
-
-        // TODO: Register your shared NetworkMessage base class and all subclasses
-        // Example:
-        // kryo.register(io.github.onlinechess.shared.network.NetworkMessage.class); // Assuming a shared module
-        // kryo.register(io.github.onlinechess.shared.network.messages.ClientLoginRequest.class);
-        // kryo.register(io.github.onlinechess.shared.network.messages.ServerLoginResponse.class);
-        // kryo.register(io.github.onlinechess.shared.network.messages.MakeMoveRequest.class);
-        // kryo.register(io.github.onlinechess.shared.network.messages.GameStateUpdate.class);
-        // kryo.register(io.github.onlinechess.shared.network.messages.GameSessionInfo.class);
-        // kryo.register(io.github.onlinechess.shared.network.messages.PlayerInfo.class); // If sending player objects
-
-        // Register any complex objects used within your messages if not automatically handled
-        // Example: If GameStateUpdate contains a custom BoardState object:
-        // kryo.register(io.github.onlinechess.shared.BoardState.class);
+        info("Registering network classes (protocol v" + PROTOCOL_VERSION + ")...");
+
+        // Unregistered classes would be written by name, so refuse them outright
+        kryo.setRegistrationRequired(true);
+
+        // KryoNet's own messages, which every client and server must number alike
+        kryo.register(FrameworkMessage.RegisterTCP.class, ID_REGISTER_TCP);
+        kryo.register(FrameworkMessage.RegisterUDP.class, ID_REGISTER_UDP);
+        kryo.register(FrameworkMessage.KeepAlive.class, ID_KEEP_ALIVE);
+        kryo.register(FrameworkMessage.DiscoverHost.class, ID_DISCOVER_HOST);
+        kryo.register(FrameworkMessage.Ping.class, ID_FRAMEWORK_PING);
+
+        // Connection setup
+        kryo.register(HandshakePacket.class, ID_HANDSHAKE);
+        kryo.register(HeartbeatPacket.class, ID_HEARTBEAT);
+        kryo.register(PingPacket.class, ID_PING); // Sent over UDP
+
+        // Game packets
+        kryo.register(MovePacket.class, new MovePacketSerializer(), ID_MOVE); // Packed 16-bit move
+        kryo.register(MoveRejectedPacket.class, ID_MOVE_REJECTED);
+        kryo.register(GameStatusPacket.class, new GameStatusPacketSerializer(), ID_GAME_STATUS); // Delta-encoded
+        kryo.register(ResyncRequestPacket.class, ID_RESYNC_REQUEST);
+        kryo.register(SpectatePacket.class, ID_SPECTATE);
+        kryo.register(HistoryRequestPacket.class, ID_HISTORY_REQUEST);
+        kryo.register(OpponentStatusPacket.class, ID_OPPONENT_STATUS);
+
+        // Lobby packets
+        kryo.register(MatchmakingRequestPacket.class, ID_MATCHMAKING_REQUEST);
+        kryo.register(MatchFoundPacket.class, ID_MATCH_FOUND);
+        kryo.register(HostGamePacket.class, ID_HOST_GAME);
+        kryo.register(JoinGamePacket.class, ID_JOIN_GAME);
+        kryo.register(JoinResultPacket.class, ID_JOIN_RESULT);
+        kryo.register(SessionTokenPacket.class, ID_SESSION_TOKEN);
+        kryo.register(ResumePacket.class, ID_RESUME);
+
+        // Chat packets
+        kryo.register(ChatPacket.class, ID_CHAT);
+        kryo.register(ChatBatchPacket.class, new ChatBatchPacketSerializer(), ID_CHAT_BATCH); // Batched per room
+
+        // Streaming packets
+        kryo.register(ChunkPacket.class, new ChunkPacketSerializer(), ID_CHUNK); // Raw data bytes
+        kryo.register(ChunkAckPacket.class, ID_CHUNK_ACK);
+
+        // Cluster packets
+        kryo.register(RedirectPacket.class, ID_REDIRECT);
+        kryo.register(GameHandoffPacket.class, new GameHandoffPacketSerializer(), ID_GAME_HANDOFF); // Raw state bytes
+        kryo.register(GameHandoffAckPacket.class, ID_GAME_HANDOFF_ACK);
+        kryo.register(NodeStatusPacket.class, ID_NODE_STATUS);
 
         info("Network class registration complete.");
     }
-}
\ No newline at end of file
+
+    /**
+     * Check whether a peer speaking the given protocol version can talk to this build
+     */
+    public static boolean isCompatible(int protocolVersion) {
+        return protocolVersion >= MIN_PROTOCOL_VERSION && protocolVersion <= PROTOCOL_VERSION;
+    }
+
+    /**
+     * Get the capabilities both sides support
+     *
+     * @param peerCapabilities The capability flags offered by the other side
+     */
+    public static int negotiateCapabilities(int peerCapabilities) {
+        return peerCapabilities & SUPPORTED_CAPABILITIES;
+    }
+}
@@ -0,0 +1,98 @@
+package io.github.onlinechess.shared;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.io.ByteBufferInput;
+import com.esotericsoftware.kryo.io.ByteBufferOutput;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Serialization;
+
+/**
+ * KryoNet serialization for the game protocol, used by clients and the server alike.
+ * Each thread has its own Kryo instance with every class in {@link NetworkRegistry}
+ * registered, so connections can be written from any thread without a shared lock.
+ * Compressed messages (see {@link PayloadCompressor}) are inflated before they are read.
+ *
+ * The server extends this with rate limiting, compression of what it sends and metrics.
+ */
+public class PacketSerialization implements Serialization {
+    // Largest message that may be inflated on arrival
+    protected static final int MAX_MESSAGE_SIZE = 64 * 1024;
+
+    private final ThreadLocal<State> state = new ThreadLocal<State>() {
+        @Override
+        protected State initialValue() {
+            return new State();
+        }
+    };
+
+    @Override
+    public void write(Connection connection, ByteBuffer buffer, Object object) {
+        serialize(buffer, object);
+    }
+
+    @Override
+    public Object read(Connection connection, ByteBuffer buffer) {
+        if (PayloadCompressor.isCompressed(buffer)) {
+            buffer = inflate(connection, buffer);
+        }
+        State s = state.get();
+        s.input.setBuffer(buffer);
+        return s.kryo.readClassAndObject(s.input);
+    }
+
+    /**
+     * Writes an object and its class ID at the buffer's position with the calling thread's Kryo
+     */
+    protected void serialize(ByteBuffer buffer, Object object) {
+        State s = state.get();
+        s.output.setBuffer(buffer);
+        s.kryo.writeClassAndObject(s.output, object);
+        s.output.flush();
+    }
+
+    /**
+     * Inflates a compressed message
+     *
+     * @return A buffer holding the original message
+     * @throws KryoException If the message cannot be inflated or may not be compressed
+     */
+    protected ByteBuffer inflate(Connection connection, ByteBuffer buffer) {
+        try {
+            return PayloadCompressor.get().decompress(buffer, MAX_MESSAGE_SIZE);
+        } catch (DataFormatException e) {
+            throw new KryoException("Could not inflate message: " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public int getLengthLength() {
+        return 4;
+    }
+
+    @Override
+    public void writeLength(ByteBuffer buffer, int length) {
+        buffer.putInt(length);
+    }
+
+    @Override
+    public int readLength(ByteBuffer buffer) {
+        return buffer.getInt();
+    }
+
+    /**
+     * Per-thread Kryo instance and reusable buffers
+     */
+    private static final class State {
+        final Kryo kryo = new Kryo();
+        final ByteBufferInput input = new ByteBufferInput();
+        final ByteBufferOutput output = new ByteBufferOutput();
+
+        State() {
+            NetworkRegistry.register(kryo);
+        }
+    }
+}
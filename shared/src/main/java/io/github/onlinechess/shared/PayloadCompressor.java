@@ -0,0 +1,189 @@
+package io.github.onlinechess.shared;
+
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Deflates large messages on the wire, for connections that agreed to
+ * {@link NetworkRegistry#CAP_COMPRESSION} in the handshake.
+ *
+ * A compressed message starts with {@link NetworkRegistry#ID_COMPRESSED} where
+ * a class ID would be, then the original length as a varint, then the deflated
+ * original up to the end of the message. Every other message is untouched, so
+ * small packets such as moves cost one size comparison and not a byte more.
+ * Messages under {@link #THRESHOLD} are never compressed, nor are those that
+ * would barely shrink.
+ *
+ * Deflater and Inflater hold native state and are slow to create, so each
+ * thread reuses one of each, along with buffers that grow to the largest
+ * message seen. Buffers returned here stay valid until the thread's next call.
+ */
+public final class PayloadCompressor {
+    // Messages smaller than this are sent as they are
+    public static final int THRESHOLD = 1024;
+    // Compression must save at least this share of the message, in 1/16ths, to be used
+    private static final int MIN_SAVING_SIXTEENTHS = 2;
+    // Flag byte plus the longest varint length
+    private static final int MAX_HEADER = 6;
+    // Kryo writes class IDs plus 2, and IDs below 126 take one byte
+    private static final byte FLAG = (byte) (NetworkRegistry.ID_COMPRESSED + 2);
+
+    private static final ThreadLocal<PayloadCompressor> POOL = new ThreadLocal<PayloadCompressor>() {
+        @Override
+        protected PayloadCompressor initialValue() {
+            return new PayloadCompressor();
+        }
+    };
+
+    private final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    private final Inflater inflater = new Inflater();
+    private byte[] input = new byte[THRESHOLD * 4];
+    private byte[] output = new byte[THRESHOLD * 4];
+
+    private PayloadCompressor() {}
+
+    /**
+     * Get the calling thread's compressor
+     */
+    public static PayloadCompressor get() {
+        return POOL.get();
+    }
+
+    /**
+     * Check whether the message at the buffer's position is compressed, without consuming anything
+     */
+    public static boolean isCompressed(ByteBuffer message) {
+        return message.hasRemaining() && message.get(message.position()) == FLAG;
+    }
+
+    /**
+     * Compresses the message just written to a buffer, in place, if it is
+     * large enough and compression pays
+     *
+     * @param buffer Buffer positioned at the end of the message
+     * @param start Where the message starts
+     * @return Whether the message was compressed
+     */
+    public boolean compress(ByteBuffer buffer, int start) {
+        int length = buffer.position() - start;
+        if (length < THRESHOLD) {
+            return false;
+        }
+        ensureInput(length);
+        buffer.position(start);
+        buffer.get(input, 0, length);
+        int compressed = deflate(length);
+        if (compressed < 0) {
+            buffer.position(start + length);
+            return false;
+        }
+        buffer.position(start);
+        writeHeader(buffer, length);
+        buffer.put(output, 0, compressed);
+        return true;
+    }
+
+    /**
+     * Compresses a whole encoded message, if it is large enough and compression pays
+     *
+     * @return The compressed message, header included, or null to send the original
+     */
+    public byte[] compress(byte[] message) {
+        if (message.length < THRESHOLD) {
+            return null;
+        }
+        ensureInput(message.length);
+        System.arraycopy(message, 0, input, 0, message.length);
+        int compressed = deflate(message.length);
+        if (compressed < 0) {
+            return null;
+        }
+        ByteBuffer result = ByteBuffer.allocate(MAX_HEADER + compressed);
+        writeHeader(result, message.length);
+        result.put(output, 0, compressed);
+        byte[] bytes = new byte[result.position()];
+        System.arraycopy(result.array(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    /**
+     * Inflates a compressed message, consuming it to the buffer's limit
+     *
+     * @param maxLength Largest original length accepted, so a small message cannot inflate without bound
+     * @return The original message, valid until this thread's next call
+     * @throws DataFormatException If the message is corrupt, too long, or not the length it claims
+     */
+    public ByteBuffer decompress(ByteBuffer message, int maxLength) throws DataFormatException {
+        if (!isCompressed(message)) {
+            throw new DataFormatException("Not a compressed message.");
+        }
+        message.get();
+        int length = readVarInt(message);
+        if (length < 0 || length > maxLength) {
+            throw new DataFormatException("Compressed message claims " + length + " bytes, over " + maxLength);
+        }
+        int compressed = message.remaining();
+        ensureInput(compressed);
+        message.get(input, 0, compressed);
+        if (output.length < length) {
+            output = new byte[length];
+        }
+        inflater.reset();
+        inflater.setInput(input, 0, compressed);
+        int inflated = inflater.inflate(output, 0, length);
+        if (inflated != length || !inflater.finished()) {
+            throw new DataFormatException("Compressed message is not the " + length + " bytes it claims.");
+        }
+        return ByteBuffer.wrap(output, 0, length);
+    }
+
+    /**
+     * Deflates the first length bytes of the input into the output
+     *
+     * @return The compressed size, or -1 if it would not save enough
+     */
+    private int deflate(int length) {
+        int limit = length - length * MIN_SAVING_SIXTEENTHS / 16 - MAX_HEADER;
+        if (output.length < limit) {
+            output = new byte[Math.max(limit, output.length * 2)];
+        }
+        deflater.reset();
+        deflater.setInput(input, 0, length);
+        deflater.finish();
+        // Deflating into no more than the limit gives up as soon as it cannot pay
+        int compressed = deflater.deflate(output, 0, limit);
+        return deflater.finished() ? compressed : -1;
+    }
+
+    private void ensureInput(int length) {
+        if (input.length < length) {
+            input = new byte[Math.max(length, input.length * 2)];
+        }
+    }
+
+    private static void writeHeader(ByteBuffer buffer, int length) {
+        buffer.put(FLAG);
+        while ((length & ~0x7F) != 0) {
+            buffer.put((byte) ((length & 0x7F) | 0x80));
+            length >>>= 7;
+        }
+        buffer.put((byte) length);
+    }
+
+    private static int readVarInt(ByteBuffer buffer) throws DataFormatException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            if (!buffer.hasRemaining()) {
+                break;
+            }
+            int b = buffer.get();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new DataFormatException("Bad length in compressed message.");
+    }
+}
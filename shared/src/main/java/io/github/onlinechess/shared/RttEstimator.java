@@ -0,0 +1,148 @@
+package io.github.onlinechess.shared;
+
+import java.util.concurrent.TimeUnit;
+
+import io.github.onlinechess.shared.packets.PingPacket;
+
+/**
+ * Estimates the round-trip time, its jitter and the clock offset to the other
+ * end of a connection from the {@link PingPacket}s exchanged with it.
+ *
+ * Each ping that answers this side's latest one gives a sample with four
+ * timestamps: t0 when ours was sent, t1 when it arrived there, t2 when the
+ * answer left and t3 when it arrived here. The round trip is
+ * (t3 - t0) - (t2 - t1), so time spent on the other side does not count, and
+ * the offset of the other clock is ((t1 - t0) + (t2 - t3)) / 2.
+ *
+ * The round trip and jitter are smoothed as TCP does (RFC 6298). The offset
+ * is taken from the sample with the shortest round trip among the last few,
+ * since queueing delay is what skews it, as NTP's clock filter does.
+ * Answers to older pings, which UDP may deliver late or twice, are ignored.
+ *
+ * Safe to use from several threads; the estimates can be read at any time.
+ */
+public class RttEstimator {
+    // Samples the offset is chosen from
+    private static final int FILTER_SIZE = 8;
+
+    // Exchange state (guarded by this)
+    private long lastSentAt;
+    private long lastRemoteSentAt;
+    private long lastReceivedAt;
+    private final long[] filterDelays = new long[FILTER_SIZE];
+    private final long[] filterOffsets = new long[FILTER_SIZE];
+
+    // Published estimates, in microseconds
+    private volatile int sampleCount;
+    private volatile long smoothedRtt;
+    private volatile long rttVariation;
+    private volatile long offset;
+
+    /**
+     * Get the time on the clock pings are stamped with
+     *
+     * @return Microseconds since an arbitrary origin
+     */
+    public static long now() {
+        return TimeUnit.NANOSECONDS.toMicros(System.nanoTime());
+    }
+
+    /**
+     * Creates the next ping to send, echoing the last one received
+     *
+     * @param now Time of sending, from {@link #now()}
+     */
+    public synchronized PingPacket nextPing(long now) {
+        lastSentAt = now;
+        return new PingPacket(lastRemoteSentAt, lastReceivedAt, now);
+    }
+
+    /**
+     * Records a ping from the other side, taking a sample if it answers our latest one
+     *
+     * @param now Time of arrival, from {@link #now()}
+     * @return Whether a sample was taken
+     */
+    public synchronized boolean received(PingPacket ping, long now) {
+        lastRemoteSentAt = ping.getTransmitTime();
+        lastReceivedAt = now;
+        if (ping.getOriginTime() == 0 || ping.getOriginTime() != lastSentAt) {
+            // Not an answer, or an answer to a ping we have since replaced
+            return false;
+        }
+        // Only one sample per ping, even if its answer arrives twice
+        lastSentAt = 0;
+
+        long t0 = ping.getOriginTime();
+        long t1 = ping.getReceiveTime();
+        long t2 = ping.getTransmitTime();
+        // A peer reporting a negative hold time would inflate its round trip, and so its lag compensation
+        long held = Math.max(t2 - t1, 0);
+        long delay = Math.max(now - t0 - held, 0);
+        long sampleOffset = ((t1 - t0) + (t2 - now)) / 2;
+
+        int count = sampleCount;
+        if (count == 0) {
+            smoothedRtt = delay;
+            rttVariation = delay / 2;
+        } else {
+            rttVariation = (3 * rttVariation + Math.abs(smoothedRtt - delay)) / 4;
+            smoothedRtt = (7 * smoothedRtt + delay) / 8;
+        }
+        int slot = count % FILTER_SIZE;
+        filterDelays[slot] = delay;
+        filterOffsets[slot] = sampleOffset;
+        int best = 0;
+        int filled = Math.min(count + 1, FILTER_SIZE);
+        for (int i = 1; i < filled; i++) {
+            if (filterDelays[i] < filterDelays[best]) {
+                best = i;
+            }
+        }
+        offset = filterOffsets[best];
+        sampleCount = count + 1;
+        return true;
+    }
+
+    /**
+     * Whether any round trip has been measured yet
+     */
+    public boolean hasSample() {
+        return sampleCount > 0;
+    }
+
+    /**
+     * Get the smoothed round-trip time in microseconds, or 0 before the first sample
+     */
+    public long getRtt() {
+        return smoothedRtt;
+    }
+
+    /**
+     * Get the round-trip time's mean deviation in microseconds
+     */
+    public long getJitter() {
+        return rttVariation;
+    }
+
+    /**
+     * Get how far the other side's clock is ahead of this one, in microseconds
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Converts a time on this side's clock to the other side's
+     */
+    public long toRemoteTime(long localTime) {
+        return localTime + offset;
+    }
+
+    /**
+     * Get the number of samples taken
+     */
+    public int getSampleCount() {
+        return sampleCount;
+    }
+}
@@ -0,0 +1,113 @@
+package io.github.onlinechess.shared.cluster;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Maps game codes to server nodes by consistent hashing.
+ *
+ * Each node is placed on a 64-bit ring at a number of pseudo-random points
+ * (virtual nodes), and a game belongs to the node at the first point at or
+ * after the game code's own hash. Adding or removing a node therefore only
+ * moves the games between it and its neighbours, about 1/n of them, and the
+ * virtual nodes keep the shares even. Hashes depend only on the node names
+ * and codes, so every server and client that knows the same nodes agrees on
+ * every owner without talking to each other.
+ *
+ * Rings are immutable; a membership change builds a new one.
+ */
+public final class ConsistentHashRing {
+    // Points per node; more evens out the shares at the cost of a larger ring
+    public static final int VIRTUAL_NODES = 160;
+
+    private final Set<NodeAddress> nodes;
+    // Point hashes in ascending order, and the node at each
+    private final long[] points;
+    private final NodeAddress[] owners;
+
+    public ConsistentHashRing(Collection<NodeAddress> nodes) {
+        this.nodes = Collections.unmodifiableSet(new LinkedHashSet<>(nodes));
+        int count = this.nodes.size() * VIRTUAL_NODES;
+        long[] keyed = new long[count];
+        NodeAddress[] byIndex = this.nodes.toArray(new NodeAddress[0]);
+        int i = 0;
+        for (int node = 0; node < byIndex.length; node++) {
+            String name = byIndex[node].toString();
+            for (int replica = 0; replica < VIRTUAL_NODES; replica++) {
+                keyed[i++] = hash(name + "#" + replica);
+            }
+        }
+        // Sort points and owners together by sorting the point indexes
+        Integer[] order = new Integer[count];
+        for (i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, (a, b) -> Long.compare(keyed[a], keyed[b]));
+        points = new long[count];
+        owners = new NodeAddress[count];
+        for (i = 0; i < count; i++) {
+            points[i] = keyed[order[i]];
+            owners[i] = byIndex[order[i] / VIRTUAL_NODES];
+        }
+    }
+
+    /**
+     * Get the node a game belongs to
+     *
+     * @return The node, or null if the ring is empty
+     */
+    public NodeAddress nodeFor(int gameCode) {
+        if (points.length == 0) {
+            return null;
+        }
+        int index = Arrays.binarySearch(points, mix(gameCode));
+        if (index < 0) {
+            index = -index - 1;
+        }
+        // Past the last point, wrap round to the first
+        return owners[index < points.length ? index : 0];
+    }
+
+    /**
+     * Get the nodes on the ring, in the order they were given
+     */
+    public Set<NodeAddress> getNodes() {
+        return nodes;
+    }
+
+    public boolean contains(NodeAddress node) {
+        return nodes.contains(node);
+    }
+
+    /**
+     * 64-bit FNV-1a of a node name, finished with a mix so similar names land far apart
+     */
+    private static long hash(String name) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < name.length(); i++) {
+            h ^= name.charAt(i);
+            h *= 0x100000001B3L;
+        }
+        return mix(h);
+    }
+
+    /**
+     * MurmurHash3's 64-bit finalizer
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    @Override
+    public String toString() {
+        return "ConsistentHashRing" + nodes;
+    }
+}
@@ -0,0 +1,71 @@
+package io.github.onlinechess.shared.cluster;
+
+/**
+ * Where clients reach one server node: a host and its TCP and UDP ports.
+ * Written as host:tcpPort:udpPort, which is also the node's name on the hash ring.
+ */
+public final class NodeAddress {
+    private final String host;
+    private final int tcpPort;
+    private final int udpPort;
+
+    public NodeAddress(String host, int tcpPort, int udpPort) {
+        if (host == null || host.isEmpty()) {
+            throw new IllegalArgumentException("Host cannot be empty.");
+        }
+        if (tcpPort < 1 || tcpPort > 65535 || udpPort < 1 || udpPort > 65535) {
+            throw new IllegalArgumentException("Ports must be between 1 and 65535.");
+        }
+        this.host = host;
+        this.tcpPort = tcpPort;
+        this.udpPort = udpPort;
+    }
+
+    /**
+     * Reads an address written as host:tcpPort:udpPort
+     *
+     * @throws IllegalArgumentException If the text is not in that form
+     */
+    public static NodeAddress parse(String text) {
+        String[] parts = text.trim().split(":");
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Expected host:tcpPort:udpPort: " + text);
+        }
+        try {
+            return new NodeAddress(parts[0], Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Not a port number: " + text);
+        }
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getTcpPort() {
+        return tcpPort;
+    }
+
+    public int getUdpPort() {
+        return udpPort;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof NodeAddress)) {
+            return false;
+        }
+        NodeAddress that = (NodeAddress) other;
+        return host.equals(that.host) && tcpPort == that.tcpPort && udpPort == that.udpPort;
+    }
+
+    @Override
+    public int hashCode() {
+        return (host.hashCode() * 31 + tcpPort) * 31 + udpPort;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + tcpPort + ":" + udpPort;
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.onlinechess.shared.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for deserializing one incoming message.
+ * Only decodes slower than the threshold are recorded, so the event can stay enabled in production.
+ */
+@Name("io.github.onlinechess.PacketDecode")
+@Label("Packet Decode")
+@Category({"OnlineChess", "Network"})
+@Description("Deserializing an incoming message")
+@StackTrace(false)
+@Threshold("100 us")
+public class PacketDecodeEvent extends Event {
+    @Label("Connection")
+    public int connectionId;
+
+    @Label("Game Code")
+    public int gameCode;
+
+    @Label("Packet Type")
+    public String packetType;
+
+    @Label("Size")
+    @DataAmount
+    public int bytes;
+}
@@ -0,0 +1,36 @@
+package io.github.onlinechess.shared.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * JFR event for serializing one outgoing message, either into a connection's
+ * write buffer or ahead of time for a broadcast
+ */
+@Name("io.github.onlinechess.PacketEncode")
+@Label("Packet Encode")
+@Category({"OnlineChess", "Network"})
+@Description("Serializing an outgoing message")
+@StackTrace(false)
+@Threshold("100 us")
+public class PacketEncodeEvent extends Event {
+    @Label("Connection")
+    @Description("The receiving connection, or 0 for a message encoded once for many")
+    public int connectionId;
+
+    @Label("Game Code")
+    public int gameCode;
+
+    @Label("Packet Type")
+    public String packetType;
+
+    @Label("Size")
+    @DataAmount
+    public int bytes;
+}
@@ -0,0 +1,64 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by the server with consecutive chat messages from one room: everything
+ * posted since the last batch, or the room's recent history for a new member.
+ * Messages are numbered per room; message i has sequence firstSequence + i,
+ * so a client can drop any it already has.
+ */
+public class ChatBatchPacket {
+    private int roomId;
+    private boolean history;
+    private long firstSequence;
+    private String[] senders;
+    private String[] texts;
+    // Epoch milliseconds at which the server accepted each message
+    private long[] timestamps;
+
+    // Required no-arg constructor for Kryo serialization
+    public ChatBatchPacket() {}
+
+    public ChatBatchPacket(int roomId, boolean history, long firstSequence, String[] senders, String[] texts,
+                           long[] timestamps) {
+        if (senders.length != texts.length || texts.length != timestamps.length) {
+            throw new IllegalArgumentException("Every message needs a sender, text and timestamp.");
+        }
+        this.roomId = roomId;
+        this.history = history;
+        this.firstSequence = firstSequence;
+        this.senders = senders;
+        this.texts = texts;
+        this.timestamps = timestamps;
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    /**
+     * Whether this is the history sent on joining, rather than new messages
+     */
+    public boolean isHistory() {
+        return history;
+    }
+
+    public long getFirstSequence() {
+        return firstSequence;
+    }
+
+    public int size() {
+        return texts.length;
+    }
+
+    public String getSender(int index) {
+        return senders[index];
+    }
+
+    public String getText(int index) {
+        return texts[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+}
@@ -0,0 +1,46 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by a client to post a chat message to a room, or to join a room.
+ * A game's room has the game's code as its ID; lower IDs are lobby rooms.
+ * Messages come back to every member, the sender included, in a {@link ChatBatchPacket}.
+ */
+public class ChatPacket {
+    private int roomId;
+    private String text;
+    private boolean join;
+
+    // Required no-arg constructor for Kryo serialization
+    public ChatPacket() {}
+
+    /**
+     * @param roomId The room to post to, which the client must have joined
+     * @param text The message
+     */
+    public ChatPacket(int roomId, String text) {
+        this.roomId = roomId;
+        this.text = text;
+    }
+
+    /**
+     * Creates a request to join a room, leaving any other; the reply carries the room's recent history
+     */
+    public static ChatPacket join(int roomId) {
+        ChatPacket packet = new ChatPacket();
+        packet.roomId = roomId;
+        packet.join = true;
+        return packet;
+    }
+
+    public int getRoomId() {
+        return roomId;
+    }
+
+    public String getText() {
+        return text;
+    }
+
+    public boolean isJoin() {
+        return join;
+    }
+}
@@ -0,0 +1,26 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Acknowledges every chunk of a stream up to and including the given index,
+ * once the receiver has handled them, letting the sender send more.
+ */
+public class ChunkAckPacket {
+    private int streamId;
+    private int index;
+
+    // Required no-arg constructor for Kryo serialization
+    public ChunkAckPacket() {}
+
+    public ChunkAckPacket(int streamId, int index) {
+        this.streamId = streamId;
+        this.index = index;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+}
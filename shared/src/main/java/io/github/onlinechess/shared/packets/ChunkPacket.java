@@ -0,0 +1,73 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * One piece of a payload too large to send as a single message, streamed by
+ * a {@link io.github.onlinechess.shared.stream.StreamSender} and put back
+ * together by a {@link io.github.onlinechess.shared.stream.StreamReceiver}.
+ *
+ * Chunks of a stream are numbered from 0 and arrive in order over TCP,
+ * between the connection's other messages. The sender asks for a
+ * {@link ChunkAckPacket} every few chunks, and sends no further ahead of the
+ * acknowledgements than its window allows.
+ */
+public class ChunkPacket {
+    // Largest piece of the payload in one chunk
+    public static final int MAX_DATA = 1024;
+
+    // Stream kinds, saying how the payload is read
+    // A game's moves: the game code as an int, then each move's history entry as a long,
+    // holding the clock change in the high 32 bits, the status flags in the next 16 and the move in the low 16
+    public static final int KIND_MOVE_HISTORY = 1;
+
+    private int streamId;
+    private int kind;
+    private int index;
+    private boolean last;
+    private boolean ackRequested;
+    private byte[] data;
+
+    // Required no-arg constructor for Kryo serialization
+    public ChunkPacket() {}
+
+    public ChunkPacket(int streamId, int kind, int index, boolean last, boolean ackRequested, byte[] data) {
+        if (data.length > MAX_DATA) {
+            throw new IllegalArgumentException("A chunk holds at most " + MAX_DATA + " bytes.");
+        }
+        this.streamId = streamId;
+        this.kind = kind;
+        this.index = index;
+        this.last = last;
+        this.ackRequested = ackRequested;
+        this.data = data;
+    }
+
+    public int getStreamId() {
+        return streamId;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * Whether this is the stream's final chunk
+     */
+    public boolean isLast() {
+        return last;
+    }
+
+    /**
+     * Whether the receiver should acknowledge every chunk up to this one
+     */
+    public boolean isAckRequested() {
+        return ackRequested;
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+}
@@ -0,0 +1,27 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by the node receiving a {@link GameHandoffPacket}. Once accepted, the
+ * game is durable on the receiving node and the sender may redirect its
+ * players there and drop its own copy.
+ */
+public class GameHandoffAckPacket {
+    private int gameCode;
+    private boolean accepted;
+
+    // Required no-arg constructor for Kryo serialization
+    public GameHandoffAckPacket() {}
+
+    public GameHandoffAckPacket(int gameCode, boolean accepted) {
+        this.gameCode = gameCode;
+        this.accepted = accepted;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+
+    public boolean isAccepted() {
+        return accepted;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent from one server node to another to move a live game to it.
+ * Carries the game's snapshot entry as written by the sending node, and the
+ * cluster key that proves the sender is a node of the same cluster.
+ * Answered with a {@link GameHandoffAckPacket}.
+ */
+public class GameHandoffPacket {
+    private String clusterKey;
+    private int gameCode;
+    private int version;
+    private byte[] state;
+
+    // Required no-arg constructor for Kryo serialization
+    public GameHandoffPacket() {}
+
+    /**
+     * @param version Snapshot format version of the state
+     * @param state The game's snapshot entry
+     */
+    public GameHandoffPacket(String clusterKey, int gameCode, int version, byte[] state) {
+        this.clusterKey = clusterKey;
+        this.gameCode = gameCode;
+        this.version = version;
+        this.state = state;
+    }
+
+    public String getClusterKey() {
+        return clusterKey;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+
+    public int getVersion() {
+        return version;
+    }
+
+    public byte[] getState() {
+        return state;
+    }
+}
@@ -0,0 +1,116 @@
+package io.github.onlinechess.shared.packets;
+
+import com.github.bhlangonijr.chesslib.move.Move;
+
+import io.github.onlinechess.shared.MoveCodec;
+
+/**
+ * Incremental update to a game's state, sent by the server.
+ *
+ * Every state change in a game gets the next sequence number. Normally a status
+ * packet is a delta: the move that was just played, how much each clock changed
+ * and any result flags. A full snapshot (FEN plus absolute clocks) is only sent
+ * when a client asks to resync with a {@link ResyncRequestPacket}, or to clients
+ * that did not agree to delta sync in the handshake.
+ */
+public class GameStatusPacket {
+    // Flags
+    public static final int SNAPSHOT = 1;
+    public static final int CHECK = 1 << 1;
+    public static final int CHECKMATE = 1 << 2;
+    public static final int STALEMATE = 1 << 3;
+    public static final int DRAW = 1 << 4;
+    public static final int TIMEOUT = 1 << 5;
+    // Any flag that ends the game
+    public static final int GAME_OVER = CHECKMATE | STALEMATE | DRAW | TIMEOUT;
+
+    private int sequence;
+    private int flags;
+    private short lastMove = MoveCodec.NONE;
+    // Clock change in milliseconds for a delta, or remaining time for a snapshot
+    private int whiteClock;
+    private int blackClock;
+    // Position as FEN, only present in snapshots
+    private String fen;
+
+    // Required no-arg constructor for Kryo serialization
+    public GameStatusPacket() {}
+
+    /**
+     * Creates a delta update
+     */
+    public static GameStatusPacket delta(int sequence, short lastMove, int whiteClockDelta, int blackClockDelta, int flags) {
+        GameStatusPacket packet = new GameStatusPacket();
+        packet.sequence = sequence;
+        packet.lastMove = lastMove;
+        packet.whiteClock = whiteClockDelta;
+        packet.blackClock = blackClockDelta;
+        packet.flags = flags & ~SNAPSHOT;
+        return packet;
+    }
+
+    /**
+     * Creates a full snapshot of the game
+     */
+    public static GameStatusPacket snapshot(int sequence, String fen, short lastMove, int whiteClock, int blackClock, int flags) {
+        GameStatusPacket packet = new GameStatusPacket();
+        packet.sequence = sequence;
+        packet.fen = fen;
+        packet.lastMove = lastMove;
+        packet.whiteClock = whiteClock;
+        packet.blackClock = blackClock;
+        packet.flags = flags | SNAPSHOT;
+        return packet;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+
+    public int getFlags() {
+        return flags;
+    }
+
+    public boolean hasFlag(int flag) {
+        return (flags & flag) != 0;
+    }
+
+    public boolean isSnapshot() {
+        return hasFlag(SNAPSHOT);
+    }
+
+    /**
+     * Get the packed move that produced this state (see MoveCodec), or MoveCodec.NONE
+     */
+    public short getLastMove() {
+        return lastMove;
+    }
+
+    /**
+     * Get the move that produced this state, or null if there was none
+     */
+    public Move getMove() {
+        return MoveCodec.decode(lastMove);
+    }
+
+    /**
+     * Get white's clock change (delta) or remaining time (snapshot), in milliseconds
+     */
+    public int getWhiteClock() {
+        return whiteClock;
+    }
+
+    /**
+     * Get black's clock change (delta) or remaining time (snapshot), in milliseconds
+     */
+    public int getBlackClock() {
+        return blackClock;
+    }
+
+    /**
+     * Get the position as FEN, or null for a delta
+     */
+    public String getFen() {
+        return fen;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * First packet exchanged on a new connection.
+ * The client sends its protocol version and the capabilities it supports; the
+ * server answers with its own version, whether it accepted the client, and the
+ * capabilities both sides will use for the rest of the connection.
+ */
+public class HandshakePacket {
+    private int protocolVersion;
+    private int capabilities;
+    private boolean accepted;
+
+    // Required no-arg constructor for Kryo serialization
+    public HandshakePacket() {}
+
+    public HandshakePacket(int protocolVersion, int capabilities) {
+        this(protocolVersion, capabilities, false);
+    }
+
+    public HandshakePacket(int protocolVersion, int capabilities, boolean accepted) {
+        this.protocolVersion = protocolVersion;
+        this.capabilities = capabilities;
+        this.accepted = accepted;
+    }
+
+    public int getProtocolVersion() {
+        return protocolVersion;
+    }
+
+    /**
+     * Get the capability flags (see NetworkRegistry.CAP_*)
+     */
+    public int getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Whether the server accepted the connection (only meaningful in the server's reply)
+     */
+    public boolean isAccepted() {
+        return accepted;
+    }
+}
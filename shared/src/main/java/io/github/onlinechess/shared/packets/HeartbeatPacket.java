@@ -0,0 +1,12 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Application-level heartbeat. The server sends one to a connection that has
+ * been quiet for a while, and the client must answer with a HeartbeatPacket
+ * of its own; a connection that stays silent is closed and its seat is held
+ * for it to resume. Any other message counts as a heartbeat too.
+ */
+public class HeartbeatPacket {
+    // Required no-arg constructor for Kryo serialization
+    public HeartbeatPacket() {}
+}
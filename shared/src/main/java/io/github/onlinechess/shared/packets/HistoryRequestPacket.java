@@ -0,0 +1,22 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Asks the server for every move of a game, such as to rebuild the move list
+ * after resuming it. The moves are streamed back as {@link ChunkPacket}s of
+ * kind {@link ChunkPacket#KIND_MOVE_HISTORY}; a game the server does not have
+ * streams back no moves.
+ */
+public class HistoryRequestPacket {
+    private int gameCode;
+
+    // Required no-arg constructor for Kryo serialization
+    public HistoryRequestPacket() {}
+
+    public HistoryRequestPacket(int gameCode) {
+        this.gameCode = gameCode;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+}
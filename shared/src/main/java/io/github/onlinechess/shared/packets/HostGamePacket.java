@@ -0,0 +1,46 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by a client to host a new private game.
+ * The server allocates the game code and replies with a {@link JoinResultPacket}.
+ */
+public class HostGamePacket {
+    private boolean white;
+    private int baseSeconds;
+    private int incrementSeconds;
+
+    // Required no-arg constructor for Kryo serialization
+    public HostGamePacket() {}
+
+    /**
+     * Hosts an untimed game
+     *
+     * @param white Whether the host wants to play white
+     */
+    public HostGamePacket(boolean white) {
+        this(white, 0, 0);
+    }
+
+    /**
+     * @param white Whether the host wants to play white
+     * @param baseSeconds Starting time on each clock, or 0 for an untimed game
+     * @param incrementSeconds Time added after each move
+     */
+    public HostGamePacket(boolean white, int baseSeconds, int incrementSeconds) {
+        this.white = white;
+        this.baseSeconds = baseSeconds;
+        this.incrementSeconds = incrementSeconds;
+    }
+
+    public boolean isWhite() {
+        return white;
+    }
+
+    public int getBaseSeconds() {
+        return baseSeconds;
+    }
+
+    public int getIncrementSeconds() {
+        return incrementSeconds;
+    }
+}
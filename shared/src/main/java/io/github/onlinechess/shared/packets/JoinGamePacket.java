@@ -0,0 +1,20 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by a client to join a hosted game by its code.
+ * The server replies with a {@link JoinResultPacket}.
+ */
+public class JoinGamePacket {
+    private int gameCode;
+
+    // Required no-arg constructor for Kryo serialization
+    public JoinGamePacket() {}
+
+    public JoinGamePacket(int gameCode) {
+        this.gameCode = gameCode;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+}
@@ -0,0 +1,47 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by the server in reply to a {@link HostGamePacket}, {@link JoinGamePacket} or {@link ResumePacket}.
+ * On success the player is already seated in the game.
+ */
+public class JoinResultPacket {
+    // Result codes
+    public static final int OK = 0;
+    public static final int GAME_NOT_FOUND = 1;
+    public static final int GAME_FULL = 2;
+    public static final int NO_CODES_AVAILABLE = 3;
+    public static final int SESSION_EXPIRED = 4;
+    public static final int ALREADY_IN_GAME = 5;
+
+    private int result;
+    private int gameCode;
+    private boolean white;
+
+    // Required no-arg constructor for Kryo serialization
+    public JoinResultPacket() {}
+
+    public JoinResultPacket(int result, int gameCode, boolean white) {
+        this.result = result;
+        this.gameCode = gameCode;
+        this.white = white;
+    }
+
+    public int getResult() {
+        return result;
+    }
+
+    public boolean isSuccess() {
+        return result == OK;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+
+    /**
+     * Whether the receiving player plays white
+     */
+    public boolean isWhite() {
+        return white;
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by the server when matchmaking has paired two players.
+ * Both players are already seated in the new game.
+ */
+public class MatchFoundPacket {
+    private int gameCode;
+    private boolean white;
+    private int opponentElo;
+
+    // Required no-arg constructor for Kryo serialization
+    public MatchFoundPacket() {}
+
+    public MatchFoundPacket(int gameCode, boolean white, int opponentElo) {
+        this.gameCode = gameCode;
+        this.white = white;
+        this.opponentElo = opponentElo;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+
+    /**
+     * Whether the receiving player plays white
+     */
+    public boolean isWhite() {
+        return white;
+    }
+
+    public int getOpponentElo() {
+        return opponentElo;
+    }
+}
@@ -0,0 +1,51 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by a client to join (or leave) the matchmaking queue.
+ * Players are paired with someone of a similar rating playing the same time control.
+ */
+public class MatchmakingRequestPacket {
+    private int elo;
+    private int baseSeconds;
+    private int incrementSeconds;
+    private boolean cancel;
+
+    // Required no-arg constructor for Kryo serialization
+    public MatchmakingRequestPacket() {}
+
+    /**
+     * @param elo The player's rating (ChessPlayer.getElo())
+     * @param baseSeconds Starting time on each clock
+     * @param incrementSeconds Time added after each move
+     */
+    public MatchmakingRequestPacket(int elo, int baseSeconds, int incrementSeconds) {
+        this.elo = elo;
+        this.baseSeconds = baseSeconds;
+        this.incrementSeconds = incrementSeconds;
+    }
+
+    /**
+     * Creates a request to leave the queue
+     */
+    public static MatchmakingRequestPacket cancel() {
+        MatchmakingRequestPacket packet = new MatchmakingRequestPacket();
+        packet.cancel = true;
+        return packet;
+    }
+
+    public int getElo() {
+        return elo;
+    }
+
+    public int getBaseSeconds() {
+        return baseSeconds;
+    }
+
+    public int getIncrementSeconds() {
+        return incrementSeconds;
+    }
+
+    public boolean isCancel() {
+        return cancel;
+    }
+}
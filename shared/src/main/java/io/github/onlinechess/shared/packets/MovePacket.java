@@ -1,18 +1,47 @@
 package io.github.onlinechess.shared.packets;
 
-import java.util.UUID;
-
 import com.github.bhlangonijr.chesslib.move.Move;
 
+import io.github.onlinechess.shared.MoveCodec;
+
+/**
+ * A single chess move requested by a client.
+ * Once the server has validated and applied it, the result reaches every
+ * player as a {@link GameStatusPacket}.
+ *
+ * On the wire the move is a single packed short (see {@link MoveCodec}) followed
+ * by a varint sequence number: the move's position in the game, starting at 1.
+ * A packet is small and short-lived, and the Move it decodes to comes from
+ * MoveCodec's cache, so decoding allocates only the packet itself.
+ */
 public class MovePacket {
-    private Move move;
+    private short encodedMove = MoveCodec.NONE;
+    private int sequence;
     
      // Required no-arg constructor for Kryo serialization
      public MovePacket() {}
 
-     public MovePacket(Move move, UUID gameID) {
-        
+     public MovePacket(Move move, int sequence) {
+        this(MoveCodec.encode(move), sequence);
+     }
+
+     public MovePacket(short encodedMove, int sequence) {
+        this.encodedMove = encodedMove;
+        this.sequence = sequence;
+     }
+
+     /**
+      * Get the move, or null if the packet does not hold a valid move
+      */
+     public Move getMove() {
+        return MoveCodec.decode(encodedMove);
+     }
 
+     public short getEncodedMove() {
+        return encodedMove;
+     }
 
+     public int getSequence() {
+        return sequence;
      }
-}
\ No newline at end of file
+}
@@ -0,0 +1,37 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by the server when it refuses a move.
+ * Carries a reason code and the server's current sequence number so the
+ * client can roll back its prediction and resync.
+ */
+public class MoveRejectedPacket {
+    // Reason codes
+    public static final int NOT_IN_GAME = 1;
+    public static final int NOT_YOUR_TURN = 2;
+    public static final int ILLEGAL_MOVE = 3;
+    public static final int GAME_OVER = 4;
+    public static final int MALFORMED = 5;
+    public static final int STALE_SEQUENCE = 6;
+    // The game is moving to another node; a RedirectPacket follows
+    public static final int MIGRATING = 7;
+
+    private int reason;
+    private int sequence;
+
+    // Required no-arg constructor for Kryo serialization
+    public MoveRejectedPacket() {}
+
+    public MoveRejectedPacket(int reason, int sequence) {
+        this.reason = reason;
+        this.sequence = sequence;
+    }
+
+    public int getReason() {
+        return reason;
+    }
+
+    public int getSequence() {
+        return sequence;
+    }
+}
@@ -0,0 +1,35 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent from one server node to the others when it starts draining before a
+ * shutdown, and again when it is back. While a node drains, the others leave
+ * it out of the hash ring: they take over its games and send its clients
+ * elsewhere, and nothing is handed back until it returns.
+ */
+public class NodeStatusPacket {
+    private String clusterKey;
+    // The sending node's address, as host:tcpPort:udpPort
+    private String node;
+    private boolean draining;
+
+    // Required no-arg constructor for Kryo serialization
+    public NodeStatusPacket() {}
+
+    public NodeStatusPacket(String clusterKey, String node, boolean draining) {
+        this.clusterKey = clusterKey;
+        this.node = node;
+        this.draining = draining;
+    }
+
+    public String getClusterKey() {
+        return clusterKey;
+    }
+
+    public String getNode() {
+        return node;
+    }
+
+    public boolean isDraining() {
+        return draining;
+    }
+}
@@ -0,0 +1,40 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by the server to a seated player when their opponent's connection
+ * drops, when the opponent resumes, and when the opponent's held seat expires.
+ */
+public class OpponentStatusPacket {
+    // Statuses
+    public static final int DISCONNECTED = 0;
+    public static final int RECONNECTED = 1;
+    public static final int SEAT_EXPIRED = 2;
+
+    private int gameCode;
+    private int status;
+    private int graceSeconds;
+
+    // Required no-arg constructor for Kryo serialization
+    public OpponentStatusPacket() {}
+
+    public OpponentStatusPacket(int gameCode, int status, int graceSeconds) {
+        this.gameCode = gameCode;
+        this.status = status;
+        this.graceSeconds = graceSeconds;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Get how long a disconnected opponent's seat is held for them, in seconds
+     */
+    public int getGraceSeconds() {
+        return graceSeconds;
+    }
+}
@@ -0,0 +1,43 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Clock sample sent over UDP, in the style of NTP's symmetric mode.
+ *
+ * The server sends one to every client that agreed to clock sync, every few
+ * seconds, and the client answers each at once. Every ping echoes when the
+ * last one from the other side was sent and when it arrived, so both sides
+ * get all four timestamps of a round trip and can estimate the round-trip
+ * time and the offset between their clocks; see
+ * {@link io.github.onlinechess.shared.RttEstimator}.
+ *
+ * Times are in microseconds on the sender's own monotonic clock.
+ */
+public class PingPacket {
+    // When the other side sent the ping this one answers, or 0 if none has arrived yet
+    private long originTime;
+    // When that ping arrived here
+    private long receiveTime;
+    // When this ping was sent
+    private long transmitTime;
+
+    // Required no-arg constructor for Kryo serialization
+    public PingPacket() {}
+
+    public PingPacket(long originTime, long receiveTime, long transmitTime) {
+        this.originTime = originTime;
+        this.receiveTime = receiveTime;
+        this.transmitTime = transmitTime;
+    }
+
+    public long getOriginTime() {
+        return originTime;
+    }
+
+    public long getReceiveTime() {
+        return receiveTime;
+    }
+
+    public long getTransmitTime() {
+        return transmitTime;
+    }
+}
@@ -0,0 +1,44 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by the server when a game lives on another node: in reply to a
+ * {@link JoinGamePacket} or {@link SpectatePacket} for a game it does not own,
+ * or to everyone in a game that has just moved. The client reconnects to the
+ * given node and repeats its request there; a seated player sends a
+ * {@link ResumePacket} with their session token, which carries over.
+ *
+ * A node shutting down sends its remaining clients one with game code 0,
+ * naming the node they should use from now on.
+ */
+public class RedirectPacket {
+    private int gameCode;
+    private String host;
+    private int tcpPort;
+    private int udpPort;
+
+    // Required no-arg constructor for Kryo serialization
+    public RedirectPacket() {}
+
+    public RedirectPacket(int gameCode, String host, int tcpPort, int udpPort) {
+        this.gameCode = gameCode;
+        this.host = host;
+        this.tcpPort = tcpPort;
+        this.udpPort = udpPort;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+
+    public String getHost() {
+        return host;
+    }
+
+    public int getTcpPort() {
+        return tcpPort;
+    }
+
+    public int getUdpPort() {
+        return udpPort;
+    }
+}
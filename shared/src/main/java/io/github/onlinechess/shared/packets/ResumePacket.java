@@ -0,0 +1,31 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by a reconnecting client to reclaim its seat.
+ * The server replies with a {@link JoinResultPacket}, then streams only the
+ * moves after lastSequence (or a snapshot if the client is too far behind).
+ */
+public class ResumePacket {
+    private long token;
+    private int lastSequence;
+
+    // Required no-arg constructor for Kryo serialization
+    public ResumePacket() {}
+
+    /**
+     * @param token The token from the {@link SessionTokenPacket}
+     * @param lastSequence The sequence number of the last move the client applied
+     */
+    public ResumePacket(long token, int lastSequence) {
+        this.token = token;
+        this.lastSequence = lastSequence;
+    }
+
+    public long getToken() {
+        return token;
+    }
+
+    public int getLastSequence() {
+        return lastSequence;
+    }
+}
@@ -0,0 +1,23 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by a client that has lost track of its game (a sequence gap or a
+ * rejected move) to ask the server for a full snapshot.
+ */
+public class ResyncRequestPacket {
+    private int lastSequence;
+
+    // Required no-arg constructor for Kryo serialization
+    public ResyncRequestPacket() {}
+
+    public ResyncRequestPacket(int lastSequence) {
+        this.lastSequence = lastSequence;
+    }
+
+    /**
+     * Get the last sequence number the client applied
+     */
+    public int getLastSequence() {
+        return lastSequence;
+    }
+}
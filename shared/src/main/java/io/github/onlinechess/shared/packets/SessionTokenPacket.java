@@ -0,0 +1,27 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by the server when a player takes a seat.
+ * The client keeps the token and sends it back in a {@link ResumePacket}
+ * to reclaim the seat after losing its connection.
+ */
+public class SessionTokenPacket {
+    private int gameCode;
+    private long token;
+
+    // Required no-arg constructor for Kryo serialization
+    public SessionTokenPacket() {}
+
+    public SessionTokenPacket(int gameCode, long token) {
+        this.gameCode = gameCode;
+        this.token = token;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+
+    public long getToken() {
+        return token;
+    }
+}
@@ -0,0 +1,20 @@
+package io.github.onlinechess.shared.packets;
+
+/**
+ * Sent by a client that wants to watch a game.
+ * The server answers with a snapshot and then streams status updates.
+ */
+public class SpectatePacket {
+    private int gameCode;
+
+    // Required no-arg constructor for Kryo serialization
+    public SpectatePacket() {}
+
+    public SpectatePacket(int gameCode) {
+        this.gameCode = gameCode;
+    }
+
+    public int getGameCode() {
+        return gameCode;
+    }
+}
@@ -0,0 +1,52 @@
+package io.github.onlinechess.shared.serializers;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.github.onlinechess.shared.packets.ChatBatchPacket;
+
+/**
+ * Writes a ChatBatchPacket as a header followed by each message's sender and
+ * text, with every timestamp stored as a varint offset from the one before,
+ * so a batch costs little more than the text it carries.
+ */
+public class ChatBatchPacketSerializer extends Serializer<ChatBatchPacket> {
+    @Override
+    public void write(Kryo kryo, Output output, ChatBatchPacket packet) {
+        int count = packet.size();
+        output.writeVarInt(packet.getRoomId(), true);
+        output.writeBoolean(packet.isHistory());
+        output.writeVarLong(packet.getFirstSequence(), true);
+        output.writeVarInt(count, true);
+        long previous = count > 0 ? packet.getTimestamp(0) : 0;
+        output.writeVarLong(previous, true);
+        for (int i = 0; i < count; i++) {
+            output.writeString(packet.getSender(i));
+            output.writeString(packet.getText(i));
+            // Zig-zag, in case the server clock stepped back between messages
+            output.writeVarLong(packet.getTimestamp(i) - previous, false);
+            previous = packet.getTimestamp(i);
+        }
+    }
+
+    @Override
+    public ChatBatchPacket read(Kryo kryo, Input input, Class<? extends ChatBatchPacket> type) {
+        int roomId = input.readVarInt(true);
+        boolean history = input.readBoolean();
+        long firstSequence = input.readVarLong(true);
+        int count = input.readVarInt(true);
+        long timestamp = input.readVarLong(true);
+        String[] senders = new String[count];
+        String[] texts = new String[count];
+        long[] timestamps = new long[count];
+        for (int i = 0; i < count; i++) {
+            senders[i] = input.readString();
+            texts[i] = input.readString();
+            timestamp += input.readVarLong(false);
+            timestamps[i] = timestamp;
+        }
+        return new ChatBatchPacket(roomId, history, firstSequence, senders, texts, timestamps);
+    }
+}
@@ -0,0 +1,45 @@
+package io.github.onlinechess.shared.serializers;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.github.onlinechess.shared.packets.ChunkPacket;
+
+/**
+ * Writes a ChunkPacket with its two flags in one byte and its data as a
+ * length-prefixed run of raw bytes, so the byte array needs no Kryo
+ * registration of its own. A length over the chunk limit is refused before
+ * anything is allocated for it.
+ */
+public class ChunkPacketSerializer extends Serializer<ChunkPacket> {
+    private static final int LAST = 1;
+    private static final int ACK_REQUESTED = 1 << 1;
+
+    @Override
+    public void write(Kryo kryo, Output output, ChunkPacket packet) {
+        byte[] data = packet.getData();
+        output.writeVarInt(packet.getStreamId(), true);
+        output.writeVarInt(packet.getKind(), true);
+        output.writeVarInt(packet.getIndex(), true);
+        output.writeByte((packet.isLast() ? LAST : 0) | (packet.isAckRequested() ? ACK_REQUESTED : 0));
+        output.writeVarInt(data.length, true);
+        output.writeBytes(data);
+    }
+
+    @Override
+    public ChunkPacket read(Kryo kryo, Input input, Class<? extends ChunkPacket> type) {
+        int streamId = input.readVarInt(true);
+        int kind = input.readVarInt(true);
+        int index = input.readVarInt(true);
+        int flags = input.readByte();
+        int length = input.readVarInt(true);
+        if (length > ChunkPacket.MAX_DATA) {
+            throw new KryoException("Chunk of " + length + " bytes is over the limit.");
+        }
+        byte[] data = input.readBytes(length);
+        return new ChunkPacket(streamId, kind, index, (flags & LAST) != 0, (flags & ACK_REQUESTED) != 0, data);
+    }
+}
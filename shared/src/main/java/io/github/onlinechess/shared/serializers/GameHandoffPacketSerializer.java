@@ -0,0 +1,33 @@
+package io.github.onlinechess.shared.serializers;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.github.onlinechess.shared.packets.GameHandoffPacket;
+
+/**
+ * Writes a GameHandoffPacket with its state as a length-prefixed run of raw
+ * bytes, so the byte array needs no Kryo registration of its own.
+ */
+public class GameHandoffPacketSerializer extends Serializer<GameHandoffPacket> {
+    @Override
+    public void write(Kryo kryo, Output output, GameHandoffPacket packet) {
+        byte[] state = packet.getState();
+        output.writeString(packet.getClusterKey());
+        output.writeVarInt(packet.getGameCode(), true);
+        output.writeVarInt(packet.getVersion(), true);
+        output.writeVarInt(state.length, true);
+        output.writeBytes(state);
+    }
+
+    @Override
+    public GameHandoffPacket read(Kryo kryo, Input input, Class<? extends GameHandoffPacket> type) {
+        String clusterKey = input.readString();
+        int gameCode = input.readVarInt(true);
+        int version = input.readVarInt(true);
+        byte[] state = input.readBytes(input.readVarInt(true));
+        return new GameHandoffPacket(clusterKey, gameCode, version, state);
+    }
+}
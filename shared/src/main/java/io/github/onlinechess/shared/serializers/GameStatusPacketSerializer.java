@@ -0,0 +1,64 @@
+package io.github.onlinechess.shared.serializers;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.github.onlinechess.shared.MoveCodec;
+import io.github.onlinechess.shared.packets.GameStatusPacket;
+
+/**
+ * Writes a GameStatusPacket as a varint sequence number and a flags byte,
+ * followed only by the fields that are present. A typical move delta is
+ * 5-7 bytes; the FEN string is only written for snapshots.
+ */
+public class GameStatusPacketSerializer extends Serializer<GameStatusPacket> {
+    // Presence bits, written in the high bits of the flags byte
+    private static final int HAS_MOVE = 1 << 6;
+    private static final int HAS_CLOCKS = 1 << 7;
+
+    @Override
+    public void write(Kryo kryo, Output output, GameStatusPacket packet) {
+        int header = packet.getFlags();
+        boolean hasMove = packet.getLastMove() != MoveCodec.NONE;
+        boolean hasClocks = packet.getWhiteClock() != 0 || packet.getBlackClock() != 0;
+        if (hasMove) {
+            header |= HAS_MOVE;
+        }
+        if (hasClocks) {
+            header |= HAS_CLOCKS;
+        }
+        output.writeVarInt(packet.getSequence(), true);
+        output.writeByte(header);
+        if (hasMove) {
+            output.writeShort(packet.getLastMove());
+        }
+        if (hasClocks) {
+            // Deltas can be negative, so zig-zag encode them
+            output.writeVarInt(packet.getWhiteClock(), false);
+            output.writeVarInt(packet.getBlackClock(), false);
+        }
+        if (packet.isSnapshot()) {
+            output.writeString(packet.getFen());
+        }
+    }
+
+    @Override
+    public GameStatusPacket read(Kryo kryo, Input input, Class<? extends GameStatusPacket> type) {
+        int sequence = input.readVarInt(true);
+        int header = input.readByte() & 0xFF;
+        short lastMove = (header & HAS_MOVE) != 0 ? input.readShort() : MoveCodec.NONE;
+        int whiteClock = 0;
+        int blackClock = 0;
+        if ((header & HAS_CLOCKS) != 0) {
+            whiteClock = input.readVarInt(false);
+            blackClock = input.readVarInt(false);
+        }
+        int flags = header & ~(HAS_MOVE | HAS_CLOCKS);
+        if ((flags & GameStatusPacket.SNAPSHOT) != 0) {
+            return GameStatusPacket.snapshot(sequence, input.readString(), lastMove, whiteClock, blackClock, flags);
+        }
+        return GameStatusPacket.delta(sequence, lastMove, whiteClock, blackClock, flags);
+    }
+}
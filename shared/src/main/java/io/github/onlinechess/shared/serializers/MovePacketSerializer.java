@@ -0,0 +1,28 @@
+package io.github.onlinechess.shared.serializers;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import io.github.onlinechess.shared.packets.MovePacket;
+
+/**
+ * Writes a MovePacket as a packed 16-bit move plus a varint sequence number,
+ * usually 3 bytes in total.
+ */
+public class MovePacketSerializer extends Serializer<MovePacket> {
+
+    @Override
+    public void write(Kryo kryo, Output output, MovePacket packet) {
+        output.writeShort(packet.getEncodedMove());
+        output.writeVarInt(packet.getSequence(), true);
+    }
+
+    @Override
+    public MovePacket read(Kryo kryo, Input input, Class<? extends MovePacket> type) {
+        short encodedMove = input.readShort();
+        int sequence = input.readVarInt(true);
+        return new MovePacket(encodedMove, sequence);
+    }
+}
@@ -0,0 +1,77 @@
+package io.github.onlinechess.shared.stream;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import io.github.onlinechess.shared.packets.ChunkAckPacket;
+import io.github.onlinechess.shared.packets.ChunkPacket;
+
+/**
+ * Receives the streams a {@link StreamSender} sends. Each chunk goes to the
+ * handler as soon as it arrives, so work on a payload can start before its
+ * last chunk, and nothing is buffered here. The sender's requests for an
+ * acknowledgement are answered once the handler has dealt with the chunks,
+ * so a slow handler slows the stream down rather than piling data up.
+ *
+ * Call from the thread that receives the connection's messages; nothing is locked.
+ */
+public class StreamReceiver {
+    /**
+     * Handles the chunks of each stream, in order
+     */
+    public interface Handler {
+        /**
+         * @param data This chunk's part of the payload
+         * @param last Whether the payload is complete
+         */
+        void chunk(int streamId, int kind, byte[] data, boolean last);
+    }
+
+    private final Handler handler;
+    // Index of the chunk expected next from each unfinished stream
+    private final Map<Integer, Integer> expected = new HashMap<>();
+
+    public StreamReceiver(Handler handler) {
+        if (handler == null) {
+            throw new IllegalArgumentException("Handler cannot be null.");
+        }
+        this.handler = handler;
+    }
+
+    /**
+     * Passes a chunk to the handler
+     *
+     * @return The acknowledgement to send back, or null if the sender did not ask for one
+     * @throws IllegalArgumentException If a chunk of the stream is missing
+     */
+    public ChunkAckPacket received(ChunkPacket chunk) {
+        int streamId = chunk.getStreamId();
+        Integer next = expected.get(streamId);
+        int index = next != null ? next : 0;
+        if (chunk.getIndex() != index) {
+            throw new IllegalArgumentException("Stream " + streamId + " skipped from chunk " + index
+                                               + " to " + chunk.getIndex());
+        }
+        handler.chunk(streamId, chunk.getKind(), chunk.getData(), chunk.isLast());
+        if (chunk.isLast()) {
+            expected.remove(streamId);
+        } else {
+            expected.put(streamId, index + 1);
+        }
+        return chunk.isAckRequested() ? new ChunkAckPacket(streamId, chunk.getIndex()) : null;
+    }
+
+    /**
+     * Get the number of streams that have started but not finished
+     */
+    public int getOpenStreamCount() {
+        return expected.size();
+    }
+
+    /**
+     * Forgets unfinished streams, such as after reconnecting
+     */
+    public void clear() {
+        expected.clear();
+    }
+}
@@ -0,0 +1,147 @@
+package io.github.onlinechess.shared.stream;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Iterator;
+
+import io.github.onlinechess.shared.packets.ChunkPacket;
+
+/**
+ * Splits payloads too large for one message into {@link ChunkPacket}s and
+ * hands them out at the pace the receiver acknowledges them.
+ *
+ * Streams are sent one after another, in the order they were opened. At most
+ * a window of chunks is in flight, sent but not yet acknowledged, across all
+ * of a connection's streams; every half window, and at the end of each stream,
+ * a chunk asks the receiver for an acknowledgement. The caller polls for the
+ * next chunk whenever the connection has room and sends it among its other
+ * messages, so a large download never holds anything else up by more than a
+ * chunk, and a slow receiver is not buried in data it cannot handle yet.
+ *
+ * Streams can be opened and acknowledged from any thread.
+ */
+public class StreamSender {
+    private final int window;
+    private final int ackInterval;
+    private final int maxStreams;
+    // Streams not yet fully acknowledged, in the order they are sent (guarded by this)
+    private final ArrayDeque<Outgoing> streams = new ArrayDeque<>();
+    private int nextStreamId = 1;
+    private int inFlight;
+
+    /**
+     * @param window Most chunks sent but not yet acknowledged
+     * @param maxStreams Most streams queued at once
+     */
+    public StreamSender(int window, int maxStreams) {
+        if (window < 1) {
+            throw new IllegalArgumentException("The window must allow at least one chunk.");
+        }
+        if (maxStreams < 1) {
+            throw new IllegalArgumentException("There must be room for at least one stream.");
+        }
+        this.window = window;
+        this.ackInterval = Math.max(1, window / 2);
+        this.maxStreams = maxStreams;
+    }
+
+    /**
+     * Queues a payload to be streamed
+     *
+     * @param kind Says how the receiver reads the payload, such as {@link ChunkPacket#KIND_MOVE_HISTORY}
+     * @return The stream ID, or 0 if too many streams are already queued
+     */
+    public synchronized int open(int kind, byte[] payload) {
+        if (streams.size() >= maxStreams) {
+            return 0;
+        }
+        int streamId = nextStreamId;
+        nextStreamId = nextStreamId == Integer.MAX_VALUE ? 1 : nextStreamId + 1;
+        streams.add(new Outgoing(streamId, kind, payload));
+        return streamId;
+    }
+
+    /**
+     * Get the next chunk to send
+     *
+     * @return The chunk, or null if the window is full or nothing is left to send
+     */
+    public synchronized ChunkPacket poll() {
+        if (inFlight >= window) {
+            return null;
+        }
+        for (Outgoing stream : streams) {
+            if (stream.sent < stream.chunkCount) {
+                inFlight++;
+                return stream.next(ackInterval);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Records that the receiver has handled every chunk of a stream up to an index.
+     * Acknowledgements for unknown streams or chunks not yet sent are ignored.
+     */
+    public synchronized void acknowledge(int streamId, int index) {
+        Iterator<Outgoing> iterator = streams.iterator();
+        while (iterator.hasNext()) {
+            Outgoing stream = iterator.next();
+            if (stream.streamId != streamId) {
+                continue;
+            }
+            if (index >= stream.acked && index < stream.sent) {
+                inFlight -= index + 1 - stream.acked;
+                stream.acked = index + 1;
+                if (stream.acked == stream.chunkCount) {
+                    iterator.remove();
+                }
+            }
+            return;
+        }
+    }
+
+    /**
+     * Whether any stream is still being sent or waiting for acknowledgement
+     */
+    public synchronized boolean hasStreams() {
+        return !streams.isEmpty();
+    }
+
+    /**
+     * Get the number of chunks sent but not yet acknowledged
+     */
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    /**
+     * A payload being streamed
+     */
+    private static final class Outgoing {
+        final int streamId;
+        final int kind;
+        final byte[] payload;
+        final int chunkCount;
+        // Chunks sent, and chunks acknowledged
+        int sent;
+        int acked;
+
+        Outgoing(int streamId, int kind, byte[] payload) {
+            this.streamId = streamId;
+            this.kind = kind;
+            this.payload = payload;
+            // An empty payload still gets a chunk, so the receiver learns the stream is complete
+            this.chunkCount = Math.max(1, (payload.length + ChunkPacket.MAX_DATA - 1) / ChunkPacket.MAX_DATA);
+        }
+
+        ChunkPacket next(int ackInterval) {
+            int index = sent++;
+            int from = index * ChunkPacket.MAX_DATA;
+            int to = Math.min(payload.length, from + ChunkPacket.MAX_DATA);
+            boolean last = index == chunkCount - 1;
+            boolean ackRequested = last || (index + 1) % ackInterval == 0;
+            return new ChunkPacket(streamId, kind, index, last, ackRequested, Arrays.copyOfRange(payload, from, to));
+        }
+    }
+}
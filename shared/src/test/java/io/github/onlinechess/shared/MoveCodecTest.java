@@ -0,0 +1,79 @@
+package io.github.onlinechess.shared;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.github.bhlangonijr.chesslib.Piece;
+import com.github.bhlangonijr.chesslib.Square;
+import com.github.bhlangonijr.chesslib.move.Move;
+
+import io.github.onlinechess.shared.packets.MovePacket;
+import io.github.onlinechess.shared.serializers.MovePacketSerializer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class MoveCodecTest {
+
+    @Test
+    public void everyQuietMoveRoundTrips() {
+        for (Square from : Square.values()) {
+            for (Square to : Square.values()) {
+                if (from == to || from == Square.NONE || to == Square.NONE) {
+                    continue;
+                }
+                Move move = new Move(from, to);
+                short code = MoveCodec.encode(move);
+                assertTrue(code >= 0);
+                assertEquals(move, MoveCodec.decode(code));
+            }
+        }
+    }
+
+    @Test
+    public void promotionsKeepTheirPieceAndSide() {
+        Move white = new Move(Square.E7, Square.E8, Piece.WHITE_KNIGHT);
+        Move black = new Move(Square.B2, Square.A1, Piece.BLACK_QUEEN);
+        assertEquals(white, MoveCodec.decode(MoveCodec.encode(white)));
+        assertEquals(black, MoveCodec.decode(MoveCodec.encode(black)));
+    }
+
+    @Test
+    public void decodedMovesAreCached() {
+        short code = MoveCodec.encode(new Move(Square.G1, Square.F3));
+        assertSame(MoveCodec.decode(code), MoveCodec.decode(code));
+        assertNotSame(MoveCodec.decode(code), MoveCodec.decode(MoveCodec.encode(new Move(Square.B1, Square.C3))));
+    }
+
+    @Test
+    public void invalidCodesDecodeToNull() {
+        assertEquals(MoveCodec.NONE, MoveCodec.encode(null));
+        assertNull(MoveCodec.decode(MoveCodec.NONE));
+        // Same square twice
+        assertNull(MoveCodec.decode((short) (Square.E4.ordinal() | Square.E4.ordinal() << 6)));
+        // Promotion away from the last rank
+        assertNull(MoveCodec.decode((short) (Square.E4.ordinal() | Square.E5.ordinal() << 6 | 4 << 12)));
+        // Promotion code with no piece
+        assertNull(MoveCodec.decode((short) (Square.E7.ordinal() | Square.E8.ordinal() << 6 | 7 << 12)));
+    }
+
+    @Test
+    public void movePacketIsThreeBytesOnTheWire() {
+        Kryo kryo = new Kryo();
+        MovePacketSerializer serializer = new MovePacketSerializer();
+        MovePacket packet = new MovePacket(new Move(Square.E2, Square.E4), 42);
+        Output output = new Output(16);
+        serializer.write(kryo, output, packet);
+        assertEquals(3, output.position());
+
+        MovePacket read = serializer.read(kryo, new Input(output.toBytes()), MovePacket.class);
+        assertEquals(packet.getEncodedMove(), read.getEncodedMove());
+        assertEquals(42, read.getSequence());
+        assertEquals(new Move(Square.E2, Square.E4), read.getMove());
+    }
+}
@@ -0,0 +1,31 @@
+package io.github.onlinechess.shared;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryonet.FrameworkMessage;
+
+import io.github.onlinechess.shared.packets.MovePacket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NetworkRegistryTest {
+
+    @Test
+    public void frameworkMessagesHaveFixedIds() {
+        Kryo kryo = new Kryo();
+        NetworkRegistry.register(kryo);
+        assertEquals(NetworkRegistry.ID_REGISTER_TCP, kryo.getRegistration(FrameworkMessage.RegisterTCP.class).getId());
+        assertEquals(NetworkRegistry.ID_REGISTER_UDP, kryo.getRegistration(FrameworkMessage.RegisterUDP.class).getId());
+        assertEquals(NetworkRegistry.ID_KEEP_ALIVE, kryo.getRegistration(FrameworkMessage.KeepAlive.class).getId());
+        assertEquals(NetworkRegistry.ID_DISCOVER_HOST, kryo.getRegistration(FrameworkMessage.DiscoverHost.class).getId());
+        assertEquals(NetworkRegistry.ID_FRAMEWORK_PING, kryo.getRegistration(FrameworkMessage.Ping.class).getId());
+        assertEquals(NetworkRegistry.ID_MOVE, kryo.getRegistration(MovePacket.class).getId());
+    }
+
+    @Test
+    public void kryoDefaultsStayBelowTheReservedIds() {
+        assertTrue(new Kryo().getNextRegistrationId() <= NetworkRegistry.ID_REGISTER_TCP);
+    }
+}
@@ -0,0 +1,62 @@
+package io.github.onlinechess.shared;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.esotericsoftware.kryo.KryoException;
+import com.esotericsoftware.kryonet.FrameworkMessage;
+
+import io.github.onlinechess.shared.packets.ChatPacket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PacketSerializationTest {
+    private final PacketSerialization serialization = new PacketSerialization();
+
+    @Test
+    public void frameworkMessagesRoundTrip() {
+        FrameworkMessage.RegisterTCP register = new FrameworkMessage.RegisterTCP();
+        register.connectionID = 7;
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        serialization.write(null, buffer, register);
+        buffer.flip();
+
+        // Class ID plus a varint
+        assertEquals(NetworkRegistry.ID_REGISTER_TCP + 2, buffer.get(0));
+        FrameworkMessage.RegisterTCP read = (FrameworkMessage.RegisterTCP) serialization.read(null, buffer);
+        assertEquals(7, read.connectionID);
+    }
+
+    @Test
+    public void compressedMessagesAreInflated() {
+        ChatPacket chat = new ChatPacket(3, repeat('a', 3000));
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        serialization.write(null, buffer, chat);
+        int length = buffer.position();
+        assertTrue(PayloadCompressor.get().compress(buffer, 0));
+        assertTrue(buffer.position() < length);
+        buffer.flip();
+
+        ChatPacket read = (ChatPacket) serialization.read(null, buffer);
+        assertEquals(3, read.getRoomId());
+        assertEquals(chat.getText(), read.getText());
+        assertEquals(buffer.limit(), buffer.position());
+    }
+
+    @Test(expected = KryoException.class)
+    public void corruptCompressedMessagesAreRefused() {
+        ByteBuffer buffer = ByteBuffer.allocate(16);
+        buffer.put((byte) (NetworkRegistry.ID_COMPRESSED + 2)).put((byte) 10).put(new byte[] {1, 2, 3});
+        buffer.flip();
+        serialization.read(null, buffer);
+    }
+
+    private static String repeat(char c, int length) {
+        char[] chars = new char[length];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,94 @@
+package io.github.onlinechess.shared;
+
+import org.junit.Test;
+
+import io.github.onlinechess.shared.packets.PingPacket;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RttEstimatorTest {
+    // The remote clock runs this far ahead of the local one, in microseconds
+    private static final long SKEW = 5_000;
+
+    private final RttEstimator local = new RttEstimator();
+    private final RttEstimator remote = new RttEstimator();
+
+    @Test
+    public void firstSampleGivesRoundTripAndOffset() {
+        assertFalse(local.hasSample());
+        // 100 us each way, held 300 us on the other side
+        assertTrue(exchange(1_000, 100, 300, 100));
+
+        assertEquals(1, local.getSampleCount());
+        assertEquals(200, local.getRtt());
+        assertEquals(100, local.getJitter());
+        assertEquals(SKEW, local.getOffset());
+        assertEquals(1_000 + SKEW, local.toRemoteTime(1_000));
+    }
+
+    @Test
+    public void roundTripIsSmoothed() {
+        exchange(1_000, 100, 0, 100);
+        exchange(10_000, 300, 0, 300);
+
+        // RFC 6298: variation first, against the old mean
+        assertEquals((3 * 100 + 400) / 4, local.getJitter());
+        assertEquals((7 * 200 + 600) / 8, local.getRtt());
+    }
+
+    @Test
+    public void offsetComesFromTheFastestRecentSample() {
+        exchange(1_000, 100, 0, 100);
+        // Queued 2 ms on the way out only, which skews this sample's offset by 1 ms
+        exchange(10_000, 2_100, 0, 100);
+
+        assertEquals(SKEW, local.getOffset());
+    }
+
+    @Test
+    public void answerIsSampledOnlyOnce() {
+        PingPacket ping = local.nextPing(1_000);
+        remote.received(ping, 1_100 + SKEW);
+        PingPacket answer = remote.nextPing(1_200 + SKEW);
+
+        assertTrue(local.received(answer, 1_300));
+        assertFalse(local.received(answer, 1_400));
+        assertEquals(1, local.getSampleCount());
+    }
+
+    @Test
+    public void answerToAReplacedPingIsIgnored() {
+        PingPacket first = local.nextPing(1_000);
+        remote.received(first, 1_100 + SKEW);
+        PingPacket answer = remote.nextPing(1_200 + SKEW);
+        local.nextPing(2_000);
+
+        assertFalse(local.received(answer, 2_100));
+        assertFalse(local.hasSample());
+        // A ping that answers nothing only starts an exchange
+        assertFalse(local.received(new PingPacket(0, 0, 3_000), 3_100));
+    }
+
+    @Test
+    public void negativeHoldTimeDoesNotInflateTheRoundTrip() {
+        PingPacket ping = local.nextPing(1_000);
+        // The peer claims to have answered before the ping arrived
+        assertTrue(local.received(new PingPacket(ping.getTransmitTime(), 1_500 + SKEW, 1_100 + SKEW), 1_200));
+        assertEquals(200, local.getRtt());
+    }
+
+    /**
+     * Pings the remote side and answers it, with delays in microseconds of local time
+     *
+     * @return Whether the local side took a sample
+     */
+    private boolean exchange(long sentAt, long outbound, long held, long inbound) {
+        PingPacket ping = local.nextPing(sentAt);
+        long arrivedAt = sentAt + outbound;
+        remote.received(ping, arrivedAt + SKEW);
+        PingPacket answer = remote.nextPing(arrivedAt + held + SKEW);
+        return local.received(answer, arrivedAt + held + inbound);
+    }
+}
@@ -0,0 +1,85 @@
+package io.github.onlinechess.shared.cluster;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashRingTest {
+    private static final int GAMES = 100_000;
+
+    private static final NodeAddress A = new NodeAddress("10.0.0.1", 54555, 54777);
+    private static final NodeAddress B = new NodeAddress("10.0.0.2", 54555, 54777);
+    private static final NodeAddress C = new NodeAddress("10.0.0.3", 54555, 54777);
+    private static final NodeAddress D = new NodeAddress("10.0.0.4", 54555, 54777);
+
+    @Test
+    public void emptyRingOwnsNothing() {
+        assertNull(new ConsistentHashRing(Collections.<NodeAddress>emptyList()).nodeFor(123456));
+    }
+
+    @Test
+    public void ringsWithTheSameNodesAgree() {
+        ConsistentHashRing first = new ConsistentHashRing(Arrays.asList(A, B, C));
+        ConsistentHashRing second = new ConsistentHashRing(Arrays.asList(C, A, B));
+        for (int code = 100_000; code < 100_000 + GAMES; code++) {
+            assertEquals(first.nodeFor(code), second.nodeFor(code));
+        }
+    }
+
+    @Test
+    public void sharesAreEven() {
+        Map<NodeAddress, Integer> shares = shares(new ConsistentHashRing(Arrays.asList(A, B, C, D)));
+        for (int share : shares.values()) {
+            // Within 25% of a quarter each
+            assertTrue("Share " + share, Math.abs(share - GAMES / 4) < GAMES / 16);
+        }
+    }
+
+    @Test
+    public void addingANodeOnlyMovesGamesToIt() {
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList(A, B, C));
+        ConsistentHashRing after = new ConsistentHashRing(Arrays.asList(A, B, C, D));
+        int moved = 0;
+        for (int code = 100_000; code < 100_000 + GAMES; code++) {
+            NodeAddress owner = after.nodeFor(code);
+            if (!owner.equals(before.nodeFor(code))) {
+                assertEquals(D, owner);
+                moved++;
+            }
+        }
+        // About a quarter of the games move, none of them between the old nodes
+        assertTrue("Moved " + moved, Math.abs(moved - GAMES / 4) < GAMES / 16);
+    }
+
+    @Test
+    public void removingANodeOnlyMovesItsGames() {
+        ConsistentHashRing before = new ConsistentHashRing(Arrays.asList(A, B, C, D));
+        List<NodeAddress> remaining = new ArrayList<>(before.getNodes());
+        remaining.remove(B);
+        ConsistentHashRing after = new ConsistentHashRing(remaining);
+        for (int code = 100_000; code < 100_000 + GAMES; code++) {
+            NodeAddress owner = before.nodeFor(code);
+            if (!owner.equals(B)) {
+                assertEquals(owner, after.nodeFor(code));
+            }
+        }
+    }
+
+    private static Map<NodeAddress, Integer> shares(ConsistentHashRing ring) {
+        Map<NodeAddress, Integer> shares = new HashMap<>();
+        for (int code = 100_000; code < 100_000 + GAMES; code++) {
+            shares.merge(ring.nodeFor(code), 1, Integer::sum);
+        }
+        assertEquals(ring.getNodes().size(), shares.size());
+        return shares;
+    }
+}
@@ -0,0 +1,150 @@
+package io.github.onlinechess.shared.stream;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import io.github.onlinechess.shared.packets.ChunkAckPacket;
+import io.github.onlinechess.shared.packets.ChunkPacket;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class StreamTest {
+    private static final int WINDOW = 4;
+
+    private final StreamSender sender = new StreamSender(WINDOW, 2);
+    private final ByteArrayOutputStream received = new ByteArrayOutputStream();
+    private final List<Integer> completed = new ArrayList<>();
+    private final StreamReceiver receiver = new StreamReceiver((streamId, kind, data, last) -> {
+        received.write(data, 0, data.length);
+        if (last) {
+            completed.add(streamId);
+        }
+    });
+
+    @Test
+    public void payloadArrivesWholeAndInOrder() {
+        byte[] payload = payload(ChunkPacket.MAX_DATA * 10 + 7);
+        int streamId = sender.open(ChunkPacket.KIND_MOVE_HISTORY, payload);
+
+        int chunks = transfer();
+        assertEquals(11, chunks);
+        assertArrayEquals(payload, received.toByteArray());
+        assertEquals(1, completed.size());
+        assertEquals(streamId, (int) completed.get(0));
+        assertFalse(sender.hasStreams());
+        assertEquals(0, receiver.getOpenStreamCount());
+    }
+
+    @Test
+    public void emptyPayloadStillCompletes() {
+        int streamId = sender.open(ChunkPacket.KIND_MOVE_HISTORY, new byte[0]);
+        assertEquals(1, transfer());
+        assertEquals(streamId, (int) completed.get(0));
+        assertFalse(sender.hasStreams());
+    }
+
+    @Test
+    public void windowLimitsChunksInFlight() {
+        sender.open(ChunkPacket.KIND_MOVE_HISTORY, payload(ChunkPacket.MAX_DATA * 10));
+        List<ChunkPacket> sent = new ArrayList<>();
+        ChunkPacket chunk;
+        while ((chunk = sender.poll()) != null) {
+            sent.add(chunk);
+        }
+        assertEquals(WINDOW, sent.size());
+        assertEquals(WINDOW, sender.getInFlight());
+        // Every half window asks for an acknowledgement
+        assertFalse(sent.get(0).isAckRequested());
+        assertTrue(sent.get(1).isAckRequested());
+        assertTrue(sent.get(3).isAckRequested());
+
+        // Acknowledging the first half opens that much of the window again
+        sender.acknowledge(sent.get(1).getStreamId(), 1);
+        assertEquals(WINDOW - 2, sender.getInFlight());
+        assertNotNull(sender.poll());
+        assertNotNull(sender.poll());
+        assertNull(sender.poll());
+    }
+
+    @Test
+    public void staleAndUnknownAcknowledgementsAreIgnored() {
+        int streamId = sender.open(ChunkPacket.KIND_MOVE_HISTORY, payload(ChunkPacket.MAX_DATA * 10));
+        sender.poll();
+        sender.poll();
+        // Not sent yet
+        sender.acknowledge(streamId, 5);
+        // No such stream
+        sender.acknowledge(streamId + 1, 0);
+        assertEquals(2, sender.getInFlight());
+
+        sender.acknowledge(streamId, 1);
+        sender.acknowledge(streamId, 0);
+        assertEquals(0, sender.getInFlight());
+    }
+
+    @Test
+    public void streamsAreSentOneAfterAnother() {
+        byte[] first = payload(ChunkPacket.MAX_DATA * 3);
+        byte[] second = payload(ChunkPacket.MAX_DATA * 2 + 1);
+        int firstId = sender.open(ChunkPacket.KIND_MOVE_HISTORY, first);
+        int secondId = sender.open(ChunkPacket.KIND_MOVE_HISTORY, second);
+        // Only two may be queued
+        assertEquals(0, sender.open(ChunkPacket.KIND_MOVE_HISTORY, new byte[1]));
+
+        transfer();
+        byte[] both = received.toByteArray();
+        assertEquals(first.length + second.length, both.length);
+        assertEquals(firstId, (int) completed.get(0));
+        assertEquals(secondId, (int) completed.get(1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void missingChunkIsRefused() {
+        sender.open(ChunkPacket.KIND_MOVE_HISTORY, payload(ChunkPacket.MAX_DATA * 3));
+        sender.poll();
+        receiver.received(sender.poll());
+    }
+
+    @Test
+    public void clearForgetsUnfinishedStreams() {
+        sender.open(ChunkPacket.KIND_MOVE_HISTORY, payload(ChunkPacket.MAX_DATA * 3));
+        receiver.received(sender.poll());
+        assertEquals(1, receiver.getOpenStreamCount());
+        receiver.clear();
+        assertEquals(0, receiver.getOpenStreamCount());
+    }
+
+    /**
+     * Moves chunks from the sender to the receiver and acknowledgements back until the sender is done
+     *
+     * @return The number of chunks moved
+     */
+    private int transfer() {
+        int chunks = 0;
+        ChunkPacket chunk;
+        while ((chunk = sender.poll()) != null) {
+            chunks++;
+            ChunkAckPacket ack = receiver.received(chunk);
+            if (ack != null) {
+                sender.acknowledge(ack.getStreamId(), ack.getIndex());
+            }
+        }
+        assertEquals(0, sender.getInFlight());
+        return chunks;
+    }
+
+    private static byte[] payload(int length) {
+        byte[] payload = new byte[length];
+        new Random(length).nextBytes(payload);
+        return payload;
+    }
+}